@@ -20,17 +20,21 @@ package org.netbeans.modules.avatar.platform;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.prefs.Preferences;
+import org.netbeans.api.java.platform.JavaPlatform;
 import org.netbeans.api.java.platform.JavaPlatformManager;
 import org.netbeans.api.project.FileOwnerQuery;
 import org.netbeans.api.project.Project;
 import org.netbeans.modules.avatar.platform.api.BundledAvatarPlatform;
 import org.netbeans.modules.nodejs.api.LaunchSupport;
+import org.netbeans.modules.nodejs.api.NodeCapabilities;
 import org.netbeans.modules.nodejs.api.NodeJSExecutable;
+import org.openide.awt.StatusDisplayer;
 import org.openide.filesystems.FileChooserBuilder;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
@@ -85,10 +89,20 @@ public class AvatarPlatform extends NodeJSExecutable {
                 AvatarPlatform.class.getPackage().getName(), false); //NOI18N
     }
 
-    private String javaCommandLine() {
-        // XXX provide an option to select
+    private static JavaPlatform javaPlatform(LaunchProfile profile) {
         JavaPlatformManager mgr = JavaPlatformManager.getDefault();
-        FileObject java = mgr.getDefaultPlatform().findTool("java"); //NOI18N
+        if (profile.javaPlatform() != null) {
+            for (JavaPlatform platform : mgr.getInstalledPlatforms()) {
+                if (profile.javaPlatform().equals(platform.getProperties().get("platform.ant.name"))) { //NOI18N
+                    return platform;
+                }
+            }
+        }
+        return mgr.getDefaultPlatform();
+    }
+
+    private static String javaCommandLine(JavaPlatform platform) {
+        FileObject java = platform.findTool("java"); //NOI18N
         return java == null ? "java" : FileUtil.toFile(java).getAbsolutePath(); //NOI18N
     }
 
@@ -98,27 +112,29 @@ public class AvatarPlatform extends NodeJSExecutable {
         private static final String LOOK_FOR_AVATAR = "LOOK_FOR_AVATAR"; //NOI18N
 
         @Override
+        @Messages({"# {0} - the coordinates of the missing artifacts",
+            "MISSING_JAVA_LIBRARIES=Not in the local Maven repository, left off the classpath: {0}"})
         protected void populateEnv(Map<String, String> env, FileObject toRun, String args) {
             // Look for a subsection in packate.json named "java", and see if there
             // is an array of dependencies ala Maven - see https://github.com/timboudreau/jnpm
             // for the spec for this.
-            // If yes, populate the CLASSPATH environment variable with them - these
-            // are Java libraries that need to be on the classpath because they are
-            // used by the Node project
+            // If yes, populate the CLASSPATH environment variable with them and
+            // their transitive dependencies, as found in the local repository -
+            // these are Java libraries that need to be on the classpath because
+            // they are used by the Node project
             Project project = FileOwnerQuery.getOwner(toRun);
             if (project != null) { // could be a standalone js file
                 List<JavaDependency> deps = new LinkedList<>();
                 JavaDependency.find(project, deps);
                 // If we have some deps, populate $CLASSPATH
                 if (!deps.isEmpty()) {
-                    StringBuilder cp = new StringBuilder();
-                    for (JavaDependency dep : deps) {
-                        if (cp.length() > 0) {
-                            cp.append(File.pathSeparator);
-                        }
-                        cp.append(dep);
+                    MavenResolver.Resolution resolution = MavenResolver.getDefault().resolve(deps);
+                    if (!resolution.missing().isEmpty()) {
+                        StatusDisplayer.getDefault().setStatusText(Bundle.MISSING_JAVA_LIBRARIES(resolution.missing()));
+                    }
+                    if (!resolution.classpath().isEmpty()) {
+                        env.put("CLASSPATH", resolution.toString()); //NOI18N
                     }
-                    env.put("CLASSPATH", cp.toString());
                 }
             }
         }
@@ -126,7 +142,9 @@ public class AvatarPlatform extends NodeJSExecutable {
         @Override
         @Messages(LOOK_FOR_AVATAR + "=Locate avatar.jar") //NOI18N
         protected String[] getLaunchCommandLine(boolean showDialog, Map<String, String> env) {
-            String java = javaCommandLine();
+            LaunchProfile profile = LaunchProfiles.selected(AvatarPlatform.this.name());
+            JavaPlatform platform = javaPlatform(profile);
+            String java = javaCommandLine(platform);
             File avatarJar = findAvatarJar();
             if (avatarJar == null) {
                 if (showDialog) {
@@ -153,12 +171,14 @@ public class AvatarPlatform extends NodeJSExecutable {
                     env.put("LD_LIBRARY_PATH", dir.getAbsolutePath());
                 }
             }
-            System.out.println("ENV IS " + env);
-            return new String[]{
-                java,
-                "-jar", //NOI18N
-                avatarJar.getAbsolutePath()
-            };
+            int javaMajor = ClassDataSharing.javaMajor(platform.getSpecification().getVersion());
+            List<String> result = new ArrayList<>();
+            result.add(java);
+            result.addAll(profile.jvmArguments(javaMajor));
+            result.addAll(ClassDataSharing.arguments(java, javaMajor, avatarJar, profile));
+            result.add("-jar"); //NOI18N
+            result.add(avatarJar.getAbsolutePath());
+            return result.toArray(new String[result.size()]);
         }
     };
 
@@ -194,6 +214,18 @@ public class AvatarPlatform extends NodeJSExecutable {
         return result == null ? "" : result.getAbsolutePath();
     }
 
+    // path() is avatar.jar, which cannot be asked node's questions by
+    // running it with -p
+    @Override
+    public NodeCapabilities capabilities() {
+        return null;
+    }
+
+    @Override
+    public NodeCapabilities cachedCapabilities() {
+        return null;
+    }
+
     public String displayName() {
         return bundled == null ? name() : bundled.displayName();
     }
@@ -0,0 +1,100 @@
+/* Copyright (C) 2014 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.avatar.platform;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.openide.modules.Places;
+import org.openide.modules.SpecificationVersion;
+
+/**
+ * Creates and reuses a class data sharing archive of the classes Avatar
+ * loads, so later launches map them from the archive instead of loading
+ * and verifying them again.  There is one archive per combination of Java
+ * binary, avatar.jar and options which affect its layout;  a change to
+ * any of them makes a new one.  The JVM falls back to running without the
+ * archive if it cannot use it.
+ *
+ * @author Tim Boudreau
+ */
+final class ClassDataSharing {
+
+    // The first releases with -XX:ArchiveClassesAtExit and
+    // -XX:+AutoCreateSharedArchive
+    static final int DYNAMIC_ARCHIVE_SINCE = 13;
+    static final int AUTO_ARCHIVE_SINCE = 19;
+
+    private ClassDataSharing() {
+        throw new AssertionError();
+    }
+
+    static List<String> arguments(String java, int javaMajor, File avatarJar, LaunchProfile profile) {
+        return arguments(Places.getCacheSubdirectory("avatar/cds"), java, javaMajor, avatarJar, profile); //NOI18N
+    }
+
+    /**
+     * Get the JVM options to create or use the archive, or none where
+     * that would take a separate dumping step (before JDK 13).
+     */
+    static List<String> arguments(File dir, String java, int javaMajor, File avatarJar, LaunchProfile profile) {
+        if (javaMajor < DYNAMIC_ARCHIVE_SINCE || !profile.classDataSharing()) {
+            return Collections.emptyList();
+        }
+        File archive = new File(dir, archiveName(java, javaMajor, avatarJar, profile));
+        List<String> result = new ArrayList<>(3);
+        result.add("-Xshare:auto"); //NOI18N
+        if (javaMajor >= AUTO_ARCHIVE_SINCE) {
+            // Creates the archive at exit if it is missing or unusable
+            result.add("-XX:+AutoCreateSharedArchive"); //NOI18N
+            result.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath()); //NOI18N
+        } else if (archive.length() > 0) {
+            result.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath()); //NOI18N
+        } else {
+            result.add("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath()); //NOI18N
+        }
+        return result;
+    }
+
+    static String archiveName(String java, int javaMajor, File avatarJar, LaunchProfile profile) {
+        // The archive layout depends on the collector, and on the heap size
+        // through compressed oops
+        String key = java + '\n' + javaMajor + '\n' + avatarJar.getAbsolutePath()
+                + '\n' + avatarJar.length() + '\n' + avatarJar.lastModified()
+                + '\n' + profile.collector() + '\n' + profile.maxHeap();
+        return "avatar-" + javaMajor + '-' + Integer.toHexString(key.hashCode()) + ".jsa"; //NOI18N
+    }
+
+    /**
+     * The major version of a Java platform's specification - 8 for 1.8.
+     */
+    static int javaMajor(SpecificationVersion version) {
+        String s = version.toString();
+        if (s.startsWith("1.")) { //NOI18N
+            s = s.substring(2);
+        }
+        int dot = s.indexOf('.');
+        try {
+            return Integer.parseInt(dot < 0 ? s : s.substring(0, dot));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+}
@@ -46,6 +46,8 @@ public class JavaLibrariesChildren extends ChildFactory<JavaDependency> {
     @Override
     protected boolean createKeys(List<JavaDependency> list) {
         JavaDependency.find(project, list);
+        // Resolve the classpath now, so running the project does not wait for it
+        MavenResolver.getDefault().warm(list);
         return true;
     }
 
@@ -0,0 +1,216 @@
+/* Copyright (C) 2014 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.avatar.platform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.prefs.Preferences;
+
+/**
+ * A named set of JVM options to run Avatar with - heap size, garbage
+ * collector, JIT settings, whether to use a class data sharing archive for
+ * faster startup, and which Java platform to run on.
+ *
+ * @see LaunchProfiles
+ * @author Tim Boudreau
+ */
+final class LaunchProfile {
+
+    enum Collector {
+        DEFAULT, SERIAL, PARALLEL, G1, Z, SHENANDOAH;
+
+        /**
+         * The flags to select this collector on a given Java version, or
+         * none if it does not have it.
+         */
+        List<String> arguments(int javaMajor) {
+            switch (this) {
+                case SERIAL:
+                    return Collections.singletonList("-XX:+UseSerialGC"); //NOI18N
+                case PARALLEL:
+                    return Collections.singletonList("-XX:+UseParallelGC"); //NOI18N
+                case G1:
+                    return Collections.singletonList("-XX:+UseG1GC"); //NOI18N
+                case Z:
+                    return experimental(javaMajor, 11, 15, "-XX:+UseZGC"); //NOI18N
+                case SHENANDOAH:
+                    return experimental(javaMajor, 12, 15, "-XX:+UseShenandoahGC"); //NOI18N
+                default:
+                    return Collections.emptyList();
+            }
+        }
+
+        private static List<String> experimental(int javaMajor, int since, int stableSince, String flag) {
+            if (javaMajor < since) {
+                return Collections.emptyList();
+            } else if (javaMajor < stableSince) {
+                List<String> result = new ArrayList<>(2);
+                result.add("-XX:+UnlockExperimentalVMOptions"); //NOI18N
+                result.add(flag);
+                return result;
+            }
+            return Collections.singletonList(flag);
+        }
+    }
+
+    enum Compiler {
+        DEFAULT,
+        /** Stop at C1 - fastest warm-up, for short runs. */
+        QUICK_STARTUP,
+        /** No tiered compilation - slower warm-up, for long-running servers. */
+        OPTIMIZING;
+
+        List<String> arguments() {
+            switch (this) {
+                case QUICK_STARTUP:
+                    return Collections.singletonList("-XX:TieredStopAtLevel=1"); //NOI18N
+                case OPTIMIZING:
+                    return Collections.singletonList("-XX:-TieredCompilation"); //NOI18N
+                default:
+                    return Collections.emptyList();
+            }
+        }
+    }
+
+    static final String DEFAULT = "default"; //NOI18N
+    private final String name;
+    private final String displayName;
+    private final String javaPlatform;
+    private final String initialHeap;
+    private final String maxHeap;
+    private final Collector collector;
+    private final Compiler compiler;
+    private final boolean classDataSharing;
+    private final String jvmArguments;
+
+    LaunchProfile(String name, String displayName, String javaPlatform, String initialHeap, String maxHeap,
+            Collector collector, Compiler compiler, boolean classDataSharing, String jvmArguments) {
+        this.name = name;
+        this.displayName = displayName;
+        this.javaPlatform = javaPlatform;
+        this.initialHeap = initialHeap;
+        this.maxHeap = maxHeap;
+        this.collector = collector;
+        this.compiler = compiler;
+        this.classDataSharing = classDataSharing;
+        this.jvmArguments = jvmArguments;
+    }
+
+    static LaunchProfile load(String name, Preferences p) {
+        return new LaunchProfile(name,
+                p.get("displayName", name), //NOI18N
+                p.get("javaPlatform", null), //NOI18N
+                p.get("initialHeap", null), //NOI18N
+                p.get("maxHeap", null), //NOI18N
+                valueOf(Collector.class, p.get("collector", null), Collector.DEFAULT), //NOI18N
+                valueOf(Compiler.class, p.get("compiler", null), Compiler.DEFAULT), //NOI18N
+                p.getBoolean("classDataSharing", true), //NOI18N
+                p.get("jvmArguments", null)); //NOI18N
+    }
+
+    void store(Preferences p) {
+        p.put("displayName", displayName); //NOI18N
+        put(p, "javaPlatform", javaPlatform); //NOI18N
+        put(p, "initialHeap", initialHeap); //NOI18N
+        put(p, "maxHeap", maxHeap); //NOI18N
+        p.put("collector", collector.name()); //NOI18N
+        p.put("compiler", compiler.name()); //NOI18N
+        p.putBoolean("classDataSharing", classDataSharing); //NOI18N
+        put(p, "jvmArguments", jvmArguments); //NOI18N
+    }
+
+    private static void put(Preferences p, String key, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            p.remove(key);
+        } else {
+            p.put(key, value.trim());
+        }
+    }
+
+    private static <T extends Enum<T>> T valueOf(Class<T> type, String name, T defaultValue) {
+        if (name != null) {
+            try {
+                return Enum.valueOf(type, name);
+            } catch (IllegalArgumentException ex) {
+                // Written by a later version
+            }
+        }
+        return defaultValue;
+    }
+
+    String name() {
+        return name;
+    }
+
+    String displayName() {
+        return displayName;
+    }
+
+    /**
+     * The ant name of the Java platform to run on, or null for the
+     * default platform.
+     */
+    String javaPlatform() {
+        return javaPlatform;
+    }
+
+    boolean classDataSharing() {
+        return classDataSharing;
+    }
+
+    Collector collector() {
+        return collector;
+    }
+
+    String maxHeap() {
+        return maxHeap;
+    }
+
+    /**
+     * The JVM options this profile sets for a given Java version, except
+     * for class data sharing, which also needs the archive.
+     *
+     * @see ClassDataSharing
+     */
+    List<String> jvmArguments(int javaMajor) {
+        List<String> result = new ArrayList<>();
+        if (initialHeap != null) {
+            result.add("-Xms" + initialHeap); //NOI18N
+        }
+        if (maxHeap != null) {
+            result.add("-Xmx" + maxHeap); //NOI18N
+        }
+        result.addAll(collector.arguments(javaMajor));
+        result.addAll(compiler.arguments());
+        if (jvmArguments != null) {
+            for (String arg : jvmArguments.trim().split("\\s+")) { //NOI18N
+                if (!arg.isEmpty()) {
+                    result.add(arg);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
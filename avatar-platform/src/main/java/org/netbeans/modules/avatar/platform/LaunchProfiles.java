@@ -0,0 +1,169 @@
+/* Copyright (C) 2014 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.avatar.platform;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.NodeChangeEvent;
+import java.util.prefs.NodeChangeListener;
+import java.util.prefs.PreferenceChangeEvent;
+import java.util.prefs.PreferenceChangeListener;
+import java.util.prefs.Preferences;
+import org.netbeans.modules.avatar.platform.LaunchProfile.Collector;
+import org.netbeans.modules.avatar.platform.LaunchProfile.Compiler;
+import org.openide.util.Exceptions;
+import org.openide.util.NbBundle.Messages;
+import org.openide.util.NbPreferences;
+
+/**
+ * Launch profiles, stored one per preferences node like platforms are, and
+ * which one each Avatar platform launches with.  A few profiles are built
+ * in;  a stored profile with the same name replaces one.
+ *
+ * @author Tim Boudreau
+ */
+@Messages({"PROFILE_DEFAULT=Default",
+    "PROFILE_STARTUP=Fast Startup",
+    "PROFILE_SERVER=Long-Running Server"})
+final class LaunchProfiles {
+
+    private static final Preferences prefs = NbPreferences.forModule(AvatarPlatformType.class).node("launchProfiles"); //NOI18N
+    private static final Preferences selections = NbPreferences.forModule(AvatarPlatformType.class).node("launchProfileSelection"); //NOI18N
+    static final String STARTUP = "startup"; //NOI18N
+    static final String SERVER = "server"; //NOI18N
+    private static final Map<String, LaunchProfile> CACHE = new ConcurrentHashMap<>();
+    private static final Invalidator INVALIDATOR = new Invalidator();
+
+    static {
+        prefs.addNodeChangeListener(INVALIDATOR);
+    }
+
+    private LaunchProfiles() {
+        throw new AssertionError();
+    }
+
+    private static Map<String, LaunchProfile> builtIn() {
+        Map<String, LaunchProfile> result = new LinkedHashMap<>();
+        result.put(LaunchProfile.DEFAULT, new LaunchProfile(LaunchProfile.DEFAULT, Bundle.PROFILE_DEFAULT(),
+                null, null, null, Collector.DEFAULT, Compiler.DEFAULT, true, null));
+        result.put(STARTUP, new LaunchProfile(STARTUP, Bundle.PROFILE_STARTUP(),
+                null, null, null, Collector.SERIAL, Compiler.QUICK_STARTUP, true, null));
+        result.put(SERVER, new LaunchProfile(SERVER, Bundle.PROFILE_SERVER(),
+                null, "512m", null, Collector.G1, Compiler.OPTIMIZING, true, null)); //NOI18N
+        return result;
+    }
+
+    static LaunchProfile find(String name) {
+        LaunchProfile result = CACHE.get(name);
+        if (result != null) {
+            return result;
+        }
+        try {
+            if (prefs.nodeExists(name)) {
+                Preferences p = prefs.node(name);
+                result = LaunchProfile.load(name, p);
+                if (CACHE.putIfAbsent(name, result) == null) {
+                    p.addPreferenceChangeListener(INVALIDATOR);
+                }
+                return CACHE.get(name);
+            }
+        } catch (BackingStoreException ex) {
+            Exceptions.printStackTrace(ex);
+        }
+        return builtIn().get(name);
+    }
+
+    static List<LaunchProfile> all() {
+        Map<String, LaunchProfile> result = builtIn();
+        try {
+            for (String name : prefs.childrenNames()) {
+                LaunchProfile profile = find(name);
+                if (profile != null) {
+                    result.put(name, profile);
+                }
+            }
+        } catch (BackingStoreException ex) {
+            Exceptions.printStackTrace(ex);
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    static void add(LaunchProfile profile) {
+        Preferences p = prefs.node(profile.name());
+        profile.store(p);
+        try {
+            p.flush();
+        } catch (BackingStoreException ex) {
+            Exceptions.printStackTrace(ex);
+        }
+        CACHE.remove(profile.name());
+    }
+
+    static void remove(String name) {
+        try {
+            if (prefs.nodeExists(name)) {
+                prefs.node(name).removeNode();
+                prefs.flush();
+            }
+        } catch (BackingStoreException ex) {
+            Exceptions.printStackTrace(ex);
+        }
+        CACHE.remove(name);
+    }
+
+    /**
+     * The profile a platform launches with.
+     *
+     * @param platformName The name of an Avatar platform
+     */
+    static LaunchProfile selected(String platformName) {
+        LaunchProfile result = find(selections.get(platformName, LaunchProfile.DEFAULT));
+        return result == null ? find(LaunchProfile.DEFAULT) : result;
+    }
+
+    static void select(String platformName, String profileName) {
+        if (profileName == null || LaunchProfile.DEFAULT.equals(profileName)) {
+            selections.remove(platformName);
+        } else {
+            selections.put(platformName, profileName);
+        }
+    }
+
+    private static final class Invalidator implements PreferenceChangeListener, NodeChangeListener {
+
+        @Override
+        public void preferenceChange(PreferenceChangeEvent evt) {
+            CACHE.remove(evt.getNode().name());
+        }
+
+        @Override
+        public void childAdded(NodeChangeEvent evt) {
+            CACHE.remove(evt.getChild().name());
+        }
+
+        @Override
+        public void childRemoved(NodeChangeEvent evt) {
+            CACHE.remove(evt.getChild().name());
+        }
+    }
+}
@@ -0,0 +1,694 @@
+/* Copyright (C) 2014 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.avatar.platform;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.openide.util.RequestProcessor;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Turns the Java dependencies declared in the "java" section of a
+ * package.json into a classpath, using only what is in the local Maven
+ * repository - POMs are read for transitive dependencies (honoring
+ * parents, properties, dependency management, scopes, optional
+ * dependencies and exclusions, with Maven's nearest-wins rule for
+ * conflicting versions), and nothing is ever downloaded.  The jars are
+ * checked in parallel, and anything missing or broken is left off the
+ * classpath and reported.
+ * <p/>
+ * Results are cached by the declared dependencies, and reused for as long
+ * as none of the POMs and jars they were computed from have changed.  A
+ * result where checking some jar timed out or failed is not cached, since
+ * the jar may be fine the next time.
+ *
+ * @author Tim Boudreau
+ */
+final class MavenResolver {
+
+    private static final Logger LOG = Logger.getLogger(MavenResolver.class.getName());
+    private static final RequestProcessor RP = new RequestProcessor("Maven artifact resolution", 1); //NOI18N
+    // Separate from RP so resolving never waits on its own thread pool
+    static final RequestProcessor CHECKS = new RequestProcessor("Maven jar checks", 4); //NOI18N
+    // For all the jars together, so a launch never waits longer than this
+    private static final long VERIFY_TIMEOUT_MILLIS = 10000;
+    private static final Pattern PROPERTY = Pattern.compile("\\$\\{([^}]+)\\}"); //NOI18N
+    private static final Pattern LOCAL_REPOSITORY = Pattern.compile("<localRepository>\\s*([^<]+?)\\s*</localRepository>"); //NOI18N
+    private static MavenResolver instance;
+    private final File repository;
+    private final Map<String, Resolution> cache = new HashMap<>();
+    private final Map<File, Pom> poms = new ConcurrentHashMap<>();
+
+    MavenResolver(File repository) {
+        this.repository = repository;
+    }
+
+    static synchronized MavenResolver getDefault() {
+        if (instance == null) {
+            instance = new MavenResolver(defaultRepository());
+        }
+        return instance;
+    }
+
+    static File defaultRepository() {
+        String prop = System.getProperty("maven.repo.local"); //NOI18N
+        if (prop != null) {
+            return new File(prop);
+        }
+        File m2 = new File(System.getProperty("user.home"), ".m2"); //NOI18N
+        File settings = new File(m2, "settings.xml"); //NOI18N
+        if (settings.isFile()) {
+            try {
+                Matcher m = LOCAL_REPOSITORY.matcher(new String(Files.readAllBytes(settings.toPath()), "UTF-8")); //NOI18N
+                if (m.find()) {
+                    return new File(m.group(1).replace("${user.home}", System.getProperty("user.home"))); //NOI18N
+                }
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Reading " + settings, ex); //NOI18N
+            }
+        }
+        return new File(m2, "repository"); //NOI18N
+    }
+
+    /**
+     * A resolved classpath.
+     */
+    static final class Resolution {
+
+        private final List<File> classpath;
+        private final List<String> missing;
+        // Everything the result was computed from, with its modification
+        // time or 0 if it did not exist
+        private final Map<File, Long> inputs;
+        private final boolean complete;
+
+        Resolution(List<File> classpath, List<String> missing, Map<File, Long> inputs, boolean complete) {
+            this.classpath = Collections.unmodifiableList(classpath);
+            this.missing = Collections.unmodifiableList(missing);
+            this.inputs = inputs;
+            this.complete = complete;
+        }
+
+        /**
+         * Jars which exist and look like jars, in resolution order.
+         */
+        List<File> classpath() {
+            return classpath;
+        }
+
+        /**
+         * Coordinates of artifacts whose jar is missing from the local
+         * repository or is not a jar.
+         */
+        List<String> missing() {
+            return missing;
+        }
+
+        /**
+         * Whether every jar could be checked;  if not, some of those
+         * reported missing may not be.
+         */
+        boolean isComplete() {
+            return complete;
+        }
+
+        boolean isUpToDate() {
+            for (Map.Entry<File, Long> e : inputs.entrySet()) {
+                if (e.getKey().lastModified() != e.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (File f : classpath) {
+                if (sb.length() > 0) {
+                    sb.append(File.pathSeparatorChar);
+                }
+                sb.append(f.getAbsolutePath());
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Resolve, or fetch from the cache, the classpath for some declared
+     * dependencies.
+     */
+    Resolution resolve(List<JavaDependency> deps) {
+        StringBuilder sb = new StringBuilder();
+        for (JavaDependency dep : deps) {
+            sb.append(dep.groupId).append(':').append(dep.artifactId).append(':').append(dep.version).append('\n');
+        }
+        String key = sb.toString();
+        Resolution result;
+        synchronized (cache) {
+            result = cache.get(key);
+        }
+        if (result != null && result.isUpToDate()) {
+            return result;
+        }
+        long start = System.currentTimeMillis();
+        result = compute(deps);
+        if (result.isComplete()) {
+            synchronized (cache) {
+                cache.put(key, result);
+            }
+        }
+        LOG.log(Level.FINE, "Resolved {0} jars for {1} dependencies in {2} ms, missing {3}", //NOI18N
+                new Object[]{result.classpath().size(), deps.size(), System.currentTimeMillis() - start, result.missing()});
+        return result;
+    }
+
+    /**
+     * Resolve in the background, so a later launch finds the result cached.
+     */
+    void warm(final List<JavaDependency> deps) {
+        if (!deps.isEmpty()) {
+            final List<JavaDependency> copy = new ArrayList<>(deps);
+            RP.post(new Runnable() {
+                @Override
+                public void run() {
+                    resolve(copy);
+                }
+            });
+        }
+    }
+
+    private Resolution compute(List<JavaDependency> declared) {
+        Map<File, Long> inputs = new HashMap<>();
+        // groupId:artifactId -> the artifact chosen for it;  the queue is
+        // breadth first, so the first one seen is the nearest
+        Map<String, Dep> chosen = new LinkedHashMap<>();
+        Deque<Dep> queue = new ArrayDeque<>();
+        for (JavaDependency dep : declared) {
+            queue.add(new Dep(dep.groupId, dep.artifactId, dep.version, null, null, null, false,
+                    Collections.<String>emptySet()));
+        }
+        while (!queue.isEmpty()) {
+            Dep dep = queue.poll();
+            if (chosen.containsKey(dep.key())) {
+                continue;
+            }
+            String version = chooseVersion(dep);
+            if (version == null) {
+                chosen.put(dep.key(), dep);
+                continue;
+            }
+            dep = dep.withVersion(version);
+            chosen.put(dep.key(), dep);
+            Pom pom = pom(dep.groupId, dep.artifactId, dep.version, inputs);
+            if (pom == null) {
+                continue;
+            }
+            for (Dep child : pom.dependencies) {
+                if (child.optional || !child.isRuntime() || dep.excludes(child)) {
+                    continue;
+                }
+                Set<String> exclusions = new HashSet<>(dep.exclusions);
+                exclusions.addAll(child.exclusions);
+                queue.add(new Dep(child.groupId, child.artifactId, child.version, child.scope,
+                        child.type, child.classifier, false, exclusions));
+            }
+        }
+        // Check the jars in parallel - unless called from a check thread,
+        // which could then end up waiting for itself
+        boolean inline = CHECKS.isRequestProcessorThread();
+        List<Dep> artifacts = new ArrayList<>();
+        List<Future<Boolean>> checks = new ArrayList<>();
+        for (Dep dep : chosen.values()) {
+            if ("pom".equals(dep.type)) { //NOI18N
+                continue;
+            }
+            artifacts.add(dep);
+            if (dep.version == null) {
+                checks.add(null);
+                continue;
+            }
+            final File jar = jar(dep);
+            inputs.put(jar, jar.lastModified());
+            FutureTask<Boolean> check = new FutureTask<>(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return isJar(jar);
+                }
+            });
+            if (inline) {
+                check.run();
+            } else {
+                CHECKS.execute(check);
+            }
+            checks.add(check);
+        }
+        List<File> classpath = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + VERIFY_TIMEOUT_MILLIS;
+        boolean complete = true;
+        for (int i = 0; i < artifacts.size(); i++) {
+            boolean ok = false;
+            Future<Boolean> check = checks.get(i);
+            try {
+                ok = check != null && check.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                LOG.log(Level.FINE, "Checking " + artifacts.get(i), ex); //NOI18N
+                Thread.currentThread().interrupt();
+                complete = false;
+            } catch (ExecutionException | TimeoutException ex) {
+                LOG.log(Level.FINE, "Checking " + artifacts.get(i), ex); //NOI18N
+                check.cancel(true);
+                complete = false;
+            }
+            if (ok) {
+                classpath.add(jar(artifacts.get(i)));
+            } else {
+                missing.add(artifacts.get(i).toString());
+            }
+        }
+        return new Resolution(classpath, missing, inputs, complete);
+    }
+
+    private String chooseVersion(Dep dep) {
+        String v = dep.version;
+        if (v != null && !v.isEmpty() && !"null".equals(v) && v.charAt(0) != '[' && v.charAt(0) != '(') { //NOI18N
+            return v;
+        }
+        // A range, or no version at all:  use the newest installed one which fits
+        String best = null;
+        String[] installed = new File(repository, dep.groupId.replace('.', '/') + '/' + dep.artifactId).list();
+        if (installed != null) {
+            for (String candidate : installed) {
+                if (new File(repository, path(dep.groupId, dep.artifactId, candidate, "pom")).isFile() //NOI18N
+                        && (v == null || v.isEmpty() || "null".equals(v) || inRange(candidate, v)) //NOI18N
+                        && (best == null || compareVersions(candidate, best) > 0)) {
+                    best = candidate;
+                }
+            }
+        }
+        return best;
+    }
+
+    private File jar(Dep dep) {
+        String classifier = dep.classifier;
+        if (classifier == null && "test-jar".equals(dep.type)) { //NOI18N
+            classifier = "tests"; //NOI18N
+        }
+        String name = dep.artifactId + '-' + dep.version
+                + (classifier == null || classifier.isEmpty() ? "" : '-' + classifier) + ".jar"; //NOI18N
+        return new File(repository, dep.groupId.replace('.', '/') + '/' + dep.artifactId + '/' + dep.version + '/' + name);
+    }
+
+    private static String path(String groupId, String artifactId, String version, String extension) {
+        return groupId.replace('.', '/') + '/' + artifactId + '/' + version + '/' + artifactId + '-' + version + '.' + extension;
+    }
+
+    static boolean isJar(File file) throws IOException {
+        if (!file.isFile() || file.length() < 4) {
+            return false;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return in.read() == 'P' && in.read() == 'K' && in.read() == 3 && in.read() == 4;
+        }
+    }
+
+    /**
+     * Get the effective POM - with inheritance, properties and dependency
+     * management applied - of an artifact, or null if it is not in the
+     * local repository.
+     */
+    private Pom pom(String groupId, String artifactId, String version, Map<File, Long> inputs) {
+        return pom(groupId, artifactId, version, inputs, 0);
+    }
+
+    private Pom pom(String groupId, String artifactId, String version, Map<File, Long> inputs, int depth) {
+        File file = new File(repository, path(groupId, artifactId, version, "pom")); //NOI18N
+        long modified = file.lastModified();
+        inputs.put(file, modified);
+        if (modified == 0 || depth > 20) {
+            return null;
+        }
+        Pom result = poms.get(file);
+        if (result != null && result.lastModified == modified && result.isUpToDate(inputs)) {
+            return result;
+        }
+        Element root;
+        try {
+            root = parse(file);
+        } catch (IOException | SAXException | ParserConfigurationException ex) {
+            LOG.log(Level.INFO, "Bad POM " + file, ex); //NOI18N
+            return null;
+        }
+        Map<File, Long> read = new HashMap<>();
+        read.put(file, modified);
+        Map<String, String> properties = new HashMap<>();
+        Map<String, Dep> management = new LinkedHashMap<>();
+        List<Dep> dependencies = new ArrayList<>();
+        Element parentElement = child(root, "parent"); //NOI18N
+        Pom parent = null;
+        if (parentElement != null) {
+            parent = pom(text(parentElement, "groupId"), text(parentElement, "artifactId"), //NOI18N
+                    text(parentElement, "version"), read, depth + 1); //NOI18N
+            if (parent != null) {
+                properties.putAll(parent.properties);
+                management.putAll(parent.management);
+                dependencies.addAll(parent.dependencies);
+            }
+        }
+        String gid = text(root, "groupId"); //NOI18N
+        String ver = text(root, "version"); //NOI18N
+        if (gid == null && parentElement != null) {
+            gid = text(parentElement, "groupId"); //NOI18N
+        }
+        if (ver == null && parentElement != null) {
+            ver = text(parentElement, "version"); //NOI18N
+        }
+        Element props = child(root, "properties"); //NOI18N
+        if (props != null) {
+            for (Element prop : children(props, null)) {
+                properties.put(prop.getTagName(), prop.getTextContent().trim());
+            }
+        }
+        properties.put("project.groupId", gid); //NOI18N
+        properties.put("project.artifactId", artifactId); //NOI18N
+        properties.put("project.version", ver); //NOI18N
+        properties.put("pom.groupId", gid); //NOI18N
+        properties.put("pom.version", ver); //NOI18N
+        properties.put("groupId", gid); //NOI18N
+        properties.put("version", ver); //NOI18N
+        if (parentElement != null) {
+            properties.put("project.parent.groupId", text(parentElement, "groupId")); //NOI18N
+            properties.put("project.parent.version", text(parentElement, "version")); //NOI18N
+        }
+        Element mgmt = child(child(root, "dependencyManagement"), "dependencies"); //NOI18N
+        for (Element e : children(mgmt, "dependency")) { //NOI18N
+            Dep dep = dep(e, properties);
+            if ("import".equals(dep.scope) && "pom".equals(dep.type) && dep.version != null) { //NOI18N
+                Pom bom = pom(dep.groupId, dep.artifactId, dep.version, read, depth + 1);
+                if (bom != null) {
+                    for (Map.Entry<String, Dep> imported : bom.management.entrySet()) {
+                        if (!management.containsKey(imported.getKey())) {
+                            management.put(imported.getKey(), imported.getValue());
+                        }
+                    }
+                }
+            } else {
+                management.put(dep.key(), dep);
+            }
+        }
+        for (Element e : children(child(root, "dependencies"), "dependency")) { //NOI18N
+            dependencies.add(dep(e, properties));
+        }
+        // Fill in versions and scopes from dependency management
+        for (int i = 0; i < dependencies.size(); i++) {
+            Dep dep = dependencies.get(i);
+            Dep managed = management.get(dep.key());
+            if (managed != null) {
+                dependencies.set(i, dep.managedBy(managed));
+            }
+        }
+        result = new Pom(modified, properties, management, dependencies, read);
+        poms.put(file, result);
+        inputs.putAll(read);
+        return result;
+    }
+
+    private static Element parse(File file) throws IOException, SAXException, ParserConfigurationException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(false);
+        factory.setExpandEntityReferences(false);
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false); //NOI18N
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        return builder.parse(file).getDocumentElement();
+    }
+
+    private static Dep dep(Element e, Map<String, String> properties) {
+        Set<String> exclusions = new HashSet<>();
+        for (Element ex : children(child(e, "exclusions"), "exclusion")) { //NOI18N
+            exclusions.add(interpolate(text(ex, "groupId"), properties) //NOI18N
+                    + ':' + interpolate(text(ex, "artifactId"), properties)); //NOI18N
+        }
+        return new Dep(interpolate(text(e, "groupId"), properties), //NOI18N
+                interpolate(text(e, "artifactId"), properties), //NOI18N
+                interpolate(text(e, "version"), properties), //NOI18N
+                interpolate(text(e, "scope"), properties), //NOI18N
+                interpolate(text(e, "type"), properties), //NOI18N
+                interpolate(text(e, "classifier"), properties), //NOI18N
+                "true".equals(interpolate(text(e, "optional"), properties)), //NOI18N
+                exclusions);
+    }
+
+    static String interpolate(String value, Map<String, String> properties) {
+        if (value == null) {
+            return null;
+        }
+        // Properties may refer to other properties
+        for (int pass = 0; pass < 10 && value.contains("${"); pass++) { //NOI18N
+            Matcher m = PROPERTY.matcher(value);
+            StringBuffer sb = new StringBuffer();
+            boolean changed = false;
+            while (m.find()) {
+                String replacement = properties.get(m.group(1));
+                if (replacement == null) {
+                    replacement = System.getProperty(m.group(1));
+                }
+                changed |= replacement != null;
+                m.appendReplacement(sb, Matcher.quoteReplacement(replacement == null ? m.group() : replacement));
+            }
+            m.appendTail(sb);
+            value = sb.toString();
+            if (!changed) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    private static Element child(Element parent, String name) {
+        if (parent != null) {
+            for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (n instanceof Element && name.equals(((Element) n).getTagName())) {
+                    return (Element) n;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<Element> children(Element parent, String name) {
+        List<Element> result = new ArrayList<>();
+        if (parent != null) {
+            for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (n instanceof Element && (name == null || name.equals(((Element) n).getTagName()))) {
+                    result.add((Element) n);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String text(Element parent, String name) {
+        Element e = child(parent, name);
+        if (e == null) {
+            return null;
+        }
+        String result = e.getTextContent().trim();
+        return result.isEmpty() ? null : result;
+    }
+
+    /**
+     * Compare versions the way people expect - numerically where both are
+     * numbers, and with 1.0-beta before 1.0 before 1.0.1.
+     */
+    static int compareVersions(String a, String b) {
+        String[] x = a.split("[.-]"); //NOI18N
+        String[] y = b.split("[.-]"); //NOI18N
+        for (int i = 0; i < Math.max(x.length, y.length); i++) {
+            String p = i < x.length ? x[i] : null;
+            String q = i < y.length ? y[i] : null;
+            if (p == null) {
+                return isNumber(q) ? -1 : 1;
+            } else if (q == null) {
+                return isNumber(p) ? 1 : -1;
+            }
+            int result;
+            if (isNumber(p) && isNumber(q)) {
+                result = Long.compare(Long.parseLong(p), Long.parseLong(q));
+            } else if (isNumber(p) != isNumber(q)) {
+                result = isNumber(p) ? 1 : -1;
+            } else {
+                result = p.compareToIgnoreCase(q);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isNumber(String s) {
+        if (s.isEmpty() || s.length() > 18) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Test a version against a range such as <code>[1.0,2.0)</code>;  a
+     * set of ranges matches if any of them does.
+     */
+    static boolean inRange(String version, String range) {
+        Matcher m = Pattern.compile("([\\[(])([^,\\])]*)(?:,([^\\])]*))?([\\])])").matcher(range); //NOI18N
+        while (m.find()) {
+            String low = m.group(2).trim();
+            String high = m.group(3) == null ? low : m.group(3).trim();
+            boolean ok = low.isEmpty() || (m.group(1).equals("[") //NOI18N
+                    ? compareVersions(version, low) >= 0 : compareVersions(version, low) > 0);
+            ok &= high.isEmpty() || (m.group(4).equals("]") //NOI18N
+                    ? compareVersions(version, high) <= 0 : compareVersions(version, high) < 0);
+            if (ok) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Pom {
+
+        final long lastModified;
+        final Map<String, String> properties;
+        final Map<String, Dep> management;
+        final List<Dep> dependencies;
+        // This POM and its parents and imports
+        final Map<File, Long> files;
+
+        Pom(long lastModified, Map<String, String> properties, Map<String, Dep> management,
+                List<Dep> dependencies, Map<File, Long> files) {
+            this.lastModified = lastModified;
+            this.properties = properties;
+            this.management = management;
+            this.dependencies = dependencies;
+            this.files = files;
+        }
+
+        boolean isUpToDate(Map<File, Long> inputs) {
+            for (Map.Entry<File, Long> e : files.entrySet()) {
+                if (e.getKey().lastModified() != e.getValue()) {
+                    return false;
+                }
+            }
+            inputs.putAll(files);
+            return true;
+        }
+    }
+
+    private static final class Dep {
+
+        final String groupId;
+        final String artifactId;
+        final String version;
+        final String scope;
+        final String type;
+        final String classifier;
+        final boolean optional;
+        final Set<String> exclusions;
+
+        Dep(String groupId, String artifactId, String version, String scope, String type,
+                String classifier, boolean optional, Set<String> exclusions) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.scope = scope;
+            this.type = type;
+            this.classifier = classifier;
+            this.optional = optional;
+            this.exclusions = exclusions;
+        }
+
+        String key() {
+            return groupId + ':' + artifactId;
+        }
+
+        boolean isRuntime() {
+            return scope == null || "compile".equals(scope) || "runtime".equals(scope); //NOI18N
+        }
+
+        boolean excludes(Dep dep) {
+            return exclusions.contains(dep.key()) || exclusions.contains("*:*") //NOI18N
+                    || exclusions.contains(dep.groupId + ":*") //NOI18N
+                    || exclusions.contains("*:" + dep.artifactId); //NOI18N
+        }
+
+        Dep withVersion(String version) {
+            return new Dep(groupId, artifactId, version, scope, type, classifier, optional, exclusions);
+        }
+
+        Dep managedBy(Dep managed) {
+            Set<String> allExclusions = exclusions;
+            if (!managed.exclusions.isEmpty()) {
+                allExclusions = new HashSet<>(exclusions);
+                allExclusions.addAll(managed.exclusions);
+            }
+            return new Dep(groupId, artifactId, version == null ? managed.version : version,
+                    scope == null ? managed.scope : scope, type, classifier, optional, allExclusions);
+        }
+
+        @Override
+        public String toString() {
+            return key() + ':' + version + (classifier == null ? "" : ':' + classifier); //NOI18N
+        }
+    }
+}
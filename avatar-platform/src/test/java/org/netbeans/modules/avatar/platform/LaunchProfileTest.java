@@ -0,0 +1,91 @@
+/* Copyright (C) 2014 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.avatar.platform;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.netbeans.modules.avatar.platform.LaunchProfile.Collector;
+import org.netbeans.modules.avatar.platform.LaunchProfile.Compiler;
+import org.openide.modules.SpecificationVersion;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class LaunchProfileTest {
+
+    @Test
+    public void testJvmArguments() {
+        LaunchProfile profile = new LaunchProfile("x", "X", null, "256m", "2g", Collector.Z,
+                Compiler.QUICK_STARTUP, false, "  -Dfoo=bar   -XX:+AlwaysPreTouch ");
+        assertEquals(Arrays.asList("-Xms256m", "-Xmx2g", "-XX:+UseZGC", "-XX:TieredStopAtLevel=1",
+                "-Dfoo=bar", "-XX:+AlwaysPreTouch"), profile.jvmArguments(17));
+        assertEquals(Arrays.asList("-Xms256m", "-Xmx2g", "-XX:+UnlockExperimentalVMOptions", "-XX:+UseZGC",
+                "-XX:TieredStopAtLevel=1", "-Dfoo=bar", "-XX:+AlwaysPreTouch"), profile.jvmArguments(11));
+        // No ZGC on 8
+        assertEquals(Arrays.asList("-Xms256m", "-Xmx2g", "-XX:TieredStopAtLevel=1",
+                "-Dfoo=bar", "-XX:+AlwaysPreTouch"), profile.jvmArguments(8));
+        LaunchProfile plain = new LaunchProfile("y", "Y", null, null, null, Collector.DEFAULT,
+                Compiler.DEFAULT, true, null);
+        assertEquals(Collections.<String>emptyList(), plain.jvmArguments(21));
+    }
+
+    @Test
+    public void testClassDataSharing() throws IOException {
+        File dir = Files.createTempDirectory("cds").toFile();
+        File jar = File.createTempFile("avatar", ".jar", dir);
+        LaunchProfile profile = new LaunchProfile("x", "X", null, null, null, Collector.G1,
+                Compiler.DEFAULT, true, null);
+        String name = ClassDataSharing.archiveName("/jdk/bin/java", 17, jar, profile);
+        File archive = new File(dir, name);
+        assertEquals(Arrays.asList("-Xshare:auto", "-XX:ArchiveClassesAtExit=" + archive),
+                ClassDataSharing.arguments(dir, "/jdk/bin/java", 17, jar, profile));
+        Files.write(archive.toPath(), new byte[]{1});
+        assertEquals(Arrays.asList("-Xshare:auto", "-XX:SharedArchiveFile=" + archive),
+                ClassDataSharing.arguments(dir, "/jdk/bin/java", 17, jar, profile));
+        List<String> auto = ClassDataSharing.arguments(dir, "/jdk/bin/java", 21, jar, profile);
+        assertEquals("-XX:+AutoCreateSharedArchive", auto.get(1));
+        assertTrue(ClassDataSharing.arguments(dir, "/jdk/bin/java", 11, jar, profile).isEmpty());
+
+        // A different collector or Java gets a different archive
+        LaunchProfile serial = new LaunchProfile("x", "X", null, null, null, Collector.SERIAL,
+                Compiler.DEFAULT, true, null);
+        assertFalse(name.equals(ClassDataSharing.archiveName("/jdk/bin/java", 17, jar, serial)));
+        assertFalse(name.equals(ClassDataSharing.archiveName("/other/bin/java", 17, jar, profile)));
+        LaunchProfile off = new LaunchProfile("x", "X", null, null, null, Collector.G1,
+                Compiler.DEFAULT, false, null);
+        assertTrue(ClassDataSharing.arguments(dir, "/jdk/bin/java", 21, jar, off).isEmpty());
+        archive.delete();
+        jar.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testJavaMajor() {
+        assertEquals(8, ClassDataSharing.javaMajor(new SpecificationVersion("1.8")));
+        assertEquals(17, ClassDataSharing.javaMajor(new SpecificationVersion("17")));
+        assertEquals(11, ClassDataSharing.javaMajor(new SpecificationVersion("11.0.2")));
+    }
+}
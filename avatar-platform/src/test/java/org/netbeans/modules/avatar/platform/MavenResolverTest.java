@@ -0,0 +1,201 @@
+/* Copyright (C) 2014 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.avatar.platform;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class MavenResolverTest {
+
+    private File repo;
+
+    @Before
+    public void setUp() throws IOException {
+        repo = Files.createTempDirectory("m2").toFile();
+        pom("com.x", "parent", "1", "<packaging>pom</packaging>"
+                + "<properties><lib.version>2.0</lib.version></properties>"
+                + "<dependencyManagement><dependencies>"
+                + dep("com.x", "managed", "3.0", "")
+                + "</dependencies></dependencyManagement>");
+        pom("com.x", "app", "1.0", "<parent><groupId>com.x</groupId><artifactId>parent</artifactId><version>1</version></parent>"
+                + "<dependencies>"
+                + dep("${project.groupId}", "lib", "${lib.version}", "")
+                + dep("com.x", "managed", null, "")
+                + dep("com.x", "tested", "1.0", "<scope>test</scope>")
+                + dep("com.x", "opt", "1.0", "<optional>true</optional>")
+                + dep("com.x", "withex", "1.0", "<exclusions><exclusion><groupId>com.x</groupId>"
+                        + "<artifactId>excluded</artifactId></exclusion></exclusions>")
+                + "</dependencies>");
+        pom("com.x", "lib", "2.0", "<dependencies>" + dep("com.x", "shared", "1.0", "") + "</dependencies>");
+        pom("com.x", "withex", "1.0", "<dependencies>" + dep("com.x", "excluded", "1.0", "")
+                + dep("com.x", "shared", "2.0", "") + "</dependencies>");
+        pom("com.x", "managed", "3.0", "");
+        for (String v : new String[]{"1.0", "1.5", "2.0"}) {
+            pom("com.x", "ranged", v, "");
+            jar("com.x", "ranged", v);
+        }
+        for (String a : new String[]{"app", "lib", "withex", "tested", "opt", "excluded"}) {
+            jar("com.x", a, a.equals("lib") ? "2.0" : "1.0");
+        }
+        for (String v : new String[]{"1.0", "2.0"}) {
+            pom("com.x", "shared", v, "");
+            jar("com.x", "shared", v);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        delete(repo);
+    }
+
+    @Test
+    public void testResolve() throws IOException {
+        MavenResolver resolver = new MavenResolver(repo);
+        MavenResolver.Resolution r = resolver.resolve(deps("com.x:app:1.0", "com.x:ranged:[1.0,2.0)"));
+        assertEquals(Arrays.asList("app-1.0.jar", "ranged-1.5.jar", "lib-2.0.jar", "withex-1.0.jar", "shared-1.0.jar"),
+                names(r.classpath()));
+        assertEquals(Arrays.asList("com.x:managed:3.0"), r.missing());
+        assertSame(r, resolver.resolve(deps("com.x:app:1.0", "com.x:ranged:[1.0,2.0)")));
+
+        // A corrupt download is reported rather than put on the classpath
+        File lib = new File(repo, "com/x/lib/2.0/lib-2.0.jar");
+        Files.write(lib.toPath(), "<html>Not found</html>".getBytes("UTF-8"));
+        lib.setLastModified(lib.lastModified() - 10000);
+        MavenResolver.Resolution r2 = resolver.resolve(deps("com.x:app:1.0", "com.x:ranged:[1.0,2.0)"));
+        assertNotSame(r, r2);
+        assertEquals(Arrays.asList("com.x:lib:2.0", "com.x:managed:3.0"), r2.missing());
+
+        // Changing the parent POM changes the result
+        pom("com.x", "parent", "1", "<packaging>pom</packaging>"
+                + "<properties><lib.version>2.0</lib.version></properties>"
+                + "<dependencyManagement><dependencies>"
+                + dep("com.x", "managed", "4.0", "")
+                + "</dependencies></dependencyManagement>");
+        File parent = new File(repo, "com/x/parent/1/parent-1.pom");
+        parent.setLastModified(parent.lastModified() - 20000);
+        MavenResolver.Resolution r3 = resolver.resolve(deps("com.x:app:1.0", "com.x:ranged:[1.0,2.0)"));
+        assertEquals(Arrays.asList("com.x:lib:2.0", "com.x:managed:4.0"), r3.missing());
+    }
+
+    @Test
+    public void testResolveOnCheckThreads() throws Exception {
+        // Called on the threads which check jars, it must not wait for
+        // checks queued behind itself
+        final MavenResolver resolver = new MavenResolver(repo);
+        List<Future<MavenResolver.Resolution>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(MavenResolver.CHECKS.submit(new Callable<MavenResolver.Resolution>() {
+                @Override
+                public MavenResolver.Resolution call() {
+                    return resolver.resolve(deps("com.x:app:1.0", "com.x:ranged:[1.0,2.0)"));
+                }
+            }));
+        }
+        for (Future<MavenResolver.Resolution> f : results) {
+            MavenResolver.Resolution r = f.get(20, TimeUnit.SECONDS);
+            assertTrue(r.isComplete());
+            assertEquals(Arrays.asList("com.x:managed:3.0"), r.missing());
+        }
+    }
+
+    @Test
+    public void testVersions() {
+        assertTrue(MavenResolver.compareVersions("1.10", "1.9") > 0);
+        assertTrue(MavenResolver.compareVersions("1.0-beta", "1.0") < 0);
+        assertTrue(MavenResolver.compareVersions("1.0", "1.0.1") < 0);
+        assertEquals(0, MavenResolver.compareVersions("2.3.4", "2.3.4"));
+        assertTrue(MavenResolver.inRange("1.5", "[1.0,2.0)"));
+        assertFalse(MavenResolver.inRange("2.0", "[1.0,2.0)"));
+        assertTrue(MavenResolver.inRange("2.0", "[1.0,2.0]"));
+        assertTrue(MavenResolver.inRange("3.0", "[2.5,)"));
+        assertTrue(MavenResolver.inRange("1.2", "[1.2]"));
+        assertTrue(MavenResolver.inRange("5", "(,1),[4,6)"));
+        assertFalse(MavenResolver.inRange("2", "(,1),[4,6)"));
+    }
+
+    private static List<JavaDependency> deps(String... coords) {
+        List<JavaDependency> result = new ArrayList<>();
+        for (String c : coords) {
+            result.add(new JavaDependency(c));
+        }
+        return result;
+    }
+
+    private static List<String> names(List<File> files) {
+        List<String> result = new ArrayList<>();
+        for (File f : files) {
+            result.add(f.getName());
+        }
+        return result;
+    }
+
+    private static String dep(String g, String a, String v, String extra) {
+        return "<dependency><groupId>" + g + "</groupId><artifactId>" + a + "</artifactId>"
+                + (v == null ? "" : "<version>" + v + "</version>") + extra + "</dependency>";
+    }
+
+    private void pom(String g, String a, String v, String body) throws IOException {
+        File dir = new File(repo, g.replace('.', '/') + '/' + a + '/' + v);
+        dir.mkdirs();
+        String xml = "<?xml version=\"1.0\"?>\n<project xmlns=\"http://maven.apache.org/POM/4.0.0\">"
+                + "<modelVersion>4.0.0</modelVersion><groupId>" + g + "</groupId><artifactId>" + a
+                + "</artifactId><version>" + v + "</version>" + body + "</project>";
+        Files.write(new File(dir, a + '-' + v + ".pom").toPath(), xml.getBytes("UTF-8"));
+    }
+
+    private void jar(String g, String a, String v) throws IOException {
+        File dir = new File(repo, g.replace('.', '/') + '/' + a + '/' + v);
+        dir.mkdirs();
+        try (OutputStream out = new FileOutputStream(new File(dir, a + '-' + v + ".jar"));
+                ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            zip.write("Manifest-Version: 1.0\n".getBytes("UTF-8"));
+            zip.closeEntry();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] kids = file.listFiles();
+        if (kids != null) {
+            for (File kid : kids) {
+                delete(kid);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,182 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Runs an external process without blocking the caller:  stdout and stderr
+ * are each drained on their own thread as the process writes them, and
+ * passed line by line to a {@link LineHandler}, so a chatty process can
+ * never stall on a full pipe.  Completion is exposed as a
+ * CompletableFuture;  cancelling it kills the process.
+ *
+ * @author Tim Boudreau
+ */
+public final class AsyncProcess {
+    private static final RequestProcessor PUMPS = new RequestProcessor( "External process output", 64, true ); //NOI18N
+    private static final long DESTROY_GRACE_MILLIS = 2000;
+    private static final Logger LOG = Logger.getLogger( AsyncProcess.class.getName() );
+    private final Process process;
+    private final String name;
+    private final LineHandler handler;
+    private final AtomicInteger openStreams = new AtomicInteger( 2 );
+    private final CompletableFuture<Integer> future = new CompletableFuture<Integer>() {
+        @Override
+        public boolean cancel ( boolean mayInterruptIfRunning ) {
+            boolean result = super.cancel( mayInterruptIfRunning );
+            if (result) {
+                destroy();
+            }
+            return result;
+        }
+    };
+
+    private AsyncProcess ( Process process, String name, LineHandler handler ) {
+        this.process = process;
+        this.name = name;
+        this.handler = handler;
+    }
+
+    /**
+     * Start a process.
+     *
+     * @param dir The working directory, or null
+     * @param env Variables to add to the inherited environment, or null
+     * @param handler Called for each line of output, on a background thread
+     * @param cmdline The command and its arguments
+     * @return A running process
+     * @throws IOException If the process cannot be started
+     */
+    public static AsyncProcess start ( File dir, Map<String, String> env, LineHandler handler, String... cmdline ) throws IOException {
+        ProcessBuilder b = new ProcessBuilder( cmdline );
+        if (dir != null) {
+            b.directory( dir );
+        }
+        if (env != null) {
+            for (Map.Entry<String, String> e : env.entrySet()) {
+                if (e.getValue() != null) {
+                    b.environment().put( e.getKey(), e.getValue() );
+                }
+            }
+        }
+        AsyncProcess result = new AsyncProcess( b.start(), Arrays.toString( cmdline ), handler );
+        result.process.getOutputStream().close();
+        PUMPS.post( result.new Pump( result.process.getInputStream(), false ) );
+        PUMPS.post( result.new Pump( result.process.getErrorStream(), true ) );
+        return result;
+    }
+
+    /**
+     * The exit code, once the process has exited and all of its output has
+     * been handled.
+     */
+    public CompletableFuture<Integer> future () {
+        return future;
+    }
+
+    public boolean isRunning () {
+        return !future.isDone();
+    }
+
+    /**
+     * Ask the process to exit, killing it forcibly if it has not within
+     * a couple of seconds.
+     */
+    public void destroy () {
+        process.destroy();
+        PUMPS.post( new Runnable() {
+            @Override
+            public void run () {
+                try {
+                    if (!process.waitFor( DESTROY_GRACE_MILLIS, TimeUnit.MILLISECONDS )) {
+                        process.destroyForcibly();
+                    }
+                } catch ( InterruptedException ex ) {
+                    process.destroyForcibly();
+                }
+            }
+        } );
+    }
+
+    private void streamClosed () {
+        if (openStreams.decrementAndGet() == 0) {
+            try {
+                future.complete( process.waitFor() );
+            } catch ( InterruptedException ex ) {
+                future.completeExceptionally( ex );
+            }
+        }
+    }
+
+    @Override
+    public String toString () {
+        return name;
+    }
+
+    /**
+     * Receives output from a process.
+     */
+    public interface LineHandler {
+
+        void onLine ( String line, boolean stderr );
+    }
+
+    private final class Pump implements Runnable {
+        private final InputStream in;
+        private final boolean stderr;
+
+        Pump ( InputStream in, boolean stderr ) {
+            this.in = in;
+            this.stderr = stderr;
+        }
+
+        @Override
+        public void run () {
+            try (BufferedReader reader = new BufferedReader( new InputStreamReader( in, StandardCharsets.UTF_8 ) )) {
+                String line;
+                while ( (line = reader.readLine()) != null ) {
+                    try {
+                        handler.onLine( line, stderr );
+                    } catch ( RuntimeException ex ) {
+                        LOG.log( Level.WARNING, "Exception handling output of " + name, ex ); //NOI18N
+                    }
+                }
+            } catch ( IOException ex ) {
+                // stream closed by destroy()
+                LOG.log( Level.FINE, name, ex );
+            } finally {
+                streamClosed();
+            }
+        }
+    }
+}
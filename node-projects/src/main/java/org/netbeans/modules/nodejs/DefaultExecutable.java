@@ -20,25 +20,24 @@ package org.netbeans.modules.nodejs;
 
 import org.netbeans.modules.nodejs.api.LaunchSupport;
 import org.netbeans.modules.nodejs.api.NodeJSExecutable;
-import java.io.ByteArrayOutputStream;
+import org.netbeans.modules.nodejs.platform.PlatformRegistry;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.prefs.BackingStoreException;
+import java.util.prefs.PreferenceChangeEvent;
+import java.util.prefs.PreferenceChangeListener;
 import java.util.prefs.Preferences;
 import org.openide.awt.StatusDisplayer;
 import org.openide.filesystems.FileChooserBuilder;
 import org.openide.filesystems.FileObject;
-import org.openide.filesystems.FileUtil;
 import org.openide.util.Exceptions;
 import org.openide.util.Lookup;
 import org.openide.util.NbBundle;
 import org.openide.util.NbBundle.Messages;
 import org.openide.util.NbPreferences;
-import org.openide.util.Utilities;
 import org.openide.util.lookup.ServiceProvider;
 
 /**
@@ -56,6 +55,15 @@ public final class DefaultExecutable extends NodeJSExecutable {
     public DefaultExecutable () {
         assert instance == null;
         instance = this;
+        // A newly configured binary often means something was installed
+        preferences().addPreferenceChangeListener( new PreferenceChangeListener() {
+            @Override
+            public void preferenceChange ( PreferenceChangeEvent evt ) {
+                if (NODE_EXE_KEY.equals( evt.getKey() )) {
+                    PlatformRegistry.getDefault().refresh();
+                }
+            }
+        } );
     }
 
     public String displayName () {
@@ -99,29 +107,11 @@ public final class DefaultExecutable extends NodeJSExecutable {
         return NbPreferences.forModule( NodeJSExecutable.class );
     }
 
-    private static final String[] COMMON_LOCATIONS = new String[]{
-        "/usr/bin/node",
-        "/usr/local/bin/node",
-        "/opt/bin/node",
-        "/opt/local/bin/node",
-        "C:" + File.separatorChar + "Program Files" + File.separatorChar + "nodejs" + File.separatorChar + "node"
-    };
-
-    private String find ( String... opts ) {
-        for (String s : opts) {
-            File f = new File( s );
-            if (f.exists() && f.canExecute()) {
-                return f.getAbsolutePath();
-            }
-        }
-        return null;
-    }
-
     public String getNodeExecutable ( boolean showDialog ) {
         Preferences p = preferences();
         String loc = p.get( NODE_EXE_KEY, null );
         if (loc == null) {
-            loc = find( COMMON_LOCATIONS );
+            loc = PlatformRegistry.getDefault().nodePath();
         }
         if (loc == null) {
             loc = lookForNodeExecutable( showDialog );
@@ -162,30 +152,16 @@ public final class DefaultExecutable extends NodeJSExecutable {
     }
 
     private String lookForNodeExecutable ( boolean showDialog ) {
+        if (!showDialog) {
+            return null;
+        }
         StatusDisplayer.getDefault().setStatusText( NbBundle.getMessage(
                 DefaultExecutable.class, "LOOK_FOR_EXE" ) ); //NOI18N
-        if (!Utilities.isWindows()) {
-            String pathToBinary = runExternal( "which", "node" ); //NOI18N
-            if (pathToBinary == null) {
-                pathToBinary = runExternal( "which", "nodejs" ); //NOI18N
-            }
-            if (pathToBinary == null && showDialog) {
-                pathToBinary = askUserForExecutableLocation();
-            }
-            if (pathToBinary != null) {
-                preferences().put( NODE_EXE_KEY, pathToBinary );
-            }
-            return pathToBinary;
-        } else {
-            String pathToBinary = null;
-            if (pathToBinary == null && showDialog) {
-                pathToBinary = askUserForExecutableLocation();
-            }
-            if (pathToBinary != null) {
-                preferences().put( NODE_EXE_KEY, pathToBinary );
-            }
-            return pathToBinary;
+        String pathToBinary = askUserForExecutableLocation();
+        if (pathToBinary != null) {
+            preferences().put( NODE_EXE_KEY, pathToBinary );
         }
+        return pathToBinary;
     }
 
     static String runExternal ( String... cmdline ) {
@@ -197,41 +173,8 @@ public final class DefaultExecutable extends NodeJSExecutable {
     }
 
     static String runExternal ( File dir, Map<String, String> env, String... cmdline ) {
-        ProcessBuilder b = new ProcessBuilder( cmdline );
-        if (env != null && !env.isEmpty()) {
-            Map<String, String> realEnv = b.environment();
-            for (Map.Entry<String, String> e : env.entrySet()) {
-                String val = e.getValue();
-                if (val != null) {
-
-                }
-            }
-        }
-        if (dir != null) {
-            b.directory( dir );
-        }
-        try {
-            Process p = b.start();
-            try {
-                try (InputStream in = p.getInputStream()) {
-                    p.waitFor();
-                    if (p.exitValue() == 0) {
-                        ByteArrayOutputStream out = new ByteArrayOutputStream();
-                        FileUtil.copy( in, out );
-                        String result = new String( out.toByteArray() ).trim(); //trim off \n
-                        return result.length() == 0 ? null : result;
-                    }
-                }
-            } catch ( InterruptedException ex ) {
-                Exceptions.printStackTrace( ex );
-                Thread.currentThread().interrupt(); //reset the flag
-                return null;
-            }
-        } catch ( IOException ex ) {
-            Exceptions.printStackTrace( ex );
-            return null;
-        }
-        return null;
+        return ProcessService.getDefault().run( dir, env,
+                ProcessService.DEFAULT_TIMEOUT_MILLIS, cmdline ).output();
     }
 
     public String askUserForExecutableLocation () {
@@ -23,7 +23,8 @@ import javax.swing.event.ChangeListener;
 /**
  * Utility in the project's lookup for detecting libraries which are listed
  * in the package.json dependencies section, but for which there are no
- * corresponding folders under node_modules.
+ * corresponding folders under node_modules, or whose installed version is
+ * outside the declared range.
  *
  * @author Tim Boudreau
  */
@@ -35,4 +36,6 @@ public interface LibrariesResolver {
     void removeChangeListener ( ChangeListener cl );
 
     boolean hasMissingLibraries ();
+
+    boolean hasMismatchedLibraries ();
 }
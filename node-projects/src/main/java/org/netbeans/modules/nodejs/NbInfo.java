@@ -23,6 +23,9 @@ final class NbInfo implements Runnable {
     private final NodeJSProject prj;
     private String platform;
     private String runArguments;
+    private boolean watch;
+    private String readyPattern;
+    private String watchIgnore;
     private boolean initialized;
     private volatile boolean fileFound;
 
@@ -55,6 +58,51 @@ final class NbInfo implements Runnable {
         task.schedule( 1000 );
     }
 
+    void setWatch ( boolean watch ) {
+        checkInit();
+        synchronized ( this ) {
+            this.watch = watch;
+        }
+        task.schedule( 1000 );
+    }
+
+    void setReadyPattern ( String readyPattern ) {
+        checkInit();
+        synchronized ( this ) {
+            this.readyPattern = readyPattern;
+        }
+        task.schedule( 1000 );
+    }
+
+    void setWatchIgnore ( String watchIgnore ) {
+        checkInit();
+        synchronized ( this ) {
+            this.watchIgnore = watchIgnore;
+        }
+        task.schedule( 1000 );
+    }
+
+    public String getWatchIgnore () {
+        checkInit();
+        synchronized ( this ) {
+            return watchIgnore;
+        }
+    }
+
+    public String getReadyPattern () {
+        checkInit();
+        synchronized ( this ) {
+            return readyPattern;
+        }
+    }
+
+    public boolean isWatch () {
+        checkInit();
+        synchronized ( this ) {
+            return watch;
+        }
+    }
+
     public String getRunArguments () {
         checkInit();
         synchronized ( this ) {
@@ -87,6 +135,15 @@ final class NbInfo implements Runnable {
                 if (runArguments != null) {
                     m.put( "arguments", runArguments );
                 }
+                if (watch) {
+                    m.put( "watch", "true" );
+                }
+                if (readyPattern != null) {
+                    m.put( "readyPattern", readyPattern );
+                }
+                if (watchIgnore != null) {
+                    m.put( "watchIgnore", watchIgnore );
+                }
             }
             try (OutputStream out = fo.getOutputStream()) {
                 ObjectMapperProvider.newObjectMapper().writeValue( out, m );
@@ -110,8 +167,14 @@ final class NbInfo implements Runnable {
                     synchronized ( this ) {
                         Object pl = loadedData.get( "platformName" );
                         Object ra = loadedData.get( "arguments" );
+                        Object w = loadedData.get( "watch" );
+                        Object rp = loadedData.get( "readyPattern" );
+                        Object wi = loadedData.get( "watchIgnore" );
                         platform = pl != null ? pl.toString() : null;
                         runArguments = ra != null ? ra.toString() : null;
+                        watch = w != null && Boolean.parseBoolean( w.toString() );
+                        readyPattern = rp != null ? rp.toString() : null;
+                        watchIgnore = wi != null ? wi.toString() : null;
                     }
                 }
             }
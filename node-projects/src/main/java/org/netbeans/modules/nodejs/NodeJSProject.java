@@ -40,8 +40,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.logging.Level;
@@ -59,7 +62,10 @@ import org.netbeans.api.validation.adapters.DialogBuilder;
 import org.netbeans.api.validation.adapters.DialogBuilder.DialogType;
 import org.netbeans.modules.nodejs.api.MainFileProvider;
 import org.netbeans.modules.nodejs.api.NodeJSExecutable;
+import org.netbeans.modules.nodejs.libraries.DependencyGraph;
+import org.netbeans.modules.nodejs.libraries.InstalledPackages;
 import org.netbeans.modules.nodejs.libraries.LibrariesPanel;
+import org.netbeans.modules.nodejs.libraries.PackageTable;
 import org.netbeans.modules.nodejs.node.NodeJSLogicalViewProvider;
 import org.netbeans.modules.nodejs.platform.NodeJSPlatforms;
 import org.netbeans.modules.nodejs.registry.FileChangeRegistry;
@@ -98,6 +104,7 @@ import org.openide.nodes.ChildFactory;
 import org.openide.nodes.Children;
 import org.openide.nodes.FilterNode;
 import org.openide.nodes.Node;
+import org.openide.util.Cancellable;
 import org.openide.util.ChangeSupport;
 import org.openide.util.Exceptions;
 import org.openide.util.ImageUtilities;
@@ -108,6 +115,7 @@ import org.openide.util.WeakListeners;
 import org.openide.util.lookup.Lookups;
 import org.openide.windows.IOProvider;
 import org.openide.windows.InputOutput;
+import org.openide.windows.OutputWriter;
 
 /**
  *
@@ -132,6 +140,8 @@ public class NodeJSProject implements Project, ProjectConfiguration, ActionProvi
     private final Sources sources = new NodeJSProjectSources( this );
     private final NodeJSLogicalViewProvider logicalView = new NodeJSLogicalViewProvider( this );
     private final FileChangeRegistry registry = new FileChangeRegistry( this );
+    private final PackageTable packages = new PackageTable();
+    private final DependencyGraph dependencies;
     public static final RequestProcessor NODE_JS_PROJECT_THREAD_POOL = new RequestProcessor( "NodeJS", 3 ); //NOI18N
     private final Lookup lookup;
     private final PI pi;
@@ -141,11 +151,12 @@ public class NodeJSProject implements Project, ProjectConfiguration, ActionProvi
         this.dir = dir;
         this.state = state;
         this.pi = new PI( dir ).setProject( this );
+        this.dependencies = new DependencyGraph( FileUtil.toFile( dir ), packages, registry );
         lookup = Lookups.fixed( this, logicalView,
                 new NodeJSProjectProperties( this ), classpath, sources,
                 new NodeJsEncodingQuery(), registry, metadata,
                 new PlatformProvider(), new LibrariesResolverImpl(),
-                pi,
+                pi, packages, dependencies,
                 /*            new NodeJsSupportImpl( this ), */
                 NODE_JS_PROJECT_THREAD_POOL );
         metadata.addPropertyChangeListener( this );
@@ -156,7 +167,11 @@ public class NodeJSProject implements Project, ProjectConfiguration, ActionProvi
         private final RequestProcessor.Task installTask = NODE_JS_PROJECT_THREAD_POOL.create( this );
         private final Checker checker = new Checker();
         private final RequestProcessor.Task checkTask = NODE_JS_PROJECT_THREAD_POOL.create( checker );
+        private final File projectFolder = FileUtil.toFile( getProjectDirectory() );
+        private final InstalledPackages installed = projectFolder == null ? null : new InstalledPackages( projectFolder );
         private Boolean hasMissing;
+        private boolean hasMismatched;
+        private AsyncProcess npmInstall;
 
         @Override
         public void install () {
@@ -170,16 +185,19 @@ public class NodeJSProject implements Project, ProjectConfiguration, ActionProvi
             md.addPropertyChangeListener( WeakListeners.propertyChange( this, md ) );
         }
 
-        private void setHasMissing ( boolean nue ) {
+        private void setStatus ( boolean missing, boolean mismatched ) {
             Boolean old;
+            boolean oldMismatched;
             synchronized ( this ) {
                 old = hasMissing;
-                hasMissing = nue;
+                oldMismatched = hasMismatched;
+                hasMissing = missing;
+                hasMismatched = mismatched;
             }
             if (old == null) {
                 init();
             }
-            if (old == null || !old.equals( nue )) {
+            if (old == null || !old.equals( missing ) || oldMismatched != mismatched) {
                 EventQueue.invokeLater( new Runnable() {
 
                     @Override
@@ -191,19 +209,28 @@ public class NodeJSProject implements Project, ProjectConfiguration, ActionProvi
             }
         }
 
+        private void publish () {
+            setStatus( installed.missingCount() > 0, installed.mismatchedCount() > 0 );
+        }
+
         private synchronized Boolean hasMissing () {
             return hasMissing;
         }
 
         @Override
         public void onEvent ( FileChangeRegistry.EventType type, String path ) {
-            checkTask.schedule( 2000 );
+            // path is relative to node_modules; only the package it is in
+            // is re-read
+            if (installed != null) {
+                installed.changed( path );
+                publish();
+            }
         }
 
         @Override
         public void propertyChange ( PropertyChangeEvent evt ) {
             if (null == evt.getPropertyName() || "dependencies".equals( evt.getPropertyName() )) {
-                checkTask.schedule( 2000 );
+                checkTask.schedule( 200 );
             }
         }
 
@@ -211,25 +238,15 @@ public class NodeJSProject implements Project, ProjectConfiguration, ActionProvi
 
             @Override
             public void run () {
-                Map<String, Object> deps = metadata.getMap( "dependencies" ); //NOI18N
-                if (deps == null || deps.isEmpty()) {
-                    setHasMissing( false );
-                    return;
-                }
-                FileObject node_modules = getProjectDirectory().getFileObject( NodeJSProjectFactory.NODE_MODULES_FOLDER );
-                if (node_modules == null) {
-                    setHasMissing( !deps.isEmpty() );
+                if (installed == null) {
+                    setStatus( false, false );
                     return;
                 }
-                Set<String> names = new HashSet<>();
-                for (FileObject kid : node_modules.getChildren()) {
-                    if (kid.isFolder()) {
-                        names.add( kid.getNameExt() );
-                    }
+                installed.setDeclared( metadata.getMap( "dependencies" ) ); //NOI18N
+                if (!installed.isScanned()) {
+                    installed.rescan();
                 }
-                Set<String> declared = new HashSet<>( deps.keySet() );
-                declared.removeAll( names );
-                setHasMissing( !declared.isEmpty() );
+                publish();
             }
         }
 
@@ -253,20 +270,76 @@ public class NodeJSProject implements Project, ProjectConfiguration, ActionProvi
         }
 
         @Override
-        public synchronized void run () {
-            ProgressHandle handle = ProgressHandle.createHandle(
-                    NbBundle.getMessage( NodeJSProject.class, "RUNNING_NPM_INSTALL", getName() ) ); //NOI18N
+        public synchronized boolean hasMismatchedLibraries () {
+            return hasMismatched;
+        }
+
+        @Override
+        public void run () {
+            final InputOutput io = IOProvider.getDefault().getIO( getName() + " - npm install", false ); //NOI18N
+            synchronized ( this ) {
+                if (npmInstall != null && npmInstall.isRunning()) {
+                    io.select();
+                    return;
+                }
+            }
+            final AtomicReference<AsyncProcess> proc = new AtomicReference<>();
+            final ProgressHandle handle = ProgressHandle.createHandle(
+                    NbBundle.getMessage( NodeJSProject.class, "RUNNING_NPM_INSTALL", getName() ), //NOI18N
+                    new Cancellable() {
+                @Override
+                public boolean cancel () {
+                    AsyncProcess p = proc.get();
+                    return p == null || p.future().cancel( true );
+                }
+            } );
+            final OutputWriter out = io.getOut();
+            final OutputWriter err = io.getErr();
+            try {
+                out.reset();
+            } catch ( IOException ex ) {
+                LOGGER.log( Level.FINE, null, ex );
+            }
+            io.select();
             handle.start();
             try {
-                String result = Npm.getDefault().run( FileUtil.toFile( getProjectDirectory() ), "install" ); //NOI18N
-                InputOutput io = IOProvider.getDefault().getIO( getName() + " - npm install", true ); //NOI18N
-                io.select();
-                io.getOut().print( result );
-                io.getOut().close();
-                checkTask.schedule( 3000 );
-            } finally {
+                proc.set( Npm.getDefault().runAsync( FileUtil.toFile( getProjectDirectory() ), new AsyncProcess.LineHandler() {
+                    @Override
+                    public void onLine ( String line, boolean stderr ) {
+                        (stderr ? err : out).println( line );
+                        String trimmed = line.trim();
+                        if (!trimmed.isEmpty()) {
+                            handle.progress( trimmed.length() > 80 ? trimmed.substring( 0, 80 ) : trimmed );
+                        }
+                    }
+                }, "install" ) ); //NOI18N
+            } catch ( IOException ex ) {
+                ex.printStackTrace( err );
                 handle.finish();
+                out.close();
+                err.close();
+                return;
             }
+            synchronized ( this ) {
+                npmInstall = proc.get();
+            }
+            proc.get().future().whenComplete( new BiConsumer<Integer, Throwable>() {
+                @Override
+                public void accept ( Integer exitCode, Throwable thrown ) {
+                    try {
+                        if (thrown instanceof CancellationException) {
+                            err.println( NbBundle.getMessage( NodeJSProject.class, "RUN_CANCELLED" ) ); //NOI18N
+                        } else if (exitCode != null && exitCode != 0) {
+                            err.println( NbBundle.getMessage( NodeJSProject.class, "NPM_INSTALL_EXITED", exitCode ) ); //NOI18N
+                        }
+                    } finally {
+                        handle.finish();
+                        out.close();
+                        err.close();
+                        checkTask.schedule( 1000 );
+                    }
+                }
+            } );
         }
     }
 
@@ -218,6 +218,44 @@ public class NodeJSProjectProperties {
         return result;
     }
 
+    /**
+     * Whether the main file should be restarted when sources change while
+     * it is running.
+     */
+    public boolean isWatch () {
+        return nbinfo.isWatch();
+    }
+
+    public void setWatch ( boolean watch ) {
+        nbinfo.setWatch( watch );
+    }
+
+    /**
+     * Glob patterns, separated by commas or spaces, of files whose changes
+     * should not restart the project when it is watched, in addition to
+     * any in its nodemon configuration.
+     */
+    public String getWatchIgnore () {
+        return nbinfo.getWatchIgnore();
+    }
+
+    public void setWatchIgnore ( String patterns ) {
+        nbinfo.setWatchIgnore( patterns == null || patterns.trim().isEmpty() ? null : patterns.trim() );
+    }
+
+    /**
+     * A regular expression matching the line the project's main file
+     * prints when it has started up, such as <code>listening on</code>;
+     * null to look for a line which mentions a port.
+     */
+    public String getReadyPattern () {
+        return nbinfo.getReadyPattern();
+    }
+
+    public void setReadyPattern ( String pattern ) {
+        nbinfo.setReadyPattern( pattern == null || pattern.trim().isEmpty() ? null : pattern.trim() );
+    }
+
     public String getPlatformName () {
         String result = nbinfo.getPlatformName();
         if (result == null) {
@@ -20,18 +20,23 @@ package org.netbeans.modules.nodejs;
 
 import org.netbeans.modules.nodejs.api.NodeJSPlatformProvider;
 import org.netbeans.modules.nodejs.api.NodeJSExecutable;
+import java.awt.EventQueue;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.netbeans.modules.nodejs.api.NodeCapabilities;
 import org.netbeans.modules.nodejs.api.NodeJSUtils;
 import org.netbeans.modules.nodejs.api.Stubs;
+import org.netbeans.modules.nodejs.libraries.DependencyGraph;
 import org.netbeans.modules.nodejs.node.LibrariesChildFactory;
 import org.netbeans.modules.nodejs.node.ProjectNodeKey;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileSystem;
 import org.openide.filesystems.FileUtil;
+import org.openide.modules.SpecificationVersion;
 import org.openide.util.Lookup;
 import org.openide.util.lookup.ServiceProvider;
 
@@ -107,6 +112,28 @@ public class NodeJSUtilsImpl extends NodeJSUtils {
         }
     }
 
+    @Override
+    public Set<String> installedPackages ( FileObject file ) {
+        DependencyGraph graph = graph( file );
+        return graph == null ? null : graph.snapshot().topLevelNames();
+    }
+
+    @Override
+    public Set<String> declaredPackages ( FileObject file ) {
+        DependencyGraph graph = graph( file );
+        return graph == null ? null : graph.snapshot().declared();
+    }
+
+    private DependencyGraph graph ( FileObject file ) {
+        try {
+            NodeJSProject prj = fac.findOwner( file );
+            return prj == null ? null : prj.getLookup().lookup( DependencyGraph.class );
+        } catch ( IOException ex ) {
+            Logger.getLogger( NodeJSUtilsImpl.class.getName() ).log( Level.INFO, "Exception looking up project for " + file.getPath(), ex );
+            return null;
+        }
+    }
+
     private FileObject findBuiltIn ( NodeJSProject prj, String name ) {
         NodeJSExecutable exe = prj.getLookup().lookup( NodeJSPlatformProvider.class).get();
         String loc = exe.getSourcesLocation();
@@ -123,12 +150,23 @@ public class NodeJSUtilsImpl extends NodeJSUtils {
         } else {
             Stubs stubs = Stubs.getDefault();
             if (stubs != null) {
-                FileSystem fs = stubs.getStubs( null ); // PENDING GET NODE VERSION
+                FileSystem fs = stubs.getStubs( stubsVersion( exe ) );
                 if (fs != null) {
+                    if (name.startsWith( "node:" )) { //NOI18N
+                        name = name.substring( 5 );
+                    }
                     return fs.getRoot().getFileObject( name + ".js" );
                 }
             }
         }
         return null;
     }
+
+    private static SpecificationVersion stubsVersion ( NodeJSExecutable exe ) {
+        // Never spawn node from the event thread just to pick a stub bundle
+        NodeCapabilities caps = EventQueue.isDispatchThread()
+                ? exe.cachedCapabilities() : exe.capabilities();
+        int major = caps == null ? 0 : caps.majorVersion();
+        return major <= 0 ? null : new SpecificationVersion( Integer.toString( major ) );
+    }
 }
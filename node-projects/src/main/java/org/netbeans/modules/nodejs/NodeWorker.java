@@ -0,0 +1,319 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.prefs.Preferences;
+import org.netbeans.modules.nodejs.json.ObjectMapperProvider;
+import static org.netbeans.modules.nodejs.json.ObjectMapperProvider.STRING_OBJECT_MAP;
+import org.openide.filesystems.FileUtil;
+import org.openide.util.NbPreferences;
+import org.openide.util.RequestProcessor;
+
+/**
+ * A long-lived node process running a small helper script (worker.js),
+ * which answers questions such as "where is the local node_modules" over a
+ * line-delimited JSON protocol on its stdin and stdout, instead of starting
+ * npm, which takes the better part of a second just to start, per query.
+ * <p/>
+ * The worker is optional and off by default;  it is turned on from the
+ * options panel (see {@link #setEnabled}), and callers should check
+ * {@link #isEnabled} before using it.  It is started on first use and shut
+ * down after it has been idle for a couple of minutes;  if it cannot be
+ * started or a request fails, methods return null and callers fall back to
+ * running npm.
+ *
+ * @author Tim Boudreau
+ */
+public final class NodeWorker {
+    private static final String ENABLED_KEY = "useNodeWorker"; //NOI18N
+    private static final long IDLE_MILLIS = TimeUnit.MINUTES.toMillis( 2 );
+    private static final long REQUEST_TIMEOUT_MILLIS = 10000;
+    private static final Logger LOG = Logger.getLogger( NodeWorker.class.getName() );
+    private static final RequestProcessor RP = new RequestProcessor( "Node worker", 3, true ); //NOI18N
+    private static final NodeWorker INSTANCE = new NodeWorker();
+    private final ObjectMapper mapper = ObjectMapperProvider.newObjectMapper()
+            .disable( SerializationFeature.INDENT_OUTPUT );
+    private final Map<Integer, CompletableFuture<Object>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final RequestProcessor.Task idleTask = RP.create( new Runnable() {
+        @Override
+        public void run () {
+            shutdown();
+        }
+    } );
+    private final String node;
+    private final long timeoutMillis;
+    private Process process;
+    private Writer stdin;
+    private File script;
+
+    private NodeWorker () {
+        this( null, null, REQUEST_TIMEOUT_MILLIS );
+    }
+
+    /**
+     * For tests.
+     *
+     * @param node The node binary, or null to use the configured one
+     * @param script The script to run, or null for worker.js
+     * @param timeoutMillis How long to wait for a reply
+     */
+    NodeWorker ( String node, File script, long timeoutMillis ) {
+        this.node = node;
+        this.script = script;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public static NodeWorker getDefault () {
+        return INSTANCE;
+    }
+
+    private static Preferences prefs () {
+        return NbPreferences.forModule( NodeWorker.class );
+    }
+
+    public static boolean isEnabled () {
+        return prefs().getBoolean( ENABLED_KEY, false );
+    }
+
+    public static void setEnabled ( boolean enabled ) {
+        prefs().putBoolean( ENABLED_KEY, enabled );
+        if (!enabled) {
+            INSTANCE.shutdown();
+        }
+    }
+
+    /**
+     * Get the node_modules folder npm would use for the passed folder.  For
+     * the global one, ask npm (see {@link Npm#root}).
+     *
+     * @return A path, or null if the worker is unavailable
+     */
+    public String root ( File dir ) {
+        Map<String, Object> args = new LinkedHashMap<>();
+        if (dir != null) {
+            args.put( "dir", dir.getAbsolutePath() ); //NOI18N
+        }
+        Object result = call( "root", args ); //NOI18N
+        return result instanceof String ? (String) result : null;
+    }
+
+    private Object call ( String op, Map<String, Object> args ) {
+        CompletableFuture<Object> future = request( op, args );
+        try {
+            return future.get( timeoutMillis, TimeUnit.MILLISECONDS );
+        } catch ( TimeoutException ex ) {
+            LOG.log( Level.INFO, "Node worker timed out on {0}", op ); //NOI18N
+            // Something is wedged; start fresh next time
+            shutdown();
+        } catch ( ExecutionException ex ) {
+            LOG.log( Level.FINE, "Node worker failed on " + op, ex.getCause() ); //NOI18N
+        } catch ( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Send a request to the worker, starting it if necessary.
+     *
+     * @param op The operation - ping or root
+     * @param args Arguments to the operation
+     * @return A future which is completed with the result, or exceptionally
+     * if the worker reports an error or dies
+     */
+    public CompletableFuture<Object> request ( String op, Map<String, Object> args ) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        int id = ids.incrementAndGet();
+        Map<String, Object> msg = new LinkedHashMap<>( args );
+        msg.put( "id", id ); //NOI18N
+        msg.put( "op", op ); //NOI18N
+        pending.put( id, result );
+        try {
+            String line = mapper.writeValueAsString( msg );
+            synchronized ( this ) {
+                ensureStarted();
+                stdin.write( line );
+                stdin.write( '\n' );
+                stdin.flush();
+            }
+        } catch ( IOException ex ) {
+            pending.remove( id );
+            result.completeExceptionally( ex );
+            shutdown();
+        }
+        idleTask.schedule( (int) IDLE_MILLIS );
+        return result;
+    }
+
+    private void ensureStarted () throws IOException {
+        assert Thread.holdsLock( this );
+        if (process != null && process.isAlive()) {
+            return;
+        }
+        String node = this.node == null
+                ? DefaultExecutable.get().getNodeExecutable( false ) : this.node;
+        if (node == null) {
+            throw new IOException( "No node executable configured" ); //NOI18N
+        }
+        if (script == null || !script.exists()) {
+            script = extractScript();
+        }
+        ProcessBuilder pb = new ProcessBuilder( node, script.getAbsolutePath() );
+        pb.directory( new File( System.getProperty( "user.home" ) ) ); //NOI18N
+        final Process proc = pb.start();
+        process = proc;
+        stdin = new OutputStreamWriter( proc.getOutputStream(), StandardCharsets.UTF_8 );
+        LOG.log( Level.FINE, "Started node worker {0} {1}", new Object[]{node, script} ); //NOI18N
+        RP.post( new Runnable() {
+            @Override
+            public void run () {
+                readReplies( proc );
+            }
+        } );
+        RP.post( new Runnable() {
+            @Override
+            public void run () {
+                drainErrors( proc );
+            }
+        } );
+    }
+
+    private static File extractScript () throws IOException {
+        File result = File.createTempFile( "nb-node-worker", ".js" ); //NOI18N
+        result.deleteOnExit();
+        try (InputStream in = NodeWorker.class.getResourceAsStream( "worker.js" ); //NOI18N
+                OutputStream out = new FileOutputStream( result )) {
+            FileUtil.copy( in, out );
+        }
+        return result;
+    }
+
+    private void readReplies ( Process proc ) {
+        try (BufferedReader reader = new BufferedReader( new InputStreamReader(
+                proc.getInputStream(), StandardCharsets.UTF_8 ) )) {
+            String line;
+            while ( (line = reader.readLine()) != null ) {
+                Map<String, Object> reply;
+                try {
+                    reply = mapper.readValue( line, STRING_OBJECT_MAP );
+                } catch ( IOException ex ) {
+                    LOG.log( Level.FINE, "Unparseable reply from node worker: {0}", line ); //NOI18N
+                    continue;
+                }
+                Object id = reply.get( "id" ); //NOI18N
+                CompletableFuture<Object> future = id instanceof Number
+                        ? pending.remove( ((Number) id).intValue() ) : null;
+                if (future == null) {
+                    LOG.log( Level.FINE, "Unexpected reply from node worker: {0}", line ); //NOI18N
+                } else if (reply.containsKey( "error" )) { //NOI18N
+                    future.completeExceptionally( new IOException( String.valueOf( reply.get( "error" ) ) ) ); //NOI18N
+                } else {
+                    future.complete( reply.get( "result" ) ); //NOI18N
+                }
+            }
+        } catch ( IOException ex ) {
+            LOG.log( Level.FINE, "Node worker output closed", ex ); //NOI18N
+        } finally {
+            exited( proc );
+        }
+    }
+
+    private void drainErrors ( Process proc ) {
+        try (BufferedReader reader = new BufferedReader( new InputStreamReader(
+                proc.getErrorStream(), StandardCharsets.UTF_8 ) )) {
+            String line;
+            while ( (line = reader.readLine()) != null ) {
+                LOG.log( Level.FINE, "node worker: {0}", line ); //NOI18N
+            }
+        } catch ( IOException ex ) {
+            LOG.log( Level.FINEST, null, ex );
+        }
+    }
+
+    private void exited ( Process proc ) {
+        synchronized ( this ) {
+            if (process == proc) {
+                process = null;
+                stdin = null;
+            } else if (process != null) {
+                // Already replaced; pending requests belong to the new one
+                return;
+            }
+        }
+        // Anything still waiting will never get an answer from this process
+        List<CompletableFuture<Object>> orphans = new ArrayList<>();
+        for (Iterator<CompletableFuture<Object>> it = pending.values().iterator(); it.hasNext();) {
+            orphans.add( it.next() );
+            it.remove();
+        }
+        for (CompletableFuture<Object> f : orphans) {
+            f.completeExceptionally( new IOException( "Node worker exited" ) ); //NOI18N
+        }
+    }
+
+    /**
+     * Stop the worker process, if running.  It will be restarted on the
+     * next request.
+     */
+    public void shutdown () {
+        Process proc;
+        Writer in;
+        synchronized ( this ) {
+            proc = process;
+            in = stdin;
+            process = null;
+            stdin = null;
+        }
+        if (proc != null) {
+            LOG.log( Level.FINE, "Stopping node worker" ); //NOI18N
+            try {
+                // The script exits when its input is closed
+                in.close();
+            } catch ( IOException ex ) {
+                proc.destroy();
+            }
+        }
+    }
+}
@@ -30,9 +30,12 @@ import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.prefs.BackingStoreException;
+import java.util.prefs.PreferenceChangeEvent;
+import java.util.prefs.PreferenceChangeListener;
 import java.util.prefs.Preferences;
 import org.netbeans.modules.nodejs.api.LaunchSupport;
 import org.netbeans.modules.nodejs.api.NodeJSExecutable;
+import org.netbeans.modules.nodejs.platform.PlatformRegistry;
 import org.openide.DialogDescriptor;
 import org.openide.DialogDisplayer;
 import org.openide.NotifyDescriptor;
@@ -41,7 +44,6 @@ import org.openide.filesystems.FileUtil;
 import org.openide.util.Exceptions;
 import org.openide.util.NbBundle;
 import org.openide.util.NbPreferences;
-import org.openide.util.Utilities;
 
 /**
  *
@@ -59,7 +61,7 @@ public class Npm {
         System.getProperty( "user.home" ) + File.separatorChar + "AppData" + File.separatorChar + "Roaming" + File.separatorChar + "npm",
         "C:" + File.separatorChar + "Users" + File.separatorChar + System.getProperty( "user.name" ) + File.separatorChar + "AppData" + File.separatorChar + "Roaming" + File.separatorChar + "npm"
     };
-    private String npm;
+    private volatile String npm;
 
     private static final Npm INSTANCE = new Npm();
 
@@ -67,6 +69,19 @@ public class Npm {
         return INSTANCE;
     }
 
+    private Npm () {
+        // Pick up a newly configured npm
+        prefs().addPreferenceChangeListener( new PreferenceChangeListener() {
+            @Override
+            public void preferenceChange ( PreferenceChangeEvent evt ) {
+                if (NPM_EXECUTABLE.equals( evt.getKey() )) {
+                    npm = null;
+                    PlatformRegistry.getDefault().refresh();
+                }
+            }
+        } );
+    }
+
     private Preferences prefs () {
         return NbPreferences.forModule( Npm.class );
     }
@@ -117,6 +132,52 @@ public class Npm {
         return null;
     }
 
+    /**
+     * Run an npm command whose output does not change from one run to the
+     * next, such as <code>npm root -g</code>, caching the result for a few
+     * minutes.
+     */
+    public String probe ( File workingDir, String... cmd ) {
+        String npm = exe();
+        if (npm != null && new File( npm ).exists()) {
+            String[] args = new String[cmd.length + 1];
+            args[0] = npm;
+            System.arraycopy( cmd, 0, args, 1, cmd.length );
+            return ProcessService.getDefault().probe( workingDir, args ).output();
+        }
+        return null;
+    }
+
+    /**
+     * Get the folder <code>npm root</code> (or <code>npm root -g</code>)
+     * would print.  The local root is asked of the node worker if it is
+     * enabled rather than starting npm;  the global one depends on npm's
+     * configuration, so npm is asked, and the answer cached.
+     *
+     * @param workingDir The folder to ask about
+     * @param global If true, get the global node_modules folder
+     * @return A path or null
+     */
+    public String root ( File workingDir, boolean global ) {
+        String result = !global && NodeWorker.isEnabled()
+                ? NodeWorker.getDefault().root( workingDir ) : null;
+        if (result == null) {
+            result = global ? probe( workingDir, "root", "-g" ) : probe( workingDir, "root" ); //NOI18N
+        }
+        return result;
+    }
+
+    /**
+     * Run npm without blocking, passing its output to the handler line by
+     * line as it is written.
+     */
+    public AsyncProcess runAsync ( File workingDir, AsyncProcess.LineHandler handler, String... cmd ) throws IOException {
+        String[] args = new String[cmd.length + 1];
+        args[0] = exe();
+        System.arraycopy( cmd, 0, args, 1, cmd.length );
+        return ProcessService.getDefault().start( workingDir, null, handler, args );
+    }
+
     public void setExePath ( String location ) {
         if (location != null && !location.isEmpty() && !location.equals( this.npm )) {
             if (new File( location ).exists() && new File( location ).canExecute()) {
@@ -133,33 +194,23 @@ public class Npm {
     }
 
     public String exePath ( boolean locate ) {
-        if (npm != null) {
-            return npm;
+        String result = npm;
+        if (result != null) {
+            return result;
         }
         Preferences prefs = prefs();
-        String result = prefs.get( NPM_EXECUTABLE, null );
+        result = prefs.get( NPM_EXECUTABLE, null );
         if (result == null || (!new File( result ).exists())) {
-            File f = findAny( COMMON_PATHS );
-            if (f == null) {
-                if (!Utilities.isWindows()) {
-                    String pth = DefaultExecutable.runExternal( "which", "npm" );
-                    if (pth != null) {
-                        f = new File( pth );
-                        if (f.exists() && f.canExecute()) {
-                            result = f.getAbsolutePath();
-                        }
-                    }
-                }
-            } else {
-                result = f.getAbsolutePath();
+            // The npm belonging to the node that will be run, if any
+            result = PlatformRegistry.getDefault().npmPath();
+            if (result == null) {
+                File f = findAny( COMMON_PATHS );
+                result = f == null ? null : f.getAbsolutePath();
             }
         }
         if (result == null && locate) {
             result = askUser( true );
         }
-        if (result != null && new File( result ).exists()) {
-            prefs.put( NPM_EXECUTABLE, result );
-        }
         return npm = result;
     }
 
@@ -0,0 +1,305 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared service for running short-lived external commands - <code>which
+ * node</code>, <code>npm root -g</code>, version probes and such - and
+ * capturing their output.  Output is drained concurrently, every run has a
+ * timeout, and results of idempotent probes are cached for a few minutes
+ * so that the same question is not asked of the OS over and over.
+ *
+ * @author Tim Boudreau
+ */
+public final class ProcessService {
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+    public static final long PROBE_TIMEOUT_MILLIS = 10000;
+    private static final long PROBE_CACHE_MILLIS = TimeUnit.MINUTES.toMillis( 5 );
+    private static final Logger LOG = Logger.getLogger( ProcessService.class.getName() );
+    private static final ProcessService INSTANCE = new ProcessService();
+    private final Map<String, Result> probes = new HashMap<>();
+    private final AtomicLong spawned = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+    private final AtomicLong maxMillis = new AtomicLong();
+
+    ProcessService () {
+    }
+
+    public static ProcessService getDefault () {
+        return INSTANCE;
+    }
+
+    /**
+     * Run a command, waiting for it to finish.
+     *
+     * @param dir The working directory, or null
+     * @param env Variables to add to the environment, or null
+     * @param timeoutMillis How long to wait before killing the process
+     * @param cmdline The command
+     * @return The result, which is never null
+     */
+    public Result run ( File dir, Map<String, String> env, long timeoutMillis, String... cmdline ) {
+        CompletableFuture<Result> future = runAsync( dir, env, cmdline );
+        try {
+            return future.get( timeoutMillis, TimeUnit.MILLISECONDS );
+        } catch ( TimeoutException ex ) {
+            future.cancel( true );
+            timedOut.incrementAndGet();
+            LOG.log( Level.INFO, "Timed out after {0}ms: {1}", //NOI18N
+                    new Object[]{timeoutMillis, Arrays.toString( cmdline )} );
+            return new Result( -1, "", "", timeoutMillis, true ); //NOI18N
+        } catch ( InterruptedException ex ) {
+            future.cancel( true );
+            Thread.currentThread().interrupt();
+            return new Result( -1, "", "", 0, false ); //NOI18N
+        } catch ( ExecutionException ex ) {
+            return new Result( -1, "", String.valueOf( ex.getCause() ), 0, false ); //NOI18N
+        }
+    }
+
+    /**
+     * Run a command without blocking.  Cancelling the returned future
+     * kills the process.
+     */
+    public CompletableFuture<Result> runAsync ( File dir, Map<String, String> env, final String... cmdline ) {
+        final StringBuilder out = new StringBuilder();
+        final StringBuilder err = new StringBuilder();
+        final long start = System.currentTimeMillis();
+        final AsyncProcess proc;
+        try {
+            proc = start( dir, env, new AsyncProcess.LineHandler() {
+                @Override
+                public void onLine ( String line, boolean stderr ) {
+                    StringBuilder sb = stderr ? err : out;
+                    synchronized ( sb ) {
+                        sb.append( line ).append( '\n' );
+                    }
+                }
+            }, cmdline );
+        } catch ( IOException ex ) {
+            CompletableFuture<Result> result = new CompletableFuture<>();
+            result.complete( new Result( -1, "", ex.getMessage(), 0, false ) ); //NOI18N
+            return result;
+        }
+        final CompletableFuture<Result> result = new CompletableFuture<Result>() {
+            @Override
+            public boolean cancel ( boolean mayInterruptIfRunning ) {
+                // Cancel first, so killing the process does not complete us
+                boolean result = super.cancel( mayInterruptIfRunning );
+                proc.future().cancel( mayInterruptIfRunning );
+                return result;
+            }
+        };
+        proc.future().handle( new BiFunction<Integer, Throwable, Void>() {
+            @Override
+            public Void apply ( Integer exitCode, Throwable thrown ) {
+                String o, e;
+                synchronized ( out ) {
+                    o = out.toString();
+                }
+                synchronized ( err ) {
+                    e = err.toString();
+                }
+                result.complete( new Result( exitCode == null ? -1 : exitCode, o, e,
+                        System.currentTimeMillis() - start, false ) );
+                return null;
+            }
+        } );
+        return result;
+    }
+
+    /**
+     * Start a process whose output should be handled as it arrives rather
+     * than collected, counting it in this service's metrics.
+     *
+     * @see AsyncProcess#start
+     */
+    public AsyncProcess start ( File dir, Map<String, String> env, AsyncProcess.LineHandler handler, final String... cmdline ) throws IOException {
+        final long start = System.currentTimeMillis();
+        spawned.incrementAndGet();
+        AsyncProcess proc;
+        try {
+            proc = AsyncProcess.start( dir, env, handler, cmdline );
+        } catch ( IOException ex ) {
+            failed.incrementAndGet();
+            LOG.log( Level.FINE, "Could not start " + Arrays.toString( cmdline ), ex ); //NOI18N
+            throw ex;
+        }
+        proc.future().handle( new BiFunction<Integer, Throwable, Void>() {
+            @Override
+            public Void apply ( Integer exitCode, Throwable thrown ) {
+                long elapsed = System.currentTimeMillis() - start;
+                record( elapsed, exitCode == null || exitCode != 0 );
+                if (LOG.isLoggable( Level.FINE )) {
+                    LOG.log( Level.FINE, "{0} exited with {1} in {2}ms", //NOI18N
+                            new Object[]{Arrays.toString( cmdline ), exitCode, elapsed} );
+                }
+                return null;
+            }
+        } );
+        return proc;
+    }
+
+    /**
+     * Run a command whose output does not change from one run to the next
+     * (which node, npm root -g, node --version...), returning a cached
+     * result if it was run successfully in the last few minutes.
+     */
+    public Result probe ( File dir, String... cmdline ) {
+        String key = (dir == null ? "" : dir.getPath()) + '\0' + Arrays.toString( cmdline ); //NOI18N
+        synchronized ( probes ) {
+            Result cached = probes.get( key );
+            if (cached != null && System.currentTimeMillis() - cached.created < PROBE_CACHE_MILLIS) {
+                cacheHits.incrementAndGet();
+                return cached;
+            }
+        }
+        Result result = run( dir, null, PROBE_TIMEOUT_MILLIS, cmdline );
+        if (result.isSuccess()) {
+            synchronized ( probes ) {
+                probes.put( key, result );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Forget cached probe results, e.g. because the user has installed or
+     * switched a node platform.
+     */
+    public void clearProbeCache () {
+        synchronized ( probes ) {
+            probes.clear();
+        }
+    }
+
+    private void record ( long elapsed, boolean failure ) {
+        completed.incrementAndGet();
+        totalMillis.addAndGet( elapsed );
+        long max;
+        while ( elapsed > (max = maxMillis.get()) && !maxMillis.compareAndSet( max, elapsed ) ) {
+            // retry
+        }
+        if (failure) {
+            failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get counts and latencies of everything run so far.  Times are of
+     * processes which have exited (or been killed), so processes which
+     * could not be started or are still running do not skew the average.
+     */
+    public Map<String, Long> metrics () {
+        Map<String, Long> result = new HashMap<>();
+        long count = completed.get();
+        result.put( "spawned", spawned.get() ); //NOI18N
+        result.put( "completed", count ); //NOI18N
+        result.put( "failed", failed.get() ); //NOI18N
+        result.put( "timedOut", timedOut.get() ); //NOI18N
+        result.put( "probeCacheHits", cacheHits.get() ); //NOI18N
+        result.put( "totalMillis", totalMillis.get() ); //NOI18N
+        result.put( "maxMillis", maxMillis.get() ); //NOI18N
+        result.put( "averageMillis", count == 0 ? 0 : totalMillis.get() / count ); //NOI18N
+        return Collections.unmodifiableMap( result );
+    }
+
+    @Override
+    public String toString () {
+        return "ProcessService" + metrics(); //NOI18N
+    }
+
+    /**
+     * The outcome of running a process.
+     */
+    public static final class Result {
+        private final int exitCode;
+        private final String out;
+        private final String err;
+        private final long elapsed;
+        private final boolean timedOut;
+        private final long created = System.currentTimeMillis();
+
+        Result ( int exitCode, String out, String err, long elapsed, boolean timedOut ) {
+            this.exitCode = exitCode;
+            this.out = out;
+            this.err = err;
+            this.elapsed = elapsed;
+            this.timedOut = timedOut;
+        }
+
+        public int exitCode () {
+            return exitCode;
+        }
+
+        public boolean isSuccess () {
+            return exitCode == 0 && !timedOut;
+        }
+
+        public boolean isTimedOut () {
+            return timedOut;
+        }
+
+        public String stdout () {
+            return out;
+        }
+
+        public String stderr () {
+            return err;
+        }
+
+        /**
+         * Trimmed stdout if the process succeeded and wrote anything, else
+         * null.
+         */
+        public String output () {
+            String result = isSuccess() ? out.trim() : ""; //NOI18N
+            return result.isEmpty() ? null : result;
+        }
+
+        public long elapsedMillis () {
+            return elapsed;
+        }
+
+        @Override
+        public String toString () {
+            return "Result{exit=" + exitCode + ", " + elapsed + "ms" //NOI18N
+                    + (timedOut ? ", timed out" : "") + "}"; //NOI18N
+        }
+    }
+}
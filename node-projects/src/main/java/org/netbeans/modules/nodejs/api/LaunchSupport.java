@@ -3,12 +3,19 @@ package org.netbeans.modules.nodejs.api;
 import java.awt.Toolkit;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import javax.swing.event.ChangeListener;
 import org.netbeans.api.extexecution.ExecutionDescriptor;
 import org.netbeans.api.extexecution.ExecutionService;
@@ -18,6 +25,9 @@ import org.netbeans.api.project.Project;
 import org.netbeans.api.project.ProjectInformation;
 import org.netbeans.modules.nodejs.DefaultExecutable;
 import org.netbeans.modules.nodejs.NodeJSProject;
+import org.netbeans.modules.nodejs.NodeJSProjectFactory;
+import org.netbeans.modules.nodejs.NodeJSProjectProperties;
+import org.netbeans.modules.nodejs.registry.FileChangeRegistry;
 import org.netbeans.spi.project.ui.support.BuildExecutionSupport;
 import org.openide.awt.StatusDisplayer;
 import org.openide.filesystems.FileObject;
@@ -25,6 +35,7 @@ import org.openide.filesystems.FileUtil;
 import org.openide.util.ChangeSupport;
 import org.openide.util.Lookup;
 import org.openide.util.NbBundle;
+import org.openide.util.RequestProcessor;
 
 /**
  * Makes it easy to wire up a node executable to the output window with stack
@@ -34,6 +45,7 @@ import org.openide.util.NbBundle;
  */
 public abstract class LaunchSupport {
     private final NodeJSExecutable exe;
+    private static final RequestProcessor WATCH_RP = new RequestProcessor( "Node watch and rerun", 2 ); //NOI18N
     private final Map<Project, Rerunner> rerunners = new HashMap<>();
 
     public LaunchSupport ( NodeJSExecutable exe ) {
@@ -41,10 +53,11 @@ public abstract class LaunchSupport {
     }
 
     public Future<Integer> doRun ( final FileObject file, String args ) throws IOException {
+        long requestedAt = System.currentTimeMillis();
         Map<String, String> envToPopulate = new HashMap<>();
         populateEnv( envToPopulate, file, args );
         String[] cmdLineArgs = getLaunchCommandLine( true, envToPopulate );
-        return runWithOutputWindow( cmdLineArgs, file, envToPopulate, args );
+        return runWithOutputWindow( cmdLineArgs, file, envToPopulate, args, requestedAt );
     }
 
     protected void populateEnv ( Map<String, String> env, FileObject toRun, String args ) {
@@ -52,6 +65,10 @@ public abstract class LaunchSupport {
     }
 
     public Future<Integer> runWithOutputWindow ( String[] cmdLineArgs, final FileObject file, Map<String, String> env, String args ) throws IOException {
+        return runWithOutputWindow( cmdLineArgs, file, env, args, System.currentTimeMillis() );
+    }
+
+    private Future<Integer> runWithOutputWindow ( String[] cmdLineArgs, final FileObject file, Map<String, String> env, String args, long requestedAt ) throws IOException {
         for (Rerunner r : rerunners.values()) {
             if (file.equals( r.file )) {
                 r.stopOldProcessIfRunning();
@@ -103,10 +120,18 @@ public abstract class LaunchSupport {
             }
         }
 
-        Rerunner rerunner = new Rerunner( exe, file, b, displayName );
+        Rerunner rerunner = new Rerunner( exe, file, b, displayName, p );
+        Rerunner old;
         synchronized ( this ) {
-            rerunners.put( p, rerunner );
+            old = rerunners.put( p, rerunner );
+        }
+        if (old != null) {
+            old.stopWatching();
         }
+        if (p != null && p.getLookup().lookup( NodeJSProject.class ) != null) {
+            rerunner.watch( p );
+        }
+        rerunner.requestedAt = requestedAt;
         return rerunner.launch();
     }
 
@@ -117,12 +142,27 @@ public abstract class LaunchSupport {
         if (prj != null) {
             Rerunner r = rerunners.get( prj );
             if (r != null) {
+                r.stopWatching();
                 r.stopOldProcessIfRunning();
                 rerunners.remove( prj );
             }
         }
     }
 
+    /**
+     * Get the most recent lines of output (stdout and stderr interleaved)
+     * from the last process launched for a project, including lines which
+     * were not shown in the output window because they were throttled.
+     *
+     * @param p A project or something with one in its lookup
+     * @return The captured lines, oldest first;  empty if nothing has run
+     */
+    public List<String> recentOutput ( Lookup.Provider p ) {
+        Project prj = p.getLookup().lookup( Project.class );
+        Rerunner r = prj == null ? null : rerunners.get( prj );
+        return r == null ? Collections.<String>emptyList() : r.output.snapshot();
+    }
+
     static class Rerunner implements ExecutionDescriptor.RerunCondition, Runnable, Callable<Process>, BuildExecutionSupport.Item {
         private final NodeJSExecutable exe;
         private final FileObject file;
@@ -130,22 +170,39 @@ public abstract class LaunchSupport {
         private final ChangeSupport supp = new ChangeSupport( this );
         private final Callable<Process> processCreator;
         private final String displayName;
+        private final OutputThrottle.Settings throttle = OutputThrottle.Settings.load();
+        final OutputThrottle.RingBuffer output = new OutputThrottle.RingBuffer( throttle.bufferLines );
+        private final AtomicReference<String> banner = new AtomicReference<>();
+        private final AtomicReference<StartupTimings.Recorder> timing = new AtomicReference<>();
+        private final Project owner;
+        private final RequestProcessor.Task restartTask = WATCH_RP.create( new Restarter() );
+        private Watcher watcher;
+        private Project project;
+        private volatile String changedPath;
+        private volatile long restartStarted;
+        private volatile long stopMillis;
+        volatile long requestedAt;
 
-        public Rerunner ( NodeJSExecutable exe, FileObject file, ExternalProcessBuilder b, String displayName ) {
+        public Rerunner ( NodeJSExecutable exe, FileObject file, ExternalProcessBuilder b, String displayName, Project owner ) {
             this.exe = exe;
             this.file = file;
             this.processCreator = b;
             this.displayName = displayName;
+            this.owner = owner;
         }
 
         public Future<Integer> launch () {
             ExecutionDescriptor.LineConvertorFactory converter = exe.newLineConverter();
+            ExecutionDescriptor.InputProcessorFactory throttler = OutputThrottle.factory( throttle, output, banner, timing );
+            output.clear();
             ExecutionDescriptor des = new ExecutionDescriptor().controllable( true )
                     .showSuspended( true ).frontWindow( true ).outLineBased( true )
                     .controllable( true ).errLineBased( true )
                     .errConvertorFactory( converter )
                     .outLineBased( true )
                     .outConvertorFactory( converter )
+                    .outProcessorFactory( throttler )
+                    .errProcessorFactory( throttler )
                     .rerunCondition( this )
                     .preExecution( this )
                     .postExecution( this )
@@ -177,11 +234,17 @@ public abstract class LaunchSupport {
                 supp.fireChange();
             }
             if (!isPre) {
+                StartupTimings.Recorder recorder = timing.get();
+                if (recorder != null) {
+                    recorder.exited();
+                }
                 BuildExecutionSupport.registerFinishedItem( this );
             }
         }
 
-        public static final int PROCESS_QUIET_MILLISECONDS = 150;
+        public static final int GRACEFUL_STOP_MILLISECONDS = 3000;
+        public static final int PORT_RELEASE_MILLISECONDS = 2000;
+        public static final int WATCH_DELAY_MILLISECONDS = 400;
 
         public void stopOldProcessIfRunning () {
             Process p;
@@ -191,29 +254,154 @@ public abstract class LaunchSupport {
             if (p != null && (prePost % 2) != 0) {
                 StatusDisplayer.getDefault().setStatusText(
                         NbBundle.getMessage( Rerunner.class, "STOPPING", file.getName() ) ); //NOI18N
+                // Ports the server said it listens on and really does
+                Set<Integer> ports = PortRelease.inUse( PortRelease.portsIn( output.snapshot() ) );
+                // SIGTERM on Unix, so the process can run its exit handlers
                 p.destroy();
                 try {
-                    p.waitFor();
+                    if (!p.waitFor( GRACEFUL_STOP_MILLISECONDS, TimeUnit.MILLISECONDS )) {
+                        p.destroyForcibly().waitFor();
+                    }
                     //Give the OS a chance to release the socket
-                    Thread.sleep( PROCESS_QUIET_MILLISECONDS );
+                    if (!PortRelease.awaitRelease( ports, PORT_RELEASE_MILLISECONDS )) {
+                        Logger.getLogger( Rerunner.class.getName() ).log( Level.INFO,
+                                "Ports {0} still in use after stopping {1}", //NOI18N
+                                new Object[]{ports, file.getPath()} );
+                    }
                 } catch ( InterruptedException ex ) {
                     Logger.getLogger( Rerunner.class.getName() ).log( Level.INFO,
                             "Exception in quiet period before rerun" ); //NOI18N
                 }
             }
         }
+
+        /**
+         * Restart the process when files in the project change, if the
+         * project is set to be watched.
+         */
+        void watch ( Project project ) {
+            FileChangeRegistry reg = project.getLookup().lookup( FileChangeRegistry.class );
+            if (reg != null) {
+                Watcher w = new Watcher( WatchFilter.forProject( project, file ) );
+                synchronized ( this ) {
+                    this.project = project;
+                    // The registry only holds observers weakly
+                    watcher = w;
+                }
+                reg.registerInterest( "", w ); //NOI18N
+            }
+        }
+
+        void stopWatching () {
+            synchronized ( this ) {
+                watcher = null;
+            }
+            restartTask.cancel();
+        }
+
+        private boolean isWatching ( Watcher w ) {
+            Project prj;
+            synchronized ( this ) {
+                if (w != watcher) {
+                    return false;
+                }
+                prj = project;
+            }
+            NodeJSProjectProperties props = prj.getLookup().lookup( NodeJSProjectProperties.class );
+            return props != null && props.isWatch() && file.isValid();
+        }
+
+        private final class Watcher implements FileChangeRegistry.FileObserver {
+            // Read when the project is run;  configuration changes apply
+            // from the next run
+            private final WatchFilter filter;
+
+            Watcher ( WatchFilter filter ) {
+                this.filter = filter;
+            }
+
+            @Override
+            public void onEvent ( FileChangeRegistry.EventType type, String path ) {
+                if (!filter.isIgnored( path ) && isWatching( this )) {
+                    changedPath = path;
+                    // Editors and compilers write several files at once
+                    restartTask.schedule( WATCH_DELAY_MILLISECONDS );
+                }
+            }
+        }
+
+        private final class Restarter implements Runnable {
+            @Override
+            public void run () {
+                Watcher w;
+                synchronized ( Rerunner.this ) {
+                    w = watcher;
+                }
+                if (w == null || !isWatching( w )) {
+                    return;
+                }
+                long start = System.currentTimeMillis();
+                stopOldProcessIfRunning();
+                stopMillis = System.currentTimeMillis() - start;
+                restartStarted = start;
+                launch();
+            }
+        }
         Process process;
 
         @Override
         public Process call () throws Exception {
-            Process result = processCreator.call();
+            long started = restartStarted;
+            // Set for the first launch, not for reruns from the output window
+            long requested = requestedAt;
+            requestedAt = 0;
+            if (started != 0) {
+                requested = started;
+            } else if (requested == 0) {
+                requested = System.currentTimeMillis();
+            }
+            StartupTimings.Recorder recorder = StartupTimings.getDefault().start( owner, exe.displayName(),
+                    file.getPath(), requested, started != 0, readyPattern() );
+            timing.set( recorder );
+            Process result;
+            try {
+                result = processCreator.call();
+            } catch ( Exception | Error ex ) {
+                // Otherwise it would be listed as starting up forever
+                recorder.exited();
+                throw ex;
+            }
+            recorder.spawned();
             synchronized ( this ) {
                 process = result;
             }
+            if (started != 0) {
+                restartStarted = 0;
+                long elapsed = System.currentTimeMillis() - started;
+                banner.set( NbBundle.getMessage( Rerunner.class, "RESTARTED", //NOI18N
+                        elapsed, stopMillis, changedPath ) );
+                Logger.getLogger( Rerunner.class.getName() ).log( Level.FINE,
+                        "Restarted {0} in {1} ms", new Object[]{file.getPath(), elapsed} ); //NOI18N
+            }
             BuildExecutionSupport.registerRunningItem( this );
             return result;
         }
 
+        private Pattern readyPattern () {
+            NodeJSProjectProperties props = owner == null ? null
+                    : owner.getLookup().lookup( NodeJSProjectProperties.class );
+            String pattern = props == null ? null : props.getReadyPattern();
+            if (pattern != null) {
+                try {
+                    return Pattern.compile( pattern );
+                } catch ( PatternSyntaxException ex ) {
+                    Logger.getLogger( Rerunner.class.getName() ).log( Level.INFO,
+                            "Bad ready pattern {0}", pattern ); //NOI18N
+                }
+            }
+            return null;
+        }
+
         @Override
         public String getDisplayName () {
             return displayName;
@@ -18,14 +18,13 @@
  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
 package org.netbeans.modules.nodejs.api;
 
+import java.awt.EventQueue;
 import java.awt.Toolkit;
 import java.io.File;
 import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import org.netbeans.api.extexecution.ExecutionDescriptor.LineConvertorFactory;
 import org.netbeans.api.extexecution.print.ConvertedLine;
 import org.netbeans.api.extexecution.print.LineConvertor;
@@ -40,6 +39,7 @@ import org.openide.text.Line;
 import org.openide.text.Line.ShowOpenType;
 import org.openide.text.Line.ShowVisibilityType;
 import org.openide.util.Exceptions;
+import org.openide.util.RequestProcessor;
 import org.openide.windows.OutputEvent;
 import org.openide.windows.OutputListener;
 
@@ -48,10 +48,11 @@ import org.openide.windows.OutputListener;
  * @author Tim Boudreau
  */
 public final class LineConverter implements LineConvertorFactory {
+    private static final RequestProcessor RP = new RequestProcessor( "Stack trace links", 1 ); //NOI18N
     private final String sources;
 
-    // XXX for avalon, probably need to encapsulate ERR_PATTERN and SYNTAX_ERR_PATTERN
-    // and have the executable provide them
+    // XXX for avalon, probably need to let the executable provide its own
+    // StackFrameParser
     
     LineConverter ( String sources ) {
         this.sources = sources;
@@ -62,38 +63,13 @@ public final class LineConverter implements LineConvertorFactory {
         return new LineConvertor() {
             @Override
             public List<ConvertedLine> convert ( String line ) {
-                Matcher m = ERR_PATTERN.matcher( line );
-                OutputListener ol = null;
-                try {
-                    if (m.find()) {
-                        String clazz = m.group( 1 );
-                        String path = m.group( 2 );
-                        int lineNumber = Integer.parseInt( m.group( 3 ) );
-                        int charPos = Integer.parseInt( m.group( 4 ) );
-                        ol = new Link( clazz, path, lineNumber, charPos );
-                    } else {
-                        m = SYNTAX_ERR_PATTERN.matcher( line );
-                        if (m.find()) {
-                            String clazz = null;
-                            String path = m.group( 1 );
-                            int lineNumber = Integer.parseInt( m.group( 2 ) );
-                            int charPos = 0;
-                            ol = new Link( clazz, path, lineNumber, charPos );
-                        }
-                    }
-                } catch ( NumberFormatException nfe ) {
-                    //do nothing - some output looked like a stack element by accident
-                }
+                StackFrameParser.Frame frame = StackFrameParser.parse( line );
+                OutputListener ol = frame == null ? null
+                        : new Link( frame.function, frame.path, frame.line, frame.column );
                 return Collections.singletonList( ConvertedLine.forText( line, ol ) );
             }
         };
     }
-    private static final Pattern ERR_PATTERN =
-            Pattern.compile( "at\\s(.*?)\\s\\((.*?.js):(\\d+):(\\d+)\\)" );
-    //e.g. at Server.<anonymous> (/home/tim/Fooger/src/Fooger.js:7:5)
-    private static final Pattern SYNTAX_ERR_PATTERN =
-            Pattern.compile( "(\\/.*?\\.js):(\\d+)" );
-    //e.g. /home/tim/work/personal/captcha/captcha.js:38
 
     private class Link implements OutputListener {
         private final String path;
@@ -115,6 +91,16 @@ public final class LineConverter implements LineConvertorFactory {
 
         @Override
         public void outputLineAction ( OutputEvent ev ) {
+            // Reading a source map may mean parsing megabytes of JSON
+            RP.post( new Runnable() {
+                @Override
+                public void run () {
+                    locate();
+                }
+            } );
+        }
+
+        private void locate () {
             String pathLocal = this.path;
             if (pathLocal.indexOf( File.separatorChar ) < 0) { //NOI18N
                 String sourcePath = sources;
@@ -129,37 +115,61 @@ public final class LineConverter implements LineConvertorFactory {
                 }
             }
             File f = new File( pathLocal );
-            if (f.exists()) {
-                FileObject fo = FileUtil.toFileObject( f );
-                try {
-                    DataObject dob = DataObject.find( fo );
-                    EditorCookie ck = dob.getLookup().lookup( EditorCookie.class );
-                    if (ck != null) {
-                        LineCookie l = dob.getLookup().lookup( LineCookie.class );
-                        if (l != null) {
-                            Line goTo = l.getLineSet().getCurrent( Math.max (0, line -1) );
-                            if (goTo == null) {
-                                goTo =  l.getLineSet().getOriginal(line -1);
-                            }
-                            if (goTo != null) {
-                                String txt = goTo.getText();
-                                int length = txt == null ? -1 : txt.length();
-                                int position = charPos >= length && txt != null ? 0 : charPos;
-                                goTo.show( ShowOpenType.REUSE_NEW, 
-                                    ShowVisibilityType.FOCUS, position );
-                            } else {
-                                Logger.getLogger(LineConvertor.class.getName()).log(
-                                        Level.WARNING, 
-                                        "Could not go to line {0} of {1}", 
-                                        new Object[]{line - 1, fo.getPath()});
-                            }
+            if (!f.exists()) {
+                Toolkit.getDefaultToolkit().beep();
+                return;
+            }
+            int line = this.line;
+            int charPos = this.charPos;
+            // Jump to the TypeScript, etc. the code was compiled from
+            SourceMaps.Position original = SourceMaps.getDefault().find( f, line, charPos );
+            if (original != null) {
+                f = original.file;
+                line = original.line;
+                charPos = original.column;
+            }
+            final FileObject fo = FileUtil.toFileObject( FileUtil.normalizeFile( f ) );
+            if (fo == null) {
+                Toolkit.getDefaultToolkit().beep();
+                return;
+            }
+            final int targetLine = line;
+            final int targetColumn = charPos;
+            EventQueue.invokeLater( new Runnable() {
+                @Override
+                public void run () {
+                    open( fo, targetLine, targetColumn );
+                }
+            } );
+        }
+
+        private void open ( FileObject fo, int line, int charPos ) {
+            try {
+                DataObject dob = DataObject.find( fo );
+                EditorCookie ck = dob.getLookup().lookup( EditorCookie.class );
+                if (ck != null) {
+                    LineCookie l = dob.getLookup().lookup( LineCookie.class );
+                    if (l != null) {
+                        Line goTo = l.getLineSet().getCurrent( Math.max (0, line -1) );
+                        if (goTo == null) {
+                            goTo =  l.getLineSet().getOriginal(line -1);
+                        }
+                        if (goTo != null) {
+                            String txt = goTo.getText();
+                            int length = txt == null ? -1 : txt.length();
+                            int position = charPos >= length && txt != null ? 0 : charPos;
+                            goTo.show( ShowOpenType.REUSE_NEW, 
+                                ShowVisibilityType.FOCUS, position );
+                        } else {
+                            Logger.getLogger(LineConvertor.class.getName()).log(
+                                    Level.WARNING, 
+                                    "Could not go to line {0} of {1}", 
+                                    new Object[]{line - 1, fo.getPath()});
                         }
                     }
-                } catch ( DataObjectNotFoundException ex ) {
-                    Exceptions.printStackTrace( ex );
                 }
-            } else {
-                Toolkit.getDefaultToolkit().beep();
+            } catch ( DataObjectNotFoundException ex ) {
+                Exceptions.printStackTrace( ex );
             }
         }
 
@@ -0,0 +1,293 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.modules.nodejs.ProcessService;
+import org.netbeans.modules.nodejs.json.ObjectMapperProvider;
+import static org.netbeans.modules.nodejs.json.ObjectMapperProvider.STRING_OBJECT_MAP;
+import org.openide.modules.Places;
+
+/**
+ * What a particular node binary is and supports - its version, the versions
+ * of V8 and the libraries built into it, its built-in modules and the flags
+ * it accepts.  Found by running the binary once with a small
+ * <code>node -p</code> script;  the answer is cached on disk keyed by the
+ * binary's path, size and modification time, so it is only asked again
+ * when the binary is replaced.  Binaries which cannot be probed are
+ * remembered the same way for the session, so something which is not node
+ * is not run again each time it is asked about.
+ *
+ * @author Tim Boudreau
+ */
+public final class NodeCapabilities {
+    private static final String CACHE_DIR = "nodejs/capabilities"; //NOI18N
+    private static final String NODE_PREFIX = "node:"; //NOI18N
+    private static final Logger LOG = Logger.getLogger( NodeCapabilities.class.getName() );
+    private static final Map<String, NodeCapabilities> CACHE = new ConcurrentHashMap<>();
+    // Path -> {modified, length} of binaries whose probe failed
+    private static final Map<String, long[]> FAILED = new ConcurrentHashMap<>();
+    // Works back to 0.10:  builtinModules arrived in 9.3, the flag set in 10.10
+    static final String PROBE_SCRIPT = "JSON.stringify({" //NOI18N
+            + "version:process.version," //NOI18N
+            + "versions:process.versions," //NOI18N
+            + "arch:process.arch," //NOI18N
+            + "platform:process.platform," //NOI18N
+            + "builtinModules:require('module').builtinModules" //NOI18N
+            + "||Object.keys(process.binding('natives'))," //NOI18N
+            + "flags:process.allowedNodeEnvironmentFlags" //NOI18N
+            + "?Array.from(process.allowedNodeEnvironmentFlags):null})"; //NOI18N
+    private final String path;
+    private final long modified;
+    private final long length;
+    private final String version;
+    private final Map<String, String> versions;
+    private final Set<String> builtInModules;
+    private final Set<String> flags;
+    private final String arch;
+    private final String platform;
+
+    NodeCapabilities ( String path, long modified, long length, Map<String, Object> probe ) {
+        this.path = path;
+        this.modified = modified;
+        this.length = length;
+        this.version = string( probe.get( "version" ) ); //NOI18N
+        this.arch = string( probe.get( "arch" ) ); //NOI18N
+        this.platform = string( probe.get( "platform" ) ); //NOI18N
+        Map<String, String> v = new LinkedHashMap<>();
+        if (probe.get( "versions" ) instanceof Map<?, ?>) { //NOI18N
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) probe.get( "versions" )).entrySet()) { //NOI18N
+                v.put( String.valueOf( e.getKey() ), String.valueOf( e.getValue() ) );
+            }
+        }
+        this.versions = Collections.unmodifiableMap( v );
+        Set<String> mods = new TreeSet<>();
+        for (String mod : strings( probe.get( "builtinModules" ) )) { //NOI18N
+            // Internal modules are not requireable
+            if (!mod.startsWith( "_" ) && !mod.startsWith( "internal/" )) { //NOI18N
+                mods.add( mod );
+            }
+        }
+        this.builtInModules = Collections.unmodifiableSet( mods );
+        this.flags = Collections.unmodifiableSet( new TreeSet<>( strings( probe.get( "flags" ) ) ) ); //NOI18N
+    }
+
+    /**
+     * Get the capabilities of a binary, running it if they are not cached.
+     * May block for a few seconds, so do not call from the event thread.
+     *
+     * @param binary A node binary
+     * @return Its capabilities, or null if it could not be run
+     */
+    public static NodeCapabilities forBinary ( File binary ) {
+        NodeCapabilities result = cachedForBinary( binary );
+        if (result == null && binary.isFile() && !failedBefore( binary )) {
+            result = probe( binary );
+        }
+        return result;
+    }
+
+    private static boolean failedBefore ( File binary ) {
+        long[] stamp = FAILED.get( binary.getAbsolutePath() );
+        return stamp != null && stamp[0] == binary.lastModified() && stamp[1] == binary.length();
+    }
+
+    /**
+     * Get the capabilities of a binary only if that does not involve
+     * running it.
+     *
+     * @param binary A node binary
+     * @return Its capabilities, or null if they are not known yet
+     */
+    public static NodeCapabilities cachedForBinary ( File binary ) {
+        String key = binary.getAbsolutePath();
+        long modified = binary.lastModified();
+        long length = binary.length();
+        NodeCapabilities result = CACHE.get( key );
+        if (result != null && result.modified == modified && result.length == length) {
+            return result;
+        }
+        result = readCache( key, modified, length );
+        if (result != null) {
+            CACHE.put( key, result );
+        }
+        return result;
+    }
+
+    private static NodeCapabilities probe ( File binary ) {
+        String key = binary.getAbsolutePath();
+        long modified = binary.lastModified();
+        long length = binary.length();
+        String json = ProcessService.getDefault().run( null, Collections.<String, String>emptyMap(),
+                ProcessService.PROBE_TIMEOUT_MILLIS, key, "-p", PROBE_SCRIPT ).output(); //NOI18N
+        if (json == null || !json.startsWith( "{" )) { //NOI18N
+            LOG.log( Level.INFO, "Could not probe {0}", key ); //NOI18N
+            FAILED.put( key, new long[]{modified, length} );
+            return null;
+        }
+        try {
+            ObjectMapper mapper = ObjectMapperProvider.newObjectMapper();
+            Map<String, Object> probe = mapper.readValue( json, STRING_OBJECT_MAP );
+            NodeCapabilities result = new NodeCapabilities( key, modified, length, probe );
+            CACHE.put( key, result );
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put( "path", key ); //NOI18N
+            record.put( "modified", modified ); //NOI18N
+            record.put( "length", length ); //NOI18N
+            record.put( "probe", probe ); //NOI18N
+            mapper.writeValue( cacheFile( key ), record );
+            return result;
+        } catch ( IOException ex ) {
+            LOG.log( Level.INFO, "Bad probe output from " + key, ex ); //NOI18N
+            FAILED.put( key, new long[]{modified, length} );
+            return null;
+        }
+    }
+
+    @SuppressWarnings ("unchecked")
+    static NodeCapabilities readCache ( String key, long modified, long length ) {
+        File f = cacheFile( key );
+        if (!f.isFile()) {
+            return null;
+        }
+        try {
+            Map<String, Object> record = ObjectMapperProvider.newObjectMapper().readValue( f, STRING_OBJECT_MAP );
+            if (key.equals( record.get( "path" ) ) //NOI18N
+                    && record.get( "modified" ) instanceof Number //NOI18N
+                    && ((Number) record.get( "modified" )).longValue() == modified //NOI18N
+                    && record.get( "length" ) instanceof Number //NOI18N
+                    && ((Number) record.get( "length" )).longValue() == length //NOI18N
+                    && record.get( "probe" ) instanceof Map<?, ?>) { //NOI18N
+                return new NodeCapabilities( key, modified, length, (Map<String, Object>) record.get( "probe" ) ); //NOI18N
+            }
+        } catch ( IOException ex ) {
+            LOG.log( Level.FINE, "Bad capabilities cache " + f, ex ); //NOI18N
+        }
+        return null;
+    }
+
+    private static File cacheFile ( String key ) {
+        return Places.getCacheSubfile( CACHE_DIR + '/' + Integer.toHexString( key.hashCode() ) + ".json" ); //NOI18N
+    }
+
+    private static String string ( Object o ) {
+        return o == null ? null : o.toString();
+    }
+
+    private static List<String> strings ( Object o ) {
+        if (!(o instanceof List<?>)) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>();
+        for (Object item : (List<?>) o) {
+            if (item != null) {
+                result.add( item.toString() );
+            }
+        }
+        return result;
+    }
+
+    public String path () {
+        return path;
+    }
+
+    /**
+     * The version, as node reports it, e.g. <code>v20.11.0</code>.
+     */
+    public String version () {
+        return version;
+    }
+
+    public int majorVersion () {
+        String v = version == null ? "" : version; //NOI18N
+        int result = 0;
+        for (int i = v.startsWith( "v" ) ? 1 : 0; i < v.length() && Character.isDigit( v.charAt( i ) ); i++) { //NOI18N
+            result = result * 10 + (v.charAt( i ) - '0');
+        }
+        return result;
+    }
+
+    public String v8Version () {
+        return versions.get( "v8" ); //NOI18N
+    }
+
+    /**
+     * The contents of <code>process.versions</code>.
+     */
+    public Map<String, String> versions () {
+        return versions;
+    }
+
+    public String arch () {
+        return arch;
+    }
+
+    public String platform () {
+        return platform;
+    }
+
+    /**
+     * Modules which can be required without installing anything, such as
+     * <code>fs</code> and <code>fs/promises</code>.
+     */
+    public Set<String> builtInModules () {
+        return builtInModules;
+    }
+
+    /**
+     * Whether a name passed to <code>require()</code> refers to a built-in
+     * module, with or without the <code>node:</code> scheme.
+     */
+    public boolean isBuiltIn ( String module ) {
+        if (module.startsWith( NODE_PREFIX )) {
+            return true;
+        }
+        return builtInModules.contains( module );
+    }
+
+    /**
+     * Flags the binary accepts (from
+     * <code>process.allowedNodeEnvironmentFlags</code>);  empty for
+     * versions older than 10.10, which cannot tell.
+     */
+    public Set<String> flags () {
+        return flags;
+    }
+
+    public boolean supportsFlag ( String flag ) {
+        return flags.contains( flag );
+    }
+
+    @Override
+    public String toString () {
+        return path + " " + version + " (V8 " + v8Version() + ", " + builtInModules.size() + " modules)"; //NOI18N
+    }
+}
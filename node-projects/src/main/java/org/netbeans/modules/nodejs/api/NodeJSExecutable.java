@@ -22,6 +22,7 @@ package org.netbeans.modules.nodejs.api;
 
 import java.awt.EventQueue;
 import java.awt.Toolkit;
+import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -55,7 +56,30 @@ public abstract class NodeJSExecutable {
     }
     
     public String version() {
-        return Bundle.UNKNOWN_VERSION();
+        NodeCapabilities caps = EventQueue.isDispatchThread() ? cachedCapabilities() : capabilities();
+        return caps == null || caps.version() == null ? Bundle.UNKNOWN_VERSION() : caps.version();
+    }
+
+    /**
+     * Find out what this platform's binary supports, running it once if
+     * that is not already known.  Do not call from the event thread.
+     *
+     * @return The capabilities, or null if there is no usable binary
+     */
+    public NodeCapabilities capabilities() {
+        String path = path();
+        return path == null || path.isEmpty() ? null : NodeCapabilities.forBinary( new File( path ) );
+    }
+
+    /**
+     * Get this platform's capabilities if they can be had without running
+     * its binary.
+     *
+     * @return The capabilities, or null
+     */
+    public NodeCapabilities cachedCapabilities() {
+        String path = path();
+        return path == null || path.isEmpty() ? null : NodeCapabilities.cachedForBinary( new File( path ) );
     }
     
     public abstract String path();
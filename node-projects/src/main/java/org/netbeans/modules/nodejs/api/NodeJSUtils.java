@@ -1,5 +1,6 @@
 package org.netbeans.modules.nodejs.api;
 
+import java.util.Set;
 import org.openide.filesystems.FileObject;
 import org.openide.util.Lookup;
 
@@ -46,4 +47,29 @@ public abstract class NodeJSUtils {
      * @return The file object or null
      */
     protected abstract FileObject resolveImpl(String name, FileObject relativeTo);
+
+    /**
+     * Get the names <code>require()</code> finds the packages installed at
+     * the top of a project's <code>node_modules</code> by, from the
+     * project's dependency graph.  The same set is returned until something
+     * is installed or removed, so callers can cheaply tell if it changed.
+     *
+     * @param file A file in a NodeJS project
+     * @return The names, or null if the file is not in a NodeJS project
+     */
+    public Set<String> installedPackages(FileObject file) {
+        return null;
+    }
+
+    /**
+     * Get the names of the packages a project's package.json depends on,
+     * in any dependency section.  As with installed packages, the same set
+     * is returned until it changes.
+     *
+     * @param file A file in a NodeJS project
+     * @return The names, or null if the file is not in a NodeJS project
+     */
+    public Set<String> declaredPackages(FileObject file) {
+        return null;
+    }
 }
@@ -0,0 +1,330 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.prefs.Preferences;
+import org.netbeans.api.extexecution.ExecutionDescriptor;
+import org.netbeans.api.extexecution.input.InputProcessor;
+import org.openide.util.NbBundle.Messages;
+import org.openide.util.NbPreferences;
+import org.openide.util.RequestProcessor;
+
+/**
+ * A stage in front of the output window's line printer which keeps a chatty
+ * server from flooding it.  Every line is captured in a bounded ring buffer
+ * (so recent output can be retrieved even if it was never displayed), which
+ * the throttles for a process's stdout and stderr share;  runs of identical
+ * lines are folded into one line and a count;  and lines beyond a
+ * per-second budget are held back - when output slows down again, a
+ * summary and the last few lines this throttle held back are printed.  In tail-only
+ * mode nothing is printed while output is streaming, only the tail once it
+ * pauses.  Lines which are printed go through the default processor, so
+ * stack traces in them are still hyperlinked.
+ *
+ * @author Tim Boudreau
+ */
+@Messages ({
+    "# {0} - count of lines not shown",
+    "# {1} - count of lines replayed",
+    "LINES_SUPPRESSED=... {0} lines not shown; last {1}:",
+    "# {0} - repeat count",
+    "LINE_REPEATED=... previous line repeated {0} more times"})
+final class OutputThrottle implements InputProcessor {
+    private static final RequestProcessor RP = new RequestProcessor( "Node output throttle", 1 ); //NOI18N
+    private final InputProcessor delegate;
+    private final Settings settings;
+    private final RingBuffer buffer;
+    private final RingBuffer held;
+    private final StringBuilder partial = new StringBuilder();
+    private final RequestProcessor.Task quietFlush;
+    private final AtomicReference<String> banner;
+    private final AtomicReference<StartupTimings.Recorder> timing;
+    private long windowStart;
+    private int linesInWindow;
+    private int suppressed;
+    private String lastLine;
+    private int repeats;
+
+    OutputThrottle ( InputProcessor delegate, Settings settings, RingBuffer buffer ) {
+        this( delegate, settings, buffer, new AtomicReference<String>() );
+    }
+
+    OutputThrottle ( InputProcessor delegate, Settings settings, RingBuffer buffer, AtomicReference<String> banner ) {
+        this( delegate, settings, buffer, banner, new AtomicReference<StartupTimings.Recorder>() );
+    }
+
+    OutputThrottle ( InputProcessor delegate, Settings settings, RingBuffer buffer, AtomicReference<String> banner,
+            AtomicReference<StartupTimings.Recorder> timing ) {
+        this.delegate = delegate;
+        this.banner = banner;
+        this.timing = timing;
+        this.settings = settings;
+        this.buffer = buffer;
+        held = new RingBuffer( settings.replayLines );
+        quietFlush = RP.create( new Runnable() {
+            @Override
+            public void run () {
+                try {
+                    flushHeld();
+                } catch ( IOException ex ) {
+                    Logger.getLogger( OutputThrottle.class.getName() ).log( Level.FINE, null, ex );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Create a factory for throttles sharing one buffer.
+     *
+     * @param settings The settings
+     * @param buffer The buffer all output is captured in
+     * @param banner A message to print ahead of the process's output, which
+     * is consumed by whichever throttle gets output first
+     * @param timing Times the current launch, and is told about every line
+     * @return A factory
+     */
+    static ExecutionDescriptor.InputProcessorFactory factory ( final Settings settings, final RingBuffer buffer,
+            final AtomicReference<String> banner, final AtomicReference<StartupTimings.Recorder> timing ) {
+        return new ExecutionDescriptor.InputProcessorFactory() {
+            @Override
+            public InputProcessor newInputProcessor ( InputProcessor defaultProcessor ) {
+                return new OutputThrottle( defaultProcessor, settings, buffer, banner, timing );
+            }
+        };
+    }
+
+    @Override
+    public synchronized void processInput ( char[] chars ) throws IOException {
+        announce();
+        int start = 0;
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] == '\n') {
+                int end = i > start && chars[i - 1] == '\r' ? i - 1 : i;
+                partial.append( chars, start, end - start );
+                line( partial.toString(), System.currentTimeMillis() );
+                partial.setLength( 0 );
+                start = i + 1;
+            }
+        }
+        partial.append( chars, start, chars.length - start );
+    }
+
+    private void line ( String line, long now ) throws IOException {
+        buffer.add( line );
+        StartupTimings.Recorder recorder = timing.get();
+        if (recorder != null) {
+            recorder.line( line );
+        }
+        if (settings.foldRepeats && line.equals( lastLine )) {
+            repeats++;
+            return;
+        }
+        flushRepeats();
+        lastLine = line;
+        if (settings.tailOnly || overBudget( now )) {
+            suppressed++;
+            if (settings.replayLines > 0) {
+                held.add( line );
+            }
+            quietFlush.schedule( settings.quietMillis );
+            return;
+        }
+        flushSuppressed();
+        emit( line );
+    }
+
+    private boolean overBudget ( long now ) {
+        if (settings.maxLinesPerSecond <= 0) {
+            return false;
+        }
+        if (now - windowStart >= 1000) {
+            windowStart = now;
+            linesInWindow = 0;
+        }
+        return ++linesInWindow > settings.maxLinesPerSecond;
+    }
+
+    private void flushRepeats () throws IOException {
+        if (repeats > 0) {
+            int count = repeats;
+            repeats = 0;
+            if (suppressed == 0) {
+                emit( Bundle.LINE_REPEATED( count ) );
+            } else {
+                // The repeated line is being held back too, so its repeats
+                // are counted in the summary
+                suppressed += count;
+            }
+        }
+    }
+
+    /**
+     * Print a summary of held-back lines and the last few of them.
+     */
+    private void flushSuppressed () throws IOException {
+        if (suppressed == 0) {
+            return;
+        }
+        List<String> tail = held.snapshot();
+        held.clear();
+        emit( Bundle.LINES_SUPPRESSED( suppressed, tail.size() ) );
+        suppressed = 0;
+        for (String s : tail) {
+            emit( s );
+        }
+    }
+
+    private synchronized void flushHeld () throws IOException {
+        // Output has paused;  show what was held back, then how many times
+        // the last line was repeated
+        int folded = repeats;
+        repeats = 0;
+        flushSuppressed();
+        if (folded > 0) {
+            emit( Bundle.LINE_REPEATED( folded ) );
+        }
+        windowStart = 0;
+    }
+
+    private void announce () throws IOException {
+        String message = banner.getAndSet( null );
+        if (message != null) {
+            emit( message );
+        }
+    }
+
+    private void emit ( String line ) throws IOException {
+        char[] chars = new char[line.length() + 1];
+        line.getChars( 0, line.length(), chars, 0 );
+        chars[line.length()] = '\n';
+        delegate.processInput( chars );
+    }
+
+    @Override
+    public synchronized void reset () throws IOException {
+        partial.setLength( 0 );
+        held.clear();
+        suppressed = 0;
+        repeats = 0;
+        lastLine = null;
+        linesInWindow = 0;
+        quietFlush.cancel();
+        delegate.reset();
+    }
+
+    @Override
+    public void close () throws IOException {
+        quietFlush.cancel();
+        synchronized ( this ) {
+            announce();
+            if (partial.length() > 0) {
+                String last = partial.toString();
+                partial.setLength( 0 );
+                line( last, System.currentTimeMillis() );
+            }
+            flushHeld();
+        }
+        delegate.close();
+    }
+
+    /**
+     * How output is throttled, read from preferences.
+     */
+    static final class Settings {
+        private static final String MAX_LINES_KEY = "outputMaxLinesPerSecond"; //NOI18N
+        private static final String REPLAY_KEY = "outputReplayLines"; //NOI18N
+        private static final String FOLD_KEY = "outputFoldRepeats"; //NOI18N
+        private static final String TAIL_KEY = "outputTailOnly"; //NOI18N
+        private static final String BUFFER_KEY = "outputBufferLines"; //NOI18N
+        final int maxLinesPerSecond;
+        final int replayLines;
+        final boolean foldRepeats;
+        final boolean tailOnly;
+        final int bufferLines;
+        final int quietMillis;
+
+        Settings ( int maxLinesPerSecond, int replayLines, boolean foldRepeats, boolean tailOnly, int bufferLines, int quietMillis ) {
+            this.maxLinesPerSecond = maxLinesPerSecond;
+            this.replayLines = replayLines;
+            this.foldRepeats = foldRepeats;
+            this.tailOnly = tailOnly;
+            this.bufferLines = bufferLines;
+            this.quietMillis = quietMillis;
+        }
+
+        static Settings load () {
+            Preferences p = NbPreferences.forModule( OutputThrottle.class );
+            return new Settings( p.getInt( MAX_LINES_KEY, 200 ), p.getInt( REPLAY_KEY, 20 ),
+                    p.getBoolean( FOLD_KEY, true ), p.getBoolean( TAIL_KEY, false ),
+                    p.getInt( BUFFER_KEY, 10000 ), 500 );
+        }
+    }
+
+    /**
+     * Fixed-size buffer of the most recent lines a process has written.
+     */
+    static final class RingBuffer {
+        private final String[] lines;
+        private int next;
+        private int size;
+
+        RingBuffer ( int capacity ) {
+            lines = new String[Math.max( 1, capacity )];
+        }
+
+        synchronized void add ( String line ) {
+            lines[next] = line;
+            next = (next + 1) % lines.length;
+            size = Math.min( size + 1, lines.length );
+        }
+
+        /**
+         * Get up to the last <code>count</code> lines, oldest first.
+         */
+        synchronized List<String> tail ( int count ) {
+            int n = Math.min( count, size );
+            if (n <= 0) {
+                return Collections.emptyList();
+            }
+            List<String> result = new ArrayList<>( n );
+            for (int i = n; i > 0; i--) {
+                result.add( lines[(next - i + lines.length) % lines.length] );
+            }
+            return result;
+        }
+
+        synchronized List<String> snapshot () {
+            return tail( size );
+        }
+
+        synchronized void clear () {
+            next = 0;
+            size = 0;
+            Arrays.fill( lines, null );
+        }
+    }
+}
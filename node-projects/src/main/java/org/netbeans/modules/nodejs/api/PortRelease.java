@@ -0,0 +1,185 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Works out which ports a server announced it was listening on, and waits
+ * for them to be free again after it exits, so a restarted server does not
+ * die with EADDRINUSE - without sleeping for a fixed time when nothing was
+ * listening at all.
+ *
+ * @author Tim Boudreau
+ */
+final class PortRelease {
+    private static final int POLL_MILLIS = 25;
+
+    private PortRelease () {
+        throw new AssertionError();
+    }
+
+    /**
+     * Find ports in lines such as <code>Listening on port 3000</code> or
+     * <code>Server running at http://127.0.0.1:8080/</code>.
+     *
+     * @param lines Process output
+     * @return The ports mentioned
+     */
+    static Set<Integer> portsIn ( Iterable<String> lines ) {
+        Set<Integer> result = new TreeSet<>();
+        for (String line : lines) {
+            if (StackFrameParser.parse( line ) != null) {
+                continue;
+            }
+            if (containsIgnoreCase( line, "listen" ) || containsIgnoreCase( line, "port" ) //NOI18N
+                    || containsIgnoreCase( line, "http" )) { //NOI18N
+                portsIn( line, result );
+            }
+        }
+        return result;
+    }
+
+    static void portsIn ( String line, Set<Integer> into ) {
+        int len = line.length();
+        for (int i = 0; i < len; i++) {
+            char c = line.charAt( i );
+            boolean candidate = false;
+            int start = i + 1;
+            if (c == ':') {
+                candidate = isHost( line, i );
+            } else if ((c == 'p' || c == 'P') && line.regionMatches( true, i, "port", 0, 4 ) //NOI18N
+                    && (i == 0 || !Character.isLetter( line.charAt( i - 1 ) ))) {
+                start = i + 4;
+                while (start < len && (line.charAt( start ) == ' ' || line.charAt( start ) == ':'
+                        || line.charAt( start ) == '=')) {
+                    start++;
+                }
+                candidate = true;
+            }
+            if (candidate) {
+                int end = start;
+                while (end < len && end - start <= 5 && Character.isDigit( line.charAt( end ) )) {
+                    end++;
+                }
+                if (end > start && end - start <= 5 && (end == len || !Character.isLetterOrDigit( line.charAt( end ) ))) {
+                    int port = Integer.parseInt( line.substring( start, end ) );
+                    // Servers run from the IDE will not be on privileged ports
+                    if (port >= 1024 && port <= 65535) {
+                        into.add( port );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Is the text before a colon a host name or address rather than, say,
+     * the hours of a timestamp?
+     */
+    private static boolean isHost ( String line, int colon ) {
+        int start = colon;
+        boolean dot = false;
+        boolean letter = false;
+        while (start > 0) {
+            char c = line.charAt( start - 1 );
+            if (c == '.') {
+                dot = true;
+            } else if (Character.isLetter( c ) || c == '-') {
+                letter = true;
+            } else if (!Character.isDigit( c ) && c != ']' && c != '[' && c != ':') {
+                break;
+            }
+            start--;
+        }
+        if (start == colon) {
+            return false;
+        }
+        String host = line.substring( start, colon );
+        return dot || host.endsWith( "]" ) || (letter && !host.contains( ":" )); //NOI18N
+    }
+
+    private static boolean containsIgnoreCase ( String line, String what ) {
+        int max = line.length() - what.length();
+        for (int i = 0; i <= max; i++) {
+            if (line.regionMatches( true, i, what, 0, what.length() )) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Narrow a set of ports to those something is listening on - done while
+     * the server is still running, to weed out numbers which only looked
+     * like ports.
+     */
+    static Set<Integer> inUse ( Set<Integer> ports ) {
+        Set<Integer> result = new TreeSet<>();
+        for (Integer port : ports) {
+            if (!isFree( port )) {
+                result.add( port );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Wait until nothing is listening on any of the passed ports.
+     *
+     * @param ports Ports
+     * @param timeoutMillis How long to wait at most
+     * @return true if all of the ports were free before the timeout
+     */
+    static boolean awaitRelease ( Set<Integer> ports, long timeoutMillis ) throws InterruptedException {
+        Set<Integer> remaining = new TreeSet<>( ports );
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (;;) {
+            for (Iterator<Integer> it = remaining.iterator(); it.hasNext();) {
+                if (isFree( it.next() )) {
+                    it.remove();
+                }
+            }
+            if (remaining.isEmpty()) {
+                return true;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep( POLL_MILLIS );
+        }
+    }
+
+    static boolean isFree ( int port ) {
+        // Node sets SO_REUSEADDR, so lingering TIME_WAIT connections do not
+        // stop it from listening again - only another listener does
+        try (ServerSocket socket = new ServerSocket()) {
+            socket.setReuseAddress( true );
+            socket.bind( new InetSocketAddress( port ) );
+            return true;
+        } catch ( IOException ex ) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,476 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Maps locations in generated JavaScript back to the original sources
+ * (TypeScript, Babel, CoffeeScript...) using source maps.  A generated file
+ * is matched to its map through its trailing
+ * <code>//# sourceMappingURL=</code> comment (inline <code>data:</code>
+ * URLs included), or a sibling <code>.map</code> file.
+ * <p/>
+ * Bundles can have maps of several megabytes, and only a handful of
+ * locations are ever looked up, so the <code>mappings</code> field is kept
+ * as undecoded bytes and lines are decoded on demand.  VLQ fields other
+ * than the generated column are relative to the previous segment across
+ * line boundaries, so decoding line <i>n</i> needs the state at its start;
+ * that state is recorded every {@link #CHECKPOINT_INTERVAL} lines as
+ * decoding passes them, so a lookup only ever walks forward from the
+ * nearest checkpoint.  Maps are cached per generated file and dropped when
+ * either the file or the map changes on disk.
+ *
+ * @author Tim Boudreau
+ */
+final class SourceMaps {
+    static final int CHECKPOINT_INTERVAL = 64;
+    private static final int MAX_CACHED = 32;
+    private static final int TAIL_BYTES = 4096;
+    private static final int MAX_INLINE_BYTES = 64 * 1024 * 1024;
+    private static final String URL_COMMENT = "sourceMappingURL="; //NOI18N
+    private static final String DATA_URL = "data:"; //NOI18N
+    private static final String BASE64 = ";base64,"; //NOI18N
+    private static final String MAP_EXT = ".map"; //NOI18N
+    private static final String PACKAGE_JSON = "package.json"; //NOI18N
+    private static final Logger LOG = Logger.getLogger( SourceMaps.class.getName() );
+    private static final SourceMaps INSTANCE = new SourceMaps();
+    private final Map<File, Cached> cache = new LinkedHashMap<File, Cached>( 16, 0.75f, true ) {
+        @Override
+        protected boolean removeEldestEntry ( Map.Entry<File, Cached> eldest ) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    static SourceMaps getDefault () {
+        return INSTANCE;
+    }
+
+    /**
+     * Find the original location of a position in a generated file.
+     *
+     * @param generated A JavaScript file
+     * @param line The 1-based line, as in a stack trace
+     * @param column The 1-based column, as in a stack trace
+     * @return The original location, or null if the file has no usable
+     * source map, or the position is not mapped to an existing file
+     */
+    Position find ( File generated, int line, int column ) {
+        SourceMap map;
+        try {
+            map = mapFor( generated );
+        } catch ( IOException ex ) {
+            LOG.log( Level.INFO, "Bad source map for " + generated, ex ); //NOI18N
+            return null;
+        }
+        if (map == null) {
+            return null;
+        }
+        Position result;
+        try {
+            result = map.find( line - 1, Math.max( 0, column - 1 ) );
+        } catch ( IllegalArgumentException ex ) {
+            LOG.log( Level.INFO, "Bad mappings in source map for " + generated, ex ); //NOI18N
+            return null;
+        }
+        return result != null && result.file.exists() ? result : null;
+    }
+
+    synchronized void clear () {
+        cache.clear();
+    }
+
+    private SourceMap mapFor ( File generated ) throws IOException {
+        long modified = generated.lastModified();
+        Cached c;
+        synchronized ( this ) {
+            c = cache.get( generated );
+        }
+        if (c != null && c.jsModified == modified && c.mapModified == lastModified( c.mapFile )) {
+            return c.map;
+        }
+        c = load( generated, modified );
+        synchronized ( this ) {
+            cache.put( generated, c );
+        }
+        return c.map;
+    }
+
+    private static long lastModified ( File f ) {
+        return f == null ? 0 : f.lastModified();
+    }
+
+    private static Cached load ( File generated, long modified ) throws IOException {
+        String url = mappingUrl( generated );
+        File dir = generated.getParentFile();
+        if (url != null && url.startsWith( DATA_URL )) {
+            int ix = url.indexOf( BASE64 );
+            if (ix < 0) {
+                return new Cached( modified, null, null );
+            }
+            byte[] json = Base64.getDecoder().decode( url.substring( ix + BASE64.length() ) );
+            return new Cached( modified, null, SourceMap.parse( new ByteArrayInputStream( json ), dir ) );
+        }
+        File mapFile = url == null ? new File( generated.getPath() + MAP_EXT ) : resolve( dir, url );
+        if (mapFile == null || !mapFile.isFile()) {
+            return new Cached( modified, mapFile, null );
+        }
+        try (InputStream in = new FileInputStream( mapFile )) {
+            return new Cached( modified, mapFile, SourceMap.parse( in, mapFile.getParentFile() ) );
+        }
+    }
+
+    /**
+     * The comment naming the map is written last by every compiler, so only
+     * the end of the file is read.
+     */
+    static String mappingUrl ( File generated ) throws IOException {
+        if (!generated.isFile()) {
+            return null;
+        }
+        String tail;
+        try (RandomAccessFile raf = new RandomAccessFile( generated, "r" )) { //NOI18N
+            long len = raf.length();
+            // An inline map makes the last line as long as the map itself,
+            // so keep reading backwards until the whole last line is in hand
+            for (int count = (int) Math.min( len, TAIL_BYTES );; count = (int) Math.min( len, count * 4L )) {
+                byte[] bytes = new byte[count];
+                raf.seek( len - count );
+                raf.readFully( bytes );
+                tail = new String( bytes, StandardCharsets.UTF_8 );
+                String trimmed = tail.trim();
+                if (count == len || trimmed.indexOf( '\n' ) >= 0) {
+                    break;
+                }
+                if (count >= MAX_INLINE_BYTES) {
+                    return null;
+                }
+            }
+        }
+        int ix = tail.lastIndexOf( URL_COMMENT );
+        if (ix < 0) {
+            return null;
+        }
+        String prefix = tail.substring( Math.max( 0, ix - 4 ), ix ).trim();
+        if (!prefix.endsWith( "//#" ) && !prefix.endsWith( "//@" ) && !prefix.endsWith( "/*#" )) { //NOI18N
+            return null;
+        }
+        int end = ix + URL_COMMENT.length();
+        while (end < tail.length() && !Character.isWhitespace( tail.charAt( end ) ) && tail.charAt( end ) != '*') {
+            end++;
+        }
+        String url = tail.substring( ix + URL_COMMENT.length(), end );
+        return url.isEmpty() ? null : url;
+    }
+
+    /**
+     * Resolve a path in a source map, or the URL of one.  Paths with a
+     * scheme such as <code>webpack:///./src/x.ts</code> are relative to
+     * the bundler's working directory, not the map's, so are resolved
+     * against the project the map belongs to - the nearest folder above it
+     * with a package.json.
+     */
+    static File resolve ( File dir, String path ) {
+        return resolve( dir, null, path );
+    }
+
+    private static File resolve ( File dir, File projectDir, String path ) {
+        if (path.startsWith( "file:" )) { //NOI18N
+            try {
+                return new File( new URI( path ) );
+            } catch ( URISyntaxException | IllegalArgumentException ex ) {
+                return null;
+            }
+        }
+        if (path.indexOf( "://" ) > 0) { //NOI18N
+            // webpack://, http:// - strip the scheme and any namespace
+            dir = projectDir == null ? projectDir( dir ) : projectDir;
+            path = path.substring( path.indexOf( "://" ) + 3 ); //NOI18N
+            int slash = path.indexOf( '/' );
+            path = slash < 0 ? path : path.substring( slash + 1 );
+            while (path.startsWith( "./" )) { //NOI18N
+                path = path.substring( 2 );
+            }
+        }
+        File f = new File( path );
+        if (!f.isAbsolute() && dir != null) {
+            f = new File( dir, path );
+        }
+        try {
+            return f.getCanonicalFile();
+        } catch ( IOException ex ) {
+            return f.getAbsoluteFile();
+        }
+    }
+
+    private static File projectDir ( File dir ) {
+        for (File f = dir; f != null; f = f.getParentFile()) {
+            if (new File( f, PACKAGE_JSON ).isFile()) {
+                return f;
+            }
+        }
+        return dir;
+    }
+
+    private static final class Cached {
+        final long jsModified;
+        final File mapFile;
+        final long mapModified;
+        final SourceMap map;
+
+        Cached ( long jsModified, File mapFile, SourceMap map ) {
+            this.jsModified = jsModified;
+            this.mapFile = mapFile;
+            this.mapModified = lastModified( mapFile );
+            this.map = map;
+        }
+    }
+
+    /**
+     * An original source location.
+     */
+    static final class Position {
+        final File file;
+        final int line;
+        final int column;
+
+        Position ( File file, int line, int column ) {
+            this.file = file;
+            this.line = line;
+            this.column = column;
+        }
+
+        @Override
+        public String toString () {
+            return file + ":" + line + ":" + column;
+        }
+    }
+
+    /**
+     * One parsed source map.  Only <code>sources</code>,
+     * <code>sourceRoot</code> and <code>mappings</code> are read;
+     * <code>sourcesContent</code> is skipped without being materialized.
+     */
+    static final class SourceMap {
+        private static final int[] BASE64_VALUES = new int[128];
+        private final File[] sources;
+        private final byte[] mappings;
+        // source, original line, original column at the start of every
+        // CHECKPOINT_INTERVAL'th generated line, filled in as lines are decoded
+        private int[] checkpoints = new int[0];
+        private int checkpointCount;
+        private int[] lineStarts;
+
+        static {
+            Arrays.fill( BASE64_VALUES, -1 );
+            String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"; //NOI18N
+            for (int i = 0; i < chars.length(); i++) {
+                BASE64_VALUES[chars.charAt( i )] = i;
+            }
+        }
+
+        SourceMap ( File[] sources, byte[] mappings ) {
+            this.sources = sources;
+            this.mappings = mappings;
+        }
+
+        static SourceMap parse ( InputStream in, File dir ) throws IOException {
+            String root = null;
+            List<String> names = new ArrayList<>();
+            byte[] mappings = null;
+            JsonParser p = new JsonFactory().createParser( in );
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException( "Not a source map" ); //NOI18N
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                JsonToken tok = p.nextToken();
+                if ("sourceRoot".equals( field ) && tok == JsonToken.VALUE_STRING) { //NOI18N
+                    root = p.getText();
+                } else if ("mappings".equals( field ) && tok == JsonToken.VALUE_STRING) { //NOI18N
+                    mappings = p.getText().getBytes( StandardCharsets.US_ASCII );
+                } else if ("sources".equals( field ) && tok == JsonToken.START_ARRAY) { //NOI18N
+                    while ((tok = p.nextToken()) != JsonToken.END_ARRAY) {
+                        names.add( tok == JsonToken.VALUE_STRING ? p.getText() : null );
+                    }
+                } else if ("sections".equals( field )) { //NOI18N
+                    // Index maps are rare outside of browser bundles
+                    throw new IOException( "Indexed source maps not supported" ); //NOI18N
+                } else {
+                    p.skipChildren();
+                }
+            }
+            if (mappings == null) {
+                throw new IOException( "No mappings" ); //NOI18N
+            }
+            File[] files = new File[names.size()];
+            File projectDir = null;
+            for (int i = 0; i < files.length; i++) {
+                String name = names.get( i );
+                if (name != null) {
+                    if (root != null && !root.isEmpty() && name.indexOf( "://" ) < 0 && !new File( name ).isAbsolute()) { //NOI18N
+                        name = root.endsWith( "/" ) ? root + name : root + '/' + name; //NOI18N
+                    }
+                    if (projectDir == null && name.indexOf( "://" ) > 0) { //NOI18N
+                        // Look the project up once, not for every source
+                        projectDir = projectDir( dir );
+                    }
+                    files[i] = resolve( dir, projectDir, name );
+                }
+            }
+            return new SourceMap( files, mappings );
+        }
+
+        /**
+         * Find the original position of a generated one.
+         *
+         * @param line 0-based generated line
+         * @param column 0-based generated column
+         * @return A 1-based position, or null
+         */
+        synchronized Position find ( int line, int column ) {
+            int[] starts = lineStarts();
+            if (line < 0 || line >= starts.length) {
+                return null;
+            }
+            // Walk forward from the nearest checkpoint to the start of the line
+            int cp = Math.min( line / CHECKPOINT_INTERVAL, checkpointCount - 1 );
+            int[] state = {checkpoints[cp * 3], checkpoints[cp * 3 + 1], checkpoints[cp * 3 + 2]};
+            for (int l = cp * CHECKPOINT_INTERVAL; l < line; l++) {
+                decodeLine( starts[l], state, null, -1 );
+                if ((l + 1) % CHECKPOINT_INTERVAL == 0 && (l + 1) / CHECKPOINT_INTERVAL == checkpointCount) {
+                    addCheckpoint( state );
+                }
+            }
+            int[] best = {-1, 0, 0};
+            decodeLine( starts[line], state, best, column );
+            if (best[0] < 0 || best[0] >= sources.length || sources[best[0]] == null) {
+                return null;
+            }
+            return new Position( sources[best[0]], best[1] + 1, best[2] + 1 );
+        }
+
+        private int[] lineStarts () {
+            if (lineStarts == null) {
+                int count = 1;
+                for (byte b : mappings) {
+                    if (b == ';') {
+                        count++;
+                    }
+                }
+                int[] starts = new int[count];
+                for (int i = 0, l = 1; i < mappings.length; i++) {
+                    if (mappings[i] == ';') {
+                        starts[l++] = i + 1;
+                    }
+                }
+                lineStarts = starts;
+                checkpoints = new int[3 * (count / CHECKPOINT_INTERVAL + 1)];
+                checkpointCount = 1;
+            }
+            return lineStarts;
+        }
+
+        private void addCheckpoint ( int[] state ) {
+            System.arraycopy( state, 0, checkpoints, checkpointCount * 3, 3 );
+            checkpointCount++;
+        }
+
+        /**
+         * Decode the segments of one line, updating the running source,
+         * line and column in <code>state</code>, and recording in
+         * <code>best</code> the last mapped segment at or before
+         * <code>column</code>.
+         */
+        private void decodeLine ( int pos, int[] state, int[] best, int column ) {
+            int genColumn = 0;
+            int[] fields = new int[5];
+            while (pos < mappings.length && mappings[pos] != ';') {
+                if (mappings[pos] == ',') {
+                    pos++;
+                    continue;
+                }
+                int count = 0;
+                while (pos < mappings.length && mappings[pos] != ',' && mappings[pos] != ';') {
+                    long packed = decodeVlq( mappings, pos );
+                    if (count < fields.length) {
+                        fields[count++] = (int) packed;
+                    }
+                    pos = (int) (packed >>> 32);
+                }
+                genColumn += fields[0];
+                if (count >= 4) {
+                    state[0] += fields[1];
+                    state[1] += fields[2];
+                    state[2] += fields[3];
+                    if (best != null && genColumn <= column) {
+                        best[0] = state[0];
+                        best[1] = state[1];
+                        best[2] = state[2];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Decode one base64 VLQ value.
+         *
+         * @return The value in the low 32 bits and the position after it in
+         * the high 32 bits
+         */
+        static long decodeVlq ( byte[] data, int pos ) {
+            int result = 0;
+            int shift = 0;
+            int digit;
+            do {
+                if (pos >= data.length) {
+                    throw new IllegalArgumentException( "Truncated VLQ at " + pos ); //NOI18N
+                }
+                byte b = data[pos++];
+                digit = b < 0 ? -1 : BASE64_VALUES[b];
+                if (digit < 0) {
+                    throw new IllegalArgumentException( "Bad VLQ character '" + (char) b + "' at " + (pos - 1) ); //NOI18N
+                }
+                result += (digit & 31) << shift;
+                shift += 5;
+            } while ((digit & 32) != 0);
+            int value = (result & 1) == 0 ? result >>> 1 : -(result >>> 1);
+            return ((long) pos << 32) | (value & 0xFFFFFFFFL);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+/**
+ * Finds source locations in lines of node output without regular
+ * expressions.  Servers can write thousands of lines a second to the output
+ * window, nearly all of which contain no location at all, so a line is
+ * first checked for <code>js:</code> (which covers <code>.js:</code>,
+ * <code>.mjs:</code> and <code>.cjs:</code>) and rejected at the cost of
+ * one <code>indexOf</code>.  Lines which pass are parsed by hand, either as
+ * a V8 stack frame:
+ * <pre>
+ *     at Server.&lt;anonymous&gt; (/home/tim/Fooger/src/Fooger.js:7:5)
+ *     at async Promise.all (index 0)
+ *     at /home/tim/Fooger/src/Fooger.js:12:3
+ *     at Module._compile (file:///home/tim/Fooger/src/esm.mjs:3:11)
+ * </pre>
+ * or as the <code>path:line</code> header node prints above a syntax error:
+ * <pre>
+ * /home/tim/work/personal/captcha/captcha.js:38
+ * </pre>
+ *
+ * @author Tim Boudreau
+ */
+final class StackFrameParser {
+    private static final String JS_COLON = ".js:"; //NOI18N
+    private static final String ANY_JS_COLON = "js:"; //NOI18N
+    private static final String AT = "at "; //NOI18N
+    private static final String FILE_URL = "file://"; //NOI18N
+
+    private StackFrameParser () {
+        throw new AssertionError();
+    }
+
+    /**
+     * Parse a line of output.
+     *
+     * @param line A line
+     * @return The location it refers to, or null
+     */
+    static Frame parse ( String line ) {
+        if (line.indexOf( ANY_JS_COLON ) < 0) {
+            return null;
+        }
+        Frame result = parseStackFrame( line );
+        return result != null ? result : parsePathAndLine( line, line.indexOf( JS_COLON ) );
+    }
+
+    private static Frame parseStackFrame ( String line ) {
+        int start = 0;
+        int len = line.length();
+        while ( start < len && Character.isWhitespace( line.charAt( start ) ) ) {
+            start++;
+        }
+        if (!line.startsWith( AT, start )) {
+            return null;
+        }
+        start += AT.length();
+        String function = null;
+        int locStart = start;
+        int locEnd = len;
+        while ( locEnd > locStart && Character.isWhitespace( line.charAt( locEnd - 1 ) ) ) {
+            locEnd--;
+        }
+        // Function names may contain spaces ("new Foo", "async bar",
+        // "baz [as qux]") but never " (", while paths may contain parens
+        int paren = line.indexOf( " (", start ); //NOI18N
+        if (paren > 0 && locEnd > paren && line.charAt( locEnd - 1 ) == ')') {
+            function = line.substring( start, paren );
+            locStart = paren + 2;
+            locEnd--;
+        }
+        // Location is path:line:column - read the numbers from the end
+        int colonCol = line.lastIndexOf( ':', locEnd - 1 );
+        if (colonCol <= locStart) {
+            return null;
+        }
+        int column = parseNumber( line, colonCol + 1, locEnd );
+        int colonLine = line.lastIndexOf( ':', colonCol - 1 );
+        if (column < 0 || colonLine <= locStart) {
+            return null;
+        }
+        int lineNumber = parseNumber( line, colonLine + 1, colonCol );
+        if (lineNumber < 0 || !line.regionMatches( colonLine - 2, "js", 0, 2 )) { //NOI18N
+            return null;
+        }
+        if (line.startsWith( FILE_URL, locStart )) {
+            locStart += FILE_URL.length();
+        }
+        return new Frame( function, line.substring( locStart, colonLine ), lineNumber, column );
+    }
+
+    private static Frame parsePathAndLine ( String line, int js ) {
+        // The path runs from the first slash to the first ".js:" followed
+        // by a line number after it
+        int slash = line.indexOf( '/' );
+        while ( slash >= 0 && js >= 0 ) {
+            if (js > slash) {
+                int numStart = js + JS_COLON.length();
+                int numEnd = numStart;
+                while ( numEnd < line.length() && isDigit( line.charAt( numEnd ) ) ) {
+                    numEnd++;
+                }
+                int lineNumber = parseNumber( line, numStart, numEnd );
+                if (lineNumber >= 0) {
+                    return new Frame( null, line.substring( slash, js + 3 ), lineNumber, 0 );
+                }
+            }
+            js = line.indexOf( JS_COLON, js + 1 );
+        }
+        return null;
+    }
+
+    private static boolean isDigit ( char c ) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int parseNumber ( String s, int start, int end ) {
+        if (end <= start || end - start > 9) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt( i );
+            if (!isDigit( c )) {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * A location in a file.
+     */
+    static final class Frame {
+        final String function;
+        final String path;
+        final int line;
+        final int column;
+
+        Frame ( String function, String path, int line, int column ) {
+            this.function = function;
+            this.path = path;
+            this.line = line;
+            this.column = column;
+        }
+
+        @Override
+        public String toString () {
+            return (function == null ? "" : function + " ") + path + ':' + line + ':' + column; //NOI18N
+        }
+    }
+}
@@ -0,0 +1,438 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.Preferences;
+import java.util.regex.Pattern;
+import javax.swing.event.ChangeListener;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.ProjectUtils;
+import org.netbeans.api.project.ui.OpenProjects;
+import org.openide.util.ChangeSupport;
+
+/**
+ * How long launches take to get going - from the run request to the
+ * process being spawned, to its first line of output, and to it printing
+ * a line which says it is ready (such as <code>Listening on port
+ * 3000</code>) - kept per project, so platforms can be compared and
+ * regressions in startup noticed.  The most recent launches of each
+ * project are remembered across sessions;  in memory, only while it is
+ * open.
+ *
+ * @author Tim Boudreau
+ */
+public final class StartupTimings {
+    public static final int HISTORY_SIZE = 50;
+    private static final String PREFS_KEY = "history"; //NOI18N
+    private static final StartupTimings INSTANCE = new StartupTimings();
+    private final Map<Project, List<Launch>> history = new WeakHashMap<>();
+    private final ChangeSupport supp = new ChangeSupport( this );
+
+    static {
+        OpenProjects.getDefault().addPropertyChangeListener( new PropertyChangeListener() {
+            @Override
+            public void propertyChange ( PropertyChangeEvent evt ) {
+                if (OpenProjects.PROPERTY_OPEN_PROJECTS.equals( evt.getPropertyName() )
+                        && evt.getOldValue() instanceof Project[]) {
+                    Set<Project> closed = new HashSet<>( Arrays.asList( (Project[]) evt.getOldValue() ) );
+                    if (evt.getNewValue() instanceof Project[]) {
+                        closed.removeAll( Arrays.asList( (Project[]) evt.getNewValue() ) );
+                    }
+                    for (Project p : closed) {
+                        INSTANCE.forget( p );
+                    }
+                }
+            }
+        } );
+    }
+
+    StartupTimings () {
+    }
+
+    public static StartupTimings getDefault () {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the launches of a project, oldest first, including any still
+     * starting up.
+     *
+     * @param project A project
+     * @return A list
+     */
+    public List<Launch> history ( Project project ) {
+        synchronized ( history ) {
+            return Collections.unmodifiableList( new ArrayList<>( launches( project ) ) );
+        }
+    }
+
+    public void clear ( Project project ) {
+        synchronized ( history ) {
+            launches( project ).clear();
+        }
+        store( project );
+        supp.fireChange();
+    }
+
+    public void addChangeListener ( ChangeListener listener ) {
+        supp.addChangeListener( listener );
+    }
+
+    public void removeChangeListener ( ChangeListener listener ) {
+        supp.removeChangeListener( listener );
+    }
+
+    /**
+     * Get the median time to readiness of some launches by platform - or
+     * to first output, for launches which never said they were ready.
+     *
+     * @param launches Some launches
+     * @return Milliseconds by platform name
+     */
+    public static Map<String, Long> medianStartupMillis ( List<Launch> launches ) {
+        Map<String, List<Long>> byPlatform = new TreeMap<>();
+        for (Launch launch : launches) {
+            long millis = launch.startupMillis();
+            if (millis >= 0) {
+                List<Long> times = byPlatform.get( launch.platform() );
+                if (times == null) {
+                    byPlatform.put( launch.platform(), times = new ArrayList<>() );
+                }
+                times.add( millis );
+            }
+        }
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, List<Long>> e : byPlatform.entrySet()) {
+            List<Long> times = e.getValue();
+            Collections.sort( times );
+            result.put( e.getKey(), times.get( times.size() / 2 ) );
+        }
+        return result;
+    }
+
+    /**
+     * Drop a closed project's launches from memory;  finished ones are
+     * stored and come back if it is opened again.
+     */
+    void forget ( Project project ) {
+        synchronized ( history ) {
+            history.remove( project );
+        }
+    }
+
+    // Call with the lock held
+    private List<Launch> launches ( Project project ) {
+        List<Launch> result = history.get( project );
+        if (result == null) {
+            result = load( project );
+            history.put( project, result );
+        }
+        return result;
+    }
+
+    private static Preferences preferences ( Project project ) {
+        return ProjectUtils.getPreferences( project, StartupTimings.class, false );
+    }
+
+    private static List<Launch> load ( Project project ) {
+        List<Launch> result = new LinkedList<>();
+        String stored = preferences( project ).get( PREFS_KEY, null );
+        if (stored != null) {
+            for (String line : stored.split( "\n" )) { //NOI18N
+                Launch launch = Launch.parse( line );
+                if (launch != null) {
+                    result.add( launch );
+                }
+            }
+        }
+        return result;
+    }
+
+    private void store ( Project project ) {
+        StringBuilder sb = new StringBuilder();
+        synchronized ( history ) {
+            for (Launch launch : launches( project )) {
+                if (launch.isFinished()) {
+                    sb.append( launch.format() ).append( '\n' );
+                }
+            }
+        }
+        if (sb.length() == 0) {
+            preferences( project ).remove( PREFS_KEY );
+        } else {
+            preferences( project ).put( PREFS_KEY, sb.toString() );
+        }
+    }
+
+    /**
+     * Start timing a launch.
+     *
+     * @param project The project, or null for a file outside any project,
+     * which is timed but not remembered
+     * @param platform The name of the platform
+     * @param file The path of the file being run
+     * @param requestedAt When the launch was asked for, from {@link System#currentTimeMillis()}
+     * @param restart Whether this relaunches after sources changed
+     * @param ready A pattern which matches the line a process prints when
+     * it is ready, or null to look for a line mentioning the port it
+     * listens on
+     */
+    Recorder start ( Project project, String platform, String file, long requestedAt, boolean restart, Pattern ready ) {
+        Launch launch = new Launch( platform, file, requestedAt, restart, -1, -1, -1, false );
+        if (project != null) {
+            synchronized ( history ) {
+                List<Launch> launches = launches( project );
+                launches.add( launch );
+                while (launches.size() > HISTORY_SIZE) {
+                    launches.remove( 0 );
+                }
+            }
+            supp.fireChange();
+        }
+        return new Recorder( project, launch, ready );
+    }
+
+    private void update ( Project project, Launch old, Launch updated, boolean persist ) {
+        if (project == null) {
+            return;
+        }
+        synchronized ( history ) {
+            List<Launch> launches = launches( project );
+            int ix = launches.indexOf( old );
+            if (ix < 0) {
+                // Cleared or scrolled out of the history
+                return;
+            }
+            launches.set( ix, updated );
+        }
+        if (persist) {
+            store( project );
+        }
+        supp.fireChange();
+    }
+
+    /**
+     * Timestamps one launch as it starts up.
+     */
+    final class Recorder {
+        private final Project project;
+        private final Pattern ready;
+        private final long startNanos;
+        private Launch launch;
+
+        Recorder ( Project project, Launch launch, Pattern ready ) {
+            this.project = project;
+            this.launch = launch;
+            this.ready = ready;
+            // Only the start is in wall clock time
+            long sinceRequest = Math.max( 0, System.currentTimeMillis() - launch.requestedAt );
+            startNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos( sinceRequest );
+        }
+
+        private long elapsed () {
+            return TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - startNanos );
+        }
+
+        void spawned () {
+            Launch old;
+            Launch updated;
+            synchronized ( this ) {
+                if (launch.spawnMillis >= 0) {
+                    return;
+                }
+                old = launch;
+                launch = updated = old.with( elapsed(), -1, -1, false );
+            }
+            update( project, old, updated, false );
+        }
+
+        /**
+         * Called for each line of output.
+         */
+        void line ( String line ) {
+            Launch old;
+            Launch updated;
+            synchronized ( this ) {
+                old = launch;
+                if (old.readyMillis >= 0) {
+                    return;
+                }
+                long first = old.firstOutputMillis;
+                if (first < 0) {
+                    first = elapsed();
+                }
+                boolean isReady = ready == null
+                        ? !PortRelease.portsIn( Collections.singleton( line ) ).isEmpty()
+                        : ready.matcher( line ).find();
+                if (!isReady && first == old.firstOutputMillis) {
+                    return;
+                }
+                launch = updated = old.with( -1, first, isReady ? elapsed() : -1, isReady );
+            }
+            update( project, old, updated, updated.isFinished() );
+        }
+
+        /**
+         * Called when the process exits.
+         */
+        void exited () {
+            Launch old;
+            Launch updated;
+            synchronized ( this ) {
+                old = launch;
+                if (old.isFinished()) {
+                    return;
+                }
+                launch = updated = old.with( -1, -1, -1, true );
+            }
+            update( project, old, updated, true );
+        }
+
+        synchronized Launch launch () {
+            return launch;
+        }
+    }
+
+    /**
+     * Timings of one launch.  Times are milliseconds since the launch was
+     * requested, or -1 if it has not (or never) happened.
+     */
+    public static final class Launch {
+        private final String platform;
+        private final String file;
+        private final long requestedAt;
+        private final boolean restart;
+        private final long spawnMillis;
+        private final long firstOutputMillis;
+        private final long readyMillis;
+        private final boolean finished;
+
+        Launch ( String platform, String file, long requestedAt, boolean restart, long spawnMillis,
+                long firstOutputMillis, long readyMillis, boolean finished ) {
+            this.platform = platform;
+            this.file = file;
+            this.requestedAt = requestedAt;
+            this.restart = restart;
+            this.spawnMillis = spawnMillis;
+            this.firstOutputMillis = firstOutputMillis;
+            this.readyMillis = readyMillis;
+            this.finished = finished;
+        }
+
+        Launch with ( long spawn, long first, long ready, boolean finish ) {
+            return new Launch( platform, file, requestedAt, restart,
+                    spawn >= 0 ? spawn : spawnMillis,
+                    first >= 0 ? first : firstOutputMillis,
+                    ready >= 0 ? ready : readyMillis,
+                    finish || finished );
+        }
+
+        /**
+         * The name of the platform which ran it.
+         */
+        public String platform () {
+            return platform;
+        }
+
+        public String file () {
+            return file;
+        }
+
+        /**
+         * When the launch was requested, in milliseconds since the epoch.
+         */
+        public long requestedAt () {
+            return requestedAt;
+        }
+
+        /**
+         * Whether this was a relaunch after sources changed, in which case
+         * the times include stopping the old process.
+         */
+        public boolean isRestart () {
+            return restart;
+        }
+
+        public long spawnMillis () {
+            return spawnMillis;
+        }
+
+        public long firstOutputMillis () {
+            return firstOutputMillis;
+        }
+
+        public long readyMillis () {
+            return readyMillis;
+        }
+
+        /**
+         * The time to readiness if the process said it was ready, otherwise
+         * to its first output.
+         */
+        public long startupMillis () {
+            return readyMillis >= 0 ? readyMillis : firstOutputMillis;
+        }
+
+        /**
+         * Whether nothing more will be recorded - the process said it was
+         * ready or exited.
+         */
+        public boolean isFinished () {
+            return finished;
+        }
+
+        String format () {
+            return requestedAt + "\t" + spawnMillis + '\t' + firstOutputMillis + '\t' + readyMillis //NOI18N
+                    + '\t' + restart + '\t' + platform + '\t' + file;
+        }
+
+        static Launch parse ( String line ) {
+            String[] parts = line.split( "\t", 7 ); //NOI18N
+            if (parts.length != 7) {
+                return null;
+            }
+            try {
+                return new Launch( parts[5], parts[6], Long.parseLong( parts[0] ), Boolean.parseBoolean( parts[4] ),
+                        Long.parseLong( parts[1] ), Long.parseLong( parts[2] ), Long.parseLong( parts[3] ), true );
+            } catch ( NumberFormatException ex ) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString () {
+            return platform + " " + file + ": spawn " + spawnMillis + "ms, first output " //NOI18N
+                    + firstOutputMillis + "ms, ready " + readyMillis + "ms" //NOI18N
+                    + (restart ? " (restart)" : ""); //NOI18N
+        }
+    }
+}
@@ -18,6 +18,9 @@
  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
 package org.netbeans.modules.nodejs.api;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import org.openide.filesystems.FileSystem;
 import org.openide.modules.SpecificationVersion;
 import org.openide.util.Lookup;
@@ -33,8 +36,81 @@ import org.openide.util.Lookup;
  */
 public abstract class Stubs {
     public abstract FileSystem getStubs(SpecificationVersion ver);
-    
+
+    /**
+     * Get the symbols each built-in module exports, keyed by module name,
+     * for the same node version {@link #getStubs} would pick.  This is read
+     * from a precomputed index, so callers which only need names and
+     * signatures do not have to open or parse any stub files.
+     *
+     * @param ver The node version, or null for the newest available
+     * @return A map of module name to exported symbols, empty if there is
+     * no index
+     */
+    public Map<String, List<Symbol>> getSymbols(SpecificationVersion ver) {
+        return Collections.emptyMap();
+    }
+
     public static Stubs getDefault() {
         return Lookup.getDefault().lookup(Stubs.class);
     }
+
+    /**
+     * A symbol exported by a built-in module.
+     */
+    public static final class Symbol {
+        public enum Kind {
+            FUNCTION, CLASS, METHOD, OBJECT, VALUE
+        }
+        private final String name;
+        private final String owner;
+        private final Kind kind;
+        private final String signature;
+
+        public Symbol(String name, String owner, Kind kind, String signature) {
+            this.name = name;
+            this.owner = owner;
+            this.kind = kind;
+            this.signature = signature;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * The class a {@link Kind#METHOD} belongs to, or null for symbols the
+         * module exports directly.
+         */
+        public String owner() {
+            return owner;
+        }
+
+        public Kind kind() {
+            return kind;
+        }
+
+        /**
+         * The parameter list of functions, classes and methods, the value of
+         * constants, or the empty string.
+         */
+        public String signature() {
+            return signature;
+        }
+
+        @Override
+        public String toString() {
+            String prefix = owner == null ? name : owner + ".prototype." + name; //NOI18N
+            switch (kind) {
+                case FUNCTION:
+                case CLASS:
+                case METHOD:
+                    return prefix + '(' + signature + ')';
+                case VALUE:
+                    return prefix + " = " + signature; //NOI18N
+                default:
+                    return prefix;
+            }
+        }
+    }
 }
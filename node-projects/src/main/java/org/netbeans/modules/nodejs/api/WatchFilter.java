@@ -0,0 +1,246 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import org.netbeans.api.project.Project;
+import org.netbeans.modules.nodejs.NodeJSProjectFactory;
+import org.netbeans.modules.nodejs.NodeJSProjectProperties;
+import org.netbeans.modules.nodejs.json.ObjectMapperProvider;
+import static org.netbeans.modules.nodejs.json.ObjectMapperProvider.STRING_OBJECT_MAP;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ * Decides which changed files restart a watched project, the way nodemon
+ * does:  only files with a source extension, and nothing in hidden
+ * folders, node_modules, the usual output folders or matching the ignore
+ * patterns configured for the project - in its properties, nodemon.json
+ * or the <code>nodemonConfig</code> of its package.json.  Without this,
+ * a server which writes logs, databases or uploads into its own folder
+ * would restart itself forever.
+ *
+ * @author Tim Boudreau
+ */
+final class WatchFilter {
+    static final String[] DEFAULT_EXTENSIONS = {"cjs", "js", "json", "mjs", "ts"}; //NOI18N
+    /**
+     * Top level folders build tools write to;  not ignored if the file
+     * being run is in one.
+     */
+    static final String[] OUTPUT_FOLDERS = {"build", "coverage", "dist", "out"}; //NOI18N
+    private static final String NODEMON_JSON = "nodemon.json"; //NOI18N
+    private final Set<String> extensions;
+    private final Set<String> outputFolders;
+    private final List<Pattern> wholePath = new ArrayList<>();
+    private final List<Pattern> anySegment = new ArrayList<>();
+
+    /**
+     * Create a filter.
+     *
+     * @param extensions File extensions which cause a restart, without a
+     * leading dot
+     * @param ignore Glob patterns; patterns without a slash match a file or
+     * folder name anywhere, others (including ones starting with ./) a path
+     * relative to the project and anything beneath it
+     * @param mainFile The path of the file being run, relative to the
+     * project, or null
+     */
+    WatchFilter ( Collection<String> extensions, Collection<String> ignore, String mainFile ) {
+        this.extensions = new TreeSet<>( extensions );
+        outputFolders = new TreeSet<>( Arrays.asList( OUTPUT_FOLDERS ) );
+        if (mainFile != null && mainFile.indexOf( '/' ) > 0) {
+            outputFolders.remove( mainFile.substring( 0, mainFile.indexOf( '/' ) ) );
+        }
+        for (String pattern : ignore) {
+            pattern = pattern.trim();
+            // ./foo means foo in the project folder, not anywhere
+            boolean anchored = pattern.startsWith( "./" ) || pattern.startsWith( "/" ); //NOI18N
+            while (pattern.startsWith( "./" ) || pattern.startsWith( "/" )) { //NOI18N
+                pattern = pattern.substring( pattern.indexOf( '/' ) + 1 );
+            }
+            while (pattern.endsWith( "/" )) { //NOI18N
+                pattern = pattern.substring( 0, pattern.length() - 1 );
+            }
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            if (!anchored && pattern.indexOf( '/' ) < 0) {
+                anySegment.add( Pattern.compile( glob( pattern ) ) );
+            } else {
+                wholePath.add( Pattern.compile( glob( pattern ) + "(/.*)?" ) ); //NOI18N
+            }
+        }
+    }
+
+    /**
+     * Create the filter for a project, reading its configuration.
+     */
+    static WatchFilter forProject ( Project project, FileObject mainFile ) {
+        List<String> extensions = new ArrayList<>();
+        List<String> ignore = new ArrayList<>();
+        FileObject dir = project.getProjectDirectory();
+        NodeJSProjectProperties props = project.getLookup().lookup( NodeJSProjectProperties.class );
+        if (props != null) {
+            ignore.addAll( split( props.getWatchIgnore() ) );
+        }
+        FileObject nodemon = dir.getFileObject( NODEMON_JSON );
+        if (nodemon != null) {
+            readNodemonConfig( read( nodemon ), extensions, ignore );
+        } else {
+            FileObject pkg = dir.getFileObject( NodeJSProjectFactory.PACKAGE_JSON );
+            Object config = pkg == null ? null : read( pkg ).get( "nodemonConfig" ); //NOI18N
+            if (config instanceof Map<?, ?>) {
+                readNodemonConfig( (Map<?, ?>) config, extensions, ignore );
+            }
+        }
+        if (extensions.isEmpty()) {
+            extensions.addAll( Arrays.asList( DEFAULT_EXTENSIONS ) );
+        }
+        String main = mainFile == null ? null : FileUtil.getRelativePath( dir, mainFile );
+        return new WatchFilter( extensions, ignore, main );
+    }
+
+    private static Map<String, Object> read ( FileObject fo ) {
+        try (InputStream in = fo.getInputStream()) {
+            return ObjectMapperProvider.newObjectMapper().readValue( in, STRING_OBJECT_MAP );
+        } catch ( IOException ex ) {
+            Logger.getLogger( WatchFilter.class.getName() ).log( Level.FINE,
+                    "Could not read " + fo.getPath(), ex ); //NOI18N
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Read nodemon's <code>ext</code> ("js,json" or "js json") and
+     * <code>ignore</code> (a pattern or an array of them) settings.
+     */
+    static void readNodemonConfig ( Map<?, ?> config, Collection<String> extensions, Collection<String> ignore ) {
+        Object ext = config.get( "ext" ); //NOI18N
+        if (ext != null) {
+            for (String e : split( ext.toString() )) {
+                extensions.add( e.startsWith( "." ) ? e.substring( 1 ) : e ); //NOI18N
+            }
+        }
+        Object ign = config.get( "ignore" ); //NOI18N
+        if (ign instanceof Collection<?>) {
+            for (Object o : (Collection<?>) ign) {
+                if (o != null) {
+                    ignore.add( o.toString() );
+                }
+            }
+        } else if (ign != null) {
+            ignore.addAll( split( ign.toString() ) );
+        }
+    }
+
+    static List<String> split ( String list ) {
+        List<String> result = new ArrayList<>();
+        if (list != null) {
+            for (String item : list.split( "[,\\s]+" )) { //NOI18N
+                if (!item.isEmpty()) {
+                    result.add( item );
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Convert a glob to a regular expression:  <code>**</code> matches
+     * anything, <code>*</code> and <code>?</code> anything but a slash.
+     */
+    static String glob ( String pattern ) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt( i );
+            if (c == '*' && i + 1 < pattern.length() && pattern.charAt( i + 1 ) == '*') {
+                sb.append( ".*" ); //NOI18N
+                i++;
+                if (i + 1 < pattern.length() && pattern.charAt( i + 1 ) == '/') {
+                    // **/ also matches no folder at all
+                    sb.append( "/?" ); //NOI18N
+                    i++;
+                }
+            } else if (c == '*') {
+                sb.append( "[^/]*" ); //NOI18N
+            } else if (c == '?') {
+                sb.append( "[^/]" ); //NOI18N
+            } else {
+                sb.append( Pattern.quote( String.valueOf( c ) ) );
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Whether a change to a file should not restart the project.
+     *
+     * @param path The path relative to the project, or null for the
+     * project folder itself
+     */
+    boolean isIgnored ( String path ) {
+        if (path == null || path.isEmpty()) {
+            return true;
+        }
+        String[] parts = path.split( "/" ); //NOI18N
+        if (parts.length > 1 && outputFolders.contains( parts[0] )) {
+            return true;
+        }
+        for (String part : parts) {
+            if (part.startsWith( "." ) || NodeJSProjectFactory.NODE_MODULES_FOLDER.equals( part )) { //NOI18N
+                return true;
+            }
+            for (Pattern p : anySegment) {
+                if (p.matcher( part ).matches()) {
+                    return true;
+                }
+            }
+        }
+        String name = parts[parts.length - 1];
+        int dot = name.lastIndexOf( '.' );
+        if (dot < 0 || !extensions.contains( name.substring( dot + 1 ) )) {
+            return true;
+        }
+        for (Pattern p : wholePath) {
+            if (p.matcher( path ).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString () {
+        return "WatchFilter{" + extensions + ", ignoring " + outputFolders //NOI18N
+                + ", " + anySegment + ", " + wholePath + "}"; //NOI18N
+    }
+}
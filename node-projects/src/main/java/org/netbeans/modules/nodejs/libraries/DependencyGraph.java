@@ -0,0 +1,793 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.libraries;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.netbeans.modules.nodejs.NodeJSProjectFactory.NODE_MODULES_FOLDER;
+import static org.netbeans.modules.nodejs.NodeJSProjectFactory.PACKAGE_JSON;
+import static org.netbeans.modules.nodejs.NodeJSProjectFactory.PACKAGE_LOCK_JSON;
+import org.netbeans.modules.nodejs.json.ObjectMapperProvider;
+import org.netbeans.modules.nodejs.registry.FileChangeRegistry;
+import org.netbeans.modules.nodejs.registry.FileChangeRegistry.EventType;
+
+/**
+ * Graph of the packages installed in a project's <code>node_modules</code>
+ * (or, if it has not been installed, described by its
+ * <code>package-lock.json</code>), with edges resolved the way node's
+ * <code>require()</code> resolves them.  Call {@link #snapshot()} to get an
+ * immutable view which can answer questions such as the transitive closure
+ * of a package, which packages are installed at more than one version, and
+ * how much disk each subtree uses.
+ * <p/>
+ * Scanning is incremental:  results are cached per top-level package and
+ * only packages that file changes were reported under, or where the
+ * timestamp of any package folder, <code>package.json</code> or nested
+ * <code>node_modules</code> beneath them has changed, are re-read.
+ *
+ * @author Tim Boudreau
+ */
+public final class DependencyGraph {
+    private static final String NESTED = '/' + NODE_MODULES_FOLDER + '/';
+    private static final String[] NONE = new String[0];
+    private static final Logger LOG = Logger.getLogger( DependencyGraph.class.getName() );
+    private final File projectDir;
+    private final PackageTable table;
+    private final FileChangeRegistry registry;
+    private final Map<String, Subtree> subtrees = new HashMap<>();
+    private final Set<String> dirty = new HashSet<>();
+    private final ModulesObserver modulesObserver = new ModulesObserver();
+    private final RootObserver rootObserver = new RootObserver();
+    private boolean allDirty = true;
+    private boolean registered;
+    private Snapshot snapshot;
+
+    /**
+     * Create a graph.
+     *
+     * @param projectDir The project folder
+     * @param table The project's package table
+     * @param registry A registry to listen for changes on, or null to rely
+     * on timestamps and calls to {@link #invalidate(java.lang.String)}
+     */
+    public DependencyGraph ( File projectDir, PackageTable table, FileChangeRegistry registry ) {
+        this.projectDir = projectDir;
+        this.table = table;
+        this.registry = registry;
+    }
+
+    /**
+     * Mark the package containing a path as needing to be rescanned.
+     *
+     * @param path A path relative to <code>node_modules</code>, or null or
+     * the empty string to invalidate everything
+     */
+    public synchronized void invalidate ( String path ) {
+        snapshot = null;
+        if (path == null || path.isEmpty()) {
+            allDirty = true;
+        } else {
+            dirty.add( topLevelName( path ) );
+        }
+    }
+
+    /**
+     * Invalidate the snapshot without rescanning any packages, for when
+     * only the project's own package.json or lock file has changed.
+     */
+    synchronized void invalidateRoot () {
+        snapshot = null;
+    }
+
+    /**
+     * Get the current graph, rescanning whatever has changed since the last
+     * call.
+     */
+    public synchronized Snapshot snapshot () {
+        if (registry != null && !registered) {
+            registered = true;
+            registry.registerInterest( NODE_MODULES_FOLDER, modulesObserver );
+            registry.registerInterest( PACKAGE_JSON, rootObserver );
+            registry.registerInterest( PACKAGE_LOCK_JSON, rootObserver );
+        }
+        Snapshot result = snapshot;
+        if (result == null || result.stale()) {
+            snapshot = result = rebuild();
+        }
+        return result;
+    }
+
+    private Snapshot rebuild () {
+        ObjectMapper mapper = ObjectMapperProvider.newObjectMapper();
+        File modules = projectDir == null ? null : new File( projectDir, NODE_MODULES_FOLDER );
+        File pkg = projectDir == null ? null : new File( projectDir, PACKAGE_JSON );
+        RootInfo root = new RootInfo( pkg, mapper );
+        List<PackageRecord> records = new ArrayList<>();
+        boolean fromLockfile = false;
+        if (modules != null && modules.isDirectory()) {
+            if (allDirty) {
+                subtrees.clear();
+                allDirty = false;
+            }
+            Map<String, File> present = new TreeMap<>();
+            listPackages( modules, "", present );
+            subtrees.keySet().retainAll( present.keySet() );
+            for (Map.Entry<String, File> e : present.entrySet()) {
+                Subtree sub = subtrees.get( e.getKey() );
+                if (sub == null || dirty.contains( e.getKey() ) || !sub.isUpToDate( e.getValue() )) {
+                    sub = new Subtree( e.getValue(), e.getKey(), mapper );
+                    subtrees.put( e.getKey(), sub );
+                }
+                records.addAll( sub.records );
+            }
+            dirty.clear();
+        } else if (projectDir != null) {
+            subtrees.clear();
+            dirty.clear();
+            File lock = new File( projectDir, PACKAGE_LOCK_JSON );
+            if (lock.isFile()) {
+                try {
+                    for (LockfileReader.Entry e : LockfileReader.read( lock ).getEntries()) {
+                        records.add( new PackageRecord( e.getPath(), e.getName(), e.getVersion(),
+                                e.dependencies, e.optionalDependencies, -1 ) );
+                    }
+                    fromLockfile = true;
+                } catch ( IOException | RuntimeException ex ) {
+                    LOG.log( Level.INFO, "Could not read " + lock, ex ); //NOI18N
+                }
+            }
+        }
+        return new Snapshot( table, modules, records, root, fromLockfile );
+    }
+
+    static String topLevelName ( String path ) {
+        int ix = path.indexOf( '/' );
+        if (ix > 0 && path.charAt( 0 ) == '@') {
+            ix = path.indexOf( '/', ix + 1 );
+        }
+        return ix < 0 ? path : path.substring( 0, ix );
+    }
+
+    /**
+     * List the package folders in a node_modules folder, descending into
+     * <code>@scope</code> folders.
+     */
+    static void listPackages ( File modules, String prefix, Map<String, File> into ) {
+        File[] kids = modules.listFiles();
+        if (kids == null) {
+            return;
+        }
+        for (File kid : kids) {
+            String name = kid.getName();
+            if (name.charAt( 0 ) == '.' || !kid.isDirectory()) {
+                // .bin, .package-lock.json and friends
+                continue;
+            }
+            if (name.charAt( 0 ) == '@' && prefix.isEmpty()) {
+                listPackages( kid, name + '/', into );
+            } else {
+                into.put( prefix + name, kid );
+            }
+        }
+    }
+
+    static String nameFromPath ( String path ) {
+        int ix = path.lastIndexOf( NESTED );
+        return ix < 0 ? path : path.substring( ix + NESTED.length() );
+    }
+
+    private static String text ( JsonNode n, String key, String def ) {
+        JsonNode val = n == null ? null : n.get( key );
+        return val != null && val.isTextual() ? val.asText() : def;
+    }
+
+    private static String[] keys ( JsonNode n, String... objectNames ) {
+        List<String> result = null;
+        for (String objectName : objectNames) {
+            JsonNode obj = n == null ? null : n.get( objectName );
+            if (obj != null && obj.isObject() && obj.size() > 0) {
+                if (result == null) {
+                    result = new ArrayList<>( obj.size() );
+                }
+                for (Iterator<String> it = obj.fieldNames(); it.hasNext();) {
+                    result.add( it.next() );
+                }
+            }
+        }
+        return result == null ? NONE : result.toArray( new String[result.size()] );
+    }
+
+    private static long sizeOf ( File dir ) {
+        long result = 0;
+        Deque<File> stack = new ArrayDeque<>();
+        stack.push( dir );
+        while ( !stack.isEmpty() ) {
+            File[] kids = stack.pop().listFiles();
+            if (kids == null) {
+                continue;
+            }
+            for (File kid : kids) {
+                if (Files.isSymbolicLink( kid.toPath() )) {
+                    continue;
+                }
+                if (kid.isDirectory()) {
+                    if (!NODE_MODULES_FOLDER.equals( kid.getName() ) || kid.getParentFile() != dir) {
+                        stack.push( kid );
+                    }
+                } else {
+                    result += kid.length();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * One installed package, as read from disk or from a lock file.
+     */
+    static final class PackageRecord {
+        final String path;
+        final String name;
+        final String version;
+        final String[] dependencies;
+        final String[] optionalDependencies;
+        final long size;
+
+        PackageRecord ( String path, String name, String version, String[] dependencies, String[] optionalDependencies, long size ) {
+            this.path = path;
+            this.name = name;
+            this.version = version;
+            this.dependencies = dependencies;
+            this.optionalDependencies = optionalDependencies;
+            this.size = size;
+        }
+
+        @Override
+        public String toString () {
+            return path + " (" + name + '@' + version + ")"; //NOI18N
+        }
+    }
+
+    /**
+     * Cached scan of one top-level package and everything nested beneath
+     * it.
+     */
+    private static final class Subtree {
+        private final List<PackageRecord> records = new ArrayList<>( 4 );
+        // Every file whose timestamp changes when something beneath the
+        // package is installed, removed or updated, and the timestamps;
+        // 0 for files which did not exist
+        private final List<File> stamped = new ArrayList<>( 4 );
+        private long[] stamps = new long[8];
+
+        Subtree ( File dir, String path, ObjectMapper mapper ) {
+            scan( dir, path, mapper );
+        }
+
+        boolean isUpToDate ( File dir ) {
+            if (!dir.equals( stamped.get( 0 ) )) {
+                return false;
+            }
+            for (int i = 0; i < stamped.size(); i++) {
+                if (stamped.get( i ).lastModified() != stamps[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void stamp ( File file ) {
+            int ix = stamped.size();
+            if (ix == stamps.length) {
+                stamps = Arrays.copyOf( stamps, ix * 2 );
+            }
+            stamped.add( file );
+            stamps[ix] = file.lastModified();
+        }
+
+        private void scan ( File dir, String path, ObjectMapper mapper ) {
+            File pkg = new File( dir, PACKAGE_JSON );
+            File nested = new File( dir, NODE_MODULES_FOLDER );
+            stamp( dir );
+            stamp( pkg );
+            stamp( nested );
+            JsonNode n = null;
+            if (pkg.isFile()) {
+                try {
+                    n = mapper.readTree( pkg );
+                } catch ( IOException ex ) {
+                    LOG.log( Level.FINE, "Bad package.json " + pkg, ex ); //NOI18N
+                }
+            }
+            records.add( new PackageRecord( path, text( n, "name", nameFromPath( path ) ), //NOI18N
+                    text( n, "version", null ), keys( n, "dependencies" ), //NOI18N
+                    keys( n, "optionalDependencies", "peerDependencies" ), sizeOf( dir ) ) ); //NOI18N
+            if (nested.isDirectory() && !Files.isSymbolicLink( nested.toPath() )) {
+                Map<String, File> kids = new TreeMap<>();
+                listPackages( nested, "", kids );
+                for (Map.Entry<String, File> e : kids.entrySet()) {
+                    if (e.getKey().indexOf( '/' ) > 0) {
+                        // An @scope folder, which changes when packages
+                        // are added to or removed from the scope
+                        stamp( e.getValue().getParentFile() );
+                    }
+                    scan( e.getValue(), path + NESTED + e.getKey(), mapper );
+                }
+            }
+        }
+    }
+
+    private static final class RootInfo {
+        private final File file;
+        private final long modified;
+        private final String[] dependencies;
+        private final String[] optionalDependencies;
+
+        RootInfo ( File file, ObjectMapper mapper ) {
+            this.file = file;
+            JsonNode n = null;
+            if (file != null && file.isFile()) {
+                try {
+                    n = mapper.readTree( file );
+                } catch ( IOException ex ) {
+                    LOG.log( Level.INFO, "Bad package.json " + file, ex ); //NOI18N
+                }
+            }
+            modified = file == null ? 0 : file.lastModified();
+            dependencies = keys( n, "dependencies", "devDependencies" ); //NOI18N
+            optionalDependencies = keys( n, "optionalDependencies", "peerDependencies" ); //NOI18N
+        }
+
+        boolean stale () {
+            return file != null && file.lastModified() != modified;
+        }
+    }
+
+    private final class ModulesObserver implements FileChangeRegistry.FileObserver {
+
+        @Override
+        public void onEvent ( EventType type, String path ) {
+            // path is relative to node_modules, null for the folder itself
+            invalidate( path );
+        }
+    }
+
+    private final class RootObserver implements FileChangeRegistry.FileObserver {
+
+        @Override
+        public void onEvent ( EventType type, String path ) {
+            invalidateRoot();
+        }
+    }
+
+    /**
+     * Immutable view of the dependency graph at one point in time.  Packages
+     * are identified by their index, from 0 to <code>size() - 1</code>;
+     * indices are in depth-first order, so a package nested inside another
+     * always has a higher index than its parent.
+     */
+    public static final class Snapshot {
+        private final PackageTable table;
+        private final File modules;
+        private final RootInfo root;
+        private final boolean fromLockfile;
+        private final int[] identities;
+        private final int[] locations;
+        private final int[] parents;
+        private final long[] sizes;
+        private final int[] roots;
+        private final PackageGraph graph;
+        private final List<String> unresolved = new ArrayList<>();
+        private long[] installedSizes;
+        private Map<String, Integer> indexForLocation;
+        private Map<String, SortedSet<String>> duplicates;
+        private Set<String> topLevelNames;
+        private Set<String> declared;
+
+        Snapshot ( PackageTable table, File modules, List<PackageRecord> records, RootInfo root, boolean fromLockfile ) {
+            this.table = table;
+            this.modules = modules;
+            this.root = root;
+            this.fromLockfile = fromLockfile;
+            int size = records.size();
+            identities = new int[size];
+            locations = new int[size];
+            parents = new int[size];
+            sizes = new long[size];
+            graph = new PackageGraph( size );
+            Map<String, Integer> indexForPath = new HashMap<>( size * 2 );
+            // (containing package + 1) << 32 | folder name id -> index
+            Map<Long, Integer> children = new HashMap<>( size * 2 );
+            for (int i = 0; i < size; i++) {
+                PackageRecord rec = records.get( i );
+                identities[i] = table.identity( rec.name, rec.version );
+                locations[i] = table.locationId( new File( modules, rec.path ).getPath() );
+                sizes[i] = rec.size;
+                int ix = rec.path.lastIndexOf( NESTED );
+                Integer parent = ix < 0 ? null : indexForPath.get( rec.path.substring( 0, ix ) );
+                parents[i] = parent == null ? -1 : parent;
+                indexForPath.put( rec.path, i );
+                children.put( key( parents[i], table.nameId( nameFromPath( rec.path ) ) ), i );
+            }
+            for (int i = 0; i < size; i++) {
+                PackageRecord rec = records.get( i );
+                for (String dep : rec.dependencies) {
+                    int target = resolve( children, i, dep );
+                    if (target >= 0) {
+                        graph.addEdge( i, target );
+                    } else {
+                        unresolved.add( rec.path + " -> " + dep ); //NOI18N
+                    }
+                }
+                for (String dep : rec.optionalDependencies) {
+                    int target = resolve( children, i, dep );
+                    if (target >= 0) {
+                        graph.addEdge( i, target );
+                    }
+                }
+            }
+            int[] rootDeps = new int[root.dependencies.length + root.optionalDependencies.length];
+            int count = 0;
+            for (String dep : root.dependencies) {
+                int target = resolve( children, -1, dep );
+                if (target >= 0) {
+                    rootDeps[count++] = target;
+                } else {
+                    unresolved.add( dep );
+                }
+            }
+            for (String dep : root.optionalDependencies) {
+                int target = resolve( children, -1, dep );
+                if (target >= 0) {
+                    rootDeps[count++] = target;
+                }
+            }
+            roots = Arrays.copyOf( rootDeps, count );
+        }
+
+        private static long key ( int container, int nameId ) {
+            return ((long) (container + 1) << 32) | nameId;
+        }
+
+        /**
+         * Resolve a dependency the way node does, looking in the package's
+         * own node_modules, then each enclosing one up to the project's.
+         */
+        private int resolve ( Map<Long, Integer> children, int from, String dep ) {
+            int nameId = table.findName( dep );
+            if (nameId < 0) {
+                return -1;
+            }
+            for (int container = from;; container = parents[container]) {
+                Integer result = children.get( key( container, nameId ) );
+                if (result != null) {
+                    return result;
+                }
+                if (container < 0) {
+                    return -1;
+                }
+            }
+        }
+
+        boolean stale () {
+            return root.stale();
+        }
+
+        /**
+         * True if node_modules is absent and this snapshot was read from
+         * package-lock.json, in which case sizes are unknown.
+         */
+        public boolean isFromLockfile () {
+            return fromLockfile;
+        }
+
+        public int size () {
+            return identities.length;
+        }
+
+        public String name ( int ix ) {
+            return table.name( table.nameOf( identities[ix] ) );
+        }
+
+        public String version ( int ix ) {
+            return table.version( identities[ix] );
+        }
+
+        /**
+         * The {@link PackageTable} identity of <code>name@version</code> for
+         * a package.
+         */
+        public int identity ( int ix ) {
+            return identities[ix];
+        }
+
+        public File location ( int ix ) {
+            return new File( table.location( locations[ix] ) );
+        }
+
+        /**
+         * The package whose node_modules this one is installed in, or -1
+         * for top-level packages.
+         */
+        public int parent ( int ix ) {
+            return parents[ix];
+        }
+
+        /**
+         * Get the index of the package installed in a folder, or -1.  The
+         * folder may be canonical or relative to the project's path.
+         */
+        public int indexOf ( File location ) {
+            Map<String, Integer> result;
+            synchronized ( this ) {
+                if ((result = indexForLocation) == null) {
+                    result = new HashMap<>( locations.length * 2 );
+                    for (int i = 0; i < locations.length; i++) {
+                        result.put( table.location( locations[i] ), i );
+                    }
+                    indexForLocation = result;
+                }
+            }
+            String path = location.getPath();
+            Integer ix = result.get( path );
+            if (ix == null && modules != null) {
+                try {
+                    String canonical = modules.getCanonicalPath();
+                    if (!canonical.equals( modules.getPath() ) && path.startsWith( canonical + File.separatorChar )) {
+                        ix = result.get( modules.getPath() + path.substring( canonical.length() ) );
+                    }
+                } catch ( IOException ex ) {
+                    LOG.log( Level.FINE, null, ex );
+                }
+            }
+            return ix == null ? -1 : ix;
+        }
+
+        /**
+         * Get the index of a top level package by folder name, or -1.
+         */
+        public int topLevel ( String name ) {
+            File f = modules == null ? null : new File( modules, name );
+            for (int i = 0; f != null && i < locations.length; i++) {
+                if (parents[i] == -1 && table.location( locations[i] ).equals( f.getPath() )) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * The packages the project itself depends on.
+         */
+        public int[] roots () {
+            return roots.clone();
+        }
+
+        public int[] dependencies ( int ix ) {
+            return graph.dependencies( ix );
+        }
+
+        /**
+         * Required dependencies which could not be found, as
+         * <code>path -&gt; name</code> or, for the project's own, just the
+         * name.
+         */
+        public List<String> unresolved () {
+            return Collections.unmodifiableList( unresolved );
+        }
+
+        /**
+         * Get all packages reachable from the passed ones, including
+         * themselves.
+         */
+        public BitSet closure ( int... from ) {
+            BitSet result = new BitSet( size() );
+            int[] stack = new int[Math.max( 16, from.length )];
+            int top = 0;
+            for (int f : from) {
+                if (!result.get( f )) {
+                    result.set( f );
+                    stack[top++] = f;
+                }
+            }
+            while ( top > 0 ) {
+                int node = stack[--top];
+                for (int i = 0, max = graph.dependencyCount( node ); i < max; i++) {
+                    int dep = graph.dependency( node, i );
+                    if (!result.get( dep )) {
+                        result.set( dep );
+                        if (top == stack.length) {
+                            stack = Arrays.copyOf( stack, top * 2 );
+                        }
+                        stack[top++] = dep;
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Get the closure of the project's own dependencies - everything
+         * that is actually used;  packages not in it are extraneous.
+         */
+        public BitSet used () {
+            return closure( roots );
+        }
+
+        /**
+         * Bytes on disk of a package, excluding its nested node_modules, or
+         * -1 if unknown.
+         */
+        public long ownSize ( int ix ) {
+            return sizes[ix];
+        }
+
+        /**
+         * Bytes on disk of a package including everything installed in its
+         * nested node_modules.
+         */
+        public long installedSize ( int ix ) {
+            long[] result;
+            synchronized ( this ) {
+                if ((result = installedSizes) == null) {
+                    result = new long[sizes.length];
+                    // children always follow their parents, so one
+                    // backwards pass totals every subtree
+                    for (int i = sizes.length - 1; i >= 0; i--) {
+                        result[i] += Math.max( 0, sizes[i] );
+                        if (parents[i] >= 0) {
+                            result[parents[i]] += result[i];
+                        }
+                    }
+                    installedSizes = result;
+                }
+            }
+            return result[ix];
+        }
+
+        /**
+         * Bytes on disk of every distinct package reachable from the passed
+         * ones - what depending on them really costs.
+         */
+        public long closureSize ( int... from ) {
+            BitSet all = closure( from );
+            long result = 0;
+            for (int i = all.nextSetBit( 0 ); i >= 0; i = all.nextSetBit( i + 1 )) {
+                result += Math.max( 0, sizes[i] );
+            }
+            return result;
+        }
+
+        public long totalSize () {
+            long result = 0;
+            for (long sz : sizes) {
+                result += Math.max( 0, sz );
+            }
+            return result;
+        }
+
+        /**
+         * Get the indices of every installed copy of a package.
+         */
+        public int[] instancesOf ( String name ) {
+            int nameId = table.findName( name );
+            int[] result = new int[4];
+            int count = 0;
+            for (int i = 0; nameId >= 0 && i < identities.length; i++) {
+                if (table.nameOf( identities[i] ) == nameId) {
+                    if (count == result.length) {
+                        result = Arrays.copyOf( result, count * 2 );
+                    }
+                    result[count++] = i;
+                }
+            }
+            return Arrays.copyOf( result, count );
+        }
+
+        /**
+         * The names <code>require()</code> finds top-level packages by -
+         * their folders relative to node_modules, such as
+         * <code>express</code> or <code>@types/node</code>.
+         */
+        public synchronized Set<String> topLevelNames () {
+            if (topLevelNames != null) {
+                return topLevelNames;
+            }
+            Set<String> result = new TreeSet<>();
+            String prefix = modules == null ? null : modules.getPath() + File.separatorChar;
+            for (int i = 0; i < locations.length; i++) {
+                String location = table.location( locations[i] );
+                if (parents[i] == -1 && prefix != null && location.startsWith( prefix )) {
+                    result.add( location.substring( prefix.length() ).replace( File.separatorChar, '/' ) );
+                }
+            }
+            return topLevelNames = Collections.unmodifiableSet( result );
+        }
+
+        /**
+         * The names of every package the project's package.json depends on,
+         * in any dependency section, whether installed or not.
+         */
+        public synchronized Set<String> declared () {
+            if (declared == null) {
+                Set<String> result = new TreeSet<>( Arrays.asList( root.dependencies ) );
+                result.addAll( Arrays.asList( root.optionalDependencies ) );
+                declared = Collections.unmodifiableSet( result );
+            }
+            return declared;
+        }
+
+        /**
+         * Packages installed at more than one version, with the versions,
+         * sorted by name.
+         */
+        public synchronized Map<String, SortedSet<String>> duplicates () {
+            if (duplicates != null) {
+                return duplicates;
+            }
+            Map<Integer, SortedSet<String>> byName = new HashMap<>();
+            BitSet seen = new BitSet();
+            for (int i = 0; i < identities.length; i++) {
+                if (!seen.get( identities[i] )) {
+                    seen.set( identities[i] );
+                    Integer name = table.nameOf( identities[i] );
+                    SortedSet<String> versions = byName.get( name );
+                    if (versions == null) {
+                        byName.put( name, versions = new TreeSet<>() );
+                    }
+                    String version = table.version( identities[i] );
+                    versions.add( version == null ? "?" : version ); //NOI18N
+                }
+            }
+            Map<String, SortedSet<String>> result = new TreeMap<>();
+            for (Map.Entry<Integer, SortedSet<String>> e : byName.entrySet()) {
+                if (e.getValue().size() > 1) {
+                    result.put( table.name( e.getKey() ), Collections.unmodifiableSortedSet( e.getValue() ) );
+                }
+            }
+            return duplicates = Collections.unmodifiableMap( result );
+        }
+
+        @Override
+        public String toString () {
+            return "DependencyGraph.Snapshot{" + size() + " packages, " //NOI18N
+                    + graph.edgeCount() + " edges, " + roots.length + " roots}"; //NOI18N
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.libraries;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.netbeans.modules.nodejs.NodeJSProjectFactory.NODE_MODULES_FOLDER;
+import static org.netbeans.modules.nodejs.NodeJSProjectFactory.PACKAGE_JSON;
+
+/**
+ * Maintained set of the packages installed at the top level of a project's
+ * node_modules (including <code>@scope/name</code> packages) and their
+ * versions, checked against the version ranges the project declares.  The
+ * set is updated one package at a time from file change events, so asking
+ * whether anything is missing or at the wrong version is constant-time.
+ *
+ * @author Tim Boudreau
+ */
+public final class InstalledPackages {
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final String UNKNOWN_VERSION = ""; //NOI18N
+    private final File projectDir;
+    private final File modules;
+    // name -> installed version, or UNKNOWN_VERSION
+    private final Map<String, String> installed = new HashMap<>();
+    private final Map<String, SemverRange> declared = new HashMap<>();
+    private final Set<String> missing = new HashSet<>();
+    private final Map<String, String> mismatched = new HashMap<>();
+    private boolean scanned;
+
+    public InstalledPackages ( File projectDir ) {
+        this.projectDir = projectDir;
+        this.modules = new File( projectDir, NODE_MODULES_FOLDER );
+    }
+
+    /**
+     * Set the dependencies the project declares, as name to range.
+     */
+    public synchronized void setDeclared ( Map<String, ?> dependencies ) {
+        Set<String> affected = new HashSet<>( declared.keySet() );
+        declared.clear();
+        if (dependencies != null) {
+            for (Map.Entry<String, ?> e : dependencies.entrySet()) {
+                declared.put( e.getKey(), SemverRange.parse( e.getValue() == null ? null : e.getValue().toString() ) );
+            }
+        }
+        affected.addAll( declared.keySet() );
+        for (String name : affected) {
+            check( name );
+        }
+    }
+
+    public synchronized boolean isScanned () {
+        return scanned;
+    }
+
+    /**
+     * Forget everything installed and re-read node_modules - from the lock
+     * file if it is current, otherwise from each package.json.
+     */
+    public synchronized void rescan () {
+        installed.clear();
+        scanned = true;
+        LockfileReader.Lockfile lock = LockfileReader.forInstalled( projectDir );
+        if (lock != null && lock.isConsistentWith( modules )) {
+            for (LockfileReader.Entry e : lock.getEntries()) {
+                if (e.isTopLevel() && new File( modules, e.getPath() ).exists()) {
+                    installed.put( e.getPath(), e.getVersion() == null ? UNKNOWN_VERSION : e.getVersion() );
+                }
+            }
+        } else {
+            Map<String, File> present = new TreeMap<>();
+            DependencyGraph.listPackages( modules, "", present );
+            for (Map.Entry<String, File> e : present.entrySet()) {
+                installed.put( e.getKey(), readVersion( e.getValue() ) );
+            }
+        }
+        missing.clear();
+        mismatched.clear();
+        for (String name : declared.keySet()) {
+            check( name );
+        }
+    }
+
+    /**
+     * Update for a change to a file or folder.
+     *
+     * @param path The changed path relative to node_modules, or null if
+     * node_modules itself was created or deleted
+     */
+    public synchronized void changed ( String path ) {
+        if (path == null || path.isEmpty() || !scanned) {
+            rescan();
+            return;
+        }
+        String name = DependencyGraph.topLevelName( path );
+        if (name.charAt( 0 ) == '@' && name.indexOf( '/' ) < 0) {
+            rescanScope( name );
+            return;
+        }
+        String rest = path.length() > name.length() ? path.substring( name.length() + 1 ) : "";
+        // Files deep inside a package churn during installs;  only the
+        // folder and its package.json tell us anything new
+        if (rest.isEmpty() || PACKAGE_JSON.equals( rest ) || !installed.containsKey( name )) {
+            update( name );
+        }
+    }
+
+    private void rescanScope ( String scope ) {
+        for (Iterator<String> it = installed.keySet().iterator(); it.hasNext();) {
+            if (it.next().startsWith( scope + '/' )) {
+                it.remove();
+            }
+        }
+        File dir = new File( modules, scope );
+        File[] kids = dir.listFiles();
+        if (kids != null) {
+            for (File kid : kids) {
+                if (kid.isDirectory()) {
+                    installed.put( scope + '/' + kid.getName(), readVersion( kid ) );
+                }
+            }
+        }
+        for (String name : declared.keySet()) {
+            if (name.startsWith( scope + '/' )) {
+                check( name );
+            }
+        }
+    }
+
+    private void update ( String name ) {
+        File dir = new File( modules, name );
+        if (dir.isDirectory()) {
+            installed.put( name, readVersion( dir ) );
+        } else {
+            installed.remove( name );
+        }
+        check( name );
+    }
+
+    private void check ( String name ) {
+        SemverRange range = declared.get( name );
+        String version = installed.get( name );
+        if (range == null || version != null) {
+            missing.remove( name );
+        } else {
+            missing.add( name );
+        }
+        if (range != null && version != null && !version.isEmpty() && !range.matches( version )) {
+            mismatched.put( name, version );
+        } else {
+            mismatched.remove( name );
+        }
+    }
+
+    public synchronized boolean isInstalled ( String name ) {
+        return installed.containsKey( name );
+    }
+
+    /**
+     * Get the installed version of a package, or null if it is not
+     * installed or has no version.
+     */
+    public synchronized String installedVersion ( String name ) {
+        String result = installed.get( name );
+        return result == null || result.isEmpty() ? null : result;
+    }
+
+    public synchronized int installedCount () {
+        return installed.size();
+    }
+
+    public synchronized int missingCount () {
+        return missing.size();
+    }
+
+    public synchronized int mismatchedCount () {
+        return mismatched.size();
+    }
+
+    /**
+     * Declared dependencies which are not installed.
+     */
+    public synchronized Set<String> getMissing () {
+        return Collections.unmodifiableSet( new TreeSet<>( missing ) );
+    }
+
+    /**
+     * Declared dependencies installed at a version outside the declared
+     * range, with the version that is installed.
+     */
+    public synchronized Map<String, String> getMismatched () {
+        return Collections.unmodifiableMap( new TreeMap<>( mismatched ) );
+    }
+
+    /**
+     * Read the version from the package.json in a package folder.
+     *
+     * @return The version, or the empty string if it cannot be read
+     */
+    public static String readVersion ( File packageDir ) {
+        File pkg = new File( packageDir, PACKAGE_JSON );
+        if (!pkg.isFile()) {
+            return UNKNOWN_VERSION;
+        }
+        try (JsonParser p = FACTORY.createParser( pkg )) {
+            if (p.nextToken() == JsonToken.START_OBJECT) {
+                while ( p.nextToken() == JsonToken.FIELD_NAME ) {
+                    String field = p.getCurrentName();
+                    if (p.nextToken() == JsonToken.VALUE_STRING && "version".equals( field )) { //NOI18N
+                        return p.getText();
+                    }
+                    p.skipChildren();
+                }
+            }
+        } catch ( IOException ex ) {
+            // half-written during an install;  we will get another event
+            Logger.getLogger( InstalledPackages.class.getName() ).log( Level.FINE,
+                    "Could not read " + pkg, ex ); //NOI18N
+        }
+        return UNKNOWN_VERSION;
+    }
+
+    @Override
+    public synchronized String toString () {
+        return "InstalledPackages{" + installed.size() + " installed, " + missing.size() //NOI18N
+                + " missing, " + mismatched.size() + " mismatched}"; //NOI18N
+    }
+}
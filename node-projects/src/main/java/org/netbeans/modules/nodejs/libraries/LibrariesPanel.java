@@ -22,22 +22,24 @@ import java.awt.Component;
 import java.awt.EventQueue;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.io.IOException;
-import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import javax.swing.JLabel;
 import javax.swing.UIManager;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.Document;
 import org.netbeans.modules.nodejs.NodeJSProject;
-import org.netbeans.modules.nodejs.Npm;
 import org.netbeans.modules.nodejs.ui.UiUtil;
 import org.openide.awt.HtmlBrowser.URLDisplayer;
 import org.openide.util.Exceptions;
@@ -50,9 +52,7 @@ import org.openide.util.RequestProcessor;
  */
 public class LibrariesPanel extends javax.swing.JPanel implements Runnable, DocumentListener {
     private final RequestProcessor rp = new RequestProcessor( "Node.js search", 1, true, true );
-    private final RequestProcessor rp2 = new RequestProcessor( "npm output processor", 1, true, true );
     private final RequestProcessor.Task task;
-    private final RequestProcessor.Task outTask;
     private final String defaultText = NbBundle.getMessage( LibrariesPanel.class, "LibrariesPanel.searchField.text" );
 
     /**
@@ -63,7 +63,6 @@ public class LibrariesPanel extends javax.swing.JPanel implements Runnable, Docu
         initComponents();
         task = rp.create( this );
         searchField.getDocument().addDocumentListener( this );
-        outTask = rp2.create( new OutProcessor() );
         UiUtil.prepareComponents( this );
         statusLabel.setText( " " );
         progress.setVisible( false );
@@ -182,22 +181,25 @@ public class LibrariesPanel extends javax.swing.JPanel implements Runnable, Docu
     private javax.swing.JLabel searchLabel;
     private javax.swing.JLabel statusLabel;
     // End of variables declaration//GEN-END:variables
-    AtomicBoolean cancelled;
-    private final Object lock = new Object();
-    private InputStream currProcessIn;
+    private static final int MAX_RESULTS = 100;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicReference<CompletableFuture<Integer>> npmSearch = new AtomicReference<>();
+    private final List<SearchIndex.Entry> arrived = new ArrayList<>();
+    private int arrivedGeneration; // the generation of what is in arrived
+    private boolean flushPending;
 
     @Override
     public void run () {
-        Process cur;
-        synchronized ( lock ) {
-            cur = process;
-        }
-        if (cur != null) {
-            cur.destroy();
-            if (outProcessorThread != null) {
-                outProcessorThread.interrupt();
-            }
-        }
+        //Any edit to the search text bumps the generation, kills any npm
+        //search still running for older text, and schedules this on a
+        //background thread.  Results come from the local search index
+        //first, which answers in milliseconds;  if the index has not seen
+        //this query recently, npm is started to refresh it, and each package
+        //it reports is shown as soon as npm writes it.  When npm finishes,
+        //the index is asked again for the final, ranked list.  Anything
+        //published for a superseded generation is discarded on the event
+        //thread.
+        final int gen = generation.get();
         Document d = searchField.getDocument();
         final String[] txt = new String[1];
         d.render( new Runnable() {
@@ -206,179 +208,139 @@ public class LibrariesPanel extends javax.swing.JPanel implements Runnable, Docu
                 txt[0] = searchField.getText();
             }
         } );
-        if (txt[0].trim().equals( "" )) {
+        final String text = txt[0];
+        if (text.trim().equals( "" )) {
+            publish( gen, Collections.<SearchIndex.Entry>emptyList(), true );
             return;
         }
-        ProcessBuilder pb = new ProcessBuilder( Npm.getDefault().exe(), "search", txt[0] ); //NOI18N
-        try {
-            Process p = pb.start();
-            synchronized ( lock ) {
-                currProcessIn = p.getInputStream();
-                lock.notify();
+        final SearchIndex index = SearchIndex.getDefault();
+        boolean fresh = index.isFresh( text );
+        publish( gen, index.search( text, MAX_RESULTS ), fresh );
+        if (fresh || gen != generation.get()) {
+            return;
+        }
+        final CompletableFuture<Integer> search = index.refresh( text, new Consumer<SearchIndex.Entry>() {
+            @Override
+            public void accept ( SearchIndex.Entry e ) {
+                arrived( gen, e );
             }
-        } catch ( IOException ex ) {
-            Exceptions.printStackTrace( ex );
+        } );
+        CompletableFuture<Integer> old = npmSearch.getAndSet( search );
+        if (old != null) {
+            old.cancel( true );
+        }
+        search.handle( new BiFunction<Integer, Throwable, Void>() {
+            @Override
+            public Void apply ( Integer count, Throwable thrown ) {
+                npmSearch.compareAndSet( search, null );
+                if (!search.isCancelled() && gen == generation.get()) {
+                    publish( gen, index.search( text, MAX_RESULTS ), true );
+                }
+                return null;
+            }
+        } );
+        if (gen != generation.get()) {
+            //text changed while we were starting npm
+            search.cancel( true );
         }
     }
-    private volatile boolean visible = true;
-    private Process process;
 
-    @Override
-    public void addNotify () {
-        super.addNotify();
-        visible = true;
-        outTask.schedule( 300 );
+    private void cancelSearch () {
+        generation.incrementAndGet();
+        CompletableFuture<Integer> old = npmSearch.getAndSet( null );
+        if (old != null) {
+            old.cancel( true );
+        }
     }
 
     @Override
     public void removeNotify () {
-        visible = false;
-        Process proc;
-        synchronized ( lock ) {
-            currProcessIn = null;
-            lock.notify();
-            if (outProcessorThread != null) {
-                outProcessorThread.interrupt();
-            }
-            proc = process;
-            outTask.cancel();
-        }
+        cancelSearch();
+        task.cancel();
         super.removeNotify();
-        if (proc != null) {
-            process.destroy();
-        }
     }
-    private Thread outProcessorThread;
 
-    private class OutProcessor implements Runnable {
-        @Override
-        @SuppressWarnings ("CallToThreadYield")
-        public void run () {
-            //How this all works:
-            //Any edit to the search text schedules the LibrariesPanel runnable
-            //on a background thread.  That thread will start an external npm
-            //process and notify this thread that there is something to do.
-            //
-            //This thread loops continuously and grabs whatever process
-            //InputStream is available, and processes output line-by-line,
-            //publishing to the event thread whenever a line is complleted,
-            //until there is no more output or the process it has been slurping
-            //data from is destroyed, at which point it goes back to 
-            //lock.wait() until it is given something to do again.
-            //
-            //Hiding the UI will destroy any running processes and cause
-            //both background threads to exit.
-            synchronized ( lock ) {
-                outProcessorThread = Thread.currentThread();
+    private void arrived ( int gen, SearchIndex.Entry e ) {
+        synchronized ( arrived ) {
+            if (gen != arrivedGeneration) {
+                //superseded packages not flushed yet
+                arrived.clear();
+                arrivedGeneration = gen;
             }
-            try {
-                InputStream in = null;
-                final Process p = process;
-                main:
-                for (;;) {
-                    InputStream newIn;
-                    synchronized ( lock ) {
-                        newIn = currProcessIn;
-                    }
-                    if (newIn != null) {
-                        StringBuilder sb = new StringBuilder();
-                        try {
-                            for (;;) {
-                                int val = newIn.read();
-                                if (Thread.interrupted()) {
-                                    try {
-                                        in.close();
-                                    } finally {
-                                        break main;
-                                    }
-                                }
-                                if (val == -1) {
-                                    if (sb.length() > 0) {
-                                        publish( sb );
-                                        sb = new StringBuilder();
-                                        break;
-                                    }
-                                }
-                                char c = (char) val;
-                                if (c == '\n') { //NOI18N
-                                    publish( sb );
-                                    Thread.yield();
-                                    if (Thread.interrupted()) {
-                                        try {
-                                            in.close();
-                                        } finally {
-                                            break main;
-                                        }
-                                    }
-                                    sb = new StringBuilder();
-                                } else {
-                                    sb.append( c );
-                                }
-                            }
-                        } catch ( IOException ioe ) {
-                            Exceptions.printStackTrace( ioe );
-                        } finally {
-                            EventQueue.invokeLater( new Runnable() {
-                                @Override
-                                public void run () {
-                                    synchronized ( lock ) {
-                                        if (p != process) {
-                                            return;
-                                        }
-                                    }
-                                    statusLabel.setText( NbBundle.getMessage(
-                                            LibrariesPanel.class, "SEARCH_DONE",
-                                            inner.getComponentCount() ) ); //NOI18N
-                                    progress.setIndeterminate( false );
-                                    progress.setVisible( false );
-                                }
-                            } );
-                        }
+            arrived.add( e );
+            if (flushPending) {
+                return;
+            }
+            flushPending = true;
+        }
+        //Coalesce packages which arrive while the event thread is busy
+        EventQueue.invokeLater( new Runnable() {
+            @Override
+            public void run () {
+                //A flush scheduled for an older search may run after a new
+                //one started, so check what is being flushed, not what
+                //was there when this was scheduled
+                List<SearchIndex.Entry> found;
+                int gen;
+                synchronized ( arrived ) {
+                    found = new ArrayList<>( arrived );
+                    gen = arrivedGeneration;
+                    arrived.clear();
+                    flushPending = false;
+                }
+                if (found.isEmpty() || gen != generation.get()) {
+                    return;
+                }
+                Set<String> shown = new HashSet<>();
+                for (Component c : inner.getComponents()) {
+                    if (c instanceof OneLibraryPanel) {
+                        shown.add( ((OneLibraryPanel) c).getModuleName() );
                     }
-                    synchronized ( lock ) {
-                        try {
-                            lock.wait();
-                        } catch ( InterruptedException ex ) {
-                            Exceptions.printStackTrace( ex );
-                        }
-                        if (!visible) {
-                            return;
-                        }
+                }
+                for (SearchIndex.Entry e : found) {
+                    if (shown.add( e.getName() )) {
+                        inner.add( new OneLibraryPanel( e.getName(), e.getDescription(), e.getAuthor() ) );
                     }
                 }
-            } finally {
+                inner.invalidate();
+                inner.revalidate();
+                inner.repaint();
+                statusLabel.setText( NbBundle.getMessage( LibrariesPanel.class,
+                        "SEARCH_PROGRESS", inner.getComponentCount() ) ); //NOI18N
             }
-        }
+        } );
     }
-    public static final Pattern p = Pattern.compile(
-            "^(\\S+)\\s+(.*?)=(\\S+).*?$", Pattern.MULTILINE | Pattern.DOTALL ); //NOI18N
 
-    private void publish ( CharSequence seq ) {
-        final Matcher m = p.matcher( seq );
-        Process p;
-        synchronized ( lock ) {
-            p = this.process;
-        }
-        final Process pp = p;
-        if (m.lookingAt()) {
-            EventQueue.invokeLater( new Runnable() {
-                @Override
-                public void run () {
-                    synchronized ( lock ) {
-                        if (pp != process) {
-                            //stale runnable
-                            return;
-                        }
+    private void publish ( final int gen, final List<SearchIndex.Entry> found, final boolean done ) {
+        EventQueue.invokeLater( new Runnable() {
+            @Override
+            public void run () {
+                if (gen != generation.get()) {
+                    //stale runnable
+                    return;
+                }
+                Set<String> selected = new HashSet<>();
+                for (Component c : inner.getComponents()) {
+                    if (c instanceof OneLibraryPanel && ((OneLibraryPanel) c).isSelected()) {
+                        selected.add( ((OneLibraryPanel) c).getModuleName() );
+                    } else {
+                        inner.remove( c );
                     }
-                    inner.add( new OneLibraryPanel( m.group( 1 ), m.group( 2 ), m.group( 3 ) ) );
-                    inner.invalidate();
-                    inner.revalidate();
-                    inner.repaint();
-                    statusLabel.setText( NbBundle.getMessage( LibrariesPanel.class,
-                            "SEARCH_PROGRESS", inner.getComponentCount() ) ); //NOI18N
                 }
-            } );
-        }
+                for (SearchIndex.Entry e : found) {
+                    if (!selected.contains( e.getName() )) {
+                        inner.add( new OneLibraryPanel( e.getName(), e.getDescription(), e.getAuthor() ) );
+                    }
+                }
+                inner.invalidate();
+                inner.revalidate();
+                inner.repaint();
+                statusLabel.setText( NbBundle.getMessage( LibrariesPanel.class,
+                        done ? "SEARCH_DONE" : "SEARCH_PROGRESS", found.size() ) ); //NOI18N
+                progress.setIndeterminate( !done );
+                progress.setVisible( !done );
+            }
+        } );
     }
 
     @Override
@@ -396,6 +358,7 @@ public class LibrariesPanel extends javax.swing.JPanel implements Runnable, Docu
         inner.invalidate();
         inner.revalidate();
         inner.repaint();
+        cancelSearch();
         statusLabel.setText( NbBundle.getMessage( LibrariesPanel.class, "SEARCHING" ) );
         progress.setIndeterminate( true );
         progress.setVisible( true );
@@ -0,0 +1,416 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.libraries;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.netbeans.modules.nodejs.NodeJSProjectFactory.NODE_MODULES_FOLDER;
+import static org.netbeans.modules.nodejs.NodeJSProjectFactory.PACKAGE_LOCK_JSON;
+
+/**
+ * Streaming reader for npm lock files - <code>package-lock.json</code> and
+ * the <code>node_modules/.package-lock.json</code> npm 7 and later writes
+ * to describe what it actually installed.  Reading one file gives the whole
+ * resolved tree without listing thousands of folders;  only the fields we
+ * use are materialized and everything else (integrity hashes, resolved
+ * URLs, engines, ...) is skipped by the tokenizer, so very large lock files
+ * can be read in one pass with little garbage.
+ *
+ * @author Tim Boudreau
+ */
+public final class LockfileReader {
+    public static final String HIDDEN_LOCKFILE = ".package-lock.json"; //NOI18N
+    private static final String NESTED = '/' + NODE_MODULES_FOLDER + '/';
+    private static final String[] NONE = new String[0];
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final Map<String, SoftReference<Lockfile>> CACHE = new HashMap<>();
+
+    private LockfileReader () {
+        throw new AssertionError();
+    }
+
+    /**
+     * Get the lock file describing what is installed in a project's
+     * node_modules, if there is one which is at least as new as the
+     * node_modules folder - i.e. nothing has been added to or removed from
+     * it since the lock file was written.  Returns null if there is no
+     * usable lock file, in which case callers should scan the folder.
+     */
+    public static Lockfile forInstalled ( File projectDir ) {
+        File modules = new File( projectDir, NODE_MODULES_FOLDER );
+        long modulesModified = modules.lastModified();
+        if (modulesModified == 0L) {
+            return null;
+        }
+        for (File f : new File[]{new File( modules, HIDDEN_LOCKFILE ), new File( projectDir, PACKAGE_LOCK_JSON )}) {
+            if (f.lastModified() >= modulesModified && f.isFile()) {
+                try {
+                    return read( f );
+                } catch ( IOException | RuntimeException ex ) {
+                    Logger.getLogger( LockfileReader.class.getName() ).log( Level.INFO,
+                            "Unreadable lock file " + f, ex ); //NOI18N
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read a lock file, reusing the last result if it has not changed.
+     */
+    public static Lockfile read ( File file ) throws IOException {
+        String key = file.getPath();
+        long modified = file.lastModified();
+        long length = file.length();
+        synchronized ( CACHE ) {
+            SoftReference<Lockfile> ref = CACHE.get( key );
+            Lockfile result = ref == null ? null : ref.get();
+            if (result != null && result.modified == modified && result.length == length) {
+                return result;
+            }
+        }
+        Lockfile result;
+        try (InputStream in = new FileInputStream( file )) {
+            result = read( in, modified, length );
+        }
+        synchronized ( CACHE ) {
+            CACHE.put( key, new SoftReference<>( result ) );
+        }
+        return result;
+    }
+
+    static Lockfile read ( InputStream in, long modified, long length ) throws IOException {
+        List<Entry> packages = null;
+        List<Entry> legacy = null;
+        String[] rootDependencies = NONE;
+        int version = 1;
+        try (JsonParser p = FACTORY.createParser( in )) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException( "Not a JSON object" ); //NOI18N
+            }
+            while ( p.nextToken() == JsonToken.FIELD_NAME ) {
+                String field = p.getCurrentName();
+                JsonToken tok = p.nextToken();
+                if ("lockfileVersion".equals( field ) && tok == JsonToken.VALUE_NUMBER_INT) { //NOI18N
+                    version = p.getIntValue();
+                } else if ("packages".equals( field ) && tok == JsonToken.START_OBJECT) { //NOI18N
+                    packages = new ArrayList<>( 256 );
+                    rootDependencies = readPackages( p, packages );
+                } else if ("dependencies".equals( field ) && tok == JsonToken.START_OBJECT && packages == null) { //NOI18N
+                    legacy = new ArrayList<>( 256 );
+                    readLegacy( p, "", legacy );
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        List<Entry> entries = packages != null ? packages : legacy != null ? legacy : Collections.<Entry>emptyList();
+        return new Lockfile( version, entries, rootDependencies, modified, length );
+    }
+
+    /**
+     * Read the flat "packages" object of lockfileVersion 2 and 3, returning
+     * the dependencies of the root package.
+     */
+    private static String[] readPackages ( JsonParser p, List<Entry> into ) throws IOException {
+        String prefix = NODE_MODULES_FOLDER + '/';
+        String[] root = NONE;
+        while ( p.nextToken() == JsonToken.FIELD_NAME ) {
+            String path = p.getCurrentName();
+            p.nextToken();
+            if (path.startsWith( prefix )) {
+                into.add( readEntry( p, path.substring( prefix.length() ), false ) );
+            } else if (path.isEmpty()) {
+                Entry rootEntry = readEntry( p, path, false );
+                List<String> all = new ArrayList<>( rootEntry.dependencies.length + rootEntry.optionalDependencies.length );
+                Collections.addAll( all, rootEntry.dependencies );
+                Collections.addAll( all, rootEntry.optionalDependencies );
+                root = all.toArray( new String[all.size()] );
+            } else {
+                // workspace folders outside node_modules
+                p.skipChildren();
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Read the nested "dependencies" objects of lockfileVersion 1.
+     */
+    private static void readLegacy ( JsonParser p, String prefix, List<Entry> into ) throws IOException {
+        while ( p.nextToken() == JsonToken.FIELD_NAME ) {
+            String path = prefix + p.getCurrentName();
+            p.nextToken();
+            readEntry( p, path, true, into );
+        }
+    }
+
+    private static Entry readEntry ( JsonParser p, String path, boolean legacy ) throws IOException {
+        List<Entry> holder = new ArrayList<>( 1 );
+        readEntry( p, path, legacy, holder );
+        return holder.get( 0 );
+    }
+
+    private static void readEntry ( JsonParser p, String path, boolean legacy, List<Entry> into ) throws IOException {
+        if (p.getCurrentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            into.add( new Entry( path, null, null, NONE, NONE, 0 ) );
+            return;
+        }
+        String name = null;
+        String version = null;
+        String[] deps = NONE;
+        List<String> optional = null;
+        int flags = 0;
+        int index = into.size();
+        into.add( null );
+        while ( p.nextToken() == JsonToken.FIELD_NAME ) {
+            String field = p.getCurrentName();
+            JsonToken tok = p.nextToken();
+            switch ( field ) {
+                case "name": //NOI18N
+                    name = tok == JsonToken.VALUE_STRING ? p.getText() : null;
+                    break;
+                case "version": //NOI18N
+                    version = tok == JsonToken.VALUE_STRING ? p.getText() : null;
+                    break;
+                case "requires": //NOI18N
+                    if (legacy) {
+                        deps = readKeys( p );
+                    } else {
+                        p.skipChildren();
+                    }
+                    break;
+                case "dependencies": //NOI18N
+                    if (legacy) {
+                        if (tok == JsonToken.START_OBJECT) {
+                            readLegacy( p, path + NESTED, into );
+                        }
+                    } else {
+                        deps = readKeys( p );
+                    }
+                    break;
+                case "optionalDependencies": //NOI18N
+                case "peerDependencies": //NOI18N
+                    String[] keys = readKeys( p );
+                    if (keys.length > 0) {
+                        if (optional == null) {
+                            optional = new ArrayList<>( keys.length );
+                        }
+                        Collections.addAll( optional, keys );
+                    }
+                    break;
+                case "dev": //NOI18N
+                    flags |= tok == JsonToken.VALUE_TRUE ? Entry.DEV : 0;
+                    break;
+                case "optional": //NOI18N
+                case "devOptional": //NOI18N
+                    flags |= tok == JsonToken.VALUE_TRUE ? Entry.OPTIONAL : 0;
+                    break;
+                case "link": //NOI18N
+                    flags |= tok == JsonToken.VALUE_TRUE ? Entry.LINK : 0;
+                    break;
+                default:
+                    p.skipChildren();
+            }
+        }
+        into.set( index, new Entry( path, name, version, deps,
+                optional == null ? NONE : optional.toArray( new String[optional.size()] ), flags ) );
+    }
+
+    private static String[] readKeys ( JsonParser p ) throws IOException {
+        if (p.getCurrentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return NONE;
+        }
+        List<String> result = null;
+        while ( p.nextToken() == JsonToken.FIELD_NAME ) {
+            if (result == null) {
+                result = new ArrayList<>( 8 );
+            }
+            result.add( p.getCurrentName() );
+            p.nextToken();
+            p.skipChildren();
+        }
+        return result == null ? NONE : result.toArray( new String[result.size()] );
+    }
+
+    /**
+     * The contents of a lock file.
+     */
+    public static final class Lockfile {
+        private final int version;
+        private final List<Entry> entries;
+        private final String[] rootDependencies;
+        private final long modified;
+        private final long length;
+
+        Lockfile ( int version, List<Entry> entries, String[] rootDependencies, long modified, long length ) {
+            this.version = version;
+            this.entries = Collections.unmodifiableList( entries );
+            this.rootDependencies = rootDependencies;
+            this.modified = modified;
+            this.length = length;
+        }
+
+        public int getLockfileVersion () {
+            return version;
+        }
+
+        /**
+         * Installed packages, parents before the packages nested in them.
+         */
+        public List<Entry> getEntries () {
+            return entries;
+        }
+
+        /**
+         * Dependencies declared by the project itself, if the lock file
+         * records them (version 2 and later).
+         */
+        public String[] getRootDependencies () {
+            return rootDependencies.clone();
+        }
+
+        /**
+         * Names of the packages installed directly in node_modules.
+         */
+        public Set<String> getTopLevelNames () {
+            Set<String> result = new LinkedHashSet<>( entries.size() );
+            for (Entry e : entries) {
+                if (e.isTopLevel()) {
+                    result.add( e.getPath() );
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Compare the top level of node_modules with this lock file, with a
+         * single directory listing (plus one per <code>@scope</code>).
+         * Optional packages which were not installed (e.g. platform-specific
+         * binaries) are not considered drift.
+         */
+        public boolean isConsistentWith ( File nodeModules ) {
+            Map<String, File> onDisk = new TreeMap<>();
+            DependencyGraph.listPackages( nodeModules, "", onDisk );
+            int found = 0;
+            for (Entry e : entries) {
+                if (e.isTopLevel()) {
+                    if (onDisk.containsKey( e.getPath() )) {
+                        found++;
+                    } else if (!e.isOptional()) {
+                        return false;
+                    }
+                }
+            }
+            return found == onDisk.size();
+        }
+
+        @Override
+        public String toString () {
+            return "Lockfile{v" + version + ", " + entries.size() + " packages}"; //NOI18N
+        }
+    }
+
+    /**
+     * One installed package in a lock file.
+     */
+    public static final class Entry {
+        static final int DEV = 1;
+        static final int OPTIONAL = 2;
+        static final int LINK = 4;
+        private final String path;
+        private final String name;
+        private final String version;
+        final String[] dependencies;
+        final String[] optionalDependencies;
+        private final int flags;
+
+        Entry ( String path, String name, String version, String[] dependencies, String[] optionalDependencies, int flags ) {
+            this.path = path;
+            this.name = name;
+            this.version = version;
+            this.dependencies = dependencies;
+            this.optionalDependencies = optionalDependencies;
+            this.flags = flags;
+        }
+
+        /**
+         * Path relative to the project's node_modules, e.g.
+         * <code>a/node_modules/@scope/b</code>.
+         */
+        public String getPath () {
+            return path;
+        }
+
+        /**
+         * The package name - normally the last path component, but
+         * different for aliased packages.
+         */
+        public String getName () {
+            return name == null ? DependencyGraph.nameFromPath( path ) : name;
+        }
+
+        public String getVersion () {
+            return version;
+        }
+
+        public String[] getDependencies () {
+            return dependencies.clone();
+        }
+
+        public boolean isTopLevel () {
+            return !path.contains( NESTED );
+        }
+
+        public boolean isDev () {
+            return (flags & DEV) != 0;
+        }
+
+        public boolean isOptional () {
+            return (flags & OPTIONAL) != 0;
+        }
+
+        public boolean isLink () {
+            return (flags & LINK) != 0;
+        }
+
+        @Override
+        public String toString () {
+            return path + '@' + version;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.libraries;
+
+import java.util.Arrays;
+
+/**
+ * Directed graph over the int ids handed out by a {@link PackageTable},
+ * stored as one primitive adjacency array per node rather than as
+ * collections of boxed keys.
+ * <p/>
+ * Not thread-safe; build it on one thread and publish it safely, or
+ * confine it to one.
+ *
+ * @author Tim Boudreau
+ */
+public final class PackageGraph {
+    private static final int[] EMPTY = new int[0];
+    private int[][] edges;
+    private int[] counts;
+    private int edgeCount;
+
+    public PackageGraph () {
+        this( 16 );
+    }
+
+    public PackageGraph ( int expectedNodes ) {
+        int size = Math.max( 4, expectedNodes );
+        edges = new int[size][];
+        counts = new int[size];
+    }
+
+    /**
+     * Add an edge, returning false if it was already present.
+     */
+    public boolean addEdge ( int from, int to ) {
+        if (from < 0 || to < 0) {
+            throw new IllegalArgumentException( "Negative id " + from + " -> " + to ); //NOI18N
+        }
+        ensureCapacity( Math.max( from, to ) + 1 );
+        int[] targets = edges[from];
+        int count = counts[from];
+        if (targets == null) {
+            targets = edges[from] = new int[4];
+        } else {
+            for (int i = 0; i < count; i++) {
+                if (targets[i] == to) {
+                    return false;
+                }
+            }
+            if (count == targets.length) {
+                targets = edges[from] = Arrays.copyOf( targets, count * 2 );
+            }
+        }
+        targets[count] = to;
+        counts[from]++;
+        edgeCount++;
+        return true;
+    }
+
+    public boolean hasEdge ( int from, int to ) {
+        if (from < 0 || from >= edges.length || edges[from] == null) {
+            return false;
+        }
+        int[] targets = edges[from];
+        for (int i = 0; i < counts[from]; i++) {
+            if (targets[i] == to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean removeEdge ( int from, int to ) {
+        if (from < 0 || from >= edges.length || edges[from] == null) {
+            return false;
+        }
+        int[] targets = edges[from];
+        int count = counts[from];
+        for (int i = 0; i < count; i++) {
+            if (targets[i] == to) {
+                System.arraycopy( targets, i + 1, targets, i, count - i - 1 );
+                counts[from]--;
+                edgeCount--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove all outbound edges of a node.
+     */
+    public void clear ( int node ) {
+        if (node >= 0 && node < edges.length && edges[node] != null) {
+            edgeCount -= counts[node];
+            counts[node] = 0;
+            edges[node] = null;
+        }
+    }
+
+    /**
+     * Get a copy of the direct dependencies of a node.
+     */
+    public int[] dependencies ( int node ) {
+        if (node < 0 || node >= edges.length || edges[node] == null) {
+            return EMPTY;
+        }
+        return Arrays.copyOf( edges[node], counts[node] );
+    }
+
+    /**
+     * Get the <i>index</i>th direct dependency of a node, for iterating
+     * without copying.
+     */
+    public int dependency ( int node, int index ) {
+        if (index < 0 || index >= dependencyCount( node )) {
+            throw new IndexOutOfBoundsException( node + ": " + index ); //NOI18N
+        }
+        return edges[node][index];
+    }
+
+    public int dependencyCount ( int node ) {
+        return node < 0 || node >= counts.length ? 0 : counts[node];
+    }
+
+    /**
+     * Visit the direct dependencies of a node without copying them.
+     */
+    public void forEachDependency ( int node, IntVisitor visitor ) {
+        if (node < 0 || node >= edges.length || edges[node] == null) {
+            return;
+        }
+        int[] targets = edges[node];
+        for (int i = 0; i < counts[node]; i++) {
+            visitor.visit( targets[i] );
+        }
+    }
+
+    public int edgeCount () {
+        return edgeCount;
+    }
+
+    /**
+     * One greater than the highest node id this graph has space for.
+     */
+    public int capacity () {
+        return edges.length;
+    }
+
+    private void ensureCapacity ( int size ) {
+        if (size > edges.length) {
+            int nue = Math.max( size, edges.length * 2 );
+            edges = Arrays.copyOf( edges, nue );
+            counts = Arrays.copyOf( counts, nue );
+        }
+    }
+
+    @Override
+    public String toString () {
+        return "PackageGraph{" + edgeCount + " edges}"; //NOI18N
+    }
+
+    public interface IntVisitor {
+
+        void visit ( int node );
+    }
+}
@@ -0,0 +1,246 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.libraries;
+
+/**
+ * Interning table for the identities that make up a project's library
+ * graph - package names, versions, <code>name@version</code> pairs and
+ * canonical folder locations each get a dense <code>int</code> id, so that
+ * keys and graph nodes can be compared and hashed with integer operations,
+ * and de-duplicated using arrays or bit sets indexed by id.
+ * <p/>
+ * Ids are never reused for the lifetime of a table; there is one per
+ * project, in its lookup.
+ *
+ * @author Tim Boudreau
+ */
+public final class PackageTable {
+    private final Interner names = new Interner();
+    private final Interner versions = new Interner();
+    private final Interner locations = new Interner();
+    // identity id -> (nameId << 32 | versionId)
+    private long[] identities = new long[32];
+    // open-addressed; holds identity id + 1, 0 for empty
+    private int[] identitySlots = new int[64];
+    private int identityCount;
+
+    /**
+     * Get the id for a package name, assigning one if necessary.
+     */
+    public synchronized int nameId ( String name ) {
+        return names.intern( name );
+    }
+
+    /**
+     * Get the id for a package name, or -1 if it has never been interned.
+     */
+    public synchronized int findName ( String name ) {
+        return names.indexOf( name );
+    }
+
+    public synchronized String name ( int nameId ) {
+        return names.get( nameId );
+    }
+
+    public synchronized int nameCount () {
+        return names.size();
+    }
+
+    /**
+     * Get the id for a <code>name@version</code> pair, assigning one if
+     * necessary.  A null version is treated as the empty string.
+     */
+    public synchronized int identity ( String name, String version ) {
+        long key = pack( names.intern( name ), versions.intern( version == null ? "" : version ) );
+        int mask = identitySlots.length - 1;
+        for (int slot = mix( key ) & mask;; slot = (slot + 1) & mask) {
+            int val = identitySlots[slot];
+            if (val == 0) {
+                int id = identityCount++;
+                if (id == identities.length) {
+                    long[] nue = new long[identities.length * 2];
+                    System.arraycopy( identities, 0, nue, 0, id );
+                    identities = nue;
+                }
+                identities[id] = key;
+                identitySlots[slot] = id + 1;
+                if (identityCount * 2 >= identitySlots.length) {
+                    rehashIdentities();
+                }
+                return id;
+            } else if (identities[val - 1] == key) {
+                return val - 1;
+            }
+        }
+    }
+
+    /**
+     * Get the name id of a <code>name@version</code> identity.
+     */
+    public synchronized int nameOf ( int identity ) {
+        checkIdentity( identity );
+        return (int) (identities[identity] >>> 32);
+    }
+
+    /**
+     * Get the version of an identity, or null if it was interned without one.
+     */
+    public synchronized String version ( int identity ) {
+        checkIdentity( identity );
+        String result = versions.get( (int) identities[identity] );
+        return result.isEmpty() ? null : result;
+    }
+
+    public synchronized int identityCount () {
+        return identityCount;
+    }
+
+    /**
+     * Get the id for a canonical folder path, assigning one if necessary.
+     */
+    public synchronized int locationId ( String path ) {
+        return locations.intern( path );
+    }
+
+    public synchronized String location ( int locationId ) {
+        return locations.get( locationId );
+    }
+
+    public synchronized int locationCount () {
+        return locations.size();
+    }
+
+    public String toString ( int identity ) {
+        String version = version( identity );
+        String name = name( nameOf( identity ) );
+        return version == null ? name : name + '@' + version;
+    }
+
+    @Override
+    public synchronized String toString () {
+        return "PackageTable{" + names.size() + " names, " + identityCount //NOI18N
+                + " identities, " + locations.size() + " locations}"; //NOI18N
+    }
+
+    private void checkIdentity ( int identity ) {
+        if (identity < 0 || identity >= identityCount) {
+            throw new IllegalArgumentException( "No such identity " + identity ); //NOI18N
+        }
+    }
+
+    private void rehashIdentities () {
+        int[] nue = new int[identitySlots.length * 2];
+        int mask = nue.length - 1;
+        for (int id = 0; id < identityCount; id++) {
+            int slot = mix( identities[id] ) & mask;
+            while ( nue[slot] != 0 ) {
+                slot = (slot + 1) & mask;
+            }
+            nue[slot] = id + 1;
+        }
+        identitySlots = nue;
+    }
+
+    private static long pack ( int nameId, int versionId ) {
+        return ((long) nameId << 32) | (versionId & 0xFFFFFFFFL);
+    }
+
+    static int mix ( long val ) {
+        val ^= (val >>> 33);
+        val *= 0xFF51AFD7ED558CCDL;
+        val ^= (val >>> 33);
+        return (int) val;
+    }
+
+    /**
+     * Maps strings to dense ids with an open-addressed table of ints, so
+     * lookups do not box.
+     */
+    static final class Interner {
+        private String[] values = new String[32];
+        // open-addressed; holds id + 1, 0 for empty
+        private int[] slots = new int[64];
+        private int size;
+
+        int intern ( String s ) {
+            if (s == null) {
+                throw new NullPointerException( "Null string" ); //NOI18N
+            }
+            int mask = slots.length - 1;
+            for (int slot = mix( s.hashCode() ) & mask;; slot = (slot + 1) & mask) {
+                int val = slots[slot];
+                if (val == 0) {
+                    int id = size++;
+                    if (id == values.length) {
+                        String[] nue = new String[values.length * 2];
+                        System.arraycopy( values, 0, nue, 0, id );
+                        values = nue;
+                    }
+                    values[id] = s;
+                    slots[slot] = id + 1;
+                    if (size * 2 >= slots.length) {
+                        rehash();
+                    }
+                    return id;
+                } else if (values[val - 1].equals( s )) {
+                    return val - 1;
+                }
+            }
+        }
+
+        int indexOf ( String s ) {
+            if (s == null) {
+                return -1;
+            }
+            int mask = slots.length - 1;
+            for (int slot = mix( s.hashCode() ) & mask;; slot = (slot + 1) & mask) {
+                int val = slots[slot];
+                if (val == 0) {
+                    return -1;
+                } else if (values[val - 1].equals( s )) {
+                    return val - 1;
+                }
+            }
+        }
+
+        String get ( int id ) {
+            if (id < 0 || id >= size) {
+                throw new IllegalArgumentException( "No such id " + id ); //NOI18N
+            }
+            return values[id];
+        }
+
+        int size () {
+            return size;
+        }
+
+        private void rehash () {
+            int[] nue = new int[slots.length * 2];
+            int mask = nue.length - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = mix( values[id].hashCode() ) & mask;
+                while ( nue[slot] != 0 ) {
+                    slot = (slot + 1) & mask;
+                }
+                nue[slot] = id + 1;
+            }
+            slots = nue;
+        }
+    }
+}
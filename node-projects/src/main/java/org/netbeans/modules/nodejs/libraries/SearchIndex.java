@@ -0,0 +1,825 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.libraries;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.netbeans.modules.nodejs.AsyncProcess;
+import org.netbeans.modules.nodejs.Npm;
+import org.netbeans.modules.nodejs.ProcessService;
+import org.netbeans.modules.nodejs.json.ObjectMapperProvider;
+import org.openide.modules.Places;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Local index of npm registry metadata - package names, descriptions,
+ * authors and keywords - which can answer library searches in-process in
+ * milliseconds.  The index is kept in the IDE's cache directory and is fed
+ * by the results of <code>npm search --json</code> (so every search the
+ * user runs enriches it) and, if present, by a registry dump file: either
+ * one named by the <code>nodejs.npm.registry.dump</code> system property,
+ * or the <code>-/all</code> cache old versions of npm kept.
+ * <p/>
+ * Searching matches each word of the query against the start of words in
+ * names, keywords and descriptions;  exact and prefix matches on the
+ * package name rank first.
+ *
+ * @author Tim Boudreau
+ */
+public final class SearchIndex {
+    public static final String DUMP_PROPERTY = "nodejs.npm.registry.dump"; //NOI18N
+    private static final String CACHE_PATH = "nodejs/npm-search.idx"; //NOI18N
+    private static final int MAGIC = 0x4E504D53;
+    private static final int FORMAT = 1;
+    private static final int MAX_FIELD = 1024;
+    private static final int MAX_OVERLAY = 4096;
+    private static final long QUERY_FRESH_MILLIS = TimeUnit.DAYS.toMillis( 1 );
+    private static final long DUMP_FRESH_MILLIS = TimeUnit.DAYS.toMillis( 7 );
+    private static final long REFRESH_TIMEOUT_MILLIS = 60000;
+    private static final Logger LOG = Logger.getLogger( SearchIndex.class.getName() );
+    private static final RequestProcessor RP = new RequestProcessor( "npm search index", 1 ); //NOI18N
+    private static final String[] NONE = new String[0];
+    private static SearchIndex instance;
+    private final File file;
+    // Immutable base, sorted by key, with an inverted index of word -> entries
+    private Entry[] entries = new Entry[0];
+    private String[] words = NONE;
+    private int[][] postings = new int[0][];
+    // Recent additions, searched linearly until folded into the base
+    private final Map<String, Entry> overlay = new HashMap<>();
+    private final Map<String, Long> refreshed = new HashMap<>();
+    private long dumpTime;
+    private boolean loaded;
+    private boolean dirty;
+
+    SearchIndex ( File file ) {
+        this.file = file;
+    }
+
+    public static synchronized SearchIndex getDefault () {
+        if (instance == null) {
+            instance = new SearchIndex( Places.getCacheSubfile( CACHE_PATH ) );
+        }
+        return instance;
+    }
+
+    /**
+     * Find packages matching some search text.
+     *
+     * @param query The text the user typed
+     * @param max The maximum number of results
+     * @return Matching entries, best first
+     */
+    public synchronized List<Entry> search ( String query, int max ) {
+        ensureLoaded();
+        String[] terms = terms( query );
+        if (terms.length == 0 || max <= 0) {
+            return Collections.emptyList();
+        }
+        String whole = query.trim().toLowerCase( Locale.ENGLISH );
+        // Generate candidates from the most selective (longest) term
+        String first = terms[0];
+        for (String t : terms) {
+            if (t.length() > first.length()) {
+                first = t;
+            }
+        }
+        PriorityQueue<Scored> best = new PriorityQueue<>( max + 1 );
+        BitSet candidates = new BitSet( entries.length );
+        int lo = lowerBound( words, first );
+        for (int i = lo; i < words.length && words[i].startsWith( first ); i++) {
+            for (int e : postings[i]) {
+                candidates.set( e );
+            }
+        }
+        for (int i = candidates.nextSetBit( 0 ); i >= 0; i = candidates.nextSetBit( i + 1 )) {
+            Entry e = entries[i];
+            if (!overlay.containsKey( e.key )) {
+                offer( best, e, terms, whole, max );
+            }
+        }
+        for (Entry e : overlay.values()) {
+            offer( best, e, terms, whole, max );
+        }
+        Scored[] sorted = best.toArray( new Scored[best.size()] );
+        Arrays.sort( sorted, Collections.reverseOrder() );
+        List<Entry> result = new ArrayList<>( sorted.length );
+        for (Scored s : sorted) {
+            result.add( s.entry );
+        }
+        return result;
+    }
+
+    private static void offer ( PriorityQueue<Scored> best, Entry e, String[] terms, String whole, int max ) {
+        int score = score( e, terms, whole );
+        if (score > 0) {
+            best.offer( new Scored( e, score ) );
+            if (best.size() > max) {
+                best.poll();
+            }
+        }
+    }
+
+    static int score ( Entry e, String[] terms, String whole ) {
+        int result = 0;
+        for (String term : terms) {
+            int s = wordPrefixIn( e.key, term ) ? 8 : 0;
+            for (String kw : e.keywords) {
+                if (wordPrefixIn( kw.toLowerCase( Locale.ENGLISH ), term )) {
+                    s = Math.max( s, 4 );
+                    break;
+                }
+            }
+            if (s == 0 && wordPrefixIn( e.description.toLowerCase( Locale.ENGLISH ), term )) {
+                s = 1;
+            }
+            if (s == 0) {
+                // Every term has to match somewhere
+                return 0;
+            }
+            result += s;
+        }
+        if (e.key.equals( whole )) {
+            result += 1000;
+        } else if (e.key.startsWith( whole )) {
+            result += 100;
+        }
+        return result;
+    }
+
+    private static boolean wordPrefixIn ( String text, String term ) {
+        for (int ix = text.indexOf( term ); ix >= 0; ix = text.indexOf( term, ix + 1 )) {
+            if (ix == 0 || !Character.isLetterOrDigit( text.charAt( ix - 1 ) )) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determine if the index can be trusted to answer a query without asking
+     * npm - because a complete registry dump was imported recently, or npm
+     * was asked this same question recently.
+     */
+    public synchronized boolean isFresh ( String query ) {
+        ensureLoaded();
+        long now = System.currentTimeMillis();
+        if (now - dumpTime < DUMP_FRESH_MILLIS) {
+            return true;
+        }
+        Long when = refreshed.get( normalize( query ) );
+        return when != null && now - when < QUERY_FRESH_MILLIS;
+    }
+
+    /**
+     * Run <code>npm search</code> for a query in the background, adding each
+     * package to the index and passing it to the consumer as soon as npm
+     * writes it.  Cancelling the returned future kills npm.
+     *
+     * @param query The search text
+     * @param onEntry Called on a background thread for each package found
+     * @return A future completed with the number of packages found, or -1
+     * if npm failed
+     */
+    public CompletableFuture<Integer> refresh ( final String query, final Consumer<Entry> onEntry ) {
+        final ObjectMapper mapper = ObjectMapperProvider.newObjectMapper();
+        final AtomicInteger count = new AtomicInteger();
+        final ObjectSplitter splitter = new ObjectSplitter( new Consumer<String>() {
+            @Override
+            public void accept ( String json ) {
+                Entry e;
+                try {
+                    e = entry( mapper.readTree( json ), null );
+                } catch ( IOException ex ) {
+                    LOG.log( Level.FINE, "Bad search result " + json, ex ); //NOI18N
+                    return;
+                }
+                if (e != null) {
+                    count.incrementAndGet();
+                    addAll( Collections.singleton( e ) );
+                    onEntry.accept( e );
+                }
+            }
+        } );
+        final AsyncProcess proc;
+        try {
+            proc = ProcessService.getDefault().start( null, null, new AsyncProcess.LineHandler() {
+                @Override
+                public void onLine ( String line, boolean stderr ) {
+                    if (!stderr) {
+                        splitter.feed( line );
+                    }
+                }
+            }, Npm.getDefault().exe(), "search", "--json", "--searchlimit=100", query ); //NOI18N
+        } catch ( IOException ex ) {
+            CompletableFuture<Integer> failed = new CompletableFuture<>();
+            failed.complete( -1 );
+            return failed;
+        }
+        final CompletableFuture<Integer> result = new CompletableFuture<Integer>() {
+            @Override
+            public boolean cancel ( boolean mayInterruptIfRunning ) {
+                // Cancel first, so killing the process does not complete us
+                boolean result = super.cancel( mayInterruptIfRunning );
+                proc.future().cancel( mayInterruptIfRunning );
+                return result;
+            }
+        };
+        proc.future().handle( new BiFunction<Integer, Throwable, Void>() {
+            @Override
+            public Void apply ( Integer exitCode, Throwable thrown ) {
+                if (exitCode == null || exitCode != 0) {
+                    LOG.log( Level.FINE, "npm search {0} exited with {1}", new Object[]{query, exitCode} ); //NOI18N
+                    result.complete( -1 );
+                    return null;
+                }
+                synchronized ( SearchIndex.this ) {
+                    refreshed.put( normalize( query ), System.currentTimeMillis() );
+                    dirty = true;
+                }
+                RP.post( new Runnable() {
+                    @Override
+                    public void run () {
+                        save();
+                    }
+                } );
+                result.complete( count.get() );
+                return null;
+            }
+        } );
+        RP.post( new Runnable() {
+            @Override
+            public void run () {
+                if (!proc.future().isDone()) {
+                    LOG.log( Level.INFO, "npm search {0} timed out", query ); //NOI18N
+                    proc.future().cancel( true );
+                }
+            }
+        }, (int) REFRESH_TIMEOUT_MILLIS );
+        return result;
+    }
+
+    /**
+     * Import a registry dump - the output of <code>npm search --json</code>,
+     * a page of the registry's <code>/-/v1/search</code> API, or an old
+     * <code>/-/all</code> document.
+     *
+     * @return The number of packages read
+     */
+    public int importDump ( File dump ) throws IOException {
+        final List<Entry> all = new ArrayList<>();
+        try (InputStream in = new BufferedInputStream( new FileInputStream( dump ) )) {
+            readEntries( in, new Consumer<Entry>() {
+                @Override
+                public void accept ( Entry e ) {
+                    all.add( e );
+                }
+            } );
+        }
+        synchronized ( this ) {
+            ensureLoaded();
+            // Index once at the end rather than every MAX_OVERLAY entries
+            for (Entry e : all) {
+                overlay.put( e.key, e );
+            }
+            rebuild();
+            dumpTime = Math.max( dumpTime, dump.lastModified() );
+            dirty = true;
+        }
+        LOG.log( Level.FINE, "Imported {0} packages from {1}", new Object[]{all.size(), dump} ); //NOI18N
+        save();
+        return all.size();
+    }
+
+    /**
+     * Add or replace entries.
+     */
+    public synchronized void addAll ( Collection<Entry> all ) {
+        ensureLoaded();
+        for (Entry e : all) {
+            overlay.put( e.key, e );
+        }
+        dirty |= !all.isEmpty();
+        if (overlay.size() > MAX_OVERLAY) {
+            rebuild();
+        }
+    }
+
+    public synchronized int size () {
+        ensureLoaded();
+        int result = entries.length;
+        for (String key : overlay.keySet()) {
+            if (find( key ) < 0) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private int find ( String key ) {
+        int lo = 0, hi = entries.length - 1;
+        while ( lo <= hi ) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = entries[mid].key.compareTo( key );
+            if (cmp == 0) {
+                return mid;
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int lowerBound ( String[] sorted, String s ) {
+        int lo = 0, hi = sorted.length;
+        while ( lo < hi ) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid].compareTo( s ) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Fold the overlay into the base arrays and rebuild the word index.
+     */
+    private void rebuild () {
+        Map<String, Entry> all = new HashMap<>( (entries.length + overlay.size()) * 4 / 3 + 1 );
+        for (Entry e : entries) {
+            all.put( e.key, e );
+        }
+        all.putAll( overlay );
+        overlay.clear();
+        setEntries( all.values().toArray( new Entry[all.size()] ) );
+    }
+
+    private void setEntries ( Entry[] sorted ) {
+        Arrays.sort( sorted, new Comparator<Entry>() {
+            @Override
+            public int compare ( Entry a, Entry b ) {
+                return a.key.compareTo( b.key );
+            }
+        } );
+        Map<String, int[]> index = new HashMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        Set<String> seen = new LinkedHashSet<>();
+        for (int i = 0; i < sorted.length; i++) {
+            seen.clear();
+            sorted[i].words( seen );
+            for (String w : seen) {
+                int[] arr = index.get( w );
+                Integer sz = sizes.get( w );
+                int size = sz == null ? 0 : sz;
+                if (arr == null) {
+                    arr = new int[2];
+                } else if (size == arr.length) {
+                    arr = Arrays.copyOf( arr, size * 2 );
+                }
+                arr[size] = i;
+                index.put( w, arr );
+                sizes.put( w, size + 1 );
+            }
+        }
+        String[] ws = index.keySet().toArray( new String[index.size()] );
+        Arrays.sort( ws );
+        int[][] ps = new int[ws.length][];
+        for (int i = 0; i < ws.length; i++) {
+            int size = sizes.get( ws[i] );
+            int[] arr = index.get( ws[i] );
+            ps[i] = size == arr.length ? arr : Arrays.copyOf( arr, size );
+        }
+        entries = sorted;
+        words = ws;
+        postings = ps;
+    }
+
+    private void ensureLoaded () {
+        assert Thread.holdsLock( this );
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (file.exists()) {
+            try {
+                load();
+            } catch ( IOException ex ) {
+                LOG.log( Level.INFO, "Discarding unreadable search index " + file, ex ); //NOI18N
+                entries = new Entry[0];
+                words = NONE;
+                postings = new int[0][];
+                refreshed.clear();
+                dumpTime = 0;
+            }
+        }
+        for (File dump : dumpCandidates()) {
+            if (dump.isFile() && dump.lastModified() > dumpTime) {
+                try {
+                    importDump( dump );
+                } catch ( IOException ex ) {
+                    LOG.log( Level.INFO, "Could not import " + dump, ex ); //NOI18N
+                }
+            }
+        }
+    }
+
+    private static List<File> dumpCandidates () {
+        List<File> result = new ArrayList<>( 2 );
+        String prop = System.getProperty( DUMP_PROPERTY );
+        if (prop != null) {
+            result.add( new File( prop ) );
+        }
+        // npm 1.x - 4.x kept the whole registry listing here for npm search
+        result.add( new File( System.getProperty( "user.home" ), ".npm/registry.npmjs.org/-/all/.cache.json" ) ); //NOI18N
+        return result;
+    }
+
+    private void load () throws IOException {
+        try (DataInputStream in = new DataInputStream( new BufferedInputStream(
+                new GZIPInputStream( new FileInputStream( file ) ), 65536 ) )) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                throw new IOException( "Not a search index or wrong version" ); //NOI18N
+            }
+            dumpTime = in.readLong();
+            int queries = in.readInt();
+            for (int i = 0; i < queries; i++) {
+                String q = in.readUTF();
+                refreshed.put( q, in.readLong() );
+            }
+            int count = in.readInt();
+            Entry[] all = new Entry[count];
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                String description = in.readUTF();
+                String author = in.readUTF();
+                String version = in.readUTF();
+                String[] keywords = new String[in.readUnsignedShort()];
+                for (int j = 0; j < keywords.length; j++) {
+                    keywords[j] = in.readUTF();
+                }
+                all[i] = new Entry( name, description, author, version, keywords );
+            }
+            setEntries( all );
+        }
+    }
+
+    /**
+     * Write the index to disk if it has changed.
+     */
+    public void save () {
+        Entry[] toWrite;
+        Map<String, Long> queries;
+        long dump;
+        synchronized ( this ) {
+            if (!dirty) {
+                return;
+            }
+            rebuild();
+            toWrite = entries;
+            queries = new HashMap<>( refreshed );
+            dump = dumpTime;
+            dirty = false;
+        }
+        File tmp = new File( file.getParentFile(), file.getName() + ".tmp" ); //NOI18N
+        try (DataOutputStream out = new DataOutputStream( new BufferedOutputStream(
+                new GZIPOutputStream( new FileOutputStream( tmp ) ), 65536 ) )) {
+            out.writeInt( MAGIC );
+            out.writeInt( FORMAT );
+            out.writeLong( dump );
+            out.writeInt( queries.size() );
+            for (Map.Entry<String, Long> e : queries.entrySet()) {
+                out.writeUTF( e.getKey() );
+                out.writeLong( e.getValue() );
+            }
+            out.writeInt( toWrite.length );
+            for (Entry e : toWrite) {
+                out.writeUTF( e.name );
+                out.writeUTF( e.description );
+                out.writeUTF( e.author );
+                out.writeUTF( e.version );
+                out.writeShort( e.keywords.length );
+                for (String kw : e.keywords) {
+                    out.writeUTF( kw );
+                }
+            }
+        } catch ( IOException ex ) {
+            LOG.log( Level.INFO, "Could not write " + tmp, ex ); //NOI18N
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo( file ) && (!file.delete() || !tmp.renameTo( file ))) {
+            LOG.log( Level.INFO, "Could not replace {0}", file ); //NOI18N
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Read package metadata from any of the JSON shapes the registry and npm
+     * produce, passing entries to the consumer as they are parsed.
+     */
+    public static void readEntries ( InputStream in, Consumer<Entry> consumer ) throws IOException {
+        try (JsonParser p = ObjectMapperProvider.newObjectMapper().createParser( in )) {
+            JsonToken tok = p.nextToken();
+            if (tok == JsonToken.START_ARRAY) {
+                // npm search --json
+                readArray( p, consumer, false );
+            } else if (tok == JsonToken.START_OBJECT) {
+                while ( p.nextToken() == JsonToken.FIELD_NAME ) {
+                    String field = p.getCurrentName();
+                    tok = p.nextToken();
+                    if ("objects".equals( field ) && tok == JsonToken.START_ARRAY) { //NOI18N
+                        // registry /-/v1/search
+                        readArray( p, consumer, true );
+                    } else if (tok == JsonToken.START_OBJECT && !field.startsWith( "_" )) { //NOI18N
+                        // old /-/all document, keyed by package name
+                        Entry e = entry( p.<JsonNode>readValueAsTree(), field );
+                        if (e != null) {
+                            consumer.accept( e );
+                        }
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+
+    private static void readArray ( JsonParser p, Consumer<Entry> consumer, boolean wrapped ) throws IOException {
+        while ( p.nextToken() == JsonToken.START_OBJECT ) {
+            JsonNode node = p.readValueAsTree();
+            Entry e = entry( wrapped ? node.path( "package" ) : node, null ); //NOI18N
+            if (e != null) {
+                consumer.accept( e );
+            }
+        }
+    }
+
+    static Entry entry ( JsonNode node, String defaultName ) {
+        String name = text( node.get( "name" ) ); //NOI18N
+        if (name.isEmpty()) {
+            name = defaultName;
+        }
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        String version = text( node.get( "version" ) ); //NOI18N
+        if (version.isEmpty()) {
+            version = text( node.path( "dist-tags" ).get( "latest" ) ); //NOI18N
+        }
+        String author = text( node.path( "publisher" ).get( "username" ) ); //NOI18N
+        if (author.isEmpty()) {
+            JsonNode a = node.get( "author" ); //NOI18N
+            author = a != null && a.isObject() ? text( a.get( "name" ) ) : text( a ); //NOI18N
+        }
+        if (author.isEmpty()) {
+            for (JsonNode m : node.path( "maintainers" )) { //NOI18N
+                author = m.isObject() ? text( m.has( "username" ) ? m.get( "username" ) : m.get( "name" ) ) : text( m ); //NOI18N
+                if (!author.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        JsonNode kw = node.get( "keywords" ); //NOI18N
+        List<String> keywords = new ArrayList<>();
+        if (kw != null && kw.isArray()) {
+            for (JsonNode k : kw) {
+                String s = text( k );
+                if (!s.isEmpty()) {
+                    keywords.add( s );
+                }
+            }
+        } else if (kw != null && kw.isTextual()) {
+            for (String s : kw.asText().split( "[,\\s]+" )) { //NOI18N
+                if (!s.isEmpty()) {
+                    keywords.add( s );
+                }
+            }
+        }
+        return new Entry( name, text( node.get( "description" ) ), author, version, //NOI18N
+                keywords.toArray( new String[keywords.size()] ) );
+    }
+
+    private static String text ( JsonNode node ) {
+        return node == null || !node.isValueNode() || node.isNull() ? "" : node.asText().trim(); //NOI18N
+    }
+
+    private static String normalize ( String query ) {
+        return query.trim().replaceAll( "\\s+", " " ).toLowerCase( Locale.ENGLISH ); //NOI18N
+    }
+
+    static String[] terms ( String query ) {
+        List<String> result = new ArrayList<>();
+        splitWords( query.toLowerCase( Locale.ENGLISH ), result );
+        return result.toArray( new String[result.size()] );
+    }
+
+    private static void splitWords ( String text, Collection<String> into ) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit( text.charAt( i ) );
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                into.add( text.substring( start, i ) );
+                start = -1;
+            }
+        }
+    }
+
+    private static String truncate ( String s ) {
+        return s == null ? "" : s.length() > MAX_FIELD ? s.substring( 0, MAX_FIELD ) : s; //NOI18N
+    }
+
+    /**
+     * One package in the index.
+     */
+    public static final class Entry {
+        final String key;
+        private final String name;
+        private final String description;
+        private final String author;
+        private final String version;
+        private final String[] keywords;
+
+        public Entry ( String name, String description, String author, String version, String... keywords ) {
+            this.name = truncate( name );
+            this.key = this.name.toLowerCase( Locale.ENGLISH );
+            this.description = truncate( description );
+            this.author = truncate( author );
+            this.version = truncate( version );
+            this.keywords = Arrays.copyOf( keywords, Math.min( keywords.length, Short.MAX_VALUE ) );
+            for (int i = 0; i < this.keywords.length; i++) {
+                this.keywords[i] = truncate( this.keywords[i] );
+            }
+        }
+
+        public String getName () {
+            return name;
+        }
+
+        public String getDescription () {
+            return description;
+        }
+
+        public String getAuthor () {
+            return author;
+        }
+
+        public String getVersion () {
+            return version;
+        }
+
+        public List<String> getKeywords () {
+            return Collections.unmodifiableList( Arrays.asList( keywords ) );
+        }
+
+        void words ( Set<String> into ) {
+            splitWords( key, into );
+            for (String kw : keywords) {
+                splitWords( kw.toLowerCase( Locale.ENGLISH ), into );
+            }
+            splitWords( description.toLowerCase( Locale.ENGLISH ), into );
+        }
+
+        @Override
+        public String toString () {
+            return name + '@' + version;
+        }
+    }
+
+    /**
+     * Splits the output of <code>npm search --json</code> - an array of
+     * objects, written one at a time however npm happens to format it -
+     * into the text of each object as soon as its closing brace arrives.
+     */
+    static final class ObjectSplitter {
+        private final Consumer<String> onObject;
+        private final StringBuilder current = new StringBuilder();
+        private int depth;
+        private boolean inString;
+        private boolean escaped;
+
+        ObjectSplitter ( Consumer<String> onObject ) {
+            this.onObject = onObject;
+        }
+
+        void feed ( CharSequence line ) {
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt( i );
+                boolean inObject = depth >= 2 || (depth == 1 && c == '{');
+                if (inObject) {
+                    current.append( c );
+                }
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                    continue;
+                }
+                switch ( c ) {
+                    case '"':
+                        inString = true;
+                        break;
+                    case '{':
+                    case '[':
+                        depth++;
+                        break;
+                    case '}':
+                    case ']':
+                        depth = Math.max( 0, depth - 1 );
+                        if (depth == 1 && c == '}' && current.length() > 0) {
+                            String obj = current.toString();
+                            current.setLength( 0 );
+                            onObject.accept( obj );
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (depth >= 2) {
+                current.append( '\n' );
+            }
+        }
+    }
+
+    private static final class Scored implements Comparable<Scored> {
+        private final Entry entry;
+        private final int score;
+
+        Scored ( Entry entry, int score ) {
+            this.entry = entry;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo ( Scored o ) {
+            // Higher score, then shorter name, then alphabetical sorts higher
+            int result = Integer.compare( score, o.score );
+            if (result == 0) {
+                result = Integer.compare( o.entry.key.length(), entry.key.length() );
+            }
+            if (result == 0) {
+                result = o.entry.key.compareTo( entry.key );
+            }
+            return result;
+        }
+    }
+}
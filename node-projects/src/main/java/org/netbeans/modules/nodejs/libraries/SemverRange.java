@@ -0,0 +1,403 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.libraries;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An npm version range, as found in the dependencies section of a
+ * package.json - e.g. <code>^1.2.3</code>, <code>~1.2</code>,
+ * <code>&gt;=1.0.0 &lt;2.0.0 || 3.x</code> or <code>1.2.3 - 2.0.0</code>.
+ * Follows node-semver's rules, including that prerelease versions only
+ * match a comparator set which names a prerelease of the same
+ * major.minor.patch.
+ * <p/>
+ * Specifications which are not ranges at all - dist-tags such as
+ * <code>latest</code>, URLs, git and file references - cannot be checked
+ * against an installed version, and match everything.
+ *
+ * @author Tim Boudreau
+ */
+public final class SemverRange {
+    private static final Pattern HYPHEN = Pattern.compile( "^(\\S+)\\s+-\\s+(\\S+)$" ); //NOI18N
+    private static final Pattern OPERATOR_SPACE = Pattern.compile( "(<=|>=|<|>|=|\\^|~>?)\\s+" ); //NOI18N
+    private static final Pattern PARTIAL = Pattern.compile(
+            "^[vV=]?\\s*([0-9]+|[xX*])(?:\\.([0-9]+|[xX*]))?(?:\\.([0-9]+|[xX*]))?" //NOI18N
+            + "(?:-([0-9A-Za-z.-]+))?(?:\\+[0-9A-Za-z.-]+)?$" ); //NOI18N
+    private static final int EQ = 0;
+    private static final int GT = 1;
+    private static final int GTE = 2;
+    private static final int LT = 3;
+    private static final int LTE = 4;
+    private final String spec;
+    // null if this range accepts anything;  otherwise alternatives, each
+    // of which is a set of comparators which must all match
+    private final Comparator[][] sets;
+
+    private SemverRange ( String spec, Comparator[][] sets ) {
+        this.spec = spec;
+        this.sets = sets;
+    }
+
+    /**
+     * Parse a range.  Never throws;  anything that is not a recognizable
+     * range produces a range which matches any version.
+     */
+    public static SemverRange parse ( String spec ) {
+        String s = spec == null ? "" : spec.trim();
+        int alias = s.startsWith( "npm:" ) ? s.lastIndexOf( '@' ) : -1; //NOI18N
+        if (alias > 4) {
+            // npm:other-package@^1.0
+            s = s.substring( alias + 1 );
+        }
+        String[] alternatives = s.split( "\\|\\|" ); //NOI18N
+        Comparator[][] sets = new Comparator[alternatives.length][];
+        for (int i = 0; i < alternatives.length; i++) {
+            sets[i] = parseSet( alternatives[i].trim() );
+            if (sets[i] == null) {
+                return new SemverRange( spec, null );
+            }
+        }
+        return new SemverRange( spec, sets );
+    }
+
+    /**
+     * Determine if a version satisfies this range.  Versions which cannot
+     * be parsed are assumed to.
+     */
+    public boolean matches ( String version ) {
+        if (sets == null) {
+            return true;
+        }
+        Version v = Version.parse( version );
+        if (v == null) {
+            return true;
+        }
+        for (Comparator[] set : sets) {
+            if (matches( set, v )) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if this range constrains versions at all.
+     */
+    public boolean isRange () {
+        return sets != null;
+    }
+
+    private static boolean matches ( Comparator[] set, Version v ) {
+        for (Comparator c : set) {
+            if (!c.test( v )) {
+                return false;
+            }
+        }
+        if (v.pre.length > 0) {
+            for (Comparator c : set) {
+                if (c.version.pre.length > 0 && c.version.major == v.major
+                        && c.version.minor == v.minor && c.version.patch == v.patch) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static Comparator[] parseSet ( String set ) {
+        List<Comparator> result = new ArrayList<>( 2 );
+        Matcher hyphen = HYPHEN.matcher( set );
+        if (hyphen.matches()) {
+            Partial from = Partial.parse( hyphen.group( 1 ) );
+            Partial to = Partial.parse( hyphen.group( 2 ) );
+            if (from == null || to == null) {
+                return null;
+            }
+            if (from.major >= 0) {
+                result.add( new Comparator( GTE, from.floor() ) );
+            }
+            if (to.major >= 0) {
+                result.add( to.patch >= 0 ? new Comparator( LTE, to.floor() )
+                        : new Comparator( LT, to.ceiling() ) );
+            }
+            return result.toArray( new Comparator[result.size()] );
+        }
+        set = OPERATOR_SPACE.matcher( set ).replaceAll( "$1" ); //NOI18N
+        for (String tok : set.split( "\\s+" )) { //NOI18N
+            if (!tok.isEmpty() && !parseComparator( tok, result )) {
+                return null;
+            }
+        }
+        return result.toArray( new Comparator[result.size()] );
+    }
+
+    private static boolean parseComparator ( String tok, List<Comparator> into ) {
+        String op;
+        if (tok.startsWith( ">=" ) || tok.startsWith( "<=" ) || tok.startsWith( "~>" )) { //NOI18N
+            op = tok.substring( 0, 2 );
+        } else if (tok.startsWith( ">" ) || tok.startsWith( "<" ) || tok.startsWith( "^" ) //NOI18N
+                || tok.startsWith( "~" ) || tok.startsWith( "=" )) { //NOI18N
+            op = tok.substring( 0, 1 );
+        } else {
+            op = ""; //NOI18N
+        }
+        Partial p = Partial.parse( tok.substring( op.length() ) );
+        if (p == null) {
+            return false;
+        }
+        if (p.major < 0) {
+            // *, x, >=*, ^x and friends - anything;  <* and >* - nothing
+            if (op.equals( "<" ) || op.equals( ">" )) { //NOI18N
+                into.add( new Comparator( LT, new Version( 0, 0, 0, Version.LOWEST ) ) );
+            }
+            return true;
+        }
+        switch ( op ) {
+            case "": //NOI18N
+            case "=": //NOI18N
+                if (p.patch >= 0) {
+                    into.add( new Comparator( EQ, p.floor() ) );
+                } else {
+                    into.add( new Comparator( GTE, p.floor() ) );
+                    into.add( new Comparator( LT, p.ceiling() ) );
+                }
+                break;
+            case "~": //NOI18N
+            case "~>": //NOI18N
+                into.add( new Comparator( GTE, p.floor() ) );
+                into.add( new Comparator( LT, p.minor >= 0
+                        ? new Version( p.major, p.minor + 1, 0, Version.LOWEST )
+                        : new Version( p.major + 1, 0, 0, Version.LOWEST ) ) );
+                break;
+            case "^": //NOI18N
+                into.add( new Comparator( GTE, p.floor() ) );
+                Version upper;
+                if (p.major > 0 || p.minor < 0) {
+                    upper = new Version( p.major + 1, 0, 0, Version.LOWEST );
+                } else if (p.minor > 0 || p.patch < 0) {
+                    upper = new Version( 0, p.minor + 1, 0, Version.LOWEST );
+                } else {
+                    upper = new Version( 0, 0, p.patch + 1, Version.LOWEST );
+                }
+                into.add( new Comparator( LT, upper ) );
+                break;
+            case ">": //NOI18N
+                into.add( p.patch >= 0 ? new Comparator( GT, p.floor() )
+                        : new Comparator( GTE, p.ceiling() ) );
+                break;
+            case ">=": //NOI18N
+                into.add( new Comparator( GTE, p.floor() ) );
+                break;
+            case "<": //NOI18N
+                into.add( new Comparator( LT, p.patch >= 0 ? p.floor()
+                        : new Version( p.major, Math.max( 0, p.minor ), 0, Version.LOWEST ) ) );
+                break;
+            case "<=": //NOI18N
+                into.add( p.patch >= 0 ? new Comparator( LTE, p.floor() )
+                        : new Comparator( LT, p.ceiling() ) );
+                break;
+            default:
+                throw new AssertionError( op );
+        }
+        return true;
+    }
+
+    @Override
+    public String toString () {
+        return spec;
+    }
+
+    /**
+     * A possibly incomplete version such as <code>1.2</code> or
+     * <code>1.x</code>;  missing or wildcard parts are -1.
+     */
+    private static final class Partial {
+        final int major;
+        final int minor;
+        final int patch;
+        final String[] pre;
+
+        Partial ( int major, int minor, int patch, String[] pre ) {
+            this.major = major;
+            this.minor = major < 0 ? -1 : minor;
+            this.patch = this.minor < 0 ? -1 : patch;
+            this.pre = pre;
+        }
+
+        static Partial parse ( String s ) {
+            Matcher m = PARTIAL.matcher( s );
+            if (!m.matches()) {
+                return null;
+            }
+            String pre = m.group( 4 );
+            return new Partial( part( m.group( 1 ) ), part( m.group( 2 ) ), part( m.group( 3 ) ),
+                    pre == null ? Version.NONE : pre.split( "\\." ) ); //NOI18N
+        }
+
+        private static int part ( String s ) {
+            if (s == null || "x".equalsIgnoreCase( s ) || "*".equals( s )) { //NOI18N
+                return -1;
+            }
+            try {
+                return Integer.parseInt( s );
+            } catch ( NumberFormatException ex ) {
+                return Integer.MAX_VALUE - 1;
+            }
+        }
+
+        /**
+         * The lowest version this partial could mean.
+         */
+        Version floor () {
+            return new Version( major, Math.max( 0, minor ), Math.max( 0, patch ), patch >= 0 ? pre : Version.NONE );
+        }
+
+        /**
+         * The lowest version above everything this partial could mean.
+         */
+        Version ceiling () {
+            return minor < 0 ? new Version( major + 1, 0, 0, Version.LOWEST )
+                    : new Version( major, minor + 1, 0, Version.LOWEST );
+        }
+    }
+
+    private static final class Comparator {
+        final int op;
+        final Version version;
+
+        Comparator ( int op, Version version ) {
+            this.op = op;
+            this.version = version;
+        }
+
+        boolean test ( Version v ) {
+            int cmp = v.compareTo( version );
+            switch ( op ) {
+                case EQ:
+                    return cmp == 0;
+                case GT:
+                    return cmp > 0;
+                case GTE:
+                    return cmp >= 0;
+                case LT:
+                    return cmp < 0;
+                case LTE:
+                    return cmp <= 0;
+                default:
+                    throw new AssertionError( op );
+            }
+        }
+    }
+
+    static final class Version implements Comparable<Version> {
+        static final String[] NONE = new String[0];
+        // sorts below every real prerelease, so "<2.0.0" excludes 2.0.0-beta
+        // as node-semver's "<2.0.0-0" does
+        static final String[] LOWEST = {"0"};
+        private static final Pattern VERSION = Pattern.compile(
+                "^[vV=]?\\s*(\\d+)\\.(\\d+)\\.(\\d+)(?:-([0-9A-Za-z.-]+))?(?:\\+[0-9A-Za-z.-]+)?$" ); //NOI18N
+        final int major;
+        final int minor;
+        final int patch;
+        final String[] pre;
+
+        Version ( int major, int minor, int patch, String[] pre ) {
+            this.major = major;
+            this.minor = minor;
+            this.patch = patch;
+            this.pre = pre;
+        }
+
+        static Version parse ( String s ) {
+            Matcher m = s == null ? null : VERSION.matcher( s.trim() );
+            if (m == null || !m.matches()) {
+                return null;
+            }
+            try {
+                return new Version( Integer.parseInt( m.group( 1 ) ), Integer.parseInt( m.group( 2 ) ),
+                        Integer.parseInt( m.group( 3 ) ), m.group( 4 ) == null ? NONE : m.group( 4 ).split( "\\." ) ); //NOI18N
+            } catch ( NumberFormatException ex ) {
+                return null;
+            }
+        }
+
+        @Override
+        public int compareTo ( Version o ) {
+            int result = Integer.compare( major, o.major );
+            if (result == 0) {
+                result = Integer.compare( minor, o.minor );
+            }
+            if (result == 0) {
+                result = Integer.compare( patch, o.patch );
+            }
+            if (result == 0) {
+                result = comparePrerelease( pre, o.pre );
+            }
+            return result;
+        }
+
+        private static int comparePrerelease ( String[] a, String[] b ) {
+            if (a.length == 0 || b.length == 0) {
+                // a release sorts after any of its prereleases
+                return b.length - a.length;
+            }
+            for (int i = 0; i < Math.min( a.length, b.length ); i++) {
+                boolean an = isNumeric( a[i] );
+                boolean bn = isNumeric( b[i] );
+                int result;
+                if (an && bn) {
+                    result = a[i].length() != b[i].length()
+                            ? a[i].length() - b[i].length() : a[i].compareTo( b[i] );
+                } else if (an != bn) {
+                    result = an ? -1 : 1;
+                } else {
+                    result = a[i].compareTo( b[i] );
+                }
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return a.length - b.length;
+        }
+
+        private static boolean isNumeric ( String s ) {
+            for (int i = 0; i < s.length(); i++) {
+                if (!Character.isDigit( s.charAt( i ) )) {
+                    return false;
+                }
+            }
+            return !s.isEmpty();
+        }
+
+        @Override
+        public String toString () {
+            StringBuilder sb = new StringBuilder().append( major ).append( '.' )
+                    .append( minor ).append( '.' ).append( patch );
+            for (int i = 0; i < pre.length; i++) {
+                sb.append( i == 0 ? '-' : '.' ).append( pre[i] );
+            }
+            return sb.toString();
+        }
+    }
+}
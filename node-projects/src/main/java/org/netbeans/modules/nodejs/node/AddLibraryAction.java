@@ -19,6 +19,7 @@
 package org.netbeans.modules.nodejs.node;
 
 import java.awt.event.ActionEvent;
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
@@ -30,8 +31,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.AbstractAction;
@@ -43,6 +46,7 @@ import org.netbeans.modules.nodejs.NodeJSProject;
 import org.netbeans.modules.nodejs.NodeJSProjectFactory;
 import org.netbeans.modules.nodejs.Npm;
 import org.netbeans.modules.nodejs.ProjectMetadataImpl;
+import org.netbeans.modules.nodejs.libraries.InstalledPackages;
 import org.netbeans.modules.nodejs.libraries.LibrariesPanel;
 import org.netbeans.modules.nodejs.ui2.RootNode;
 import org.openide.DialogDescriptor;
@@ -73,62 +77,73 @@ public class AddLibraryAction extends AbstractAction {
         LibrariesPanel pn = new LibrariesPanel( project );
         DialogDescriptor dd = new DialogDescriptor( pn, NbBundle.getMessage( NodeJSProject.class, "SEARCH_FOR_LIBRARIES" ) ); //NOI18N
         if (DialogDisplayer.getDefault().notify( dd ).equals( DialogDescriptor.OK_OPTION )) {
-            final Set<String> libraries = new HashSet<>( pn.getLibraries() );
+            final Set<String> libraries = new TreeSet<>( pn.getLibraries() );
             if (libraries.size() > 0) {
-                final String npmPath = Npm.getDefault().exe();
-                final AtomicInteger jobs = new AtomicInteger();
-                final ProgressHandle h = ProgressHandle.createHandle( NbBundle.getMessage( AddLibraryAction.class,
-                        "MSG_RUNNING_NPM", libraries.size(), project.getDisplayName() ) ); //NOI18N
-                RequestProcessor.getDefault().post( new Runnable() {
-                    @Override
-                    public void run () {
-                        final int totalLibs = libraries.size();
-                        try {
-                            h.start( totalLibs * 2 );
-                            for (String lib : libraries) {
-                                int job = jobs.incrementAndGet();
-                                ExternalProcessBuilder epb = new ExternalProcessBuilder( npmPath ) //NOI18N
-                                        .addArgument( "install" ) //NOI18N
-                                        .addArgument( lib )
-                                        .workingDirectory( FileUtil.toFile( project.getProjectDirectory() ) );
-                                final String libraryName = lib;
-                                ExecutionDescriptor des = new ExecutionDescriptor().controllable( true ).showProgress( true ).showSuspended( true ).frontWindow( false ).controllable( true ).optionsPath( "Advanced/Node" ).postExecution( new Runnable() {
-                                    @Override
-                                    public void run () {
-                                        try {
-                                            int ct = jobs.decrementAndGet();
-                                            if (ct == 0) {
-                                                try {
-                                                    project.getProjectDirectory().refresh();
-                                                    FileObject fo = project.getProjectDirectory().getFileObject( NodeJSProjectFactory.NODE_MODULES_FOLDER );
-                                                    if (fo != null && fo.isValid()) {
-                                                        fo.refresh();
-                                                    }
-                                                    root.updateChildren();
-                                                } finally {
-                                                    h.finish();
-                                                }
-                                            } else {
-                                                h.progress( NbBundle.getMessage( ProjectNodeKey.class,
-                                                        "PROGRESS_LIBS_REMAINING", totalLibs - ct ), totalLibs - ct ); //NOI18N
-                                                h.setDisplayName( libraryName );
-                                            }
-                                        } finally {
-                                            List<LibraryAndVersion> l = libraries( project );
-                                            updateDependencies( project, l );
-                                        }
-                                    }
-                                } ).charset( Charset.forName( "UTF-8" ) ).frontWindowOnError( true ); //NOI18N
-                                ExecutionService service = ExecutionService.newService( epb, des, lib );
-                                service.run();
+                install( libraries );
+            }
+        }
+    }
+
+    /**
+     * Install a set of libraries with a single npm invocation - npm resolves
+     * the tree once rather than once per library - then record them in
+     * package.json with one save and refresh the libraries node once.
+     */
+    private void install ( final Set<String> libraries ) {
+        final String npmPath = Npm.getDefault().exe();
+        final File projectDir = FileUtil.toFile( project.getProjectDirectory() );
+        final ProgressHandle h = ProgressHandle.createHandle( NbBundle.getMessage( AddLibraryAction.class,
+                "MSG_RUNNING_NPM", libraries.size(), project.getDisplayName() ) ); //NOI18N
+        RequestProcessor.getDefault().post( new Runnable() {
+            @Override
+            public void run () {
+                h.start();
+                try {
+                    ExternalProcessBuilder epb = new ExternalProcessBuilder( npmPath )
+                            .addArgument( "install" ) //NOI18N
+                            .workingDirectory( projectDir );
+                    for (String lib : libraries) {
+                        epb = epb.addArgument( lib );
+                    }
+                    ExecutionDescriptor des = new ExecutionDescriptor().controllable( true ).showProgress( true ).showSuspended( true ).frontWindow( false ).optionsPath( "Advanced/Node" ).postExecution( new Runnable() { //NOI18N
+                        @Override
+                        public void run () {
+                            project.getProjectDirectory().refresh();
+                            FileObject fo = project.getProjectDirectory().getFileObject( NodeJSProjectFactory.NODE_MODULES_FOLDER );
+                            if (fo != null && fo.isValid()) {
+                                fo.refresh();
                             }
-                        } finally {
-                            h.finish();
+                            updateDependencies( project, installedVersions( projectDir, libraries ) );
+                            root.updateChildren();
                         }
-                    }
-                } );
+                    } ).charset( Charset.forName( "UTF-8" ) ).frontWindowOnError( true ); //NOI18N
+                    ExecutionService service = ExecutionService.newService( epb, des,
+                            NbBundle.getMessage( AddLibraryAction.class, "MSG_RUNNING_NPM", //NOI18N
+                                    libraries.size(), project.getDisplayName() ) );
+                    service.run().get();
+                } catch ( InterruptedException | ExecutionException | CancellationException ex ) {
+                    Logger.getLogger( AddLibraryAction.class.getName() ).log( Level.FINE, "npm install " + libraries, ex ); //NOI18N
+                } finally {
+                    h.finish();
+                }
+            }
+        } );
+    }
+
+    /**
+     * Versions of the passed libraries as installed, skipping any npm did
+     * not manage to install.
+     */
+    static List<LibraryAndVersion> installedVersions ( File projectDir, Set<String> libraries ) {
+        List<LibraryAndVersion> result = new ArrayList<>( libraries.size() );
+        File modules = new File( projectDir, NodeJSProjectFactory.NODE_MODULES_FOLDER );
+        for (String lib : libraries) {
+            String version = InstalledPackages.readVersion( new File( modules, lib ) );
+            if (!version.isEmpty()) {
+                result.add( new LibraryAndVersion( lib, version ) );
             }
         }
+        return result;
     }
 
     static synchronized List<LibraryAndVersion> updateDependencies ( NodeJSProject prj, List<LibraryAndVersion> onDisk, String... remove ) {
@@ -28,9 +28,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -43,7 +41,12 @@ import org.netbeans.api.queries.VisibilityQuery;
 import org.netbeans.modules.nodejs.NodeJSProject;
 import org.netbeans.modules.nodejs.NodeJSProjectFactory;
 import org.netbeans.modules.nodejs.Npm;
+import org.netbeans.modules.nodejs.api.NodeCapabilities;
+import org.netbeans.modules.nodejs.api.NodeJSExecutable;
 import org.netbeans.modules.nodejs.json.ObjectMapperProvider;
+import org.netbeans.modules.nodejs.libraries.DependencyGraph;
+import org.netbeans.modules.nodejs.libraries.LockfileReader;
+import org.netbeans.modules.nodejs.libraries.PackageTable;
 import org.openide.filesystems.FileChangeAdapter;
 import org.openide.filesystems.FileEvent;
 import org.openide.filesystems.FileObject;
@@ -66,17 +69,37 @@ public final class LibrariesChildFactory extends ChildFactory.Detachable<Project
     private FileObject modulesFolder;
     private FileObject prjFolder;
     private final NodeJSProject project;
-    public static final String[] BUILT_IN_NODE_LIBS = new String[]{"assert", "buffer",
-        "buffer_ieee754", "child_process", "cluster", "console", "constants", "crypto",
-        "dgram", "dns", "events", "freelist", "fs", "http", "https", "module",
-        "net", "os", "path", "punycode", "querystring", "readline", "repl", "stream",
-        "string_decoder", "sys", "timers", "tls", "tty",
-        "url", "util", "vm", "zlib"};
+    private final PackageTable table;
+    /**
+     * Built-in modules of current node versions, for when the platform
+     * cannot be asked (see NodeCapabilities).
+     */
+    public static final String[] BUILT_IN_NODE_LIBS = new String[]{"assert",
+        "assert/strict", "async_hooks", "buffer", "child_process", "cluster",
+        "console", "constants", "crypto", "dgram", "diagnostics_channel", "dns",
+        "dns/promises", "domain", "events", "fs", "fs/promises", "http", "http2",
+        "https", "inspector", "module", "net", "os", "path", "path/posix",
+        "path/win32", "perf_hooks", "process", "punycode", "querystring",
+        "readline", "readline/promises", "repl", "stream", "stream/consumers",
+        "stream/promises", "stream/web", "string_decoder", "sys", "timers",
+        "timers/promises", "tls", "trace_events", "tty", "url", "util",
+        "util/types", "v8", "vm", "wasi", "worker_threads", "zlib"};
+
+    static {
+        // Searched with binarySearch
+        Arrays.sort( BUILT_IN_NODE_LIBS );
+    }
     public static final Pattern CHECK_FOR_REQUIRE = Pattern.compile(
             "require\\s??\\(\\s??['\"](.*?)['\"]\\s??\\)", 40 );
 
+    private static boolean isBuiltIn ( String lib ) {
+        return lib.startsWith( "node:" ) || Arrays.binarySearch( BUILT_IN_NODE_LIBS, lib ) >= 0; //NOI18N
+    }
+
     public LibrariesChildFactory ( NodeJSProject project ) {
         this.project = project;
+        PackageTable t = project.getLookup().lookup( PackageTable.class );
+        this.table = t == null ? new PackageTable() : t;
     }
 
     public void update () {
@@ -130,15 +153,17 @@ public final class LibrariesChildFactory extends ChildFactory.Detachable<Project
     }
 
     public Node node ( final ProjectNodeKey key, CountDownLatch latch ) {
-        if (key.getFld() != null && !key.getFld().isValid()) {
+        FileObject fld = key.getFld();
+        if (fld == null ? key.toCanonoicalFile() != null : !fld.isValid()) {
+            // Deleted, or in the lock file but not installed
             return null;
         }
         switch ( key.getType() ) {
             case LIBRARY:
-                return new LibraryFilterNode( key, latch );
+                return new LibraryFilterNode( key, latch, project.getLookup().lookup( DependencyGraph.class ) );
             case BUILT_IN_LIBRARY:
                 if (key.getFld() != null && key.getFld().isValid()) {
-                return new LibraryFilterNode( key, latch );
+                return new LibraryFilterNode( key, latch, project.getLookup().lookup( DependencyGraph.class ) );
             } else {
                 AbstractNode li = new AbstractNode( Children.LEAF ) {
                     @Override
@@ -154,7 +179,7 @@ public final class LibrariesChildFactory extends ChildFactory.Detachable<Project
             }
             case MISSING_LIBRARY:
                 if (key.getFld() != null && key.getFld().isValid()) {
-                return new LibraryFilterNode( key, latch );
+                return new LibraryFilterNode( key, latch, project.getLookup().lookup( DependencyGraph.class ) );
             } else {
                 AbstractNode an = new AbstractNode( Children.LEAF ) {
                     @Override
@@ -165,9 +190,11 @@ public final class LibrariesChildFactory extends ChildFactory.Detachable<Project
                 an.setName( key.toString() );
                 an.setDisplayName( key.toString() );
                 StringBuilder sb = new StringBuilder( "<html>Missing library <b><i>" + key + "</i></b>" );
-                if (key instanceof ProjectNodeKey.MissingLibrary && ((ProjectNodeKey.MissingLibrary) key).references != null && !((ProjectNodeKey.MissingLibrary) key).references.isEmpty()) {
+                String[] references = key instanceof ProjectNodeKey.MissingLibrary
+                        ? ((ProjectNodeKey.MissingLibrary) key).references() : null;
+                if (references != null && references.length > 0) {
                     sb.append( "<p>Referenced By<br><ul>" );
-                    for (String path : ((ProjectNodeKey.MissingLibrary) key).references) {
+                    for (String path : references) {
                         sb.append( "<li>" ).append( path ).append( "</li>\n" );
                     }
                     sb.append( "</ul></pre></blockquote></html>" );
@@ -220,7 +247,7 @@ public final class LibrariesChildFactory extends ChildFactory.Detachable<Project
         List<ProjectNodeKey> keys = new ArrayList<>();
         Map<String, List<FileObject>> otherLibs = findOtherModules( project.getProjectDirectory() );
         FileObject libFolder = project.getProjectDirectory().getFileObject( NodeJSProjectFactory.NODE_MODULES_FOLDER );
-        if (libFolder != null) {
+        if (libFolder != null && !librariesFromLockfile( libFolder, otherLibs, keys )) {
             Set<ProjectNodeKey> libFolders = new HashSet<>();
             Set<FileObject> childFolders = new LinkedHashSet<>();
             for (FileObject lib : libFolder.getChildren()) {
@@ -241,9 +268,7 @@ public final class LibrariesChildFactory extends ChildFactory.Detachable<Project
                     if (otherLibs.containsKey( lib.getName() )) {
                         otherLibs.remove( lib.getName() );
                     }
-                    ProjectNodeKey key = new ProjectNodeKey( ProjectNodeKeyTypes.LIBRARY, lib );
-                    key.direct = true;
-                    keys.add( key );
+                    keys.add( new ProjectNodeKey( table, ProjectNodeKeyTypes.LIBRARY, lib, true ) );
                     recurseLibraries( lib, libFolders );
                 }
             }
@@ -253,7 +278,7 @@ public final class LibrariesChildFactory extends ChildFactory.Detachable<Project
         File userHomeModules = new File( home, NodeJSProjectFactory.NODE_MODULES_FOLDER ); //NOI18N
         userHomeModules = (userHomeModules.exists()) && (userHomeModules.isDirectory()) ? userHomeModules : null;
         if (userHomeModules == null) {
-            String s = Npm.getDefault().run( home, "root");
+            String s = Npm.getDefault().root( home, false );
             if (s != null) {
                 userHomeModules = new File(s);
             }
@@ -269,14 +294,16 @@ public final class LibrariesChildFactory extends ChildFactory.Detachable<Project
             libModules = new File( "/opt/local/lib/node_modules" ); //NOI18N
         }
         if (!libModules.exists()) {
-            String s = Npm.getDefault().run( new File( System.getProperty( "user.home" ) ), "root", "-g" );
+            String s = Npm.getDefault().root( new File( System.getProperty( "user.home" ) ), true ); //NOI18N
             if (s != null) {
                 libModules = new File( s );
             }
         }
 
         libModules = (libModules.exists()) && (libModules.isDirectory()) ? libModules : null;
-        String src = project.exe().getSourcesLocation();
+        NodeJSExecutable exe = project.exe();
+        String src = exe.getSourcesLocation();
+        NodeCapabilities caps = EventQueue.isDispatchThread() ? exe.cachedCapabilities() : exe.capabilities();
         File nodeSources = src == null ? null : new File( src );
         File libDir = nodeSources == null ? null : new File( nodeSources, "lib" );
         for (String lib : otherLibs.keySet()) {
@@ -285,33 +312,30 @@ public final class LibrariesChildFactory extends ChildFactory.Detachable<Project
             }
             if (userHomeModules != null) {
                 File f = new File( userHomeModules, lib );
-                if ((f.exists()) && (f.isDirectory())) {
-                    ProjectNodeKey key = new ProjectNodeKey( ProjectNodeKeyTypes.LIBRARY, FileUtil.toFileObject( FileUtil.normalizeFile( f ) ) );
-                    key.direct = true;
-                    keys.add( key );
+                FileObject fo = f.isDirectory() ? FileUtil.toFileObject( FileUtil.normalizeFile( f ) ) : null;
+                if (fo != null) {
+                    keys.add( new ProjectNodeKey( table, ProjectNodeKeyTypes.LIBRARY, fo, true ) );
                     continue;
                 }
             }
             if (libModules != null) {
                 File f = new File( libModules, lib );
-                if ((f.exists()) && (f.isDirectory())) {
-                    ProjectNodeKey key = new ProjectNodeKey( ProjectNodeKeyTypes.LIBRARY, FileUtil.toFileObject( FileUtil.normalizeFile( f ) ) );
-                    keys.add( key );
+                FileObject fo = f.isDirectory() ? FileUtil.toFileObject( FileUtil.normalizeFile( f ) ) : null;
+                if (fo != null) {
+                    keys.add( new ProjectNodeKey( table, ProjectNodeKeyTypes.LIBRARY, fo, false ) );
                     continue;
                 }
             }
             if (libDir != null) {
                 File f = new File( libDir, lib + ".js" ); //NOI18N
-                if ((f.exists()) && (f.isFile()) && (f.canRead())) {
-                    ProjectNodeKey key = new ProjectNodeKey( ProjectNodeKeyTypes.BUILT_IN_LIBRARY, FileUtil.toFileObject( FileUtil.normalizeFile( f ) ) );
-                    keys.add( key );
+                FileObject fo = f.isFile() && f.canRead() ? FileUtil.toFileObject( FileUtil.normalizeFile( f ) ) : null;
+                if (fo != null) {
+                    keys.add( new ProjectNodeKey( table, ProjectNodeKeyTypes.BUILT_IN_LIBRARY, fo, false ) );
                     continue;
                 }
             }
-            if (Arrays.binarySearch( BUILT_IN_NODE_LIBS, lib ) >= 0) {
-                ProjectNodeKey key = new ProjectNodeKey.BuiltInLibrary( lib );
-                keys.add( key );
-                key.direct = true;
+            if (caps != null ? caps.isBuiltIn( lib ) : isBuiltIn( lib )) {
+                keys.add( new ProjectNodeKey.BuiltInLibrary( table, lib ) );
                 continue;
             }
             if (lib.startsWith( "./" ) || lib.startsWith( "../" )) { //NOI18N
@@ -320,43 +344,132 @@ public final class LibrariesChildFactory extends ChildFactory.Detachable<Project
                 continue;
                 //                }
             }
-            ProjectNodeKey.MissingLibrary key = new ProjectNodeKey.MissingLibrary( lib );
             List<FileObject> referencedBy = otherLibs.get( lib );
-            List<String> paths = new LinkedList<>();
-            for (FileObject fo : referencedBy) {
+            String[] paths = new String[referencedBy.size()];
+            for (int i = 0; i < paths.length; i++) {
+                FileObject fo = referencedBy.get( i );
                 if (FileUtil.isParentOf( project.getProjectDirectory(), fo )) {
-                    paths.add( FileUtil.getRelativePath( project.getProjectDirectory(), fo ) );
+                    paths[i] = FileUtil.getRelativePath( project.getProjectDirectory(), fo );
                 } else {
-                    paths.add( fo.getPath() );
+                    paths[i] = fo.getPath();
                 }
             }
-            key.references = paths;
-            keys.add( key );
+            keys.add( new ProjectNodeKey.MissingLibrary( table, lib, paths ) );
         }
-        outer:
-        for (Iterator<ProjectNodeKey> it = keys.iterator(); it.hasNext();) {
-            ProjectNodeKey k = it.next();
-            if (k.getType() == ProjectNodeKeyTypes.MISSING_LIBRARY) {
-                for (ProjectNodeKey k1 : new LinkedList<>( keys )) {
-                    if (k == k1) {
-                        continue;
-                    }
-                    if (k.toString().equals( k1.toString() ) && k1.getType() != ProjectNodeKeyTypes.MISSING_LIBRARY) {
-                        it.remove();
-                        break outer;
-                    } else if (k.getType() == k1.getType() && k.toString().equals( k1.toString() )) {
-                        it.remove();
-                        break outer;
-                    }
-                    if (k.getFld() != null && k1.getFld() != null && k.getFld().equals( k1.getFld() )) {
-                        it.remove();
-                        break outer;
+        keys = reconcile( table, keys );
+        Collections.sort( keys );
+        return keys;
+    }
+
+    /**
+     * Fast path:  if npm's lock file is at least as new as node_modules and
+     * agrees with its top level, build the keys from it rather than walking
+     * the whole folder tree.  Only node_modules itself is canonicalized;
+     * the folders of the keys are not looked up until their nodes are
+     * created, and packages the lock file lists which turn out not to be
+     * installed (such as optional platform-specific ones) get no node.
+     * Returns false if the folder must be scanned.
+     */
+    private boolean librariesFromLockfile ( FileObject libFolder, Map<String, List<FileObject>> otherLibs, List<ProjectNodeKey> keys ) {
+        File modules = FileUtil.toFile( libFolder );
+        LockfileReader.Lockfile lock = modules == null ? null
+                : LockfileReader.forInstalled( modules.getParentFile() );
+        if (lock == null || !lock.isConsistentWith( modules )) {
+            return false;
+        }
+        try {
+            modules = modules.getCanonicalFile();
+        } catch ( IOException ex ) {
+            Logger.getLogger( LibrariesChildFactory.class.getName() ).log( Level.FINER,
+                    "No canonical file for " + modules, ex ); //NOI18N
+        }
+        List<ProjectNodeKey> found = new ArrayList<>( lock.getEntries().size() );
+        for (LockfileReader.Entry e : lock.getEntries()) {
+            String path = e.getPath();
+            found.add( new ProjectNodeKey( table, ProjectNodeKeyTypes.LIBRARY,
+                    path.substring( path.lastIndexOf( '/' ) + 1 ), new File( modules, path ), e.isTopLevel() ) );
+        }
+        for (LockfileReader.Entry e : lock.getEntries()) {
+            if (e.isTopLevel()) {
+                otherLibs.remove( e.getPath() );
+            }
+        }
+        keys.addAll( found );
+        return true;
+    }
+
+    /**
+     * Reconcile the raw list of keys in one pass, hashing by canonical folder
+     * and by name id:  a folder reached more than once is listed once
+     * (preferring the direct, then the highest-ranked, key), and a
+     * folderless built-in or missing key is only kept if nothing of higher
+     * or equal rank has the same name, where LIBRARY &gt; BUILT_IN_LIBRARY
+     * &gt; MISSING_LIBRARY.  Several library folders sharing a name (nested
+     * copies at different versions) are all kept.
+     */
+    static List<ProjectNodeKey> reconcile ( PackageTable table, List<ProjectNodeKey> keys ) {
+        int[] byLocation = new int[table.locationCount()];
+        int[] byName = new int[table.nameCount()];
+        byte[] nameRank = new byte[byName.length];
+        Arrays.fill( byLocation, -1 );
+        Arrays.fill( byName, -1 );
+        List<ProjectNodeKey> result = new ArrayList<>( keys.size() );
+        int removed = 0;
+        for (ProjectNodeKey key : keys) {
+            int name = key.nameId();
+            int location = key.locationId();
+            byte rank = rank( key );
+            if (location >= 0) {
+                int slot = byLocation[location];
+                if (slot >= 0) {
+                    ProjectNodeKey existing = result.get( slot );
+                    if (key.isDirect() != existing.isDirect() ? key.isDirect() : rank > rank( existing )) {
+                        result.set( slot, key );
                     }
+                    continue;
+                }
+                byLocation[location] = result.size();
+                result.add( key );
+                if (byName[name] >= 0 && nameRank[name] <= rank) {
+                    // a folderless key for the same name loses to this one
+                    result.set( byName[name], null );
+                    byName[name] = -1;
+                    removed++;
+                }
+                nameRank[name] = (byte) Math.max( rank, nameRank[name] );
+            } else if (nameRank[name] < rank) {
+                if (byName[name] >= 0) {
+                    result.set( byName[name], null );
+                    removed++;
                 }
+                byName[name] = result.size();
+                nameRank[name] = rank;
+                result.add( key );
             }
         }
-        Collections.sort( keys );
-        return keys;
+        if (removed > 0) {
+            List<ProjectNodeKey> compacted = new ArrayList<>( result.size() - removed );
+            for (ProjectNodeKey key : result) {
+                if (key != null) {
+                    compacted.add( key );
+                }
+            }
+            result = compacted;
+        }
+        return result;
+    }
+
+    private static byte rank ( ProjectNodeKey key ) {
+        switch ( key.getType() ) {
+            case LIBRARY:
+                return 3;
+            case BUILT_IN_LIBRARY:
+                return 2;
+            case MISSING_LIBRARY:
+                return 1;
+            default:
+                throw new AssertionError( key.getType() );
+        }
     }
 
     private void recurseLibraries ( FileObject libFolder, Set<ProjectNodeKey> keys ) {
@@ -410,10 +523,8 @@ public final class LibrariesChildFactory extends ChildFactory.Detachable<Project
                             }
                         }
                         if (jsFound) {
-                            ProjectNodeKey key = new ProjectNodeKey(
-                                    ProjectNodeKeyTypes.LIBRARY, lib );
-                            key.direct = false;
-                            keys.add( key );
+                            keys.add( new ProjectNodeKey( table,
+                                    ProjectNodeKeyTypes.LIBRARY, lib, false ) );
                             recurseLibraries( lib, keys );
                         }
                     }
@@ -440,7 +551,7 @@ public final class LibrariesChildFactory extends ChildFactory.Detachable<Project
             while ( m.find() ) {
                 List<FileObject> l = all.get( m.group( 1 ) );
                 if (l == null) {
-                    l = new LinkedList<FileObject>();
+                    l = new ArrayList<>( 2 );
                     all.put( m.group( 1 ), l );
                 }
                 l.add( jsFile );
@@ -34,6 +34,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedSet;
 import java.util.concurrent.CountDownLatch;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -46,6 +47,7 @@ import org.netbeans.api.project.Project;
 import org.netbeans.modules.nodejs.NodeJSProject;
 import org.netbeans.modules.nodejs.NodeJSProjectFactory;
 import org.netbeans.modules.nodejs.json.JsonPanel;
+import org.netbeans.modules.nodejs.libraries.DependencyGraph;
 import org.netbeans.modules.nodejs.json.ObjectMapperProvider;
 import static org.netbeans.modules.nodejs.json.ObjectMapperProvider.STRING_OBJECT_MAP;
 import org.netbeans.modules.nodejs.node.AddLibraryAction.LibraryAndVersion;
@@ -75,7 +77,16 @@ final class LibraryFilterNode extends FilterNode {
     }
 
     public LibraryFilterNode ( ProjectNodeKey key, CountDownLatch latch ) {
-        this( nodeFromKey( key ), key, latch );
+        this( key, latch, null );
+    }
+
+    /**
+     * Create a node which also shows what the project's dependency graph
+     * knows about the library - its size on disk and other installed
+     * versions.
+     */
+    LibraryFilterNode ( ProjectNodeKey key, CountDownLatch latch, DependencyGraph graph ) {
+        this( nodeFromKey( key ), key, latch, graph );
     }
 
     private static Node nodeFromKey ( ProjectNodeKey key ) {
@@ -128,7 +139,7 @@ final class LibraryFilterNode extends FilterNode {
         return key;
     }
 
-    private LibraryFilterNode ( Node original, final ProjectNodeKey key, final CountDownLatch latch ) {
+    private LibraryFilterNode ( Node original, final ProjectNodeKey key, final CountDownLatch latch, final DependencyGraph graph ) {
         super( nodeFromKey( key ), isFileNode( original ) ? Children.LEAF
                 : Children.create( new LibraryNodeChildren( original.getLookup().lookup( DataObject.class ) ), true ) );
         disableDelegation( DELEGATE_SET_NAME | DELEGATE_SET_SHORT_DESCRIPTION | DELEGATE_SET_DISPLAY_NAME | DELEGATE_SET_VALUE );
@@ -260,7 +271,37 @@ final class LibraryFilterNode extends FilterNode {
                 }
             }
         } );
+        if (graph != null && key.toCanonoicalFile() != null) {
+            // After the above, which callers may be waiting for
+            jsonReader.post( new Runnable() {
+                @Override
+                public void run () {
+                    DependencyGraph.Snapshot snapshot = graph.snapshot();
+                    int ix = snapshot.indexOf( key.toCanonoicalFile() );
+                    if (ix >= 0) {
+                        SortedSet<String> versions = snapshot.duplicates().get( snapshot.name( ix ) );
+                        StringBuilder others = new StringBuilder();
+                        if (versions != null) {
+                            for (String v : versions) {
+                                if (!v.equals( snapshot.version( ix ) )) {
+                                    if (others.length() > 0) {
+                                        others.append( ", " ); //NOI18N
+                                    }
+                                    others.append( v );
+                                }
+                            }
+                        }
+                        synchronized ( key ) {
+                            LibraryFilterNode.this.installedSize = snapshot.installedSize( ix );
+                            LibraryFilterNode.this.otherVersions = others.length() == 0 ? null : others.toString();
+                        }
+                    }
+                }
+            } );
+        }
     }
+    private long installedSize = -1;
+    private String otherVersions;
     private String version;
     private String author;
     private String name;
@@ -342,6 +383,12 @@ final class LibraryFilterNode extends FilterNode {
                 if (version != null) {
                     sb.append( "<tr><th align=\"left\">" ).append( "Version" ).append( "</th><td>" ).append( version ).append( "</td></tr>\n" );
                 }
+                if (otherVersions != null) {
+                    sb.append( "<tr><th align=\"left\">" ).append( "Also Installed" ).append( "</th><td>" ).append( otherVersions ).append( "</td></tr>\n" );
+                }
+                if (installedSize > 0) {
+                    sb.append( "<tr><th align=\"left\">" ).append( "Size on Disk" ).append( "</th><td>" ).append( installedSize / 1024 ).append( " KB</td></tr>\n" );
+                }
                 if (author != null) {
                     sb.append( "<tr><th align=\"left\">" ).append( author.indexOf( ',' ) > 0 ? "Authors" : "Author" ).append( "</th><td>" ).append( author ).append( "</td></tr>\n" );
                 }
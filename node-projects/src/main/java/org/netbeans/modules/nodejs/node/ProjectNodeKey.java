@@ -20,14 +20,16 @@ package org.netbeans.modules.nodejs.node;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
-import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.netbeans.modules.nodejs.libraries.PackageTable;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
 
 /**
+ * Key for one library under a project's Libraries node.  Keys hold the
+ * int ids their {@link PackageTable} assigned to their name and canonical
+ * folder, so equality and hashing never touch strings or the filesystem.
  *
  * @author tim
  */
@@ -35,24 +37,29 @@ public class ProjectNodeKey implements Comparable<ProjectNodeKey> {
     public static final String LIBRARY_ICON = "org/netbeans/modules/nodejs/resources/libs.png"; //NOI18N
     public static final String LOGO_ICON = "org/netbeans/modules/nodejs/resources/logo.png"; //NOI18N
     private final ProjectNodeKeyTypes type;
-    private final FileObject fld;
-    private final File file;
-    boolean direct;
-    private final String path; //just something to compute a hash code that won't change if deleted from
+    private final PackageTable table;
+    private volatile FileObject fld;
+    private final int nameId;
+    private final int locationId; // -1 if there is no folder
+    private final boolean direct;
+
+    public ProjectNodeKey ( PackageTable table, ProjectNodeKeyTypes type, FileObject fld, boolean direct ) {
+        this( table, type, fld, null, direct );
+    }
 
-    public ProjectNodeKey ( ProjectNodeKeyTypes type, FileObject fld ) {
+    private ProjectNodeKey ( PackageTable table, ProjectNodeKeyTypes type, FileObject fld, String name, boolean direct ) {
+        this.table = table;
         this.type = type;
+        this.direct = direct;
         if (fld != null) {
             FileObject fo = fld;
             File file = FileUtil.toFile( fld );
             if (file != null) {
                 try {
                     file = file.getCanonicalFile();
-                    if (file != null) {
-                        FileObject nue = FileUtil.toFileObject( FileUtil.normalizeFile( file ) );
-                        if (nue != null) {
-                            fo = nue;
-                        }
+                    FileObject nue = FileUtil.toFileObject( FileUtil.normalizeFile( file ) );
+                    if (nue != null) {
+                        fo = nue;
                     }
                 } catch ( IOException ex ) {
                     Logger.getLogger( ProjectNodeKeyTypes.class.getName() ).log(
@@ -60,85 +67,129 @@ public class ProjectNodeKey implements Comparable<ProjectNodeKey> {
                 }
             }
             this.fld = fo;
-            this.file = FileUtil.normalizeFile( FileUtil.toFile( fo ) );
-            path = file.getPath();
+            this.nameId = table.nameId( name == null ? fo.getName() : name );
+            this.locationId = table.locationId( file == null ? fo.getPath() : file.getPath() );
         } else {
-            this.fld = fld;
-            this.file = null;
-            path = "" + System.currentTimeMillis() + "" + new Random().nextLong();
+            this.fld = null;
+            this.nameId = table.nameId( name );
+            this.locationId = -1;
         }
     }
 
+    /**
+     * Create a key for a library folder without touching the filesystem;
+     * its FileObject is looked up the first time it is needed.
+     *
+     * @param location The folder, canonical if it is to be reconciled with
+     * keys created from FileObjects
+     */
+    ProjectNodeKey ( PackageTable table, ProjectNodeKeyTypes type, String name, File location, boolean direct ) {
+        this.table = table;
+        this.type = type;
+        this.direct = direct;
+        this.fld = null;
+        this.nameId = table.nameId( name );
+        this.locationId = table.locationId( location.getPath() );
+    }
+
     @Override
     public String toString () {
-        return getFld().getName();
+        return getName();
+    }
+
+    public String getName () {
+        return table.name( nameId );
+    }
+
+    int nameId () {
+        return nameId;
+    }
+
+    int locationId () {
+        return locationId;
     }
 
     public boolean isBuiltIn () {
-        return type == ProjectNodeKeyTypes.BUILT_IN_LIBRARY ? true : false;
+        return type == ProjectNodeKeyTypes.BUILT_IN_LIBRARY;
     }
 
+    /**
+     * Total ordering:  direct libraries, then indirect ones, then built-ins;
+     * within each group by name, then type, then canonical folder, so that
+     * re-sorting the same keys always produces the same list.
+     */
     @Override
     public int compareTo ( ProjectNodeKey o ) {
-        if (o.isDirect() != isDirect()) {
-            if (o.isBuiltIn() != isBuiltIn()) {
-                return isBuiltIn() ? 1 : -1;
+        if (o == this) {
+            return 0;
+        }
+        int result = group() - o.group();
+        if (result == 0 && nameId != o.nameId) {
+            result = getName().compareToIgnoreCase( o.getName() );
+            if (result == 0) {
+                result = getName().compareTo( o.getName() );
             }
-            return isDirect() ? -1 : 1;
         }
-        return toString().compareToIgnoreCase( o.toString() );
+        if (result == 0) {
+            result = type.compareTo( o.type );
+        }
+        if (result == 0 && locationId != o.locationId) {
+            result = locationId < 0 ? -1 : o.locationId < 0 ? 1
+                    : table.location( locationId ).compareTo( o.table.location( o.locationId ) );
+        }
+        if (result == 0 && direct != o.direct) {
+            result = direct ? -1 : 1;
+        }
+        return result;
+    }
+
+    private int group () {
+        return isBuiltIn() ? 2 : direct ? 0 : 1;
     }
 
     public File toCanonoicalFile () {
-        File f = getFld() == null ? null : FileUtil.toFile( getFld() );
-        if (f != null) {
-            try {
-                f = f.getCanonicalFile();
-            } catch ( IOException ex ) {
-                Logger.getLogger( ProjectNodeKey.class.getName() ).log( Level.FINE, null, ex );
-            }
-        }
-        return f;
+        return locationId < 0 ? null : new File( table.location( locationId ) );
     }
 
     @Override
     public int hashCode () {
         int hash = 7;
-        hash = 19 * hash + (this.getType() != null ? this.getType().hashCode() : 0);
-        hash = 19 * hash + this.path.hashCode();
-        hash = 19 * hash + (this.isDirect() ? 1 : 0);
+        hash = 19 * hash + type.ordinal();
+        hash = 19 * hash + nameId;
+        hash = 19 * hash + locationId;
+        hash = 19 * hash + (direct ? 1 : 0);
         return hash;
     }
 
     @Override
     public boolean equals ( Object obj ) {
-        if (obj == null) {
-            return false;
+        if (obj == this) {
+            return true;
         }
-        if (getClass() != obj.getClass()) {
+        if (obj == null || getClass() != obj.getClass()) {
             return false;
         }
         final ProjectNodeKey other = (ProjectNodeKey) obj;
-        if (this.getType() != other.getType()) {
-            return false;
-        }
-        if (this.path != other.path && (this.path == null || !this.path.equals( other.path ))) {
-            return false;
-        }
-        if (this.isDirect() != other.isDirect()) {
-            return false;
-        }
-        return true;
+        return type == other.type && nameId == other.nameId
+                && locationId == other.locationId && direct == other.direct
+                && table == other.table;
     }
 
     public ProjectNodeKeyTypes getType () {
         return type;
     }
 
+    /**
+     * Get the library's folder, or null if it has none or it does not
+     * exist.
+     */
     public FileObject getFld () {
         FileObject f = fld;
-        if (f != null && !f.isValid() && file != null) {
-            f = FileUtil.toFileObject( file );
+        if ((f == null || !f.isValid()) && locationId >= 0) {
+            f = FileUtil.toFileObject( FileUtil.normalizeFile( new File( table.location( locationId ) ) ) );
+            if (f != null) {
+                fld = f;
+            }
         }
         return f;
     }
@@ -148,75 +199,23 @@ public class ProjectNodeKey implements Comparable<ProjectNodeKey> {
     }
 
     static class BuiltInLibrary extends ProjectNodeKey {
-        private final String name;
-
-        BuiltInLibrary ( String name ) {
-            super( ProjectNodeKeyTypes.BUILT_IN_LIBRARY, null );
-            this.name = name;
-        }
 
-        @Override
-        public String toString () {
-            return name;
-        }
-
-        @Override
-        public int hashCode () {
-            int hash = 7;
-            hash = 23 * hash + (this.name != null ? this.name.hashCode() : 0);
-            return hash;
-        }
-
-        @Override
-        public boolean equals ( Object obj ) {
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            final BuiltInLibrary other = (BuiltInLibrary) obj;
-            if ((this.name == null) ? (other.name != null) : !this.name.equals( other.name )) {
-                return false;
-            }
-            return true;
+        BuiltInLibrary ( PackageTable table, String name ) {
+            super( table, ProjectNodeKeyTypes.BUILT_IN_LIBRARY, null, name, true );
         }
     }
 
     static class MissingLibrary extends ProjectNodeKey {
-        private final String name;
-        List<String> references;
+        private static final String[] NO_REFERENCES = new String[0];
+        private final String[] references;
 
-        MissingLibrary ( String name ) {
-            super( ProjectNodeKeyTypes.MISSING_LIBRARY, null );
-            this.name = name;
+        MissingLibrary ( PackageTable table, String name, String... references ) {
+            super( table, ProjectNodeKeyTypes.MISSING_LIBRARY, null, name, false );
+            this.references = references == null ? NO_REFERENCES : references;
         }
 
-        @Override
-        public String toString () {
-            return name;
-        }
-
-        @Override
-        public int hashCode () {
-            int hash = 7;
-            hash = 67 * hash + (this.name != null ? this.name.hashCode() : 0);
-            return hash;
-        }
-
-        @Override
-        public boolean equals ( Object obj ) {
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            final MissingLibrary other = (MissingLibrary) obj;
-            if ((this.name == null) ? (other.name != null) : !this.name.equals( other.name )) {
-                return false;
-            }
-            return true;
+        String[] references () {
+            return references;
         }
     }
 }
@@ -31,6 +31,7 @@ import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import org.netbeans.api.progress.ProgressHandle;
 import org.netbeans.modules.nodejs.DefaultExecutable;
+import org.netbeans.modules.nodejs.NodeWorker;
 import org.netbeans.modules.nodejs.Npm;
 import org.netbeans.modules.nodejs.forks.EmailAddressValidator;
 import org.netbeans.modules.nodejs.ui.UiUtil;
@@ -159,6 +160,7 @@ public final class NodePanel extends JPanel implements ValidationUI, DocumentLis
         npmLabel = new javax.swing.JLabel();
         npmField = new javax.swing.JTextField();
         npmBrowse = new javax.swing.JButton();
+        workerCheckbox = new javax.swing.JCheckBox();
 
         org.openide.awt.Mnemonics.setLocalizedText(problemLabel, org.openide.util.NbBundle.getMessage(NodePanel.class, "NodePanel.problemLabel.text")); // NOI18N
 
@@ -246,6 +248,14 @@ public final class NodePanel extends JPanel implements ValidationUI, DocumentLis
             }
         });
 
+        org.openide.awt.Mnemonics.setLocalizedText(workerCheckbox, org.openide.util.NbBundle.getMessage(NodePanel.class, "NodePanel.workerCheckbox.text")); // NOI18N
+        workerCheckbox.setToolTipText(org.openide.util.NbBundle.getMessage(NodePanel.class, "NodePanel.workerCheckbox.toolTipText")); // NOI18N
+        workerCheckbox.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                workerCheckboxActionPerformed(evt);
+            }
+        });
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(this);
         this.setLayout(layout);
         layout.setHorizontalGroup(
@@ -296,6 +306,8 @@ public final class NodePanel extends JPanel implements ValidationUI, DocumentLis
                         .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                             .addGroup(layout.createSequentialGroup()
                                 .addComponent(portField, javax.swing.GroupLayout.PREFERRED_SIZE, 60, javax.swing.GroupLayout.PREFERRED_SIZE)
+                                .addGap(18, 18, 18)
+                                .addComponent(workerCheckbox)
                                 .addGap(0, 0, Short.MAX_VALUE))
                             .addGroup(layout.createSequentialGroup()
                                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
@@ -323,7 +335,8 @@ public final class NodePanel extends JPanel implements ValidationUI, DocumentLis
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(portLabel)
-                    .addComponent(portField, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                    .addComponent(portField, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(workerCheckbox))
                 .addGap(17, 17, 17)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(sourcesField, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
@@ -461,6 +474,10 @@ public final class NodePanel extends JPanel implements ValidationUI, DocumentLis
         }
     }//GEN-LAST:event_npmBrowseActionPerformed
 
+    private void workerCheckboxActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_workerCheckboxActionPerformed
+        controller.changed();
+    }//GEN-LAST:event_workerCheckboxActionPerformed
+
     void load () {
         g.runWithValidationSuspended( new Runnable() {
             @Override
@@ -485,6 +502,7 @@ public final class NodePanel extends JPanel implements ValidationUI, DocumentLis
                 if (npmPath != null) {
                     npmField.setText( npmPath );
                 }
+                workerCheckbox.setSelected( NodeWorker.isEnabled() );
             }
         } );
     }
@@ -507,6 +525,9 @@ public final class NodePanel extends JPanel implements ValidationUI, DocumentLis
             // will not actually change it unless modified and exists
             npm.setExePath( s );
         }
+        if (workerCheckbox.isSelected() != NodeWorker.isEnabled()) {
+            NodeWorker.setEnabled( workerCheckbox.isSelected() );
+        }
         try {
             p.flush();
         } catch ( BackingStoreException ex ) {
@@ -553,6 +574,7 @@ public final class NodePanel extends JPanel implements ValidationUI, DocumentLis
     private javax.swing.JLabel problemLabel;
     private javax.swing.JLabel sourceLabel;
     private javax.swing.JTextField sourcesField;
+    private javax.swing.JCheckBox workerCheckbox;
     // End of variables declaration//GEN-END:variables
 
     @Override
@@ -53,7 +53,8 @@ public final class NativeNodeJS extends NodeJSExecutable {
     }
 
     public String version () {
-        return version;
+        // Platforms added by hand record no version
+        return version == null || version.startsWith( "(" ) ? super.version() : version; //NOI18N
     }
 
     public String displayName () {
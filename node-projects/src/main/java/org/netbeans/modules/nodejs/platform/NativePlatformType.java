@@ -19,11 +19,18 @@
 package org.netbeans.modules.nodejs.platform;
 
 import java.io.File;
+import java.util.HashSet;
 import java.util.LinkedList;
 import org.netbeans.modules.nodejs.api.NodeJSPlatformType;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.prefs.BackingStoreException;
+import java.util.prefs.NodeChangeEvent;
+import java.util.prefs.NodeChangeListener;
+import java.util.prefs.PreferenceChangeEvent;
+import java.util.prefs.PreferenceChangeListener;
 import java.util.prefs.Preferences;
 import org.netbeans.modules.nodejs.api.NodeJSExecutable;
 import org.netbeans.modules.nodejs.platform.wizard.ChooseNodeJSBinaryPanel;
@@ -47,6 +54,14 @@ public class NativePlatformType extends NodeJSPlatformType {
     private static final Preferences prefs = NbPreferences.forModule( NodeJSPlatforms.class ).node( "platforms" );
 
     public static final String NAME_NODEJS = "nodejs";
+    private static final Map<String, NodeJSExecutable> CACHE = new ConcurrentHashMap<>();
+    // Names of platform nodes INVALIDATOR listens to
+    private static final Set<String> LISTENING = ConcurrentHashMap.newKeySet();
+    private static final Invalidator INVALIDATOR = new Invalidator();
+
+    static {
+        prefs.addNodeChangeListener( INVALIDATOR );
+    }
 
     @Override
     public String add ( File f, Map<String, Object> props, String displayName ) {
@@ -72,6 +87,15 @@ public class NativePlatformType extends NodeJSPlatformType {
         if ("default".equals( name )) {
             return NodeJSExecutable.getDefault();
         }
+        if (name.startsWith( PlatformRegistry.DISCOVERED_PREFIX )) {
+            return PlatformRegistry.getDefault().find( name );
+        }
+        // Called for every run;  NativeNodeJS holds the launch state used to
+        // stop running processes, so the same instance must come back
+        NodeJSExecutable result = CACHE.get( name );
+        if (result != null) {
+            return result;
+        }
         try {
             Preferences p = prefs.nodeExists( name ) ? prefs.node( name ) : null;
             if (p != null) {
@@ -79,7 +103,11 @@ public class NativePlatformType extends NodeJSPlatformType {
                 String sources = p.get( "sources", null ); //NOI18N
                 String displayName = p.get( "displayName", name );
                 String version = p.get( "version", "(unknown)");
-                return new NativeNodeJS( name, sources, path, displayName, version );
+                result = new NativeNodeJS( name, sources, path, displayName, version );
+                if (CACHE.putIfAbsent( name, result ) == null && LISTENING.add( name )) {
+                    p.addPreferenceChangeListener( INVALIDATOR );
+                }
+                return CACHE.get( name );
             }
         } catch ( BackingStoreException ex ) {
             Exceptions.printStackTrace( ex );
@@ -87,6 +115,27 @@ public class NativePlatformType extends NodeJSPlatformType {
         return null;
     }
 
+    private static final class Invalidator implements PreferenceChangeListener, NodeChangeListener {
+        @Override
+        public void preferenceChange ( PreferenceChangeEvent evt ) {
+            CACHE.remove( evt.getNode().name() );
+        }
+
+        @Override
+        public void childAdded ( NodeChangeEvent evt ) {
+            CACHE.remove( evt.getChild().name() );
+            PlatformRegistry.getDefault().refresh();
+        }
+
+        @Override
+        public void childRemoved ( NodeChangeEvent evt ) {
+            // A node added again under the same name is a new object
+            LISTENING.remove( evt.getChild().name() );
+            CACHE.remove( evt.getChild().name() );
+            PlatformRegistry.getDefault().refresh();
+        }
+    }
+
     @Override
     public String name () {
         return NAME_NODEJS;
@@ -95,16 +144,24 @@ public class NativePlatformType extends NodeJSPlatformType {
     @Override
     public void all ( List<? super NodeJSExecutable> populate ) {
         populate.add( NodeJSExecutable.getDefault() );
+        Set<String> paths = new HashSet<>();
+        paths.add( NodeJSExecutable.getDefault().path() );
         try {
             for (String name : prefs.childrenNames()) {
                 NodeJSExecutable ex = find( name );
                 if (ex != null) {
                     populate.add( ex );
+                    paths.add( ex.path() );
                 }
             }
         } catch ( BackingStoreException ex ) {
             Exceptions.printStackTrace( ex );
         }
+        for (PlatformRegistry.Installation inst : PlatformRegistry.getDefault().installations()) {
+            if (paths.add( inst.node().getPath() )) {
+                populate.add( inst.executable() );
+            }
+        }
     }
 
     @Override
@@ -0,0 +1,449 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.platform;
+
+import java.awt.EventQueue;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.modules.nodejs.ProcessService;
+import org.netbeans.modules.nodejs.api.NodeJSExecutable;
+import org.openide.util.NbBundle.Messages;
+import org.openide.util.RequestProcessor;
+import org.openide.util.Utilities;
+
+/**
+ * Finds node installations once, in the background, and hands out the same
+ * immutable executables for them afterwards.  Looks on the PATH, in the
+ * version directories of nvm, fnm and volta, and in common install
+ * prefixes;  candidates' versions are probed in parallel.  The first
+ * installation found on the PATH is preferred, since that is what a
+ * terminal would run.
+ *
+ * @author Tim Boudreau
+ */
+@Messages ({
+    "# {0} - node version",
+    "# {1} - where it was found",
+    "DISCOVERED_PLATFORM=Node.js {0} ({1})"})
+public final class PlatformRegistry {
+    public static final String DISCOVERED_PREFIX = "discovered-"; //NOI18N
+    private static final long DISCOVERY_WAIT_MILLIS = 5000;
+    private static final RequestProcessor RP = new RequestProcessor( "Node platform discovery", 4 ); //NOI18N
+    private static final Logger LOG = Logger.getLogger( PlatformRegistry.class.getName() );
+    private static final PlatformRegistry INSTANCE = new PlatformRegistry();
+    private static final String[] COMMON_PREFIXES = {
+        "/usr", //NOI18N
+        "/usr/local", //NOI18N
+        "/opt", //NOI18N
+        "/opt/local", //NOI18N
+        "/opt/homebrew", //NOI18N
+        "C:" + File.separatorChar + "Program Files" + File.separatorChar + "nodejs" //NOI18N
+    };
+    private volatile List<Installation> installations;
+    private RequestProcessor.Task discovery;
+    private int generation;
+
+    private PlatformRegistry () {
+    }
+
+    public static PlatformRegistry getDefault () {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the installations found.  Starts discovery if it has not run;  off
+     * the event thread this waits (briefly) for it to finish, on it, returns
+     * whatever is known so far.
+     *
+     * @return The installations, preferred first
+     */
+    public List<Installation> installations () {
+        List<Installation> result = installations;
+        if (result != null) {
+            return result;
+        }
+        RequestProcessor.Task task = startDiscovery();
+        if (!EventQueue.isDispatchThread()) {
+            try {
+                task.waitFinished( DISCOVERY_WAIT_MILLIS );
+            } catch ( InterruptedException ex ) {
+                LOG.log( Level.FINE, null, ex );
+            }
+        }
+        result = installations;
+        return result == null ? Collections.<Installation>emptyList() : result;
+    }
+
+    /**
+     * Forget what was found and look again - called when platforms or the
+     * configured binaries change, which is usually because something was
+     * installed.
+     */
+    public void refresh () {
+        synchronized ( this ) {
+            installations = null;
+            discovery = null;
+        }
+        startDiscovery();
+    }
+
+    private synchronized RequestProcessor.Task startDiscovery () {
+        if (discovery == null) {
+            final int gen = ++generation;
+            discovery = RP.post( new Runnable() {
+                @Override
+                public void run () {
+                    List<Installation> found = Collections.unmodifiableList( discover() );
+                    synchronized ( PlatformRegistry.this ) {
+                        // A refresh while this ran makes the result stale
+                        if (gen == generation) {
+                            installations = found;
+                        }
+                    }
+                }
+            } );
+        }
+        return discovery;
+    }
+
+    /**
+     * The node binary which should be used when none is configured.  If
+     * discovery has not finished (always the case on the event thread the
+     * first time), falls back to the first node on the PATH, so callers do
+     * not ask the user for a binary which is there.
+     *
+     * @return A path or null
+     */
+    public String nodePath () {
+        List<Installation> all = installations();
+        if (all.isEmpty()) {
+            return installations == null ? onPath( nodeNames() ) : null;
+        }
+        return all.get( 0 ).node().getPath();
+    }
+
+    /**
+     * The npm which goes with the preferred node binary.
+     *
+     * @return A path or null
+     */
+    public String npmPath () {
+        List<Installation> all = installations();
+        for (Installation inst : all) {
+            if (inst.npm() != null) {
+                return inst.npm().getPath();
+            }
+        }
+        return all.isEmpty() && installations == null ? onPath( npmNames() ) : null;
+    }
+
+    /**
+     * Look for an executable on the PATH without running anything.
+     */
+    private static String onPath ( String[] names ) {
+        for (String dir : pathEntries()) {
+            for (String name : names) {
+                File f = new File( dir, name );
+                if (f.isFile() && f.canExecute()) {
+                    return f.getAbsolutePath();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String[] nodeNames () {
+        return Utilities.isWindows()
+                ? new String[]{"node.exe"} //NOI18N
+                : new String[]{"node", "nodejs"}; //NOI18N
+    }
+
+    private static String[] npmNames () {
+        return Utilities.isWindows()
+                ? new String[]{"npm.cmd", "npm"} //NOI18N
+                : new String[]{"npm"}; //NOI18N
+    }
+
+    /**
+     * Find a discovered installation by the name of its executable.
+     *
+     * @param name A name starting with {@link #DISCOVERED_PREFIX}
+     * @return An executable or null
+     */
+    public NodeJSExecutable find ( String name ) {
+        if (name == null || !name.startsWith( DISCOVERED_PREFIX )) {
+            return null;
+        }
+        for (Installation inst : installations()) {
+            if (name.equals( inst.executable().name() )) {
+                return inst.executable();
+            }
+        }
+        return null;
+    }
+
+    List<Installation> discover () {
+        return discover( pathEntries(), System.getProperty( "user.home" ), System.getenv(), COMMON_PREFIXES ); //NOI18N
+    }
+
+    /**
+     * Find installations, given where to look - separate from the real
+     * environment for tests.
+     *
+     * @param path The entries of the PATH
+     * @param home The user's home directory
+     * @param env Environment variables which point to version managers
+     * @param prefixes Install prefixes
+     * @return Installations which report their version, preferred first
+     */
+    List<Installation> discover ( List<String> path, String home, Map<String, String> env, String[] prefixes ) {
+        long start = System.currentTimeMillis();
+        // Canonical path -> installation, in order of preference
+        Map<String, Candidate> candidates = new LinkedHashMap<>();
+        for (String dir : path) {
+            addCandidate( candidates, new File( dir ), "PATH" ); //NOI18N
+        }
+        String volta = env( env, "VOLTA_HOME", new File( home, ".volta" ).getPath() ); //NOI18N
+        addCandidate( candidates, new File( volta, "bin" ), "volta" ); //NOI18N
+        addVersionDirs( candidates, new File( volta, "tools/image/node" ), "bin", "volta" ); //NOI18N
+        String nvm = env( env, "NVM_DIR", new File( home, ".nvm" ).getPath() ); //NOI18N
+        addVersionDirs( candidates, new File( nvm, "versions/node" ), "bin", "nvm" ); //NOI18N
+        String fnm = env( env, "FNM_DIR", null ); //NOI18N
+        List<File> fnmDirs = new ArrayList<>();
+        if (fnm != null) {
+            fnmDirs.add( new File( fnm ) );
+        }
+        fnmDirs.add( new File( home, ".local/share/fnm" ) ); //NOI18N
+        fnmDirs.add( new File( home, ".fnm" ) ); //NOI18N
+        fnmDirs.add( new File( home, "Library/Application Support/fnm" ) ); //NOI18N
+        for (File dir : fnmDirs) {
+            addVersionDirs( candidates, new File( dir, "node-versions" ), //NOI18N
+                    Utilities.isWindows() ? "installation" : "installation/bin", "fnm" ); //NOI18N
+        }
+        for (String prefix : prefixes) {
+            addCandidate( candidates, Utilities.isWindows() ? new File( prefix ) : new File( prefix, "bin" ), prefix ); //NOI18N
+        }
+        // Ask each binary its version at the same time
+        List<Future<String>> versions = new ArrayList<>();
+        for (final Candidate c : candidates.values()) {
+            versions.add( RP.submit( new Callable<String>() {
+                @Override
+                public String call () throws Exception {
+                    return ProcessService.getDefault().probe( null, c.node.getPath(), "--version" ).output(); //NOI18N
+                }
+            } ) );
+        }
+        List<Installation> result = new ArrayList<>();
+        int ix = 0;
+        for (Candidate c : candidates.values()) {
+            String version = null;
+            try {
+                version = versions.get( ix++ ).get( ProcessService.PROBE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS );
+            } catch ( InterruptedException | ExecutionException | TimeoutException ex ) {
+                LOG.log( Level.FINE, "Probing " + c.node, ex ); //NOI18N
+            }
+            // Something which will not report its version is not usable
+            if (version != null && version.startsWith( "v" )) { //NOI18N
+                result.add( new Installation( c.node, c.npm, version.trim(), c.source ) );
+            }
+        }
+        LOG.log( Level.FINE, "Found {0} node installations in {1} ms", //NOI18N
+                new Object[]{result.size(), System.currentTimeMillis() - start} );
+        return result;
+    }
+
+    private static String env ( Map<String, String> env, String name, String defaultValue ) {
+        String result = env.get( name );
+        return result == null || result.isEmpty() ? defaultValue : result;
+    }
+
+    private static List<String> pathEntries () {
+        String path = System.getenv( "PATH" ); //NOI18N
+        List<String> result = new ArrayList<>();
+        if (path != null) {
+            for (String s : path.split( File.pathSeparator )) {
+                if (!s.isEmpty()) {
+                    result.add( s );
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Add the binaries in each version directory under a version manager's
+     * root, newest version first.
+     */
+    private static void addVersionDirs ( Map<String, Candidate> into, File root, String binDir, String source ) {
+        File[] dirs = root.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        List<File> sorted = new ArrayList<>();
+        for (File f : dirs) {
+            if (f.isDirectory()) {
+                sorted.add( f );
+            }
+        }
+        Collections.sort( sorted, new Comparator<File>() {
+            @Override
+            public int compare ( File a, File b ) {
+                return compareVersions( b.getName(), a.getName() );
+            }
+        } );
+        for (File dir : sorted) {
+            addCandidate( into, new File( dir, binDir ), source );
+        }
+    }
+
+    private static void addCandidate ( Map<String, Candidate> into, File binDir, String source ) {
+        for (String name : nodeNames()) {
+            File node = new File( binDir, name );
+            if (node.isFile() && node.canExecute()) {
+                String key;
+                try {
+                    // Symlinks from /usr/local/bin and shims all point
+                    // somewhere;  list each real binary once
+                    key = node.getCanonicalPath();
+                } catch ( IOException ex ) {
+                    key = node.getAbsolutePath();
+                }
+                if (!into.containsKey( key )) {
+                    File npm = npmNextTo( binDir );
+                    if (npm == null) {
+                        // A link to node alone - look where it points
+                        npm = npmNextTo( new File( key ).getParentFile() );
+                    }
+                    into.put( key, new Candidate( node.getAbsoluteFile(), npm, source ) );
+                }
+                return;
+            }
+        }
+    }
+
+    private static File npmNextTo ( File binDir ) {
+        for (String name : npmNames()) {
+            File npm = new File( binDir, name );
+            if (npm.isFile()) {
+                return npm.getAbsoluteFile();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compare version directory names such as <code>v18.17.0</code>
+     * numerically.
+     */
+    static int compareVersions ( String a, String b ) {
+        String[] as = a.replaceFirst( "^v", "" ).split( "\\." ); //NOI18N
+        String[] bs = b.replaceFirst( "^v", "" ).split( "\\." ); //NOI18N
+        for (int i = 0; i < Math.max( as.length, bs.length ); i++) {
+            int x = i < as.length ? number( as[i] ) : 0;
+            int y = i < bs.length ? number( bs[i] ) : 0;
+            if (x != y) {
+                return Integer.compare( x, y );
+            }
+        }
+        return a.compareTo( b );
+    }
+
+    private static int number ( String s ) {
+        int result = 0;
+        for (int i = 0; i < s.length() && Character.isDigit( s.charAt( i ) ); i++) {
+            result = result * 10 + (s.charAt( i ) - '0');
+        }
+        return result;
+    }
+
+    private static final class Candidate {
+        final File node;
+        final File npm;
+        final String source;
+
+        Candidate ( File node, File npm, String source ) {
+            this.node = node;
+            this.npm = npm;
+            this.source = source;
+        }
+    }
+
+    /**
+     * A node installation which was found.
+     */
+    public static final class Installation {
+        private final File node;
+        private final File npm;
+        private final String version;
+        private final String source;
+        private final NativeNodeJS executable;
+
+        Installation ( File node, File npm, String version, String source ) {
+            this.node = node;
+            this.npm = npm;
+            this.version = version;
+            this.source = source;
+            String name = DISCOVERED_PREFIX + node.getPath().replace( File.separatorChar, '-' );
+            this.executable = new NativeNodeJS( name, null, node.getPath(),
+                    Bundle.DISCOVERED_PLATFORM( version, source ), version );
+        }
+
+        public File node () {
+            return node;
+        }
+
+        public File npm () {
+            return npm;
+        }
+
+        public String version () {
+            return version;
+        }
+
+        /**
+         * Where the installation was found - PATH, nvm, fnm, volta or an
+         * install prefix.
+         */
+        public String source () {
+            return source;
+        }
+
+        public NodeJSExecutable executable () {
+            return executable;
+        }
+
+        @Override
+        public String toString () {
+            return node + " " + version + " (" + source + ")";
+        }
+    }
+}
@@ -125,7 +125,7 @@ public final class RootNode extends AbstractNode implements ChangeListener {
             resolver.addChangeListener( WeakListeners.change( this, resolver ) );
         }
         Image result = super.getIcon( type );
-        if (resolver.hasMissingLibraries()) {
+        if (resolver.hasMissingLibraries() || resolver.hasMismatchedLibraries()) {
             Image badge = ImageUtilities.loadImage( MISSING_LIBRARIES_BADGE );
             result = ImageUtilities.mergeImages( result, badge, 9, 9 );
         }
@@ -157,6 +157,8 @@ public final class RootNode extends AbstractNode implements ChangeListener {
         if (isScriptsPopupAvailable()) {
             actions.add( new AdhocScriptAction( project ) );
         }
+        actions.add( new WatchProjectAction( project ) );
+        actions.add( new StartupTimesAction( project ) );
 
         actions.add( null );
         actions.add( CommonProjectActions.setAsMainProjectAction() );
@@ -195,7 +197,7 @@ public final class RootNode extends AbstractNode implements ChangeListener {
             }
         } );
         final LibrariesResolver resolver = getLookup().lookup( Project.class ).getLookup().lookup( LibrariesResolver.class );
-        if (resolver.hasMissingLibraries()) {
+        if (resolver.hasMissingLibraries() || resolver.hasMismatchedLibraries()) {
             actions.add( new AbstractAction( NbBundle.getMessage( RootNode.class, "RESOLVE_LIBRARIES" ) ) { //NOI18N
                 private static final long serialVersionUID = 1;
 
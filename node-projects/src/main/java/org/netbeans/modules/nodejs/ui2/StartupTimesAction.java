@@ -0,0 +1,52 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.ui2;
+
+import java.awt.event.ActionEvent;
+import javax.swing.AbstractAction;
+import org.netbeans.api.project.ProjectUtils;
+import org.netbeans.modules.nodejs.NodeJSProject;
+import org.openide.DialogDescriptor;
+import org.openide.DialogDisplayer;
+import org.openide.util.HelpCtx;
+import org.openide.util.NbBundle;
+
+/**
+ * Shows how long recent launches of the project took to start.
+ *
+ * @author Tim Boudreau
+ */
+public class StartupTimesAction extends AbstractAction {
+    private final NodeJSProject prj;
+
+    public StartupTimesAction ( NodeJSProject prj ) {
+        this.prj = prj;
+        putValue( NAME, NbBundle.getMessage( StartupTimesAction.class, "STARTUP_TIMES" ) );
+    }
+
+    @Override
+    public void actionPerformed ( ActionEvent ae ) {
+        DialogDescriptor desc = new DialogDescriptor( new StartupTimesPanel( prj ),
+                NbBundle.getMessage( StartupTimesAction.class, "TTL_STARTUP_TIMES",
+                        ProjectUtils.getInformation( prj ).getDisplayName() ), false,
+                new Object[]{DialogDescriptor.CLOSED_OPTION}, DialogDescriptor.CLOSED_OPTION,
+                DialogDescriptor.DEFAULT_ALIGN, HelpCtx.DEFAULT_HELP, null );
+        DialogDisplayer.getDefault().notify( desc );
+    }
+}
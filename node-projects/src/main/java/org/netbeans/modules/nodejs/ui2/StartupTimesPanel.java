@@ -0,0 +1,220 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.ui2;
+
+import java.awt.BorderLayout;
+import java.awt.EventQueue;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.table.AbstractTableModel;
+import org.netbeans.modules.nodejs.NodeJSProject;
+import org.netbeans.modules.nodejs.NodeJSProjectProperties;
+import org.netbeans.modules.nodejs.api.StartupTimings;
+import org.netbeans.modules.nodejs.api.StartupTimings.Launch;
+import org.openide.awt.Mnemonics;
+import org.openide.util.NbBundle;
+
+/**
+ * Table of recent launches of a project, newest first, with the median
+ * startup time of each platform.
+ *
+ * @author Tim Boudreau
+ */
+final class StartupTimesPanel extends JPanel implements ChangeListener, ActionListener, Runnable {
+    private final NodeJSProject prj;
+    private final Model model = new Model();
+    private final JLabel summary = new JLabel();
+    private final JTextField readyField = new JTextField( 30 );
+    private final JButton clear = new JButton();
+
+    @SuppressWarnings ("LeakingThisInConstructor")
+    StartupTimesPanel ( NodeJSProject prj ) {
+        super( new BorderLayout( 0, 5 ) );
+        this.prj = prj;
+        setBorder( BorderFactory.createEmptyBorder( 12, 12, 12, 12 ) );
+        JTable table = new JTable( model );
+        table.setAutoCreateRowSorter( true );
+        add( new JScrollPane( table ), BorderLayout.CENTER );
+
+        JPanel bottom = new JPanel( new BorderLayout( 0, 5 ) );
+        bottom.add( summary, BorderLayout.NORTH );
+        JPanel controls = new JPanel( new FlowLayout( FlowLayout.LEADING, 5, 0 ) );
+        JLabel readyLabel = new JLabel();
+        Mnemonics.setLocalizedText( readyLabel, NbBundle.getMessage( StartupTimesPanel.class, "LBL_READY_PATTERN" ) );
+        readyLabel.setLabelFor( readyField );
+        readyField.setToolTipText( NbBundle.getMessage( StartupTimesPanel.class, "TIP_READY_PATTERN" ) );
+        String pattern = properties().getReadyPattern();
+        readyField.setText( pattern == null ? "" : pattern );
+        readyField.addActionListener( this );
+        Mnemonics.setLocalizedText( clear, NbBundle.getMessage( StartupTimesPanel.class, "LBL_CLEAR_TIMES" ) );
+        clear.addActionListener( this );
+        controls.add( readyLabel );
+        controls.add( readyField );
+        controls.add( clear );
+        bottom.add( controls, BorderLayout.SOUTH );
+        add( bottom, BorderLayout.SOUTH );
+        run();
+    }
+
+    private NodeJSProjectProperties properties () {
+        return prj.getLookup().lookup( NodeJSProjectProperties.class );
+    }
+
+    @Override
+    public void addNotify () {
+        super.addNotify();
+        StartupTimings.getDefault().addChangeListener( this );
+        run();
+    }
+
+    @Override
+    public void removeNotify () {
+        StartupTimings.getDefault().removeChangeListener( this );
+        saveReadyPattern();
+        super.removeNotify();
+    }
+
+    private void saveReadyPattern () {
+        String pattern = readyField.getText().trim();
+        String old = properties().getReadyPattern();
+        if (!pattern.equals( old == null ? "" : old )) {
+            properties().setReadyPattern( pattern );
+        }
+    }
+
+    @Override
+    public void actionPerformed ( ActionEvent e ) {
+        if (e.getSource() == clear) {
+            StartupTimings.getDefault().clear( prj );
+        } else {
+            saveReadyPattern();
+        }
+    }
+
+    @Override
+    public void stateChanged ( ChangeEvent e ) {
+        // Fired from whatever thread reads the process' output
+        EventQueue.invokeLater( this );
+    }
+
+    @Override
+    public void run () {
+        List<Launch> launches = StartupTimings.getDefault().history( prj );
+        model.setLaunches( launches );
+        Map<String, Long> medians = StartupTimings.medianStartupMillis( launches );
+        if (medians.isEmpty()) {
+            summary.setText( NbBundle.getMessage( StartupTimesPanel.class, "NO_STARTUP_TIMES" ) );
+        } else {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, Long> e : medians.entrySet()) {
+                if (sb.length() > 0) {
+                    sb.append( ", " ); //NOI18N
+                }
+                sb.append( NbBundle.getMessage( StartupTimesPanel.class, "MEDIAN_STARTUP",
+                        e.getKey(), e.getValue() ) );
+            }
+            summary.setText( sb.toString() );
+        }
+    }
+
+    private static final class Model extends AbstractTableModel {
+        private static final String[] COLUMNS = {"COL_WHEN", "COL_PLATFORM", "COL_FILE", //NOI18N
+            "COL_SPAWN", "COL_FIRST_OUTPUT", "COL_READY", "COL_RESTART"}; //NOI18N
+        private List<Launch> launches = Collections.emptyList();
+
+        void setLaunches ( List<Launch> launches ) {
+            List<Launch> newestFirst = new ArrayList<>( launches );
+            Collections.reverse( newestFirst );
+            this.launches = newestFirst;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount () {
+            return launches.size();
+        }
+
+        @Override
+        public int getColumnCount () {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName ( int column ) {
+            return NbBundle.getMessage( StartupTimesPanel.class, COLUMNS[column] );
+        }
+
+        @Override
+        public Class<?> getColumnClass ( int column ) {
+            switch ( column ) {
+                case 0:
+                case 1:
+                case 2:
+                    return String.class;
+                case 6:
+                    return Boolean.class;
+                default:
+                    return Long.class;
+            }
+        }
+
+        @Override
+        public Object getValueAt ( int row, int column ) {
+            Launch launch = launches.get( row );
+            switch ( column ) {
+                case 0:
+                    return DateFormat.getTimeInstance().format( new Date( launch.requestedAt() ) );
+                case 1:
+                    return launch.platform();
+                case 2:
+                    return launch.file();
+                case 3:
+                    return millis( launch.spawnMillis() );
+                case 4:
+                    return millis( launch.firstOutputMillis() );
+                case 5:
+                    return millis( launch.readyMillis() );
+                case 6:
+                    return launch.isRestart();
+                default:
+                    throw new IndexOutOfBoundsException( "" + column ); //NOI18N
+            }
+        }
+
+        private static Long millis ( long value ) {
+            return value < 0 ? null : value;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.ui2;
+
+import java.awt.event.ActionEvent;
+import javax.swing.AbstractAction;
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JMenuItem;
+import org.netbeans.modules.nodejs.NodeJSProject;
+import org.netbeans.modules.nodejs.NodeJSProjectProperties;
+import org.openide.awt.Mnemonics;
+import org.openide.util.NbBundle;
+import org.openide.util.actions.Presenter;
+
+/**
+ * Toggles restarting the project's main file when its sources change.
+ *
+ * @author Tim Boudreau
+ */
+public class WatchProjectAction extends AbstractAction implements Presenter.Popup {
+    private final NodeJSProject prj;
+
+    public WatchProjectAction ( NodeJSProject prj ) {
+        this.prj = prj;
+        putValue( NAME, NbBundle.getMessage( WatchProjectAction.class, "WATCH_PROJECT" ) );
+    }
+
+    @Override
+    public void actionPerformed ( ActionEvent ae ) {
+        NodeJSProjectProperties props = prj.getLookup().lookup( NodeJSProjectProperties.class );
+        props.setWatch( !props.isWatch() );
+    }
+
+    @Override
+    public JMenuItem getPopupPresenter () {
+        JCheckBoxMenuItem item = new JCheckBoxMenuItem( this );
+        Mnemonics.setLocalizedText( item, (String) getValue( NAME ) );
+        item.setSelected( prj.getLookup().lookup( NodeJSProjectProperties.class ).isWatch() );
+        return item;
+    }
+}
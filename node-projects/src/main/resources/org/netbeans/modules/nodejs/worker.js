@@ -0,0 +1,66 @@
+/*
+ * Long-lived helper used by the IDE to answer questions about modules
+ * without spawning npm for each one.
+ *
+ * Protocol: one JSON object per line on stdin, {"id":1,"op":"root",...};
+ * one JSON object per line on stdout, {"id":1,"result":...} or
+ * {"id":1,"error":"message"}.  Exits when stdin is closed.
+ */
+var fs = require('fs'), path = require('path'), readline = require('readline');
+
+// Same answer as "npm root":  node_modules in the nearest folder that has a
+// package.json or node_modules, or in the starting folder if there is none
+function localRoot(dir) {
+    var start = path.resolve(dir || process.cwd()), cur = start;
+    for (;;) {
+        if (fs.existsSync(path.join(cur, 'package.json')) || fs.existsSync(path.join(cur, 'node_modules'))) {
+            return path.join(cur, 'node_modules');
+        }
+        var parent = path.dirname(cur);
+        if (parent === cur) {
+            return path.join(start, 'node_modules');
+        }
+        cur = parent;
+    }
+}
+
+var ops = {
+    ping: function () {
+        return 'pong';
+    },
+    // Only the local root:  the global one depends on npm's configuration
+    // (builtin, global and user npmrc files, environment variables), which
+    // only npm itself gets right
+    root: function (req) {
+        return localRoot(req.dir);
+    }
+};
+
+function reply(msg) {
+    process.stdout.write(JSON.stringify(msg) + '\n');
+}
+
+readline.createInterface({input: process.stdin, terminal: false}).on('line', function (line) {
+    if (!line.trim()) {
+        return;
+    }
+    var req;
+    try {
+        req = JSON.parse(line);
+    } catch (e) {
+        reply({id: -1, error: 'Bad request: ' + e.message});
+        return;
+    }
+    var op = ops[req.op];
+    if (!op) {
+        reply({id: req.id, error: 'Unknown op ' + req.op});
+        return;
+    }
+    try {
+        reply({id: req.id, result: op(req)});
+    } catch (e) {
+        reply({id: req.id, error: e.message});
+    }
+}).on('close', function () {
+    process.exit(0);
+});
@@ -0,0 +1,101 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class AsyncProcessTest {
+
+    @Before
+    public void setUp () {
+        // Uses sh
+        assumeTrue( File.separatorChar == '/' );
+    }
+
+    @Test
+    public void testLinesAndExitCode () throws Exception {
+        final List<String> out = Collections.synchronizedList( new ArrayList<String>() );
+        final List<String> err = Collections.synchronizedList( new ArrayList<String>() );
+        AsyncProcess proc = AsyncProcess.start( null, Collections.singletonMap( "GREETING", "hello" ),
+                new AsyncProcess.LineHandler() {
+            @Override
+            public void onLine ( String line, boolean stderr ) {
+                (stderr ? err : out).add( line );
+            }
+        }, "sh", "-c", "printf 'one\\ntw'; echo \"o $GREETING\"; echo oops >&2; printf 'three'; printf 'bad\\r\\n' >&2; exit 7" );
+        assertEquals( Integer.valueOf( 7 ), proc.future().get( 10, TimeUnit.SECONDS ) );
+        assertFalse( proc.isRunning() );
+        // All output has been handled by the time the future completes
+        assertEquals( Arrays.asList( "one", "two hello", "three" ), out );
+        assertEquals( Arrays.asList( "oops", "bad" ), err );
+
+        proc = AsyncProcess.start( null, null, new AsyncProcess.LineHandler() {
+            @Override
+            public void onLine ( String line, boolean stderr ) {
+            }
+        }, "sh", "-c", "exit 0" );
+        assertEquals( Integer.valueOf( 0 ), proc.future().get( 10, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void testCancelDestroysProcess () throws Exception {
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final List<String> out = Collections.synchronizedList( new ArrayList<String>() );
+        AsyncProcess proc = AsyncProcess.start( null, null, new AsyncProcess.LineHandler() {
+            @Override
+            public void onLine ( String line, boolean stderr ) {
+                out.add( line );
+                started.countDown();
+            }
+        }, "sh", "-c", "echo $$; exec sleep 30" );
+        assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+        assertTrue( proc.isRunning() );
+        File procDir = new File( "/proc/" + out.get( 0 ) );
+        assertTrue( proc.future().cancel( true ) );
+        assertFalse( proc.isRunning() );
+        try {
+            proc.future().get();
+            fail( "Should be cancelled" );
+        } catch ( CancellationException ex ) {
+            // expected
+        }
+        if (new File( "/proc/self" ).exists()) {
+            long deadline = System.currentTimeMillis() + 10000;
+            while ( procDir.exists() && System.currentTimeMillis() < deadline ) {
+                Thread.sleep( 20 );
+            }
+            assertFalse( "Process " + procDir.getName() + " still running", procDir.exists() );
+        }
+    }
+}
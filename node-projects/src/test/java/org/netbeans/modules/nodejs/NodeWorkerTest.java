@@ -0,0 +1,160 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs worker.js in a real node, if there is one.
+ *
+ * @author Tim Boudreau
+ */
+public class NodeWorkerTest {
+    private File dir;
+    private NodeWorker worker;
+
+    @Before
+    public void setUp () throws IOException {
+        dir = Files.createTempDirectory( "node-worker" ).toFile();
+    }
+
+    @After
+    public void tearDown () throws IOException {
+        if (worker != null) {
+            worker.shutdown();
+        }
+        delete( dir );
+    }
+
+    private static String node () {
+        for (String path : System.getenv( "PATH" ).split( File.pathSeparator )) {
+            File f = new File( path, "node" );
+            if (f.isFile() && f.canExecute()) {
+                return f.getAbsolutePath();
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testRepliesMatchRequests () throws Exception {
+        String node = node();
+        assumeTrue( node != null );
+        worker = new NodeWorker( node, null, 10000 );
+        List<File> dirs = new ArrayList<>();
+        List<CompletableFuture<Object>> replies = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            File project = new File( dir, "p" + i );
+            File nested = new File( project, "lib/util" );
+            assertTrue( nested.mkdirs() );
+            write( new File( project, "package.json" ), "{\"name\":\"p" + i + "\"}" );
+            dirs.add( project );
+            Map<String, Object> args = new LinkedHashMap<>();
+            args.put( "dir", nested.getAbsolutePath() );
+            replies.add( worker.request( "root", args ) );
+            // An error in between must not be taken as the answer to
+            // anything else
+            replies.add( worker.request( "frobnicate", Collections.<String, Object>emptyMap() ) );
+        }
+        for (int i = 0; i < dirs.size(); i++) {
+            assertEquals( new File( dirs.get( i ), "node_modules" ).getAbsolutePath(),
+                    replies.get( i * 2 ).get( 10, TimeUnit.SECONDS ) );
+            try {
+                replies.get( i * 2 + 1 ).get( 10, TimeUnit.SECONDS );
+                fail( "Unknown op should fail" );
+            } catch ( ExecutionException ex ) {
+                assertTrue( ex.getCause().getMessage(), ex.getCause().getMessage().contains( "frobnicate" ) );
+            }
+        }
+        assertEquals( "pong", worker.request( "ping", Collections.<String, Object>emptyMap() )
+                .get( 10, TimeUnit.SECONDS ) );
+        // No package.json anywhere above:  the folder's own node_modules
+        // (unless the temp dir itself is inside a project)
+        assertNotNull( worker.root( dir ) );
+    }
+
+    @Test
+    public void testTimeout () throws Exception {
+        String node = node();
+        assumeTrue( node != null );
+        File silent = new File( dir, "silent.js" );
+        write( silent, "process.stdin.resume();\n" );
+        worker = new NodeWorker( node, silent, 300 );
+        long start = System.currentTimeMillis();
+        assertNull( worker.root( dir ) );
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue( "Took " + elapsed, elapsed >= 300 && elapsed < 5000 );
+        // The wedged process was stopped, and a new one is started for the
+        // next request
+        CompletableFuture<Object> next = worker.request( "ping", Collections.<String, Object>emptyMap() );
+        worker.shutdown();
+        try {
+            next.get( 10, TimeUnit.SECONDS );
+            fail( "Request to a stopped worker should fail" );
+        } catch ( ExecutionException ex ) {
+            assertTrue( ex.getCause() instanceof IOException );
+        }
+    }
+
+    @Test
+    public void testNoNode () throws Exception {
+        worker = new NodeWorker( new File( dir, "no-such-node" ).getAbsolutePath(), null, 10000 );
+        assertNull( worker.root( dir ) );
+        try {
+            worker.request( "ping", Collections.<String, Object>emptyMap() ).get( 10, TimeUnit.SECONDS );
+            fail( "Should not be able to start" );
+        } catch ( ExecutionException ex ) {
+            assertTrue( ex.getCause() instanceof IOException );
+        }
+    }
+
+    private static void write ( File file, String content ) throws IOException {
+        try (OutputStream out = new FileOutputStream( file )) {
+            out.write( content.getBytes( StandardCharsets.UTF_8 ) );
+        }
+    }
+
+    private static void delete ( File file ) {
+        File[] kids = file.listFiles();
+        if (kids != null) {
+            for (File kid : kids) {
+                delete( kid );
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,126 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class ProcessServiceTest {
+    private ProcessService svc;
+
+    @Before
+    public void setUp () {
+        // Uses sh and sleep
+        assumeTrue( File.separatorChar == '/' );
+        svc = new ProcessService();
+    }
+
+    @Test
+    public void testProbeIsCached () throws Exception {
+        ProcessService.Result first = svc.probe( null, "sh", "-c", "echo $$" );
+        assertTrue( first.toString(), first.isSuccess() );
+        assertNotNull( first.output() );
+        assertSame( first, svc.probe( null, "sh", "-c", "echo $$" ) );
+        assertEquals( Long.valueOf( 1 ), svc.metrics().get( "probeCacheHits" ) );
+        assertEquals( Long.valueOf( 1 ), svc.metrics().get( "spawned" ) );
+        // Failures are not cached
+        ProcessService.Result failed = svc.probe( null, "sh", "-c", "exit 3" );
+        assertEquals( 3, failed.exitCode() );
+        assertNull( failed.output() );
+        assertNotSame( failed, svc.probe( null, "sh", "-c", "exit 3" ) );
+        assertEquals( Long.valueOf( 3 ), svc.metrics().get( "spawned" ) );
+        svc.clearProbeCache();
+        ProcessService.Result again = svc.probe( null, "sh", "-c", "echo $$" );
+        assertNotSame( first, again );
+        assertFalse( first.output().equals( again.output() ) );
+        assertEquals( Long.valueOf( 1 ), svc.metrics().get( "probeCacheHits" ) );
+    }
+
+    @Test
+    public void testTimeout () throws Exception {
+        long start = System.currentTimeMillis();
+        ProcessService.Result result = svc.run( null, null, 300, "sleep", "30" );
+        assertTrue( System.currentTimeMillis() - start < 10000 );
+        assertTrue( result.isTimedOut() );
+        assertFalse( result.isSuccess() );
+        assertEquals( -1, result.exitCode() );
+        assertNull( result.output() );
+        Map<String, Long> metrics = awaitCompleted( 1 );
+        assertEquals( Long.valueOf( 1 ), metrics.get( "timedOut" ) );
+        assertEquals( Long.valueOf( 1 ), metrics.get( "failed" ) );
+    }
+
+    @Test
+    public void testAverageIsOfCompletedProcesses () throws Exception {
+        AsyncProcess running = svc.start( null, null, new AsyncProcess.LineHandler() {
+            @Override
+            public void onLine ( String line, boolean stderr ) {
+            }
+        }, "sleep", "30" );
+        try {
+            try {
+                svc.start( null, null, null, new File( "/no/such/program" ).getPath() );
+                fail( "Should not start" );
+            } catch ( IOException ex ) {
+                // expected
+            }
+            assertTrue( svc.run( null, null, 10000, "sh", "-c", "echo hello" ).isSuccess() );
+            Map<String, Long> metrics = awaitCompleted( 1 );
+            assertEquals( Long.valueOf( 3 ), metrics.get( "spawned" ) );
+            assertEquals( Long.valueOf( 1 ), metrics.get( "failed" ) );
+            assertEquals( metrics.get( "totalMillis" ), metrics.get( "averageMillis" ) );
+            assertTrue( metrics.get( "maxMillis" ) >= metrics.get( "averageMillis" ) );
+        } finally {
+            running.future().cancel( true );
+        }
+        try {
+            running.future().get( 10, TimeUnit.SECONDS );
+            fail( "Should have been cancelled" );
+        } catch ( CancellationException ex ) {
+            // expected
+        }
+        Map<String, Long> metrics = awaitCompleted( 2 );
+        assertEquals( Long.valueOf( 2 ), metrics.get( "failed" ) );
+        assertEquals( Long.valueOf( metrics.get( "totalMillis" ) / 2 ), metrics.get( "averageMillis" ) );
+    }
+
+    private Map<String, Long> awaitCompleted ( long count ) throws InterruptedException {
+        // Metrics are recorded when the process's future completes, which
+        // may be just after a caller waiting on the same future wakes up
+        long deadline = System.currentTimeMillis() + 10000;
+        Map<String, Long> result = svc.metrics();
+        while ( result.get( "completed" ) < count && System.currentTimeMillis() < deadline ) {
+            Thread.sleep( 20 );
+            result = svc.metrics();
+        }
+        assertEquals( result.toString(), Long.valueOf( count ), result.get( "completed" ) );
+        return result;
+    }
+}
@@ -0,0 +1,94 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import static org.netbeans.modules.nodejs.api.StackFrameParserTest.ERR_PATTERN;
+import static org.netbeans.modules.nodejs.api.StackFrameParserTest.SYNTAX_ERR_PATTERN;
+
+/**
+ * Compares the regular expressions LineConverter used to run on every line
+ * of output with StackFrameParser, over output recorded from a node server
+ * that mostly logs requests and occasionally dumps a stack trace.  Not run
+ * as part of the build;  run the main method from the test classpath.
+ *
+ * @author Tim Boudreau
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class LineConverterBenchmark {
+    private String[] lines;
+
+    @Setup
+    public void setup () throws IOException {
+        List<String> log = StackFrameParserTest.recordedLog();
+        lines = log.toArray( new String[log.size()] );
+    }
+
+    @Benchmark
+    public void regex ( Blackhole bh ) {
+        for (String line : lines) {
+            Matcher m = ERR_PATTERN.matcher( line );
+            if (m.find()) {
+                bh.consume( m.group( 2 ) );
+                bh.consume( Integer.parseInt( m.group( 3 ) ) );
+            } else {
+                m = SYNTAX_ERR_PATTERN.matcher( line );
+                if (m.find()) {
+                    bh.consume( m.group( 1 ) );
+                    bh.consume( Integer.parseInt( m.group( 2 ) ) );
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void parser ( Blackhole bh ) {
+        for (String line : lines) {
+            bh.consume( StackFrameParser.parse( line ) );
+        }
+    }
+
+    public static void main ( String[] args ) throws RunnerException {
+        new Runner( new OptionsBuilder()
+                .include( LineConverterBenchmark.class.getSimpleName() )
+                .build() ).run();
+    }
+}
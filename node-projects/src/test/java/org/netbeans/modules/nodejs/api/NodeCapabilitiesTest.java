@@ -0,0 +1,184 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.After;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Before;
+import org.junit.Test;
+import org.netbeans.modules.nodejs.json.ObjectMapperProvider;
+import static org.netbeans.modules.nodejs.json.ObjectMapperProvider.STRING_OBJECT_MAP;
+
+/**
+ * Uses the output of the probe script recorded from node 20 on Linux.
+ *
+ * @author Tim Boudreau
+ */
+public class NodeCapabilitiesTest {
+    private File dir;
+    private String oldUserDir;
+
+    @Before
+    public void setUp () throws IOException {
+        dir = Files.createTempDirectory( "capabilities" ).toFile();
+        // Places puts the disk cache under the user dir
+        oldUserDir = System.setProperty( "netbeans.user", new File( dir, "userdir" ).getPath() );
+    }
+
+    @After
+    public void tearDown () {
+        if (oldUserDir == null) {
+            System.clearProperty( "netbeans.user" );
+        } else {
+            System.setProperty( "netbeans.user", oldUserDir );
+        }
+        delete( dir );
+    }
+
+    private static Map<String, Object> recorded () throws IOException {
+        try (InputStream in = NodeCapabilitiesTest.class.getResourceAsStream( "node-20-probe.json" )) {
+            return ObjectMapperProvider.newObjectMapper().readValue( in, STRING_OBJECT_MAP );
+        }
+    }
+
+    @Test
+    public void testParse () throws IOException {
+        NodeCapabilities caps = new NodeCapabilities( "/usr/bin/node", 1, 2, recorded() );
+        assertEquals( "/usr/bin/node", caps.path() );
+        assertEquals( "v20.20.2", caps.version() );
+        assertEquals( 20, caps.majorVersion() );
+        assertEquals( "11.3.244.8-node.38", caps.v8Version() );
+        assertEquals( "3.0.19", caps.versions().get( "openssl" ) );
+        assertEquals( "x64", caps.arch() );
+        assertEquals( "linux", caps.platform() );
+        assertTrue( caps.isBuiltIn( "fs" ) );
+        assertTrue( caps.isBuiltIn( "fs/promises" ) );
+        assertTrue( caps.isBuiltIn( "node:test" ) );
+        assertFalse( caps.isBuiltIn( "express" ) );
+        // _http_agent and friends are listed, but are not for requiring
+        assertFalse( caps.isBuiltIn( "_http_agent" ) );
+        for (String mod : caps.builtInModules()) {
+            assertFalse( mod, mod.startsWith( "_" ) );
+        }
+        assertEquals( 54, caps.builtInModules().size() );
+        assertTrue( caps.supportsFlag( "--inspect" ) );
+        assertFalse( caps.supportsFlag( "--no-such-flag" ) );
+    }
+
+    @Test
+    public void testOldNode () {
+        // What 8.x answers:  no builtinModules, so the natives, which
+        // include internal modules;  no flag set
+        Map<String, Object> probe = new LinkedHashMap<>();
+        probe.put( "version", "v8.17.0" );
+        probe.put( "builtinModules", Arrays.asList( "_stream_wrap", "buffer", "fs",
+                "internal/bootstrap_node", "internal/util", "util" ) );
+        probe.put( "flags", null );
+        NodeCapabilities caps = new NodeCapabilities( "node", 0, 0, probe );
+        assertEquals( "[buffer, fs, util]", caps.builtInModules().toString() );
+        assertTrue( caps.flags().isEmpty() );
+        assertNull( caps.v8Version() );
+        assertEquals( 8, caps.majorVersion() );
+    }
+
+    @Test
+    public void testMajorVersion () {
+        assertEquals( 0, major( "v0.10.48" ) );
+        assertEquals( 18, major( "v18.19.1" ) );
+        assertEquals( 21, major( "21.0.0-pre" ) );
+        assertEquals( 0, major( "" ) );
+        assertEquals( 0, major( null ) );
+    }
+
+    private static int major ( String version ) {
+        Map<String, Object> probe = new LinkedHashMap<>();
+        probe.put( "version", version );
+        return new NodeCapabilities( "node", 0, 0, probe ).majorVersion();
+    }
+
+    @Test
+    public void testDiskCacheKeyedOnPathTimeAndSize () throws IOException {
+        // The fake binary is a shell script
+        assumeTrue( File.separatorChar == '/' );
+        File probe = new File( dir, "probe.json" );
+        try (InputStream in = NodeCapabilitiesTest.class.getResourceAsStream( "node-20-probe.json" )) {
+            Files.copy( in, probe.toPath() );
+        }
+        File node = new File( dir, "node" );
+        write( node, "#!/bin/sh\ncat '" + probe.getPath() + "'\n" );
+        assertTrue( node.setExecutable( true ) );
+        assertTrue( node.setLastModified( 1500000000000L ) );
+        String key = node.getAbsolutePath();
+        long length = node.length();
+
+        NodeCapabilities caps = NodeCapabilities.forBinary( node );
+        assertNotNull( caps );
+        assertEquals( "v20.20.2", caps.version() );
+        assertSame( caps, NodeCapabilities.cachedForBinary( node ) );
+
+        NodeCapabilities fromDisk = NodeCapabilities.readCache( key, 1500000000000L, length );
+        assertNotNull( fromDisk );
+        assertNotSame( caps, fromDisk );
+        assertEquals( caps.builtInModules(), fromDisk.builtInModules() );
+        assertEquals( caps.flags(), fromDisk.flags() );
+        assertNull( NodeCapabilities.readCache( key, 1500000001000L, length ) );
+        assertNull( NodeCapabilities.readCache( key, 1500000000000L, length + 1 ) );
+        assertNull( NodeCapabilities.readCache( key + "2", 1500000000000L, length ) );
+
+        // Replacing the binary invalidates both caches
+        assertTrue( node.setLastModified( 1600000000000L ) );
+        assertNull( NodeCapabilities.cachedForBinary( node ) );
+
+        // Something which does not answer is not run again until it changes
+        File bogus = new File( dir, "bogus" );
+        write( bogus, "#!/bin/sh\necho nope\n" );
+        assertTrue( bogus.setExecutable( true ) );
+        assertNull( NodeCapabilities.forBinary( bogus ) );
+        write( bogus, "#!/bin/sh\ncat '" + probe.getPath() + "'\n" );
+        assertTrue( bogus.setLastModified( 1500000000000L ) );
+        assertNotNull( NodeCapabilities.forBinary( bogus ) );
+    }
+
+    private static void write ( File file, String content ) throws IOException {
+        try (OutputStream out = new FileOutputStream( file )) {
+            out.write( content.getBytes( StandardCharsets.UTF_8 ) );
+        }
+    }
+
+    private static void delete ( File file ) {
+        File[] kids = file.listFiles();
+        if (kids != null) {
+            for (File kid : kids) {
+                delete( kid );
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,190 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.netbeans.api.extexecution.input.InputProcessor;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class OutputThrottleTest {
+
+    @Test
+    public void testLinesPassThroughUnderBudget () throws IOException {
+        Recorder rec = new Recorder();
+        OutputThrottle.RingBuffer buf = new OutputThrottle.RingBuffer( 100 );
+        OutputThrottle t = new OutputThrottle( rec, settings( 100, false, false ), buf );
+        t.processInput( "one\ntw".toCharArray() );
+        t.processInput( "o\r\nthree".toCharArray() );
+        assertEquals( Arrays.asList( "one", "two" ), rec.lines );
+        t.close();
+        assertEquals( Arrays.asList( "one", "two", "three" ), rec.lines );
+        assertEquals( rec.lines, buf.snapshot() );
+        assertTrue( rec.closed );
+    }
+
+    @Test
+    public void testRepeatsAreFolded () throws IOException {
+        Recorder rec = new Recorder();
+        OutputThrottle t = new OutputThrottle( rec, settings( 0, true, false ), new OutputThrottle.RingBuffer( 100 ) );
+        t.processInput( "a\nb\nb\nb\nc\n".toCharArray() );
+        assertEquals( 4, rec.lines.size() );
+        assertEquals( "b", rec.lines.get( 1 ) );
+        assertTrue( rec.lines.get( 2 ), rec.lines.get( 2 ).contains( "2" ) );
+        assertEquals( "c", rec.lines.get( 3 ) );
+        t.close();
+    }
+
+    @Test
+    public void testFloodIsSummarizedAndTailReplayed () throws IOException {
+        Recorder rec = new Recorder();
+        OutputThrottle.RingBuffer buf = new OutputThrottle.RingBuffer( 50 );
+        OutputThrottle t = new OutputThrottle( rec, settings( 10, false, false ), buf );
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append( "line " ).append( i ).append( '\n' );
+        }
+        t.processInput( sb.toString().toCharArray() );
+        assertEquals( 10, rec.lines.size() );
+        t.close();
+        // summary plus the last five suppressed lines
+        assertEquals( 16, rec.lines.size() );
+        assertTrue( rec.lines.get( 10 ), rec.lines.get( 10 ).contains( "990" ) );
+        assertEquals( "line 995", rec.lines.get( 11 ) );
+        assertEquals( "line 999", rec.lines.get( 15 ) );
+        List<String> captured = buf.snapshot();
+        assertEquals( 50, captured.size() );
+        assertEquals( "line 950", captured.get( 0 ) );
+        assertEquals( "line 999", captured.get( 49 ) );
+    }
+
+    @Test
+    public void testTwoStreamFlood () throws Exception {
+        Recorder out = new Recorder();
+        Recorder err = new Recorder();
+        OutputThrottle.RingBuffer buf = new OutputThrottle.RingBuffer( 5000 );
+        OutputThrottle a = new OutputThrottle( out, settings( 10, false, false ), buf );
+        OutputThrottle b = new OutputThrottle( err, settings( 10, false, false ), buf );
+        for (int i = 0; i < 1000; i++) {
+            a.processInput( ("out " + i + "\n").toCharArray() );
+            b.processInput( ("err " + i + "\n").toCharArray() );
+        }
+        assertEquals( 10, out.lines.size() );
+        assertEquals( 10, err.lines.size() );
+        Thread.sleep( 1100 );
+        // A line in a new window ends the suppression;  each stream replays
+        // only its own held-back lines, ahead of the new one
+        b.processInput( "err done\n".toCharArray() );
+        a.processInput( "out done\n".toCharArray() );
+        for (Recorder rec : new Recorder[]{out, err}) {
+            String prefix = rec == out ? "out " : "err ";
+            assertEquals( rec.lines.toString(), 17, rec.lines.size() );
+            for (int i = 0; i < 10; i++) {
+                assertEquals( prefix + i, rec.lines.get( i ) );
+            }
+            assertTrue( rec.lines.get( 10 ), rec.lines.get( 10 ).contains( "990" ) );
+            for (int i = 0; i < 5; i++) {
+                assertEquals( prefix + (995 + i), rec.lines.get( 11 + i ) );
+            }
+            assertEquals( prefix + "done", rec.lines.get( 16 ) );
+        }
+        a.close();
+        b.close();
+        assertEquals( 17, out.lines.size() );
+        assertEquals( 17, err.lines.size() );
+        assertEquals( 2002, buf.snapshot().size() );
+    }
+
+    @Test
+    public void testRepeatsWhileSuppressedAreCounted () throws IOException {
+        Recorder rec = new Recorder();
+        OutputThrottle t = new OutputThrottle( rec, settings( 2, true, false ), new OutputThrottle.RingBuffer( 100 ) );
+        t.processInput( "a\nb\nc\nc\nc\nd\n".toCharArray() );
+        assertEquals( Arrays.asList( "a", "b" ), rec.lines );
+        t.close();
+        assertEquals( 5, rec.lines.size() );
+        assertTrue( rec.lines.get( 2 ), rec.lines.get( 2 ).contains( "4" ) );
+        assertEquals( Arrays.asList( "c", "d" ), rec.lines.subList( 3, 5 ) );
+    }
+
+    @Test
+    public void testTailOnlyShowsNothingUntilPause () throws IOException {
+        Recorder rec = new Recorder();
+        OutputThrottle t = new OutputThrottle( rec, settings( 0, false, true ), new OutputThrottle.RingBuffer( 100 ) );
+        t.processInput( "a\nb\nc\n".toCharArray() );
+        assertTrue( rec.lines.isEmpty() );
+        t.close();
+        assertEquals( Arrays.asList( "a", "b", "c" ), rec.lines.subList( 1, 4 ) );
+    }
+
+    @Test
+    public void testBannerPrintedOnce () throws IOException {
+        Recorder out = new Recorder();
+        Recorder err = new Recorder();
+        OutputThrottle.RingBuffer buf = new OutputThrottle.RingBuffer( 100 );
+        AtomicReference<String> banner = new AtomicReference<>( "restarted" );
+        OutputThrottle a = new OutputThrottle( out, settings( 0, false, false ), buf, banner );
+        OutputThrottle b = new OutputThrottle( err, settings( 0, false, false ), buf, banner );
+        b.processInput( "oops\n".toCharArray() );
+        a.processInput( "hello\n".toCharArray() );
+        assertEquals( Arrays.asList( "restarted", "oops" ), err.lines );
+        assertEquals( Arrays.asList( "hello" ), out.lines );
+        assertEquals( Arrays.asList( "oops", "hello" ), buf.snapshot() );
+    }
+
+    private static OutputThrottle.Settings settings ( int max, boolean fold, boolean tail ) {
+        return new OutputThrottle.Settings( max, 5, fold, tail, 100, 60000 );
+    }
+
+    private static final class Recorder implements InputProcessor {
+        final List<String> lines = new ArrayList<>();
+        private final StringBuilder sb = new StringBuilder();
+        boolean closed;
+
+        @Override
+        public void processInput ( char[] chars ) throws IOException {
+            for (char c : chars) {
+                if (c == '\n') {
+                    lines.add( sb.toString() );
+                    sb.setLength( 0 );
+                } else {
+                    sb.append( c );
+                }
+            }
+        }
+
+        @Override
+        public void reset () throws IOException {
+            lines.clear();
+        }
+
+        @Override
+        public void close () throws IOException {
+            closed = true;
+        }
+    }
+}
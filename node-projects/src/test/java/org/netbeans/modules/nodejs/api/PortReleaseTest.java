@@ -0,0 +1,77 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class PortReleaseTest {
+
+    @Test
+    public void testPortsIn () {
+        Set<Integer> ports = PortRelease.portsIn( Arrays.asList(
+                "Server running at http://127.0.0.1:8080/",
+                "Listening on port 3000",
+                "listening on [::]:4000",
+                "Express started on http://localhost:5000 at 12:30:45",
+                "PORT=6000",
+                "Started at 10:15:30 in 2300 ms",
+                "    at Server.<anonymous> (/home/tim/lib/http.js:1234:5)",
+                "connected to mongodb://db.example.com:27017",
+                "listening on port 80" ) );
+        assertEquals( new TreeSet<>( Arrays.asList( 3000, 4000, 5000, 6000, 8080 ) ), ports );
+    }
+
+    @Test
+    public void testAwaitRelease () throws Exception {
+        final ServerSocket socket = new ServerSocket();
+        socket.setReuseAddress( true );
+        socket.bind( new InetSocketAddress( 0 ) );
+        int port = socket.getLocalPort();
+        assertFalse( PortRelease.isFree( port ) );
+        assertEquals( Collections.singleton( port ), PortRelease.inUse( Collections.singleton( port ) ) );
+        assertFalse( PortRelease.awaitRelease( Collections.singleton( port ), 100 ) );
+        Thread t = new Thread() {
+            @Override
+            public void run () {
+                try {
+                    Thread.sleep( 200 );
+                    socket.close();
+                } catch ( Exception ex ) {
+                    throw new AssertionError( ex );
+                }
+            }
+        };
+        t.start();
+        long start = System.currentTimeMillis();
+        assertTrue( PortRelease.awaitRelease( Collections.singleton( port ), 5000 ) );
+        assertTrue( System.currentTimeMillis() - start < 5000 );
+        assertTrue( PortRelease.inUse( Collections.singleton( port ) ).isEmpty() );
+    }
+}
@@ -0,0 +1,179 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class SourceMapsTest {
+    private static final String B64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    private static final int LINES = 300;
+    private File dir;
+
+    @Before
+    public void setUp () throws IOException {
+        dir = File.createTempFile( "srcmap", "test" );
+        assertTrue( dir.delete() );
+        assertTrue( new File( dir, "src" ).mkdirs() );
+        assertTrue( new File( dir, "dist" ).mkdirs() );
+        write( new File( dir, "src/app.ts" ), "// original" );
+        SourceMaps.getDefault().clear();
+    }
+
+    @After
+    public void tearDown () {
+        for (String sub : new String[]{"src", "dist"}) {
+            File[] files = new File( dir, sub ).listFiles();
+            for (File f : files == null ? new File[0] : files) {
+                f.delete();
+            }
+            new File( dir, sub ).delete();
+        }
+        new File( dir, "package.json" ).delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testDecodeVlq () {
+        assertVlq( "A", 0 );
+        assertVlq( "C", 1 );
+        assertVlq( "D", -1 );
+        assertVlq( "gB", 16 );
+        assertVlq( "2H", 123 );
+        assertVlq( "3H", -123 );
+    }
+
+    @Test
+    public void testLookupsInAnyOrder () throws IOException {
+        File js = new File( dir, "dist/app.js" );
+        write( js, "var x;\n//# sourceMappingURL=app.js.map\n" );
+        write( new File( dir, "dist/app.js.map" ), mapJson( "../src" ) );
+        Random rnd = new Random( 42 );
+        for (int i = 0; i < 500; i++) {
+            int line = rnd.nextInt( LINES );
+            boolean second = rnd.nextBoolean();
+            SourceMaps.Position pos = SourceMaps.getDefault().find( js, line + 1, second ? 15 : 3 );
+            assertNotNull( pos );
+            assertEquals( new File( dir, "src/app.ts" ).getCanonicalFile(), pos.file );
+            assertEquals( second ? line * 2 + 2 : line * 2 + 1, pos.line );
+            assertEquals( second ? 5 : 1, pos.column );
+        }
+        assertNull( SourceMaps.getDefault().find( js, LINES + 5, 1 ) );
+    }
+
+    @Test
+    public void testInlineMapAndInvalidation () throws IOException {
+        File js = new File( dir, "dist/inline.js" );
+        String inline = Base64.getEncoder().encodeToString( mapJson( "../src" ).getBytes( StandardCharsets.UTF_8 ) );
+        write( js, "var x;\n//# sourceMappingURL=data:application/json;charset=utf-8;base64," + inline + "\n" );
+        SourceMaps.Position pos = SourceMaps.getDefault().find( js, 10, 1 );
+        assertNotNull( pos );
+        assertEquals( 19, pos.line );
+
+        write( js, "var x;\n" );
+        assertTrue( js.setLastModified( js.lastModified() + 5000 ) );
+        assertNull( SourceMaps.getDefault().find( js, 10, 1 ) );
+    }
+
+    @Test
+    public void testBundlerPathsResolvedAgainstProject () throws IOException {
+        write( new File( dir, "package.json" ), "{}" );
+        File js = new File( dir, "dist/bundle.js" );
+        write( js, "var x;\n//# sourceMappingURL=bundle.js.map\n" );
+        write( new File( dir, "dist/bundle.js.map" ), mapJson( "webpack:///./src" ) );
+        SourceMaps.Position pos = SourceMaps.getDefault().find( js, 10, 1 );
+        assertNotNull( pos );
+        assertEquals( new File( dir, "src/app.ts" ).getCanonicalFile(), pos.file );
+    }
+
+    @Test
+    public void testNoMap () throws IOException {
+        File js = new File( dir, "dist/plain.js" );
+        write( js, "var x;\n" );
+        assertNull( SourceMaps.getDefault().find( js, 1, 1 ) );
+        assertNull( SourceMaps.mappingUrl( js ) );
+    }
+
+    private static void assertVlq ( String s, int expect ) {
+        byte[] bytes = s.getBytes( StandardCharsets.US_ASCII );
+        long packed = SourceMaps.SourceMap.decodeVlq( bytes, 0 );
+        assertEquals( s, expect, (int) packed );
+        assertEquals( s, bytes.length, (int) (packed >>> 32) );
+    }
+
+    /**
+     * Generated line n maps column 0 to original line 2n, column 0, and
+     * column 10 to original line 2n + 1, column 4.
+     */
+    private static String mapJson ( String root ) {
+        StringBuilder sb = new StringBuilder();
+        int prevLine = 0;
+        int prevCol = 0;
+        for (int i = 0; i < LINES; i++) {
+            if (i > 0) {
+                sb.append( ';' );
+            }
+            vlq( sb, 0 );
+            vlq( sb, 0 );
+            vlq( sb, i * 2 - prevLine );
+            vlq( sb, 0 - prevCol );
+            sb.append( ',' );
+            vlq( sb, 10 );
+            vlq( sb, 0 );
+            vlq( sb, 1 );
+            vlq( sb, 4 );
+            prevLine = i * 2 + 1;
+            prevCol = 4;
+        }
+        return "{\"version\":3,\"file\":\"app.js\",\"sourceRoot\":\"" + root
+                + "\",\"sources\":[\"app.ts\"],\"sourcesContent\":[\"// original\"],\"names\":[],\"mappings\":\""
+                + sb + "\"}";
+    }
+
+    private static void vlq ( StringBuilder sb, int value ) {
+        int v = value < 0 ? ((-value) << 1) | 1 : value << 1;
+        do {
+            int digit = v & 31;
+            v >>>= 5;
+            if (v > 0) {
+                digit |= 32;
+            }
+            sb.append( B64.charAt( digit ) );
+        } while (v > 0);
+    }
+
+    private static void write ( File f, String content ) throws IOException {
+        try (OutputStream out = new FileOutputStream( f )) {
+            out.write( content.getBytes( StandardCharsets.UTF_8 ) );
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class StackFrameParserTest {
+    // The patterns LineConverter used before StackFrameParser
+    static final Pattern ERR_PATTERN
+            = Pattern.compile( "at\\s(.*?)\\s\\((.*?.js):(\\d+):(\\d+)\\)" );
+    static final Pattern SYNTAX_ERR_PATTERN
+            = Pattern.compile( "(\\/.*?\\.js):(\\d+)" );
+
+    @Test
+    public void testStackFrames () {
+        assertFrame( "Server.<anonymous>", "/home/tim/Fooger/src/Fooger.js", 7, 5,
+                "    at Server.<anonymous> (/home/tim/Fooger/src/Fooger.js:7:5)" );
+        assertFrame( "Function.executeUserEntryPoint [as runMain]", "/x/run main.js", 164, 12,
+                "    at Function.executeUserEntryPoint [as runMain] (/x/run main.js:164:12)" );
+        assertFrame( "async Promise.all", "/a/b.js", 1, 2, "\tat async Promise.all (/a/b.js:1:2)  " );
+        assertFrame( "new Foo", "/a/(weird)/b.mjs", 10, 20, "at new Foo (/a/(weird)/b.mjs:10:20)" );
+        assertFrame( null, "/home/tim/app.js", 12, 3, "    at /home/tim/app.js:12:3" );
+        assertFrame( "Module._compile", "/home/tim/esm.mjs", 3, 11, "    at Module._compile (file:///home/tim/esm.mjs:3:11)" );
+        assertFrame( "Module._compile", "module.js", 456, 26, "    at Module._compile (module.js:456:26)" );
+        assertFrame( "x", "C:\\work\\app.cjs", 1, 1, "    at x (C:\\work\\app.cjs:1:1)" );
+    }
+
+    @Test
+    public void testPathAndLine () {
+        assertFrame( null, "/home/tim/work/personal/captcha/captcha.js", 38, 0,
+                "/home/tim/work/personal/captcha/captcha.js:38" );
+        assertFrame( null, "/srv/a.js", 4, 0, "Error loading /srv/a.js:4 (cached)" );
+        assertFrame( null, "/srv/b.js", 9, 0, "a.js:x then /srv/b.js:9" );
+    }
+
+    @Test
+    public void testNonMatches () {
+        assertNull( StackFrameParser.parse( "" ) );
+        assertNull( StackFrameParser.parse( "2023-11-14T22:13:21.000Z INFO  GET /api/items/1 200 7ms" ) );
+        assertNull( StackFrameParser.parse( "    at JSON.parse (<anonymous>)" ) );
+        assertNull( StackFrameParser.parse( "    at Module._extensions..js (node:internal/modules/cjs/loader:1623:10)" ) );
+        assertNull( StackFrameParser.parse( "    at node:internal/main/run_main_module:28:49" ) );
+        assertNull( StackFrameParser.parse( "see foo.js: it is broken" ) );
+        assertNull( StackFrameParser.parse( "/a/b.js:99999999999999" ) );
+    }
+
+    @Test
+    public void testAgreesWithOldPatternsOnRecordedLog () throws IOException {
+        int links = 0;
+        for (String line : recordedLog()) {
+            StackFrameParser.Frame frame = StackFrameParser.parse( line );
+            Matcher m = ERR_PATTERN.matcher( line );
+            if (m.find()) {
+                assertNotNull( line, frame );
+                assertEquals( line, m.group( 1 ), frame.function );
+                assertEquals( line, m.group( 2 ), frame.path );
+                assertEquals( line, Integer.parseInt( m.group( 3 ) ), frame.line );
+                assertEquals( line, Integer.parseInt( m.group( 4 ) ), frame.column );
+                links++;
+            } else if ((m = SYNTAX_ERR_PATTERN.matcher( line )).find()) {
+                assertNotNull( line, frame );
+                assertEquals( line, m.group( 1 ), frame.path );
+                assertEquals( line, Integer.parseInt( m.group( 2 ) ), frame.line );
+                links++;
+            } else {
+                assertNull( line, frame );
+            }
+        }
+        assertTrue( "Log should contain some stack traces", links > 20 );
+    }
+
+    static List<String> recordedLog () throws IOException {
+        List<String> result = new ArrayList<>();
+        try (InputStream in = StackFrameParserTest.class.getResourceAsStream( "server.log" );
+                BufferedReader r = new BufferedReader( new InputStreamReader( in, StandardCharsets.UTF_8 ) )) {
+            String line;
+            while ( (line = r.readLine()) != null ) {
+                result.add( line );
+            }
+        }
+        return result;
+    }
+
+    private static void assertFrame ( String function, String path, int line, int column, String text ) {
+        StackFrameParser.Frame frame = StackFrameParser.parse( text );
+        assertNotNull( text, frame );
+        assertEquals( text, function, frame.function );
+        assertEquals( text, path, frame.path );
+        assertEquals( text, line, frame.line );
+        assertEquals( text, column, frame.column );
+    }
+}
@@ -0,0 +1,90 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.netbeans.modules.nodejs.api.StartupTimings.Launch;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class StartupTimingsTest {
+
+    @Test
+    public void testFormatAndParse () {
+        Launch launch = new Launch( "Avatar", "/tmp/some dir/server.js", 1400000000000L, true, 120, 450, 900, true );
+        Launch parsed = Launch.parse( launch.format() );
+        assertNotNull( parsed );
+        assertEquals( "Avatar", parsed.platform() );
+        assertEquals( "/tmp/some dir/server.js", parsed.file() );
+        assertEquals( 1400000000000L, parsed.requestedAt() );
+        assertTrue( parsed.isRestart() );
+        assertEquals( 120, parsed.spawnMillis() );
+        assertEquals( 450, parsed.firstOutputMillis() );
+        assertEquals( 900, parsed.readyMillis() );
+        assertNull( Launch.parse( "garbage" ) );
+        assertNull( Launch.parse( "a\tb\tc\td\te\tf\tg" ) );
+    }
+
+    @Test
+    public void testMedian () {
+        Map<String, Long> medians = StartupTimings.medianStartupMillis( Arrays.asList(
+                new Launch( "node", "a.js", 0, false, 5, 40, -1, true ),
+                new Launch( "node", "a.js", 0, false, 5, 30, 200, true ),
+                new Launch( "node", "a.js", 0, false, 5, 20, 100, true ),
+                new Launch( "avatar", "a.js", 0, false, 5, 900, 1500, true ),
+                new Launch( "avatar", "a.js", 0, false, 5, -1, -1, true ) ) );
+        assertEquals( 2, medians.size() );
+        assertEquals( Long.valueOf( 100 ), medians.get( "node" ) );
+        assertEquals( Long.valueOf( 1500 ), medians.get( "avatar" ) );
+    }
+
+    @Test
+    public void testRecorderFindsPort () {
+        StartupTimings.Recorder rec = StartupTimings.getDefault().start( null, "node", "a.js",
+                System.currentTimeMillis(), false, null );
+        rec.spawned();
+        assertTrue( rec.launch().spawnMillis() >= 0 );
+        rec.line( "Connecting to the database" );
+        Launch launch = rec.launch();
+        assertTrue( launch.firstOutputMillis() >= 0 );
+        assertEquals( -1, launch.readyMillis() );
+        assertFalse( launch.isFinished() );
+        rec.line( "Listening on port 3000" );
+        assertTrue( rec.launch().readyMillis() >= launch.firstOutputMillis() );
+        assertTrue( rec.launch().isFinished() );
+    }
+
+    @Test
+    public void testRecorderUsesPattern () {
+        StartupTimings.Recorder rec = StartupTimings.getDefault().start( null, "node", "a.js",
+                System.currentTimeMillis(), false, Pattern.compile( "^ready" ) );
+        rec.line( "Listening on port 3000" );
+        assertEquals( -1, rec.launch().readyMillis() );
+        rec.line( "ready for work" );
+        assertTrue( rec.launch().readyMillis() >= 0 );
+        rec.exited();
+        assertTrue( rec.launch().isFinished() );
+    }
+}
@@ -0,0 +1,118 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class WatchFilterTest {
+
+    private static WatchFilter filter ( String main, String... ignore ) {
+        return new WatchFilter( Arrays.asList( WatchFilter.DEFAULT_EXTENSIONS ), Arrays.asList( ignore ), main );
+    }
+
+    @Test
+    public void testOnlySourcesRestart () {
+        WatchFilter f = filter( "index.js" );
+        assertFalse( f.isIgnored( "index.js" ) );
+        assertFalse( f.isIgnored( "lib/server.mjs" ) );
+        assertFalse( f.isIgnored( "lib/util.cjs" ) );
+        assertFalse( f.isIgnored( "src/app.ts" ) );
+        assertFalse( f.isIgnored( "config.json" ) );
+        assertTrue( f.isIgnored( "server.log" ) );
+        assertTrue( f.isIgnored( "data/app.sqlite" ) );
+        assertTrue( f.isIgnored( "uploads/picture.png" ) );
+        assertTrue( f.isIgnored( "README" ) );
+        assertTrue( f.isIgnored( null ) );
+        assertTrue( f.isIgnored( "" ) );
+    }
+
+    @Test
+    public void testHiddenModulesAndOutputIgnored () {
+        WatchFilter f = filter( "index.js" );
+        assertTrue( f.isIgnored( ".git/config.json" ) );
+        assertTrue( f.isIgnored( "lib/.cache/x.js" ) );
+        assertTrue( f.isIgnored( "node_modules/foo/index.js" ) );
+        assertTrue( f.isIgnored( "dist/bundle.js" ) );
+        assertTrue( f.isIgnored( "build/out.js" ) );
+        assertTrue( f.isIgnored( "coverage/lcov.json" ) );
+        assertFalse( "Only top level output folders", f.isIgnored( "lib/build/x.js" ) );
+        assertFalse( "Not a folder", f.isIgnored( "build.js" ) );
+    }
+
+    @Test
+    public void testOutputFolderWatchedIfMainIsInIt () {
+        WatchFilter f = filter( "dist/server.js" );
+        assertFalse( f.isIgnored( "dist/server.js" ) );
+        assertTrue( f.isIgnored( "build/out.js" ) );
+    }
+
+    @Test
+    public void testIgnorePatterns () {
+        WatchFilter f = filter( "index.js", "*.test.js", "./public/", "db/**/*.json", "tmp", "lib/gen?.js" );
+        assertTrue( f.isIgnored( "a.test.js" ) );
+        assertTrue( f.isIgnored( "lib/b.test.js" ) );
+        assertFalse( f.isIgnored( "lib/b.js" ) );
+        assertTrue( f.isIgnored( "public/app.js" ) );
+        assertFalse( f.isIgnored( "lib/public/app.js" ) );
+        assertTrue( f.isIgnored( "db/data.json" ) );
+        assertTrue( f.isIgnored( "db/a/b/data.json" ) );
+        assertFalse( f.isIgnored( "db/schema.js" ) );
+        assertTrue( f.isIgnored( "tmp/x.js" ) );
+        assertTrue( f.isIgnored( "lib/tmp/x.js" ) );
+        assertTrue( f.isIgnored( "lib/gen1.js" ) );
+        assertFalse( f.isIgnored( "lib/gen12.js" ) );
+        assertFalse( "Regex characters are literal", f.isIgnored( "libXgen1.js" ) );
+    }
+
+    @Test
+    public void testNodemonConfig () {
+        Map<String, Object> config = new HashMap<>();
+        config.put( "ext", "js, .coffee" );
+        config.put( "ignore", Arrays.asList( "logs/*", "*.spec.js" ) );
+        List<String> ext = new ArrayList<>();
+        List<String> ignore = new ArrayList<>();
+        WatchFilter.readNodemonConfig( config, ext, ignore );
+        assertEquals( Arrays.asList( "js", "coffee" ), ext );
+        assertEquals( Arrays.asList( "logs/*", "*.spec.js" ), ignore );
+
+        WatchFilter f = new WatchFilter( ext, ignore, null );
+        assertFalse( f.isIgnored( "app.coffee" ) );
+        assertTrue( f.isIgnored( "config.json" ) );
+        assertTrue( f.isIgnored( "logs/x.js" ) );
+        assertTrue( f.isIgnored( "a.spec.js" ) );
+
+        config.put( "ignore", "a.js b.js" );
+        ignore.clear();
+        WatchFilter.readNodemonConfig( config, ext, ignore );
+        assertEquals( Arrays.asList( "a.js", "b.js" ), ignore );
+        assertTrue( WatchFilter.split( null ).isEmpty() );
+        assertEquals( Collections.singletonList( "x" ), WatchFilter.split( " x, " ) );
+    }
+}
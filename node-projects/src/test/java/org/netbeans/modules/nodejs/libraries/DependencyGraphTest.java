@@ -0,0 +1,187 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.libraries;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.SortedSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class DependencyGraphTest {
+    private File dir;
+
+    @Before
+    public void setup () throws IOException {
+        File tmp = new File( System.getProperty( "java.io.tmpdir" ) ).getCanonicalFile();
+        dir = new File( tmp, "depgraph-" + System.currentTimeMillis() );
+        assertTrue( dir.mkdirs() );
+    }
+
+    @After
+    public void teardown () {
+        delete( dir );
+    }
+
+    @Test
+    public void testInstalledTree () throws IOException {
+        write( "package.json", "{\"name\":\"prj\",\"dependencies\":{\"a\":\"1\",\"b\":\"1\"},\"devDependencies\":{\"c\":\"1\"}}" );
+        pkg( "node_modules/a", "a", "1.0.0", "d" );
+        pkg( "node_modules/a/node_modules/d", "d", "2.0.0" );
+        pkg( "node_modules/b", "b", "1.0.0", "d", "gone" );
+        pkg( "node_modules/d", "d", "1.0.0" );
+        pkg( "node_modules/@s/e", "@s/e", "1.0.0" );
+        write( "node_modules/d/big.js", new String( new char[1000] ) );
+
+        DependencyGraph graph = new DependencyGraph( dir, new PackageTable(), null );
+        DependencyGraph.Snapshot snap = graph.snapshot();
+        assertSame( snap, graph.snapshot() );
+        assertFalse( snap.isFromLockfile() );
+        assertEquals( 5, snap.size() );
+
+        int a = snap.topLevel( "a" );
+        int b = snap.topLevel( "b" );
+        int d = snap.topLevel( "d" );
+        int e = snap.topLevel( "@s/e" );
+        assertTrue( a >= 0 && b >= 0 && d >= 0 && e >= 0 );
+        assertEquals( -1, snap.topLevel( "c" ) );
+        assertEquals( "[@s/e, a, b, d]", snap.topLevelNames().toString() );
+        assertEquals( "[a, b, c]", snap.declared().toString() );
+        assertSame( snap.topLevelNames(), snap.topLevelNames() );
+
+        int[] aDeps = snap.dependencies( a );
+        assertEquals( 1, aDeps.length );
+        assertEquals( a, snap.parent( aDeps[0] ) );
+        assertEquals( "2.0.0", snap.version( aDeps[0] ) );
+        assertArrayEquals( new int[]{d}, snap.dependencies( b ) );
+
+        assertTrue( snap.unresolved().toString(), snap.unresolved().contains( "c" ) );
+        assertTrue( snap.unresolved().toString(), snap.unresolved().contains( "b -> gone" ) );
+
+        Map<String, SortedSet<String>> dups = snap.duplicates();
+        assertEquals( dups.toString(), 1, dups.size() );
+        assertEquals( Arrays.asList( "1.0.0", "2.0.0" ), Arrays.asList( dups.get( "d" ).toArray() ) );
+        assertEquals( 2, snap.instancesOf( "d" ).length );
+
+        BitSet used = snap.used();
+        assertFalse( used.get( e ) );
+        assertEquals( 4, used.cardinality() );
+        assertTrue( snap.ownSize( d ) >= 1000 );
+        assertEquals( snap.ownSize( a ) + snap.ownSize( aDeps[0] ), snap.installedSize( a ) );
+        assertEquals( snap.ownSize( b ) + snap.ownSize( d ), snap.closureSize( b ) );
+
+        // Only b is rescanned, and picks up its new dependency
+        pkg( "node_modules/b", "b", "1.1.0", "d", "@s/e" );
+        graph.invalidate( "b/package.json" );
+        DependencyGraph.Snapshot nue = graph.snapshot();
+        assertNotSame( snap, nue );
+        b = nue.topLevel( "b" );
+        assertEquals( "1.1.0", nue.version( b ) );
+        assertTrue( nue.used().get( nue.topLevel( "@s/e" ) ) );
+        assertFalse( nue.unresolved().contains( "b -> gone" ) );
+    }
+
+    @Test
+    public void testNestedChangesRescanned () throws IOException {
+        write( "package.json", "{\"name\":\"prj\",\"dependencies\":{\"a\":\"1\",\"b\":\"1\"}}" );
+        pkg( "node_modules/a", "a", "1.0.0", "d" );
+        pkg( "node_modules/a/node_modules/d", "d", "2.0.0" );
+        pkg( "node_modules/b", "b", "1.0.0" );
+        DependencyGraph graph = new DependencyGraph( dir, new PackageTable(), null );
+        DependencyGraph.Snapshot snap = graph.snapshot();
+        int d = snap.dependencies( snap.topLevel( "a" ) )[0];
+        assertEquals( "2.0.0", snap.version( d ) );
+        assertEquals( d, snap.indexOf( new File( dir, "node_modules/a/node_modules/d" ) ) );
+        assertEquals( -1, snap.indexOf( new File( dir, "node_modules/c" ) ) );
+
+        // Neither a's folder nor its package.json change
+        File nested = new File( dir, "node_modules/a/node_modules/d/package.json" );
+        long modified = nested.lastModified();
+        pkg( "node_modules/a/node_modules/d", "d", "2.1.0" );
+        assertTrue( nested.setLastModified( modified + 2000 ) );
+        graph.invalidate( "b" );
+        snap = graph.snapshot();
+        assertEquals( "2.1.0", snap.version( snap.dependencies( snap.topLevel( "a" ) )[0] ) );
+    }
+
+    @Test
+    public void testLockfile () throws IOException {
+        write( "package.json", "{\"name\":\"prj\",\"dependencies\":{\"a\":\"1\"}}" );
+        write( "package-lock.json", "{\"lockfileVersion\":3,\"packages\":{"
+                + "\"\":{\"name\":\"prj\",\"dependencies\":{\"a\":\"1\"}},"
+                + "\"node_modules/a\":{\"version\":\"1.0.0\",\"dependencies\":{\"b\":\"^2\"}},"
+                + "\"node_modules/a/node_modules/b\":{\"version\":\"2.0.0\"},"
+                + "\"node_modules/b\":{\"version\":\"1.0.0\"}}}" );
+        DependencyGraph.Snapshot snap = new DependencyGraph( dir, new PackageTable(), null ).snapshot();
+        assertTrue( snap.isFromLockfile() );
+        assertEquals( 3, snap.size() );
+        int a = snap.topLevel( "a" );
+        assertEquals( "2.0.0", snap.version( snap.dependencies( a )[0] ) );
+        assertEquals( 2, snap.used().cardinality() );
+        assertEquals( -1, snap.ownSize( a ) );
+
+        write( "package-lock.json", "{\"lockfileVersion\":1,\"dependencies\":{"
+                + "\"a\":{\"version\":\"1.0.0\",\"requires\":{\"b\":\"^2\"},"
+                + "\"dependencies\":{\"b\":{\"version\":\"2.0.0\"}}},"
+                + "\"b\":{\"version\":\"1.0.0\"}}}" );
+        snap = new DependencyGraph( dir, new PackageTable(), null ).snapshot();
+        assertEquals( 3, snap.size() );
+        a = snap.topLevel( "a" );
+        assertEquals( "2.0.0", snap.version( snap.dependencies( a )[0] ) );
+        assertEquals( 1, snap.duplicates().size() );
+    }
+
+    private void pkg ( String path, String name, String version, String... deps ) throws IOException {
+        StringBuilder sb = new StringBuilder( "{\"name\":\"" ).append( name )
+                .append( "\",\"version\":\"" ).append( version ).append( "\",\"dependencies\":{" );
+        for (int i = 0; i < deps.length; i++) {
+            sb.append( i == 0 ? "" : "," ).append( '"' ).append( deps[i] ).append( "\":\"*\"" );
+        }
+        write( path + "/package.json", sb.append( "}}" ).toString() );
+    }
+
+    private void write ( String path, String content ) throws IOException {
+        File f = new File( dir, path );
+        f.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream( f )) {
+            out.write( content.getBytes( "UTF-8" ) );
+        }
+    }
+
+    private static void delete ( File f ) {
+        File[] kids = f.listFiles();
+        if (kids != null) {
+            for (File kid : kids) {
+                delete( kid );
+            }
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,109 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.libraries;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class InstalledPackagesTest {
+    private File dir;
+
+    @Before
+    public void setup () throws IOException {
+        File tmp = new File( System.getProperty( "java.io.tmpdir" ) ).getCanonicalFile();
+        dir = new File( tmp, "installed-" + System.currentTimeMillis() );
+        assertTrue( new File( dir, "node_modules" ).mkdirs() );
+    }
+
+    @After
+    public void teardown () {
+        delete( dir );
+    }
+
+    @Test
+    public void testIncrementalUpdates () throws IOException {
+        pkg( "a", "1.2.0" );
+        pkg( "@s/b", "2.0.0" );
+        InstalledPackages installed = new InstalledPackages( dir );
+        Map<String, Object> deps = new LinkedHashMap<>();
+        deps.put( "a", "^1.0.0" );
+        deps.put( "@s/b", "^1.0.0" );
+        deps.put( "c", "latest" );
+        installed.setDeclared( deps );
+        installed.rescan();
+        assertEquals( 2, installed.installedCount() );
+        assertEquals( "2.0.0", installed.installedVersion( "@s/b" ) );
+        assertEquals( 1, installed.missingCount() );
+        assertTrue( installed.getMissing().contains( "c" ) );
+        assertEquals( 1, installed.mismatchedCount() );
+        assertEquals( "2.0.0", installed.getMismatched().get( "@s/b" ) );
+
+        pkg( "c", "0.1.0" );
+        installed.changed( "c/lib/index.js" );
+        assertEquals( 0, installed.missingCount() );
+
+        pkg( "@s/b", "1.5.0" );
+        installed.changed( "@s/b/package.json" );
+        assertEquals( 0, installed.mismatchedCount() );
+
+        delete( new File( dir, "node_modules/a" ) );
+        installed.changed( "a" );
+        assertEquals( 1, installed.missingCount() );
+        assertFalse( installed.isInstalled( "a" ) );
+
+        delete( new File( dir, "node_modules/@s" ) );
+        installed.changed( "@s" );
+        assertEquals( 2, installed.missingCount() );
+
+        deps.remove( "a" );
+        deps.remove( "@s/b" );
+        installed.setDeclared( deps );
+        assertEquals( 0, installed.missingCount() );
+    }
+
+    private void pkg ( String name, String version ) throws IOException {
+        File f = new File( dir, "node_modules/" + name + "/package.json" );
+        f.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream( f )) {
+            out.write( ("{\"name\":\"" + name + "\",\"scripts\":{\"x\":\"y\"},\"version\":\"" + version + "\"}").getBytes( "UTF-8" ) );
+        }
+    }
+
+    private static void delete ( File f ) {
+        File[] kids = f.listFiles();
+        if (kids != null) {
+            for (File kid : kids) {
+                delete( kid );
+            }
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,120 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.libraries;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class LockfileReaderTest {
+
+    @Test
+    public void testVersion3 () throws IOException {
+        LockfileReader.Lockfile lock = parse( "{\"name\":\"prj\",\"lockfileVersion\":3,\"requires\":true,\"packages\":{"
+                + "\"\":{\"name\":\"prj\",\"dependencies\":{\"a\":\"^1\"},\"devDependencies\":{\"c\":\"1\"},\"optionalDependencies\":{\"fsevents\":\"*\"}},"
+                + "\"packages/ws\":{\"version\":\"0.0.1\"},"
+                + "\"node_modules/a\":{\"version\":\"1.0.0\",\"resolved\":\"https://x/a.tgz\",\"integrity\":\"sha512-abc\","
+                + "\"dependencies\":{\"@s/b\":\"^2\"},\"engines\":{\"node\":\">=8\"},\"funding\":[{\"url\":\"x\"}]},"
+                + "\"node_modules/a/node_modules/@s/b\":{\"version\":\"2.0.0\",\"dev\":true,\"peerDependencies\":{\"a\":\"*\"}},"
+                + "\"node_modules/fsevents\":{\"version\":\"2.3.2\",\"optional\":true},"
+                + "\"node_modules/al\":{\"name\":\"real-name\",\"version\":\"3.0.0\",\"link\":true}}}" );
+        assertEquals( 3, lock.getLockfileVersion() );
+        List<LockfileReader.Entry> entries = lock.getEntries();
+        assertEquals( entries.toString(), 4, entries.size() );
+        assertEquals( Arrays.asList( "a", "fsevents", "al" ), Arrays.asList( lock.getTopLevelNames().toArray() ) );
+        assertEquals( Arrays.asList( "a", "fsevents" ), Arrays.asList( lock.getRootDependencies() ) );
+        LockfileReader.Entry a = entries.get( 0 );
+        assertEquals( "1.0.0", a.getVersion() );
+        assertArrayEquals( new String[]{"@s/b"}, a.getDependencies() );
+        LockfileReader.Entry b = entries.get( 1 );
+        assertEquals( "a/node_modules/@s/b", b.getPath() );
+        assertEquals( "@s/b", b.getName() );
+        assertFalse( b.isTopLevel() );
+        assertTrue( b.isDev() );
+        assertArrayEquals( new String[]{"a"}, b.optionalDependencies );
+        assertTrue( entries.get( 2 ).isOptional() );
+        assertEquals( "real-name", entries.get( 3 ).getName() );
+        assertTrue( entries.get( 3 ).isLink() );
+    }
+
+    @Test
+    public void testVersion1 () throws IOException {
+        LockfileReader.Lockfile lock = parse( "{\"name\":\"prj\",\"lockfileVersion\":1,\"dependencies\":{"
+                + "\"a\":{\"version\":\"1.0.0\",\"integrity\":\"sha1-x\",\"requires\":{\"b\":\"^2\"},"
+                + "\"dependencies\":{\"b\":{\"version\":\"2.0.0\",\"dependencies\":{\"c\":{\"version\":\"1.0.0\"}}}}},"
+                + "\"b\":{\"version\":\"1.0.0\",\"dev\":true}}}" );
+        List<LockfileReader.Entry> entries = lock.getEntries();
+        assertEquals( entries.toString(), 4, entries.size() );
+        assertEquals( "a", entries.get( 0 ).getPath() );
+        assertArrayEquals( new String[]{"b"}, entries.get( 0 ).getDependencies() );
+        assertEquals( "a/node_modules/b", entries.get( 1 ).getPath() );
+        assertEquals( "a/node_modules/b/node_modules/c", entries.get( 2 ).getPath() );
+        assertEquals( "c", entries.get( 2 ).getName() );
+        assertTrue( entries.get( 3 ).isDev() );
+        assertEquals( Arrays.asList( "a", "b" ), Arrays.asList( lock.getTopLevelNames().toArray() ) );
+    }
+
+    @Test
+    public void testLargeLockfile () throws IOException {
+        File f = File.createTempFile( "lock", ".json" );
+        int count = 100000;
+        try {
+            try (Writer w = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( f ), "UTF-8" ) )) {
+                w.write( "{\"name\":\"big\",\"lockfileVersion\":2,\"packages\":{\"\":{\"dependencies\":{\"p0\":\"1\"}}" );
+                for (int i = 0; i < count; i++) {
+                    String path = i % 4 == 0 ? "node_modules/p" + i : "node_modules/p" + (i - i % 4) + "/node_modules/p" + i;
+                    w.write( ",\"" + path + "\":{\"version\":\"1.0." + i + "\",\"resolved\":\"https://registry.npmjs.org/p"
+                            + i + "/-/p" + i + "-1.0." + i + ".tgz\",\"integrity\":\"sha512-"
+                            + "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef==\","
+                            + "\"dependencies\":{\"p" + (i + 1) + "\":\"^1.0.0\",\"p" + (i + 2) + "\":\"^1.0.0\"},"
+                            + "\"engines\":{\"node\":\">=10\"},\"bin\":{\"p" + i + "\":\"bin/cli.js\"}}" );
+                }
+                // a v2 lock file also carries the legacy tree, which must be skipped
+                w.write( "},\"dependencies\":{\"p0\":{\"version\":\"1.0.0\"}}}" );
+            }
+            long start = System.currentTimeMillis();
+            LockfileReader.Lockfile lock = LockfileReader.read( f );
+            long elapsed = System.currentTimeMillis() - start;
+            assertEquals( count, lock.getEntries().size() );
+            assertEquals( count / 4, lock.getTopLevelNames().size() );
+            assertEquals( "p" + (count - 1), lock.getEntries().get( count - 1 ).getName() );
+            assertEquals( 2, lock.getEntries().get( 5 ).getDependencies().length );
+            assertTrue( f.length() / (1024 * 1024) + "MB took " + elapsed + "ms", elapsed < 10000 );
+            assertSame( lock, LockfileReader.read( f ) );
+        } finally {
+            f.delete();
+        }
+    }
+
+    private static LockfileReader.Lockfile parse ( String json ) throws IOException {
+        return LockfileReader.read( new ByteArrayInputStream( json.getBytes( "UTF-8" ) ), 0, json.length() );
+    }
+}
@@ -0,0 +1,78 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.libraries;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class PackageTableTest {
+    @Test
+    public void testInterning () {
+        PackageTable table = new PackageTable();
+        for (int i = 0; i < 5000; i++) {
+            assertEquals( i, table.nameId( "pkg" + i ) );
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertEquals( i, table.nameId( "pkg" + i ) );
+            assertEquals( i, table.findName( "pkg" + i ) );
+            assertEquals( "pkg" + i, table.name( i ) );
+        }
+        assertEquals( -1, table.findName( "nothing" ) );
+        assertEquals( 5000, table.nameCount() );
+
+        int a = table.identity( "express", "4.18.2" );
+        int b = table.identity( "express", "3.0.0" );
+        int c = table.identity( "express", null );
+        assertTrue( a != b );
+        assertTrue( a != c );
+        assertEquals( a, table.identity( "express", "4.18.2" ) );
+        assertEquals( table.nameOf( a ), table.nameOf( b ) );
+        assertEquals( "4.18.2", table.version( a ) );
+        assertNull( table.version( c ) );
+        assertEquals( "express@3.0.0", table.toString( b ) );
+        assertEquals( "express", table.toString( c ) );
+
+        int loc = table.locationId( "/tmp/x/node_modules/express" );
+        assertEquals( loc, table.locationId( "/tmp/x/node_modules/express" ) );
+        assertEquals( "/tmp/x/node_modules/express", table.location( loc ) );
+    }
+
+    @Test
+    public void testGraph () {
+        PackageGraph graph = new PackageGraph( 2 );
+        assertTrue( graph.addEdge( 0, 1 ) );
+        assertTrue( graph.addEdge( 0, 2 ) );
+        assertFalse( graph.addEdge( 0, 1 ) );
+        assertTrue( graph.addEdge( 100, 0 ) );
+        assertEquals( 3, graph.edgeCount() );
+        assertArrayEquals( new int[]{1, 2}, graph.dependencies( 0 ) );
+        assertTrue( graph.hasEdge( 100, 0 ) );
+        assertFalse( graph.hasEdge( 1, 0 ) );
+        assertTrue( graph.removeEdge( 0, 1 ) );
+        assertArrayEquals( new int[]{2}, graph.dependencies( 0 ) );
+        graph.clear( 100 );
+        assertEquals( 1, graph.edgeCount() );
+        assertEquals( 0, graph.dependencies( 100 ).length );
+        assertEquals( 0, graph.dependencies( 5000 ).length );
+    }
+}
@@ -0,0 +1,200 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.libraries;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import org.netbeans.modules.nodejs.json.ObjectMapperProvider;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class SearchIndexTest {
+
+    @Test
+    public void testReadNpmSearchJson () throws IOException {
+        List<SearchIndex.Entry> entries = read( "[{\"name\":\"express\",\"scope\":\"unscoped\",\"version\":\"4.18.2\","
+                + "\"description\":\"Fast, unopinionated web framework\",\"keywords\":[\"web\",\"router\"],"
+                + "\"date\":\"2022-10-08T20:11:53.029Z\",\"links\":{\"npm\":\"https://x\"},"
+                + "\"publisher\":{\"username\":\"wesleytodd\",\"email\":\"x@y\"},"
+                + "\"maintainers\":[{\"username\":\"dougwilson\",\"email\":\"a@b\"}]},"
+                + "{\"name\":\"@scope/thing\",\"version\":\"1.0.0\",\"maintainers\":[{\"username\":\"someone\"}],"
+                + "\"keywords\":\"a, b c\"}]" );
+        assertEquals( 2, entries.size() );
+        SearchIndex.Entry e = entries.get( 0 );
+        assertEquals( "express", e.getName() );
+        assertEquals( "4.18.2", e.getVersion() );
+        assertEquals( "wesleytodd", e.getAuthor() );
+        assertEquals( Arrays.asList( "web", "router" ), e.getKeywords() );
+        e = entries.get( 1 );
+        assertEquals( "@scope/thing", e.getName() );
+        assertEquals( "someone", e.getAuthor() );
+        assertEquals( "", e.getDescription() );
+        assertEquals( Arrays.asList( "a", "b", "c" ), e.getKeywords() );
+    }
+
+    @Test
+    public void testReadRegistryFormats () throws IOException {
+        List<SearchIndex.Entry> entries = read( "{\"objects\":[{\"package\":{\"name\":\"left-pad\",\"version\":\"1.3.0\","
+                + "\"description\":\"String left pad\",\"publisher\":{\"username\":\"stevemao\"}},"
+                + "\"score\":{\"final\":0.5}}],\"total\":1,\"time\":\"now\"}" );
+        assertEquals( 1, entries.size() );
+        assertEquals( "left-pad", entries.get( 0 ).getName() );
+        assertEquals( "stevemao", entries.get( 0 ).getAuthor() );
+
+        entries = read( "{\"_updated\":1234,\"underscore\":{\"name\":\"underscore\",\"description\":\"Functional helpers\","
+                + "\"dist-tags\":{\"latest\":\"1.13.6\"},\"maintainers\":[{\"name\":\"jashkenas\"}],"
+                + "\"author\":{\"name\":\"Jeremy Ashkenas\"},\"keywords\":[\"util\"]},"
+                + "\"nameless\":{\"description\":\"x\"}}" );
+        assertEquals( 2, entries.size() );
+        assertEquals( "underscore", entries.get( 0 ).getName() );
+        assertEquals( "1.13.6", entries.get( 0 ).getVersion() );
+        assertEquals( "Jeremy Ashkenas", entries.get( 0 ).getAuthor() );
+        assertEquals( "nameless", entries.get( 1 ).getName() );
+    }
+
+    @Test
+    public void testSearchRanking () throws IOException {
+        SearchIndex index = new SearchIndex( tempFile() );
+        index.addAll( Arrays.asList(
+                new SearchIndex.Entry( "express-session", "Session middleware for express", "a", "1.0" ),
+                new SearchIndex.Entry( "express", "Fast web framework", "b", "4.0", "web" ),
+                new SearchIndex.Entry( "koa", "Expressive middleware for node", "c", "2.0", "web", "framework" ),
+                new SearchIndex.Entry( "unrelated", "Nothing to see", "d", "1.0" ),
+                new SearchIndex.Entry( "fexpress", "Not a word start", "e", "1.0" ) ) );
+        assertEquals( Arrays.asList( "express", "express-session", "koa" ), names( index.search( "express", 10 ) ) );
+        assertEquals( Arrays.asList( "express" ), names( index.search( "express", 1 ) ) );
+        assertEquals( Arrays.asList( "express-session" ), names( index.search( "express sess", 10 ) ) );
+        assertEquals( Arrays.asList( "koa", "express" ), names( index.search( "web fr", 10 ) ) );
+        assertTrue( index.search( "  ", 10 ).isEmpty() );
+        assertTrue( index.search( "zzz", 10 ).isEmpty() );
+    }
+
+    @Test
+    public void testPersistenceAndReplacement () throws IOException {
+        File f = tempFile();
+        SearchIndex index = new SearchIndex( f );
+        List<SearchIndex.Entry> all = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            all.add( new SearchIndex.Entry( "pkg-" + i, "Package number " + i, "me", "1.0." + i, "k" + (i % 10) ) );
+        }
+        index.addAll( all );
+        index.addAll( Arrays.asList( new SearchIndex.Entry( "pkg-5", "Replaced", "you", "2.0.0" ) ) );
+        assertEquals( 10000, index.size() );
+        index.save();
+        assertTrue( f.length() > 0 );
+
+        SearchIndex reloaded = new SearchIndex( f );
+        assertEquals( 10000, reloaded.size() );
+        List<SearchIndex.Entry> found = reloaded.search( "pkg-5", 1 );
+        assertEquals( "2.0.0", found.get( 0 ).getVersion() );
+        assertEquals( "you", found.get( 0 ).getAuthor() );
+        assertEquals( 1000, reloaded.search( "k3", 5000 ).size() );
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            reloaded.search( "package " + i, 20 );
+        }
+        long perQuery = (System.nanoTime() - start) / 100;
+        assertTrue( "Too slow: " + perQuery + "ns", perQuery < 50000000L );
+    }
+
+    @Test
+    public void testImportDump () throws IOException {
+        File dump = tempFile();
+        try (OutputStream out = new FileOutputStream( dump )) {
+            out.write( "[{\"name\":\"a\",\"version\":\"1\"},{\"name\":\"b\",\"version\":\"2\"}]".getBytes( StandardCharsets.UTF_8 ) );
+        }
+        SearchIndex index = new SearchIndex( tempFile() );
+        assertFalse( index.isFresh( "a" ) );
+        assertEquals( 2, index.importDump( dump ) );
+        assertEquals( 2, index.size() );
+        assertTrue( index.isFresh( "anything" ) );
+    }
+
+    @Test
+    public void testObjectSplitterIsIncremental () {
+        final List<String> objects = new ArrayList<>();
+        SearchIndex.ObjectSplitter splitter = new SearchIndex.ObjectSplitter( new Consumer<String>() {
+            @Override
+            public void accept ( String s ) {
+                objects.add( s );
+            }
+        } );
+        splitter.feed( "[" );
+        splitter.feed( "{\"name\":\"a\",\"description\":\"has } and { and \\\" in it\",\"keywords\":[\"x\"]}" );
+        assertEquals( 1, objects.size() );
+        assertEquals( "{\"name\":\"a\",\"description\":\"has } and { and \\\" in it\",\"keywords\":[\"x\"]}", objects.get( 0 ) );
+        splitter.feed( "," );
+        splitter.feed( "  {" );
+        splitter.feed( "    \"name\": \"b\"," );
+        splitter.feed( "    \"maintainers\": [{\"username\": \"u\"}]" );
+        assertEquals( 1, objects.size() );
+        splitter.feed( "  }" );
+        splitter.feed( "]" );
+        assertEquals( 2, objects.size() );
+        assertEquals( "b", SearchIndex.entry( parse( objects.get( 1 ) ), null ).getName() );
+        assertEquals( "u", SearchIndex.entry( parse( objects.get( 1 ) ), null ).getAuthor() );
+    }
+
+    private static JsonNode parse ( String json ) {
+        try {
+            return ObjectMapperProvider.newObjectMapper().readTree( json );
+        } catch ( IOException ex ) {
+            throw new AssertionError( ex );
+        }
+    }
+
+    private static File tempFile () throws IOException {
+        File f = File.createTempFile( "search", ".idx" );
+        f.delete();
+        f.deleteOnExit();
+        return f;
+    }
+
+    private static List<String> names ( List<SearchIndex.Entry> entries ) {
+        List<String> result = new ArrayList<>();
+        for (SearchIndex.Entry e : entries) {
+            result.add( e.getName() );
+        }
+        return result;
+    }
+
+    private static List<SearchIndex.Entry> read ( String json ) throws IOException {
+        final List<SearchIndex.Entry> result = new ArrayList<>();
+        SearchIndex.readEntries( new ByteArrayInputStream( json.getBytes( StandardCharsets.UTF_8 ) ), new Consumer<SearchIndex.Entry>() {
+            @Override
+            public void accept ( SearchIndex.Entry e ) {
+                result.add( e );
+            }
+        } );
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.libraries;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class SemverRangeTest {
+
+    @Test
+    public void testRanges () {
+        yes( "^1.2.3", "1.2.3", "1.9.0", "1.2.4" );
+        no( "^1.2.3", "1.2.2", "2.0.0", "2.0.0-beta.1", "1.3.0-beta" );
+        yes( "^0.2.3", "0.2.3", "0.2.9" );
+        no( "^0.2.3", "0.3.0", "0.2.2" );
+        yes( "^0.0.3", "0.0.3" );
+        no( "^0.0.3", "0.0.4" );
+        yes( "^1.2", "1.2.0", "1.99.0" );
+        yes( "^0.x", "0.0.1", "0.9.9" );
+        no( "^0.x", "1.0.0" );
+        yes( "~1.2.3", "1.2.3", "1.2.99" );
+        no( "~1.2.3", "1.3.0", "1.2.2" );
+        yes( "~1", "1.0.0", "1.9.9" );
+        no( "~1", "2.0.0" );
+        yes( "1.2.x", "1.2.0", "1.2.7" );
+        no( "1.2.x", "1.3.0" );
+        yes( "1", "1.0.0", "1.5.5" );
+        yes( "1.2.3", "1.2.3", "v1.2.3", "1.2.3+build.5" );
+        no( "1.2.3", "1.2.4" );
+        yes( ">=1.0.0 <2.0.0", "1.0.0", "1.99.99" );
+        no( ">=1.0.0 <2.0.0", "2.0.0", "0.9.0" );
+        yes( ">= 1.0.0 < 2", "1.5.0" );
+        yes( ">1.2", "1.3.0" );
+        no( ">1.2", "1.2.9" );
+        yes( "<=1.2", "1.2.9" );
+        no( "<=1.2", "1.3.0" );
+        yes( "1.2.3 - 2.3.4", "1.2.3", "2.3.4" );
+        no( "1.2.3 - 2.3.4", "2.3.5", "1.2.2" );
+        yes( "1.2 - 2.3", "2.3.9" );
+        no( "1.2 - 2.3", "2.4.0" );
+        yes( "^1.0.0 || ^3.0.0", "1.2.0", "3.1.0" );
+        no( "^1.0.0 || ^3.0.0", "2.0.0" );
+        yes( "*", "0.0.1", "99.0.0" );
+        yes( "", "1.0.0" );
+        no( "*", "1.0.0-alpha" );
+        yes( "^1.2.3-beta.2", "1.2.3-beta.2", "1.2.3-beta.10", "1.2.3", "1.5.0" );
+        no( "^1.2.3-beta.2", "1.2.3-beta.1", "1.2.4-beta.3", "1.2.3-alpha.9" );
+        yes( "npm:other@^2.0.0", "2.1.0" );
+        no( "npm:other@^2.0.0", "3.0.0" );
+    }
+
+    @Test
+    public void testNonRanges () {
+        for (String spec : new String[]{"latest", "next", "git+https://github.com/x/y.git",
+            "file:../lib", "https://example.com/x.tgz", "user/repo#semver:^1.0", "workspace:*"}) {
+            SemverRange r = SemverRange.parse( spec );
+            assertFalse( spec, r.isRange() );
+            assertTrue( spec, r.matches( "0.0.1" ) );
+        }
+        assertTrue( SemverRange.parse( "^1.0.0" ).matches( "not-a-version" ) );
+    }
+
+    private static void yes ( String range, String... versions ) {
+        SemverRange r = SemverRange.parse( range );
+        for (String v : versions) {
+            assertTrue( v + " should match '" + range + "'", r.matches( v ) );
+        }
+    }
+
+    private static void no ( String range, String... versions ) {
+        SemverRange r = SemverRange.parse( range );
+        for (String v : versions) {
+            assertFalse( v + " should not match '" + range + "'", r.matches( v ) );
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.node;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.netbeans.modules.nodejs.libraries.PackageTable;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class LibrariesChildFactoryTest {
+    private static final int PACKAGES = 5000;
+
+    /**
+     * Keys as a large project's dependencies produce them:  installed
+     * packages, some nested, some reached more than once, and requires of
+     * installed, built-in and missing packages, in no particular order.
+     */
+    static List<ProjectNodeKey> largeTree ( FileObject modules, PackageTable table, int packages ) throws IOException {
+        List<ProjectNodeKey> keys = new ArrayList<>();
+        List<FileObject> folders = new ArrayList<>();
+        for (int i = 0; i < packages; i++) {
+            FileObject pkg = modules.createFolder( "pkg" + i );
+            folders.add( pkg );
+            keys.add( new ProjectNodeKey( table, ProjectNodeKeyTypes.LIBRARY, pkg, i % 2 == 0 ) );
+            if (i % 10 == 0) {
+                // a nested copy of the same package, which must survive
+                FileObject nested = pkg.createFolder( "node_modules" ).createFolder( "pkg" + (i + 1) );
+                keys.add( new ProjectNodeKey( table, ProjectNodeKeyTypes.LIBRARY, nested, false ) );
+            }
+        }
+        // The same folders reached again, indirectly
+        for (int i = 0; i < packages; i += 3) {
+            keys.add( new ProjectNodeKey( table, ProjectNodeKeyTypes.LIBRARY, folders.get( i ), false ) );
+        }
+        // requires of installed packages, of built-ins and of nothing
+        for (int i = 0; i < packages; i++) {
+            keys.add( new ProjectNodeKey.MissingLibrary( table, "pkg" + i, "index.js" ) );
+            keys.add( new ProjectNodeKey.MissingLibrary( table, "gone" + (i % 100), "index.js" ) );
+        }
+        keys.add( new ProjectNodeKey.MissingLibrary( table, "fs", "index.js" ) );
+        keys.add( new ProjectNodeKey.BuiltInLibrary( table, "fs" ) );
+        keys.add( new ProjectNodeKey.BuiltInLibrary( table, "fs" ) );
+        keys.add( new ProjectNodeKey.BuiltInLibrary( table, "pkg7" ) );
+        Collections.shuffle( keys, new Random( 42 ) );
+        return keys;
+    }
+
+    @Test
+    public void testReconcileLargeTree () throws Exception {
+        FileObject modules = FileUtil.createMemoryFileSystem().getRoot().createFolder( "node_modules" );
+        PackageTable table = new PackageTable();
+        List<ProjectNodeKey> keys = largeTree( modules, table, PACKAGES );
+
+        List<ProjectNodeKey> result = LibrariesChildFactory.reconcile( table, keys );
+        assertEquals( PACKAGES + PACKAGES / 10 + 1 + 100, result.size() );
+
+        // Each folder keeps the position it was first seen at
+        List<Integer> firstSeen = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        for (ProjectNodeKey key : keys) {
+            if (key.getType() == ProjectNodeKeyTypes.LIBRARY && seen.add( key.locationId() )) {
+                firstSeen.add( key.locationId() );
+            }
+        }
+        List<Integer> order = new ArrayList<>();
+        for (ProjectNodeKey key : result) {
+            if (key.getType() == ProjectNodeKeyTypes.LIBRARY) {
+                order.add( key.locationId() );
+            }
+        }
+        assertEquals( firstSeen, order );
+        Collections.sort( result );
+
+        int libraries = 0, builtIn = 0, missing = 0;
+        Set<Integer> locations = new HashSet<>();
+        for (ProjectNodeKey key : result) {
+            switch ( key.getType() ) {
+                case LIBRARY:
+                    libraries++;
+                    assertTrue( "Folder listed twice: " + key.toCanonoicalFile(), locations.add( key.locationId() ) );
+                    break;
+                case BUILT_IN_LIBRARY:
+                    builtIn++;
+                    assertEquals( "fs", key.getName() );
+                    break;
+                case MISSING_LIBRARY:
+                    missing++;
+                    assertTrue( key.getName(), key.getName().startsWith( "gone" ) );
+                    break;
+            }
+        }
+        assertEquals( PACKAGES + PACKAGES / 10, libraries );
+        assertEquals( 1, builtIn );
+        assertEquals( 100, missing );
+
+        for (ProjectNodeKey key : result) {
+            if (key.getType() == ProjectNodeKeyTypes.LIBRARY && key.getFld().getParent() == modules) {
+                int ix = Integer.parseInt( key.getName().substring( 3 ) );
+                assertEquals( key.toString(), ix % 2 == 0, key.isDirect() );
+            }
+        }
+
+        // The sort is total, so the order does not depend on the input order
+        Collections.reverse( keys );
+        List<ProjectNodeKey> again = LibrariesChildFactory.reconcile( table, keys );
+        Collections.sort( again );
+        assertEquals( result, again );
+    }
+}
@@ -0,0 +1,72 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.node;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.netbeans.modules.nodejs.libraries.PackageTable;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class ProjectNodeKeyTest {
+    private File dir;
+
+    @Before
+    public void setup () throws IOException {
+        File tmp = new File( System.getProperty( "java.io.tmpdir" ) ).getCanonicalFile();
+        dir = new File( tmp, "nodekey-" + System.currentTimeMillis() );
+        assertTrue( new File( dir, "node_modules/a" ).mkdirs() );
+    }
+
+    @After
+    public void teardown () {
+        new File( dir, "node_modules/a" ).delete();
+        new File( dir, "node_modules" ).delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testKeysFromPaths () {
+        PackageTable table = new PackageTable();
+        File modules = new File( dir, "node_modules" );
+        ProjectNodeKey a = new ProjectNodeKey( table, ProjectNodeKeyTypes.LIBRARY, "a", new File( modules, "a" ), true );
+        ProjectNodeKey b = new ProjectNodeKey( table, ProjectNodeKeyTypes.LIBRARY, "b", new File( modules, "b" ), false );
+        assertEquals( "a", a.getName() );
+        assertEquals( new File( modules, "b" ), b.toCanonoicalFile() );
+        assertNull( b.getFld() );
+
+        FileObject fo = a.getFld();
+        assertNotNull( fo );
+        assertEquals( "a", fo.getName() );
+        assertSame( fo, a.getFld() );
+        // The same folder as a key made from its FileObject
+        ProjectNodeKey fromFile = new ProjectNodeKey( table, ProjectNodeKeyTypes.LIBRARY,
+                FileUtil.toFileObject( new File( modules, "a" ) ), true );
+        assertEquals( fromFile, a );
+        assertEquals( fromFile.hashCode(), a.hashCode() );
+    }
+}
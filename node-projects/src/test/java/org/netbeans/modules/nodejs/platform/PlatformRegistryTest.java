@@ -0,0 +1,151 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.platform;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Before;
+import org.junit.Test;
+import org.netbeans.modules.nodejs.platform.PlatformRegistry.Installation;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class PlatformRegistryTest {
+    private File dir;
+
+    @Before
+    public void setUp () throws IOException {
+        dir = Files.createTempDirectory( "platforms" ).toFile().getCanonicalFile();
+    }
+
+    @After
+    public void tearDown () {
+        delete( dir );
+    }
+
+    @Test
+    public void testCompareVersions () {
+        assertTrue( PlatformRegistry.compareVersions( "v18.17.0", "v18.9.1" ) > 0 );
+        assertTrue( PlatformRegistry.compareVersions( "v9.11.2", "v10.0.0" ) < 0 );
+        assertTrue( PlatformRegistry.compareVersions( "20.1.0", "v20.0.9" ) > 0 );
+        assertTrue( PlatformRegistry.compareVersions( "v20", "v20.0.1" ) < 0 );
+        assertEquals( 0, PlatformRegistry.compareVersions( "v16.0.0", "v16.0.0" ) );
+        // Numerically equal names still have a stable order
+        assertTrue( PlatformRegistry.compareVersions( "v20", "v20.0.0" ) != 0 );
+        assertEquals( -Integer.signum( PlatformRegistry.compareVersions( "v20", "v20.0.0" ) ),
+                Integer.signum( PlatformRegistry.compareVersions( "v20.0.0", "v20" ) ) );
+        List<String> versions = new ArrayList<>( Arrays.asList( "v10.24.1", "v8.0.0", "v20.11.0", "v18.2.0", "v18.19.1" ) );
+        Collections.sort( versions, new Comparator<String>() {
+            @Override
+            public int compare ( String a, String b ) {
+                return PlatformRegistry.compareVersions( a, b );
+            }
+        } );
+        assertEquals( Arrays.asList( "v8.0.0", "v10.24.1", "v18.2.0", "v18.19.1", "v20.11.0" ), versions );
+    }
+
+    @Test
+    public void testDiscoverDedupsAndPrefersPath () throws IOException {
+        // Fake binaries are shell scripts
+        assumeTrue( File.separatorChar == '/' );
+        File home = new File( dir, "home" );
+        File bin = node( new File( dir, "bin" ), "v20.11.0", true );
+        // A second PATH entry linking to the same binary is listed once
+        File links = new File( dir, "links" );
+        assertTrue( links.mkdirs() );
+        Files.createSymbolicLink( new File( links, "node" ).toPath(), new File( bin, "node" ).toPath() );
+        // Something called node which does not report a version is skipped
+        File broken = new File( dir, "broken" );
+        assertTrue( broken.mkdirs() );
+        script( new File( broken, "node" ), "exit 1" );
+        File nvm = new File( home, ".nvm/versions/node" );
+        node( new File( nvm, "v9.11.2/bin" ), "v9.11.2", false );
+        node( new File( nvm, "v18.19.1/bin" ), "v18.19.1", true );
+        node( new File( nvm, "v10.24.1/bin" ), "v10.24.1", false );
+        File volta = new File( dir, "volta" );
+        node( new File( volta, "bin" ), "v16.20.2", true );
+        File prefix = new File( dir, "usr" );
+        node( new File( prefix, "bin" ), "v12.22.12", true );
+        // The PATH already has the prefix's binary
+        Map<String, String> env = new HashMap<>();
+        env.put( "VOLTA_HOME", volta.getPath() );
+
+        List<Installation> found = PlatformRegistry.getDefault().discover(
+                Arrays.asList( links.getPath(), broken.getPath(), bin.getPath(), new File( prefix, "bin" ).getPath() ),
+                home.getPath(), env, new String[]{prefix.getPath()} );
+
+        List<String> summary = new ArrayList<>();
+        for (Installation inst : found) {
+            summary.add( inst.version() + " " + inst.source() + " " + (inst.npm() != null) );
+        }
+        assertEquals( Arrays.asList(
+                "v20.11.0 PATH true",
+                "v12.22.12 PATH true",
+                "v16.20.2 volta true",
+                "v18.19.1 nvm true",
+                "v10.24.1 nvm false",
+                "v9.11.2 nvm false" ), summary );
+        // The first PATH entry wins, as given, even though it is a link;  its
+        // npm is found next to the binary it links to
+        assertEquals( new File( links, "node" ), found.get( 0 ).node() );
+        assertEquals( new File( nvm, "v18.19.1/bin/npm" ), found.get( 3 ).npm() );
+    }
+
+    private static File node ( File bin, String version, boolean npm ) throws IOException {
+        assertTrue( bin.mkdirs() );
+        script( new File( bin, "node" ), "echo " + version );
+        if (npm) {
+            script( new File( bin, "npm" ), "echo 10.2.4" );
+        }
+        return bin;
+    }
+
+    private static void script ( File file, String body ) throws IOException {
+        try (OutputStream out = new FileOutputStream( file )) {
+            out.write( ("#!/bin/sh\n" + body + "\n").getBytes( StandardCharsets.UTF_8 ) );
+        }
+        assertTrue( file.setExecutable( true ) );
+    }
+
+    private static void delete ( File file ) {
+        File[] kids = file.listFiles();
+        if (kids != null && !Files.isSymbolicLink( file.toPath() )) {
+            for (File kid : kids) {
+                delete( kid );
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,107 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.stubs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.netbeans.modules.nodejs.api.Stubs.Symbol;
+
+/**
+ * Reads and writes the index of exported symbols which accompanies each
+ * stub bundle.  The format is line based UTF-8 text:  a line starting with
+ * <code>@</code> names a module, and each following line until the next
+ * module is one tab separated symbol - a one letter kind code, the name,
+ * for methods the owning class followed by the method name, and the
+ * signature.  Lines starting with <code>#</code> are comments.
+ *
+ * @author Tim Boudreau
+ */
+final class StubIndex {
+    private static final String KINDS = "fcmov"; //NOI18N
+
+    private StubIndex() {
+        throw new AssertionError();
+    }
+
+    static Map<String, List<Symbol>> read(InputStream in) throws IOException {
+        Map<String, List<Symbol>> result = new LinkedHashMap<>();
+        List<Symbol> current = null;
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            for (String line = r.readLine(); line != null; line = r.readLine()) {
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                if (line.charAt(0) == '@') {
+                    current = new ArrayList<>();
+                    result.put(line.substring(1), current);
+                    continue;
+                }
+                if (current == null) {
+                    throw new IOException("Symbol outside of a module: " + line); //NOI18N
+                }
+                current.add(parse(line));
+            }
+        }
+        for (Map.Entry<String, List<Symbol>> e : result.entrySet()) {
+            e.setValue(Collections.unmodifiableList(e.getValue()));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static Symbol parse(String line) throws IOException {
+        String[] parts = line.split("\t", -1); //NOI18N
+        int kind = parts[0].length() == 1 ? KINDS.indexOf(parts[0].charAt(0)) : -1;
+        if (kind < 0 || parts.length != (kind == 2 ? 4 : 3)) {
+            throw new IOException("Bad symbol: " + line); //NOI18N
+        }
+        Symbol.Kind k = Symbol.Kind.values()[kind];
+        return k == Symbol.Kind.METHOD ? new Symbol(parts[2], parts[1], k, parts[3])
+                : new Symbol(parts[1], null, k, parts[2]);
+    }
+
+    static void write(String comment, Map<String, List<Symbol>> symbols, OutputStream out) throws IOException {
+        Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        if (comment != null) {
+            w.write("# " + comment + "\n"); //NOI18N
+        }
+        for (Map.Entry<String, List<Symbol>> e : symbols.entrySet()) {
+            w.write("@" + e.getKey() + "\n"); //NOI18N
+            for (Symbol sym : e.getValue()) {
+                w.write(KINDS.charAt(sym.kind().ordinal()));
+                if (sym.owner() != null) {
+                    w.write("\t" + sym.owner()); //NOI18N
+                }
+                // Signatures come from source code, so could in theory hold anything
+                w.write("\t" + sym.name() + "\t" + sym.signature().replace('\t', ' ').replace('\r', ' ').replace('\n', ' ') + "\n"); //NOI18N
+            }
+        }
+        w.flush();
+    }
+}
@@ -18,48 +18,167 @@
  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
 package org.netbeans.modules.nodejs.stubs;
 
-import java.lang.ref.Reference;
-import java.lang.ref.SoftReference;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.netbeans.modules.nodejs.api.Stubs;
 import org.openide.filesystems.FileSystem;
 import org.openide.filesystems.FileUtil;
-import org.openide.filesystems.XMLFileSystem;
+import org.openide.filesystems.JarFileSystem;
+import org.openide.modules.Places;
 import org.openide.modules.SpecificationVersion;
-import org.openide.util.Exceptions;
 import org.openide.util.lookup.ServiceProvider;
-import org.xml.sax.SAXException;
 
 /**
+ * Provides stub sources for node's built-in modules, one bundle per node
+ * major version (see the stubify script).  Bundles are zip files, so
+ * opening one only reads its directory;  a module's stub is inflated when
+ * it is first asked for.  The bundle for the newest major version not newer
+ * than the requested one is used.  Each bundle comes with an index of the
+ * symbols it exports, so completion can list them without opening stubs.
+ * Bundles and indices are generated at build time by StubsGenerator.
  *
  * @author Tim Boudreau
  */
 @ServiceProvider(service=Stubs.class)
 public class StubsImpl extends Stubs {
-
-    private Reference<FileSystem> stubs;
+    private static final String VERSIONS = "versions.txt"; //NOI18N
+    private static final Logger LOG = Logger.getLogger(StubsImpl.class.getName());
+    private final Map<Integer, FileSystem> bundles = new HashMap<>();
+    private final Map<Integer, Map<String, List<Symbol>>> indices = new HashMap<>();
+    private TreeSet<Integer> available;
 
     @Override
     public synchronized FileSystem getStubs(SpecificationVersion ver) {
-        FileSystem result = stubs == null ? null : stubs.get();
+        Integer major = select(ver);
+        if (major == null) {
+            LOG.warning("Missing node.js stubs"); //NOI18N
+            return FileUtil.createMemoryFileSystem();
+        }
+        FileSystem result = bundles.get(major);
+        if (result == null) {
+            result = load(major);
+            bundles.put(major, result);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Map<String, List<Symbol>> getSymbols(SpecificationVersion ver) {
+        Integer major = select(ver);
+        if (major == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, List<Symbol>> result = indices.get(major);
         if (result == null) {
-            result = load();
-            stubs = new SoftReference<>(result);
+            result = loadIndex(major);
+            indices.put(major, result);
         }
         return result;
     }
 
-    private FileSystem load() {
-        URL url = StubsImpl.class.getResource("stubs.xml");
+    Integer select(SpecificationVersion ver) {
+        TreeSet<Integer> majors = available();
+        if (majors.isEmpty()) {
+            return null;
+        }
+        if (ver == null) {
+            return majors.last();
+        }
+        String s = ver.toString();
+        int dot = s.indexOf('.');
+        int major = Integer.parseInt(dot < 0 ? s : s.substring(0, dot));
+        Integer result = majors.floor(major);
+        return result == null ? majors.first() : result;
+    }
+
+    private TreeSet<Integer> available() {
+        if (available == null) {
+            available = new TreeSet<>();
+            InputStream in = StubsImpl.class.getResourceAsStream(VERSIONS);
+            if (in != null) {
+                try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                    for (String line = r.readLine(); line != null; line = r.readLine()) {
+                        line = line.trim();
+                        if (!line.isEmpty()) {
+                            available.add(Integer.valueOf(line));
+                        }
+                    }
+                } catch (IOException | NumberFormatException ex) {
+                    LOG.log(Level.WARNING, "Bad " + VERSIONS, ex); //NOI18N
+                }
+            }
+        }
+        return available;
+    }
+
+    private FileSystem load(int major) {
+        String name = "node-" + major + ".zip"; //NOI18N
+        URL url = StubsImpl.class.getResource(name);
         if (url == null) {
-            System.err.println("Missing node.js stubs");
+            LOG.log(Level.WARNING, "Missing node.js stubs {0}", name); //NOI18N
             return FileUtil.createMemoryFileSystem();
         }
         try {
-            return new XMLFileSystem(url);
-        } catch (SAXException ex) {
-            Exceptions.printStackTrace(ex);
+            return new JarFileSystem(extract(url, name));
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Could not open node.js stubs " + name, ex); //NOI18N
             return FileUtil.createMemoryFileSystem();
         }
     }
+
+    private Map<String, List<Symbol>> loadIndex(int major) {
+        String name = "node-" + major + ".idx"; //NOI18N
+        InputStream in = StubsImpl.class.getResourceAsStream(name);
+        if (in == null) {
+            LOG.log(Level.WARNING, "Missing node.js symbol index {0}", name); //NOI18N
+            return Collections.emptyMap();
+        }
+        try {
+            return StubIndex.read(in);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Could not read node.js symbol index " + name, ex); //NOI18N
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * JarFileSystem needs a file, so copy the bundle out of the module JAR
+     * into the cache directory, unless an identical copy is already there.
+     */
+    private static File extract(URL url, String name) throws IOException {
+        URLConnection conn = url.openConnection();
+        long length = conn.getContentLengthLong();
+        File target = Places.getCacheSubfile("nodejs/stubs/" + name); //NOI18N
+        if (target.isFile() && length >= 0 && target.length() == length
+                && target.lastModified() >= conn.getLastModified()) {
+            return target;
+        }
+        File tmp = new File(target.getParentFile(), name + ".tmp"); //NOI18N
+        try (InputStream in = conn.getInputStream();
+                OutputStream out = new FileOutputStream(tmp)) {
+            FileUtil.copy(in, out);
+        }
+        if (target.exists() && !target.delete()) {
+            throw new IOException("Could not replace " + target); //NOI18N
+        }
+        if (!tmp.renameTo(target)) {
+            throw new IOException("Could not create " + target); //NOI18N
+        }
+        return target;
+    }
 }
@@ -0,0 +1,182 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.stubs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.netbeans.modules.nodejs.api.Stubs.Symbol;
+
+/**
+ * Build step which turns the probe files recorded by the stubify script
+ * (<code>src/stubs/node-&lt;major&gt;.json</code>) into the resources
+ * StubsImpl reads:  a zip of stub sources and a symbol index per node major
+ * version, plus the list of versions.  It lives with the tests, so neither
+ * it nor Jackson end up in the module;  the build runs it from the test
+ * classpath in the process-test-classes phase.
+ * <p/>
+ * Output is byte for byte reproducible for the same input, so rebuilding
+ * does not change the module's resources.
+ *
+ * @author Tim Boudreau
+ */
+final class StubsGenerator {
+    private static final Pattern PROBE = Pattern.compile("node-(\\d+)\\.json"); //NOI18N
+    private static final String HEADER = "/* THIS IS A STUB FILE FOR CODE COMPLETION\n" //NOI18N
+            + "Use Tools | Options | Miscellaneous | NodeJS to download the actual sources */\n"; //NOI18N
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: StubsGenerator <probe dir> <output dir>"); //NOI18N
+            System.exit(1);
+        }
+        new StubsGenerator().generate(new File(args[0]), new File(args[1]));
+    }
+
+    void generate(File probes, File out) throws IOException {
+        File[] files = probes.listFiles();
+        if (files == null) {
+            throw new IOException("No such directory " + probes); //NOI18N
+        }
+        Map<Integer, File> byMajor = new TreeMap<>();
+        for (File f : files) {
+            Matcher m = PROBE.matcher(f.getName());
+            if (m.matches()) {
+                byMajor.put(Integer.valueOf(m.group(1)), f);
+            }
+        }
+        if (byMajor.isEmpty()) {
+            throw new IOException("No node-<major>.json files in " + probes); //NOI18N
+        }
+        if (!out.isDirectory() && !out.mkdirs()) {
+            throw new IOException("Could not create " + out); //NOI18N
+        }
+        StringBuilder versions = new StringBuilder();
+        for (Map.Entry<Integer, File> e : byMajor.entrySet()) {
+            generate(e.getValue(), out, "node-" + e.getKey()); //NOI18N
+            versions.append(e.getKey()).append('\n');
+        }
+        write(new File(out, "versions.txt"), versions.toString().getBytes(StandardCharsets.UTF_8)); //NOI18N
+    }
+
+    private void generate(File probe, File out, String name) throws IOException {
+        JsonNode root = mapper.readTree(probe);
+        JsonNode modules = root.path("modules"); //NOI18N
+        if (!modules.isObject()) {
+            throw new IOException("No modules in " + probe); //NOI18N
+        }
+        Map<String, List<Symbol>> index = new LinkedHashMap<>();
+        // Zip entries store local time, so use midnight 2012-01-01 in the
+        // current time zone to get the same bytes wherever the build runs
+        long entryTime = new GregorianCalendar(2012, Calendar.JANUARY, 1).getTimeInMillis();
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream zout = new ZipOutputStream(zip)) {
+            for (Iterator<Map.Entry<String, JsonNode>> it = modules.fields(); it.hasNext();) {
+                Map.Entry<String, JsonNode> module = it.next();
+                List<Symbol> symbols = new ArrayList<>();
+                String stub = stub(module.getValue(), symbols);
+                index.put(module.getKey(), symbols);
+                ZipEntry entry = new ZipEntry(module.getKey() + ".js"); //NOI18N
+                entry.setTime(entryTime);
+                zout.putNextEntry(entry);
+                zout.write(stub.getBytes(StandardCharsets.UTF_8));
+                zout.closeEntry();
+            }
+        }
+        write(new File(out, name + ".zip"), zip.toByteArray()); //NOI18N
+        try (OutputStream idx = new FileOutputStream(new File(out, name + ".idx"))) { //NOI18N
+            StubIndex.write("node " + root.path("version").asText(), index, idx); //NOI18N
+        }
+    }
+
+    /**
+     * Render the stub source for one module's exports, collecting its
+     * symbols as a side effect.
+     */
+    private String stub(JsonNode exports, List<Symbol> symbols) throws IOException {
+        StringBuilder sb = new StringBuilder(HEADER);
+        for (JsonNode item : exports) {
+            String key = item.path("name").asText(); //NOI18N
+            String kind = item.path("kind").asText(); //NOI18N
+            switch (kind) {
+                case "function": //NOI18N
+                case "class": //NOI18N
+                    String params = item.path("params").asText(); //NOI18N
+                    sb.append("\nexports.").append(key).append("=function(").append(params).append("){}"); //NOI18N
+                    symbols.add(new Symbol(key, null, "class".equals(kind) //NOI18N
+                            ? Symbol.Kind.CLASS : Symbol.Kind.FUNCTION, params));
+                    for (JsonNode method : item.path("methods")) { //NOI18N
+                        String mname = method.path("name").asText(); //NOI18N
+                        String mparams = method.path("params").asText(); //NOI18N
+                        sb.append("\nexports.").append(key).append(".prototype.").append(mname) //NOI18N
+                                .append("=function(").append(mparams).append("){}"); //NOI18N
+                        symbols.add(new Symbol(mname, key, Symbol.Kind.METHOD, mparams));
+                    }
+                    break;
+                case "object": //NOI18N
+                    sb.append("\nexports.").append(key).append(" = {"); //NOI18N
+                    boolean first = true;
+                    for (Iterator<Map.Entry<String, JsonNode>> it = item.path("members").fields(); it.hasNext();) { //NOI18N
+                        Map.Entry<String, JsonNode> member = it.next();
+                        if (!first) {
+                            sb.append(", "); //NOI18N
+                        }
+                        first = false;
+                        sb.append(mapper.writeValueAsString(member.getKey())).append(": ") //NOI18N
+                                .append(member.getValue().asText());
+                    }
+                    sb.append('}');
+                    symbols.add(new Symbol(key, null, Symbol.Kind.OBJECT, "")); //NOI18N
+                    break;
+                case "value": //NOI18N
+                    String value = item.path("value").asText(); //NOI18N
+                    sb.append("\nexports.").append(key).append(" = ").append(value); //NOI18N
+                    symbols.add(new Symbol(key, null, Symbol.Kind.VALUE, value));
+                    break;
+                default:
+                    throw new IOException("Unknown kind " + kind + " of " + key); //NOI18N
+            }
+        }
+        return sb.append('\n').toString();
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+    }
+}
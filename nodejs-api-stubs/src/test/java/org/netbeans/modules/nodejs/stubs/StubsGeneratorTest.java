@@ -0,0 +1,156 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.stubs;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.netbeans.modules.nodejs.api.Stubs.Symbol;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class StubsGeneratorTest {
+
+    private static final String PROBE = "{\"version\": \"v20.1.0\", \"modules\": {\n"
+            + " \"events\": [\n"
+            + "  {\"name\": \"EventEmitter\", \"kind\": \"class\", \"params\": \"opts\",\n"
+            + "   \"methods\": [{\"name\": \"on\", \"params\": \"type, listener\"}]},\n"
+            + "  {\"name\": \"once\", \"kind\": \"function\", \"params\": \"emitter, name, options = {}\"},\n"
+            + "  {\"name\": \"defaultMaxListeners\", \"kind\": \"value\", \"value\": \"10\"}\n"
+            + " ],\n"
+            + " \"fs/promises\": [\n"
+            + "  {\"name\": \"constants\", \"kind\": \"object\", \"members\": {\"F_OK\": \"0\", \"R_OK\": \"4\"}}\n"
+            + " ]\n"
+            + "}}\n";
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("stubs", ".dir");
+        assertTrue(dir.delete());
+        assertTrue(new File(dir, "in").mkdirs());
+        try (OutputStream out = new FileOutputStream(new File(dir, "in/node-20.json"))) {
+            out.write(PROBE.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    private static void delete(File f) {
+        File[] kids = f.listFiles();
+        if (kids != null) {
+            for (File kid : kids) {
+                delete(kid);
+            }
+        }
+        f.delete();
+    }
+
+    @Test
+    public void testGenerate() throws IOException {
+        File out = new File(dir, "out");
+        new StubsGenerator().generate(new File(dir, "in"), out);
+        assertEquals("20\n", read(new FileInputStream(new File(out, "versions.txt"))));
+
+        Map<String, List<Symbol>> index;
+        try (InputStream in = new FileInputStream(new File(out, "node-20.idx"))) {
+            index = StubIndex.read(in);
+        }
+        assertEquals("[events, fs/promises]", index.keySet().toString());
+        List<Symbol> events = index.get("events");
+        assertEquals(4, events.size());
+        assertEquals("EventEmitter(opts)", events.get(0).toString());
+        assertEquals(Symbol.Kind.CLASS, events.get(0).kind());
+        assertEquals("on", events.get(1).name());
+        assertEquals("EventEmitter", events.get(1).owner());
+        assertEquals(Symbol.Kind.METHOD, events.get(1).kind());
+        assertEquals("once(emitter, name, options = {})", events.get(2).toString());
+        assertEquals("defaultMaxListeners = 10", events.get(3).toString());
+        assertEquals(Symbol.Kind.OBJECT, index.get("fs/promises").get(0).kind());
+
+        try (ZipFile zip = new ZipFile(new File(out, "node-20.zip"))) {
+            ZipEntry entry = zip.getEntry("events.js");
+            assertNotNull(entry);
+            String text = read(zip.getInputStream(entry));
+            assertTrue(text, text.startsWith("/* THIS IS A STUB FILE"));
+            assertTrue(text, text.contains("\nexports.EventEmitter=function(opts){}\n"
+                    + "exports.EventEmitter.prototype.on=function(type, listener){}\n"
+                    + "exports.once=function(emitter, name, options = {}){}\n"
+                    + "exports.defaultMaxListeners = 10\n"));
+            String promises = read(zip.getInputStream(zip.getEntry("fs/promises.js")));
+            assertTrue(promises, promises.endsWith("\nexports.constants = {\"F_OK\": 0, \"R_OK\": 4}\n"));
+        }
+    }
+
+    @Test
+    public void testReproducible() throws IOException {
+        File a = new File(dir, "a");
+        File b = new File(dir, "b");
+        new StubsGenerator().generate(new File(dir, "in"), a);
+        new StubsGenerator().generate(new File(dir, "in"), b);
+        assertEquals(read(new FileInputStream(new File(a, "node-20.zip"))),
+                read(new FileInputStream(new File(b, "node-20.zip"))));
+    }
+
+    @Test
+    public void testReproducibleAcrossTimeZones() throws IOException {
+        TimeZone old = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Kiritimati"));
+            new StubsGenerator().generate(new File(dir, "in"), new File(dir, "east"));
+            TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+            new StubsGenerator().generate(new File(dir, "in"), new File(dir, "west"));
+        } finally {
+            TimeZone.setDefault(old);
+        }
+        assertEquals(read(new FileInputStream(new File(dir, "east/node-20.zip"))),
+                read(new FileInputStream(new File(dir, "west/node-20.zip"))));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            StringBuilder sb = new StringBuilder();
+            byte[] buf = new byte[4096];
+            for (int n = in.read(buf); n > 0; n = in.read(buf)) {
+                sb.append(new String(buf, 0, n, StandardCharsets.ISO_8859_1));
+            }
+            return sb.toString();
+        } finally {
+            in.close();
+        }
+    }
+}
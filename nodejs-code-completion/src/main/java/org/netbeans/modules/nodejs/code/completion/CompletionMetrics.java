@@ -0,0 +1,90 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.modules.nodejs.code.completion.ContextAnalyzer.Kind;
+
+/**
+ * Counts and latencies of completion requests, by the context the caret
+ * was found in.
+ *
+ * @author Tim Boudreau
+ */
+public final class CompletionMetrics {
+    private static final Logger LOG = Logger.getLogger(CompletionMetrics.class.getName());
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final CompletionMetrics INSTANCE = new CompletionMetrics();
+    private final AtomicLongArray counts = new AtomicLongArray(Kind.values().length);
+    private final AtomicLong slow = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    CompletionMetrics() {
+    }
+
+    public static CompletionMetrics getDefault() {
+        return INSTANCE;
+    }
+
+    void record(Kind kind, long nanos) {
+        counts.incrementAndGet(kind.ordinal());
+        totalNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // retry
+        }
+        if (nanos > SLOW_NANOS) {
+            slow.incrementAndGet();
+            LOG.log(Level.FINE, "Completion in {0} took {1}ms", //NOI18N
+                    new Object[]{kind, TimeUnit.NANOSECONDS.toMillis(nanos)});
+        }
+    }
+
+    /**
+     * Get request counts by context, and latencies in microseconds.
+     */
+    public Map<String, Long> metrics() {
+        Map<String, Long> result = new HashMap<>();
+        long count = 0;
+        for (Kind kind : Kind.values()) {
+            long c = counts.get(kind.ordinal());
+            result.put(kind.name(), c);
+            count += c;
+        }
+        result.put("requests", count); //NOI18N
+        result.put("slow", slow.get()); //NOI18N
+        result.put("totalMicros", TimeUnit.NANOSECONDS.toMicros(totalNanos.get())); //NOI18N
+        result.put("maxMicros", TimeUnit.NANOSECONDS.toMicros(maxNanos.get())); //NOI18N
+        result.put("averageMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.get() / count)); //NOI18N
+        return Collections.unmodifiableMap(result);
+    }
+
+    @Override
+    public String toString() {
+        return "CompletionMetrics" + metrics(); //NOI18N
+    }
+}
@@ -0,0 +1,254 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+/**
+ * Works out what is being completed from the tokens before the caret, in
+ * one backwards pass over them which allocates nothing per token:  token
+ * texts are compared as CharSequences, and the few tokens the patterns
+ * need are recorded in fixed arrays.  Recognizes
+ * <ul>
+ * <li>the string argument of <code>require('...')</code></li>
+ * <li>member access on <code>require('x').</code>, or on a variable
+ * (<code>name.</code>) which may hold a required module</li>
+ * <li>a property name in an object literal</li>
+ * <li>a selector string passed to <code>$</code> or <code>jQuery</code></li>
+ * </ul>
+ * The lexer is hidden behind {@link Tokens}, so one analyzer serves any
+ * token source.  An analyzer may be reused, but not concurrently.
+ *
+ * @author Tim Boudreau
+ */
+final class ContextAnalyzer {
+
+    enum Kind {
+        NONE,
+        /** In the string argument of require();  the span is the typed text. */
+        REQUIRE_STRING,
+        /** After <code>require('x').</code>;  the span is x. */
+        REQUIRED_MEMBER,
+        /** After <code>name.</code>;  the span is name. */
+        BOUND_MEMBER,
+        /** A property name in an object literal;  the span is what is typed. */
+        OBJECT_PROPERTY_NAME,
+        /** In a string passed to $() or jQuery();  the span is the typed text. */
+        JQUERY_SELECTOR
+    }
+
+    /**
+     * The distinctions between tokens the analyzer cares about.
+     */
+    enum TokenKind {
+        IDENTIFIER, DOT, LEFT_PAREN, RIGHT_PAREN, LEFT_CURLY, RIGHT_CURLY,
+        LEFT_BRACKET, RIGHT_BRACKET, COMMA, COLON, ASSIGN, SEMICOLON, RETURN,
+        STRING_BEGIN, STRING, STRING_END, WHITESPACE, EOL, COMMENT, OTHER
+    }
+
+    /**
+     * Tokens read backwards from the caret.
+     */
+    interface Tokens {
+        /**
+         * Move to the previous token;  the first call moves to the token
+         * containing the caret, or ending at it if the caret is between
+         * tokens.
+         */
+        boolean movePrevious();
+
+        TokenKind kind();
+
+        int offset();
+
+        int length();
+
+        CharSequence text();
+    }
+
+    private static final String REQUIRE = "require"; //NOI18N
+    private static final String DOLLAR = "$"; //NOI18N
+    private static final String JQUERY = "jQuery"; //NOI18N
+    // Enough for require ( ' x ' ) . prefix
+    private static final int SIGNIFICANT = 8;
+    // How far to look for the brace opening an object literal
+    private static final int MAX_TOKENS = 4096;
+    private final TokenKind[] kinds = new TokenKind[SIGNIFICANT];
+    private final int[] starts = new int[SIGNIFICANT];
+    private final int[] ends = new int[SIGNIFICANT];
+    private final boolean[] requires = new boolean[SIGNIFICANT];
+    private int count;
+    private Kind kind = Kind.NONE;
+    private int start = -1;
+    private int end = -1;
+    private boolean jQuery;
+
+    Kind kind() {
+        return kind;
+    }
+
+    /**
+     * Start of the span of text the context is about, as an offset in the
+     * token source.
+     */
+    int start() {
+        return start;
+    }
+
+    int end() {
+        return end;
+    }
+
+    /**
+     * Whether the run of tokens without whitespace which ends at the caret
+     * starts with <code>$</code> or <code>jQuery</code>.
+     */
+    boolean jQuery() {
+        return jQuery;
+    }
+
+    ContextAnalyzer analyze(Tokens tokens, int caret) {
+        kind = Kind.NONE;
+        start = end = -1;
+        jQuery = false;
+        count = 0;
+        if (!tokens.movePrevious()) {
+            return this;
+        }
+        TokenKind caretKind = tokens.kind();
+        int caretTokenStart = tokens.offset();
+        boolean inString = caretKind == TokenKind.STRING || caretKind == TokenKind.STRING_BEGIN;
+        // The jQuery check looks at the first token of the run of tokens,
+        // without whitespace, which ends at the caret (or at whitespace the
+        // caret is in)
+        boolean inRun = true;
+        // Looking for the brace opening an object literal:  0 = not known
+        // yet, 1 = looking, 2 = found, needs the token before it, 3 = in an
+        // object literal, -1 = not in one
+        int objectState = inString ? -1 : 0;
+        int depth = 0;
+        int prefixEnd = caret;
+        int visited = 0;
+        do {
+            TokenKind k = tokens.kind();
+            if (inRun) {
+                if (k == TokenKind.WHITESPACE || k == TokenKind.EOL) {
+                    inRun = visited == 0;
+                } else {
+                    jQuery = k == TokenKind.IDENTIFIER
+                            && (textEquals(tokens.text(), DOLLAR) || textEquals(tokens.text(), JQUERY));
+                }
+            }
+            if (k == TokenKind.WHITESPACE || k == TokenKind.EOL || k == TokenKind.COMMENT) {
+                continue;
+            }
+            int significant = count;
+            if (count < SIGNIFICANT) {
+                kinds[count] = k;
+                starts[count] = tokens.offset();
+                ends[count] = tokens.offset() + tokens.length();
+                requires[count] = k == TokenKind.IDENTIFIER && textEquals(tokens.text(), REQUIRE);
+                count++;
+            }
+            if (significant == 0 && k == TokenKind.IDENTIFIER && ends[0] == caret) {
+                // What is being typed
+                prefixEnd = starts[0];
+                continue;
+            }
+            switch (objectState) {
+                case 0:
+                    // The first token before what is typed
+                    objectState = k == TokenKind.LEFT_CURLY ? 2 : k == TokenKind.COMMA ? 1 : -1;
+                    break;
+                case 1:
+                    if (k == TokenKind.RIGHT_CURLY || k == TokenKind.RIGHT_PAREN || k == TokenKind.RIGHT_BRACKET) {
+                        depth++;
+                    } else if (k == TokenKind.LEFT_CURLY || k == TokenKind.LEFT_PAREN || k == TokenKind.LEFT_BRACKET) {
+                        if (depth-- == 0) {
+                            objectState = k == TokenKind.LEFT_CURLY ? 2 : -1;
+                        }
+                    } else if (k == TokenKind.SEMICOLON && depth == 0) {
+                        objectState = -1;
+                    }
+                    break;
+                case 2:
+                    if (k == TokenKind.LEFT_PAREN || k == TokenKind.COMMA || k == TokenKind.ASSIGN
+                            || k == TokenKind.COLON || k == TokenKind.RETURN || k == TokenKind.LEFT_BRACKET) {
+                        objectState = 3;
+                    } else {
+                        objectState = -1;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (count == SIGNIFICANT && !inRun && (objectState <= 0 || objectState == 3)) {
+                break;
+            }
+        } while (++visited < MAX_TOKENS && tokens.movePrevious());
+        if (inString) {
+            int s = caretKind == TokenKind.STRING ? 1 : 0;
+            int contentStart = caretKind == TokenKind.STRING ? caretTokenStart : ends[0];
+            if (is(s, TokenKind.STRING_BEGIN) && is(s + 1, TokenKind.LEFT_PAREN) && s + 2 < count && requires[s + 2]) {
+                set(Kind.REQUIRE_STRING, contentStart, caret);
+            } else if (jQuery) {
+                set(Kind.JQUERY_SELECTOR, contentStart, caret);
+            }
+            return this;
+        }
+        int p = prefixEnd == caret ? 0 : 1;
+        if (is(p, TokenKind.DOT)) {
+            if (is(p + 1, TokenKind.IDENTIFIER) && !requires[p + 1]) {
+                set(Kind.BOUND_MEMBER, starts[p + 1], ends[p + 1]);
+            } else if (is(p + 1, TokenKind.RIGHT_PAREN) && is(p + 2, TokenKind.STRING_END)
+                    && is(p + 3, TokenKind.STRING) && is(p + 4, TokenKind.STRING_BEGIN)
+                    && is(p + 5, TokenKind.LEFT_PAREN) && p + 6 < count && requires[p + 6]) {
+                set(Kind.REQUIRED_MEMBER, starts[p + 3], ends[p + 3]);
+            }
+        } else if (objectState == 3) {
+            set(Kind.OBJECT_PROPERTY_NAME, prefixEnd, caret);
+        }
+        return this;
+    }
+
+    private boolean is(int index, TokenKind k) {
+        return index < count && kinds[index] == k;
+    }
+
+    private void set(Kind kind, int start, int end) {
+        this.kind = kind;
+        this.start = start;
+        this.end = end;
+    }
+
+    static boolean textEquals(CharSequence a, String b) {
+        if (a.length() != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < b.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return kind + "[" + start + "," + end + ")"; //NOI18N
+    }
+}
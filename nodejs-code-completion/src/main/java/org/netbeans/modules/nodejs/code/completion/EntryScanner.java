@@ -0,0 +1,278 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.netbeans.modules.nodejs.api.Stubs.Symbol;
+
+/**
+ * Finds the names a JavaScript file exports without parsing it:
+ * assignments to <code>exports.x</code> and <code>module.exports.x</code>,
+ * the keys of an object literal assigned to <code>module.exports</code>,
+ * <code>Object.defineProperty(exports, "x", ...)</code> as emitted by
+ * TypeScript, and ES module <code>export</code> declarations.  Good enough
+ * for the entry files of most packages, and much cheaper than a parse.
+ *
+ * @author Tim Boudreau
+ */
+final class EntryScanner {
+    private static final String ID = "([A-Za-z_$][\\w$]*)"; //NOI18N
+    private static final String PARAMS = "\\(([^)]*)\\)"; //NOI18N
+    private static final Pattern ASSIGNED = Pattern.compile(
+            "(?:^|[^\\w$.])(?:module\\s*\\.\\s*)?exports\\s*\\.\\s*" + ID //NOI18N
+            + "\\s*=(?!=)\\s*(?:(?:async\\s+)?function\\b\\s*\\*?\\s*[\\w$]*\\s*" + PARAMS //NOI18N
+            + "|(class)\\b)?"); //NOI18N
+    private static final Pattern DEFINED = Pattern.compile(
+            "Object\\.defineProperty\\(\\s*(?:module\\.)?exports\\s*,\\s*['\"]" + ID + "['\"]"); //NOI18N
+    private static final Pattern ES_FUNCTION = Pattern.compile(
+            "(?:^|[;}\\s])export\\s+(?:async\\s+)?function\\s*\\*?\\s*" + ID + "\\s*" + PARAMS); //NOI18N
+    private static final Pattern ES_DECLARATION = Pattern.compile(
+            "(?:^|[;}\\s])export\\s+(class|const|let|var)\\s+" + ID); //NOI18N
+    private static final Pattern ES_LIST = Pattern.compile(
+            "(?:^|[;}\\s])export\\s*\\{([^}]*)\\}"); //NOI18N
+    private static final Pattern OBJECT = Pattern.compile(
+            "module\\s*\\.\\s*exports\\s*=\\s*\\{"); //NOI18N
+    private static final Pattern REEXPORT = Pattern.compile(
+            "module\\s*\\.\\s*exports\\s*=\\s*require\\s*\\(\\s*['\"]([^'\"]+)['\"]\\s*\\)"); //NOI18N
+    private static final Pattern FUNCTION_VALUE = Pattern.compile(
+            "\\G\\s*(?:async\\s+)?function\\b\\s*\\*?\\s*[\\w$]*\\s*" + PARAMS); //NOI18N
+
+    private EntryScanner() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Find the exports of a file, in order of appearance;  the list may
+     * contain duplicates.
+     */
+    static List<Symbol> scan(CharSequence text) {
+        List<Symbol> result = new ArrayList<>();
+        Matcher m = ASSIGNED.matcher(text);
+        while (m.find()) {
+            if (m.group(2) != null) {
+                result.add(function(m.group(1), m.group(2)));
+            } else if (m.group(3) != null) {
+                result.add(new Symbol(m.group(1), null, Symbol.Kind.CLASS, "")); //NOI18N
+            } else {
+                result.add(new Symbol(m.group(1), null, Symbol.Kind.VALUE, "")); //NOI18N
+            }
+        }
+        m = DEFINED.matcher(text);
+        while (m.find()) {
+            result.add(new Symbol(m.group(1), null, Symbol.Kind.VALUE, "")); //NOI18N
+        }
+        m = ES_FUNCTION.matcher(text);
+        while (m.find()) {
+            result.add(function(m.group(1), m.group(2)));
+        }
+        m = ES_DECLARATION.matcher(text);
+        while (m.find()) {
+            result.add(new Symbol(m.group(2), null, "class".equals(m.group(1)) //NOI18N
+                    ? Symbol.Kind.CLASS : Symbol.Kind.VALUE, "")); //NOI18N
+        }
+        m = ES_LIST.matcher(text);
+        while (m.find()) {
+            for (String item : m.group(1).split(",")) { //NOI18N
+                String[] parts = item.trim().split("\\s+as\\s+"); //NOI18N
+                String name = parts[parts.length - 1].trim();
+                if (isIdentifier(name) && !"default".equals(name)) { //NOI18N
+                    result.add(new Symbol(name, null, Symbol.Kind.VALUE, "")); //NOI18N
+                }
+            }
+        }
+        m = OBJECT.matcher(text);
+        while (m.find()) {
+            objectKeys(text, m.end(), result);
+        }
+        return result;
+    }
+
+    /**
+     * If the file consists of <code>module.exports = require('./x')</code>,
+     * as the entry files of many packages do, return <code>./x</code>.
+     */
+    static String reexported(CharSequence text) {
+        Matcher m = REEXPORT.matcher(text);
+        return m.find() ? m.group(1) : null;
+    }
+
+    private static Symbol function(String name, String params) {
+        return new Symbol(name, null, Symbol.Kind.FUNCTION, params.replaceAll("\\s+", " ").trim()); //NOI18N
+    }
+
+    /**
+     * Collect the top level keys of an object literal, starting just after
+     * its opening brace.
+     */
+    private static void objectKeys(CharSequence text, int start, List<Symbol> into) {
+        int depth = 0;
+        boolean expectKey = true;
+        int len = text.length();
+        for (int i = start; i < len; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\'':
+                case '"':
+                case '`':
+                    int end = skipString(text, i);
+                    if (depth == 0 && expectKey && c != '`') {
+                        String key = text.subSequence(i + 1, end - 1).toString();
+                        i = end - 1;
+                        if (isIdentifier(key)) {
+                            i = key(text, end, key, into) - 1;
+                        }
+                        expectKey = false;
+                    } else {
+                        i = end - 1;
+                    }
+                    continue;
+                case '/':
+                    if (i + 1 < len && text.charAt(i + 1) == '/') {
+                        while (i < len && text.charAt(i) != '\n') {
+                            i++;
+                        }
+                    } else if (i + 1 < len && text.charAt(i + 1) == '*') {
+                        i += 2;
+                        while (i + 1 < len && !(text.charAt(i) == '*' && text.charAt(i + 1) == '/')) {
+                            i++;
+                        }
+                        i++;
+                    }
+                    continue;
+                case '{':
+                case '(':
+                case '[':
+                    depth++;
+                    expectKey = false;
+                    continue;
+                case ')':
+                case ']':
+                    depth--;
+                    continue;
+                case '}':
+                    if (depth-- == 0) {
+                        return;
+                    }
+                    continue;
+                case ',':
+                    if (depth == 0) {
+                        expectKey = true;
+                    }
+                    continue;
+                default:
+                    if (depth == 0 && expectKey && isIdentifierStart(c)) {
+                        int e = i + 1;
+                        while (e < len && isIdentifierPart(text.charAt(e))) {
+                            e++;
+                        }
+                        String key = text.subSequence(i, e).toString();
+                        if (("async".equals(key) || "get".equals(key) || "set".equals(key)) //NOI18N
+                                && nextNonSpace(text, e) < len && isIdentifierStart(text.charAt(nextNonSpace(text, e)))) {
+                            // Modifier of a method - the name follows
+                            i = nextNonSpace(text, e) - 1;
+                            continue;
+                        }
+                        i = key(text, e, key, into) - 1;
+                        expectKey = false;
+                    }
+            }
+        }
+    }
+
+    /**
+     * Add a key found at depth 0 of an object literal, using what follows it
+     * to tell functions from other values;  returns where scanning should
+     * continue.
+     */
+    private static int key(CharSequence text, int after, String key, List<Symbol> into) {
+        int next = nextNonSpace(text, after);
+        char c = next < text.length() ? text.charAt(next) : 0;
+        if (c == '(') {
+            // Method shorthand
+            int close = indexOf(text, ')', next);
+            into.add(function(key, text.subSequence(next + 1, close < 0 ? next + 1 : close).toString()));
+            return next;
+        } else if (c == ':') {
+            Matcher m = FUNCTION_VALUE.matcher(text);
+            if (m.find(next + 1) && m.start() == next + 1) {
+                into.add(function(key, m.group(1)));
+            } else {
+                into.add(new Symbol(key, null, Symbol.Kind.VALUE, "")); //NOI18N
+            }
+            return next + 1;
+        } else if (c == ',' || c == '}') {
+            // Property shorthand
+            into.add(new Symbol(key, null, Symbol.Kind.VALUE, "")); //NOI18N
+            return next;
+        }
+        return after;
+    }
+
+    private static int skipString(CharSequence text, int start) {
+        char quote = text.charAt(start);
+        for (int i = start + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote) {
+                return i + 1;
+            }
+        }
+        return text.length();
+    }
+
+    private static int nextNonSpace(CharSequence text, int from) {
+        while (from < text.length() && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static boolean isIdentifier(String s) {
+        if (s.isEmpty() || !isIdentifierStart(s.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < s.length(); i++) {
+            if (!isIdentifierPart(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return c == '$' || c == '_' || Character.isLetter(c);
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return c == '$' || c == '_' || Character.isLetterOrDigit(c);
+    }
+}
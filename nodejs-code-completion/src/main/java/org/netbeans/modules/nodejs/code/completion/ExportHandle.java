@@ -0,0 +1,146 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.util.Collections;
+import java.util.Set;
+import org.netbeans.modules.csl.api.ElementHandle;
+import org.netbeans.modules.csl.api.ElementKind;
+import org.netbeans.modules.csl.api.Modifier;
+import org.netbeans.modules.csl.api.OffsetRange;
+import org.netbeans.modules.csl.spi.ParserResult;
+import org.netbeans.modules.nodejs.api.Stubs.Symbol;
+import org.openide.filesystems.FileObject;
+
+/**
+ * Handle for a symbol exported by a module, which has no source element
+ * in the file being edited.
+ *
+ * @author Tim Boudreau
+ */
+final class ExportHandle implements ElementHandle {
+    private final String module;
+    private final Symbol symbol;
+
+    ExportHandle(String module, Symbol symbol) {
+        this.module = module;
+        this.symbol = symbol;
+    }
+
+    Symbol symbol() {
+        return symbol;
+    }
+
+    static ElementKind kind(Symbol symbol) {
+        switch (symbol.kind()) {
+            case FUNCTION:
+            case METHOD:
+                return ElementKind.METHOD;
+            case CLASS:
+                return ElementKind.CLASS;
+            case OBJECT:
+                return ElementKind.PROPERTY;
+            default:
+                return ElementKind.FIELD;
+        }
+    }
+
+    String documentation() {
+        StringBuilder sb = new StringBuilder("<pre>require('"); //NOI18N
+        escape(module, sb);
+        sb.append("').").append(symbol.name()); //NOI18N
+        switch (symbol.kind()) {
+            case FUNCTION:
+            case CLASS:
+                sb.append('(');
+                escape(symbol.signature(), sb);
+                sb.append(')');
+                break;
+            case VALUE:
+                if (!symbol.signature().isEmpty()) {
+                    sb.append(" = "); //NOI18N
+                    escape(symbol.signature(), sb);
+                }
+                break;
+            default:
+                break;
+        }
+        return sb.append("</pre>").toString(); //NOI18N
+    }
+
+    private static void escape(String s, StringBuilder into) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '<':
+                    into.append("&lt;"); //NOI18N
+                    break;
+                case '>':
+                    into.append("&gt;"); //NOI18N
+                    break;
+                case '&':
+                    into.append("&amp;"); //NOI18N
+                    break;
+                default:
+                    into.append(c);
+            }
+        }
+    }
+
+    @Override
+    public FileObject getFileObject() {
+        return null;
+    }
+
+    @Override
+    public String getMimeType() {
+        return "text/javascript"; //NOI18N
+    }
+
+    @Override
+    public String getName() {
+        return symbol.name();
+    }
+
+    @Override
+    public String getIn() {
+        return module;
+    }
+
+    @Override
+    public ElementKind getKind() {
+        return kind(symbol);
+    }
+
+    @Override
+    public Set<Modifier> getModifiers() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public boolean signatureEquals(ElementHandle handle) {
+        return handle instanceof ExportHandle && ((ExportHandle) handle).module.equals(module)
+                && ((ExportHandle) handle).symbol.name().equals(symbol.name());
+    }
+
+    @Override
+    public OffsetRange getOffsetRange(ParserResult result) {
+        return OffsetRange.NONE;
+    }
+}
@@ -0,0 +1,77 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import org.netbeans.modules.csl.api.ElementHandle;
+import org.netbeans.modules.csl.api.ElementKind;
+import org.netbeans.modules.csl.api.HtmlFormatter;
+import org.netbeans.modules.csl.spi.DefaultCompletionProposal;
+import org.netbeans.modules.nodejs.api.Stubs.Symbol;
+
+/**
+ * Completion item for a symbol exported by a required module.
+ *
+ * @author Tim Boudreau
+ */
+final class ExportProposal extends DefaultCompletionProposal {
+    private final ExportHandle handle;
+    private final String module;
+
+    ExportProposal(String module, Symbol symbol, int anchorOffset) {
+        this.module = module;
+        this.handle = new ExportHandle(module, symbol);
+        this.anchorOffset = anchorOffset;
+        this.kind = ExportHandle.kind(symbol);
+        this.smart = true;
+    }
+
+    @Override
+    public String getName() {
+        return handle.getName();
+    }
+
+    @Override
+    public ElementHandle getElement() {
+        return handle;
+    }
+
+    @Override
+    public String getLhsHtml(HtmlFormatter formatter) {
+        formatter.reset();
+        formatter.name(getKind(), true);
+        formatter.appendText(getName());
+        formatter.name(getKind(), false);
+        Symbol symbol = handle.symbol();
+        if (getKind() == ElementKind.METHOD || symbol.kind() == Symbol.Kind.CLASS) {
+            formatter.appendText("("); //NOI18N
+            formatter.parameters(true);
+            formatter.appendText(symbol.signature());
+            formatter.parameters(false);
+            formatter.appendText(")"); //NOI18N
+        }
+        return formatter.getText();
+    }
+
+    @Override
+    public String getRhsHtml(HtmlFormatter formatter) {
+        formatter.reset();
+        formatter.appendText(module);
+        return formatter.getText();
+    }
+}
@@ -0,0 +1,112 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.netbeans.modules.nodejs.api.Stubs.Symbol;
+
+/**
+ * The names a module exports, sorted so that all names starting with a
+ * prefix can be found with a binary search.  Immutable.
+ *
+ * @author Tim Boudreau
+ */
+final class ModuleExports {
+    static final ModuleExports EMPTY = new ModuleExports(new String[0], new Symbol[0]);
+    private final String[] names;
+    private final Symbol[] symbols;
+
+    private ModuleExports(String[] names, Symbol[] symbols) {
+        this.names = names;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Create from a list of symbols, ignoring methods and keeping the
+     * first of several symbols with the same name.
+     */
+    static ModuleExports of(List<Symbol> all) {
+        List<Symbol> exported = new ArrayList<>(all.size());
+        Set<String> seen = new HashSet<>();
+        for (Symbol sym : all) {
+            if (sym.owner() == null && seen.add(sym.name())) {
+                exported.add(sym);
+            }
+        }
+        if (exported.isEmpty()) {
+            return EMPTY;
+        }
+        Symbol[] symbols = exported.toArray(new Symbol[exported.size()]);
+        Arrays.sort(symbols, BY_NAME);
+        String[] names = new String[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            names[i] = symbols[i].name();
+        }
+        return new ModuleExports(names, symbols);
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    boolean isEmpty() {
+        return names.length == 0;
+    }
+
+    /**
+     * Get the exported symbols whose names start with the prefix, in name
+     * order.
+     */
+    List<Symbol> withPrefix(String prefix) {
+        int lo = 0;
+        int hi = names.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (names[mid].compareTo(prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int end = lo;
+        while (end < names.length && names[end].startsWith(prefix)) {
+            end++;
+        }
+        return lo == end ? Collections.<Symbol>emptyList()
+                : Collections.unmodifiableList(Arrays.asList(symbols).subList(lo, end));
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(names);
+    }
+
+    private static final Comparator<Symbol> BY_NAME = new Comparator<Symbol>() {
+        @Override
+        public int compare(Symbol a, Symbol b) {
+            return a.name().compareTo(b.name());
+        }
+    };
+}
@@ -0,0 +1,124 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.util.Collections;
+import java.util.Set;
+import org.netbeans.modules.csl.api.ElementHandle;
+import org.netbeans.modules.csl.api.ElementKind;
+import org.netbeans.modules.csl.api.HtmlFormatter;
+import org.netbeans.modules.csl.api.Modifier;
+import org.netbeans.modules.csl.api.OffsetRange;
+import org.netbeans.modules.csl.spi.DefaultCompletionProposal;
+import org.netbeans.modules.csl.spi.ParserResult;
+import org.openide.filesystems.FileObject;
+
+/**
+ * Completion item for a module name or relative path inside
+ * <code>require('...')</code>.  Items keep the order they are created in,
+ * which is their rank.
+ *
+ * @author Tim Boudreau
+ */
+final class ModuleNameProposal extends DefaultCompletionProposal {
+    private final Handle handle;
+    private final String sortText;
+
+    ModuleNameProposal(String name, boolean file, int rank, int anchorOffset) {
+        this.handle = new Handle(name, file ? ElementKind.FILE : ElementKind.MODULE);
+        this.anchorOffset = anchorOffset;
+        this.kind = handle.getKind();
+        this.smart = !file;
+        this.sortText = String.format("%05d", rank); //NOI18N
+    }
+
+    @Override
+    public String getName() {
+        return handle.getName();
+    }
+
+    @Override
+    public String getSortText() {
+        return sortText;
+    }
+
+    @Override
+    public ElementHandle getElement() {
+        return handle;
+    }
+
+    @Override
+    public String getLhsHtml(HtmlFormatter formatter) {
+        formatter.reset();
+        formatter.name(getKind(), true);
+        formatter.appendText(getName());
+        formatter.name(getKind(), false);
+        return formatter.getText();
+    }
+
+    private static final class Handle implements ElementHandle {
+        private final String name;
+        private final ElementKind kind;
+
+        Handle(String name, ElementKind kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+
+        @Override
+        public FileObject getFileObject() {
+            return null;
+        }
+
+        @Override
+        public String getMimeType() {
+            return "text/javascript"; //NOI18N
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getIn() {
+            return null;
+        }
+
+        @Override
+        public ElementKind getKind() {
+            return kind;
+        }
+
+        @Override
+        public Set<Modifier> getModifiers() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public boolean signatureEquals(ElementHandle handle) {
+            return handle instanceof Handle && ((Handle) handle).name.equals(name);
+        }
+
+        @Override
+        public OffsetRange getOffsetRange(ParserResult result) {
+            return OffsetRange.NONE;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.ui.OpenProjects;
+import org.netbeans.modules.nodejs.api.NodeJSUtils;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+
+/**
+ * Candidates for completing the module name in <code>require('...')</code>
+ * for one project:  built-in modules, the packages installed in its
+ * node_modules and, for names starting with <code>./</code> or
+ * <code>../</code>, files relative to the requiring file.
+ * <p/>
+ * Module names live in a {@link ModuleTrie}, ranked first by how the
+ * project relates to them - a declared dependency, a built-in module, or
+ * something merely installed as a dependency of a dependency - and then by
+ * how many of the project's files require them.  The declared and
+ * installed packages come from the project's dependency graph, which
+ * tracks changes to package.json and node_modules itself;  the trie is
+ * updated incrementally, touching only names which appeared, disappeared
+ * or changed rank.  Projects' names are forgotten when they are closed.
+ *
+ * @author Tim Boudreau
+ */
+final class ModuleNames {
+    private static final String NODE_MODULES = "node_modules"; //NOI18N
+    private static final String PACKAGE_JSON = "package.json"; //NOI18N
+    private static final Pattern REQUIRED = Pattern.compile(
+            "(?:require\\s*\\(|\\bfrom)\\s*['\"]([^'\"./][^'\"]*)['\"]"); //NOI18N
+    static final int DECLARED = 2000;
+    static final int BUILT_IN = 1000;
+    static final int INSTALLED = 0;
+    private static final int USAGE_WEIGHT = 10;
+    private static final int MAX_USAGE = 99;
+    private static final Map<File, ModuleNames> PROJECTS = new HashMap<>();
+
+    static {
+        OpenProjects.getDefault().addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if (OpenProjects.PROPERTY_OPEN_PROJECTS.equals(evt.getPropertyName())
+                        && evt.getOldValue() instanceof Project[]) {
+                    Set<Project> closed = new HashSet<>(Arrays.asList((Project[]) evt.getOldValue()));
+                    if (evt.getNewValue() instanceof Project[]) {
+                        closed.removeAll(Arrays.asList((Project[]) evt.getNewValue()));
+                    }
+                    for (Project p : closed) {
+                        File dir = FileUtil.toFile(p.getProjectDirectory());
+                        if (dir != null) {
+                            forget(dir);
+                        }
+                    }
+                }
+            }
+        });
+    }
+    private final File root;
+    private final NodeJSUtils utils;
+    private FileObject dir;
+    private final ModuleTrie trie = new ModuleTrie();
+    private final Set<String> builtIns = new HashSet<>();
+    private Set<String> declared = Collections.emptySet();
+    private Set<String> installed = Collections.emptySet();
+    private final Map<String, Integer> usage = new HashMap<>();
+    private final Map<File, Set<String>> requiredBy = new HashMap<>();
+
+    private ModuleNames(File root, NodeJSUtils utils) {
+        this.root = root;
+        this.utils = utils;
+    }
+
+    /**
+     * Get the names for the project a file belongs to - the nearest folder
+     * above it with a package.json or node_modules, or the file's folder.
+     */
+    static ModuleNames forFile(File file) {
+        return forFile(file, NodeJSUtils.getDefault());
+    }
+
+    static ModuleNames forFile(File file, NodeJSUtils utils) {
+        File dir = file.getParentFile();
+        File root = dir;
+        for (File d = dir; d != null; d = d.getParentFile()) {
+            if (new File(d, PACKAGE_JSON).isFile() || new File(d, NODE_MODULES).isDirectory()) {
+                root = d;
+                break;
+            }
+        }
+        synchronized (PROJECTS) {
+            ModuleNames result = PROJECTS.get(root);
+            if (result == null) {
+                result = new ModuleNames(root, utils);
+                PROJECTS.put(root, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Drop the names of a closed project, including any packages nested in
+     * it.
+     */
+    static void forget(File projectDir) {
+        String prefix = projectDir.getPath() + File.separatorChar;
+        synchronized (PROJECTS) {
+            for (Iterator<File> it = PROJECTS.keySet().iterator(); it.hasNext();) {
+                File root = it.next();
+                if (root.equals(projectDir) || root.getPath().startsWith(prefix)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the best module names starting with a prefix.
+     *
+     * @param builtInNames The node version's built-in modules
+     */
+    synchronized List<String> complete(String prefix, int limit, Set<String> builtInNames) {
+        refresh(builtInNames);
+        return trie.top(prefix, limit);
+    }
+
+    /**
+     * Note which modules a file requires, so modules the project uses often
+     * rank higher.
+     */
+    synchronized void usedBy(File file, CharSequence text) {
+        Set<String> now = new HashSet<>();
+        Matcher m = REQUIRED.matcher(text);
+        while (m.find()) {
+            now.add(m.group(1));
+        }
+        Set<String> old = requiredBy.put(file, now);
+        if (old == null) {
+            old = Collections.emptySet();
+        }
+        for (String name : now) {
+            if (!old.contains(name)) {
+                adjustUsage(name, 1);
+            }
+        }
+        for (String name : old) {
+            if (!now.contains(name)) {
+                adjustUsage(name, -1);
+            }
+        }
+    }
+
+    private void adjustUsage(String name, int delta) {
+        Integer old = usage.get(name);
+        int count = (old == null ? 0 : old) + delta;
+        if (count <= 0) {
+            usage.remove(name);
+        } else {
+            usage.put(name, count);
+        }
+        rank(name);
+    }
+
+    /**
+     * Re-score one name, adding or removing it from the trie as needed.
+     */
+    private void rank(String name) {
+        int base;
+        if (declared.contains(name)) {
+            base = DECLARED;
+        } else if (builtIns.contains(name)) {
+            base = BUILT_IN;
+        } else if (installed.contains(name)) {
+            base = INSTALLED;
+        } else {
+            trie.remove(name);
+            return;
+        }
+        Integer used = usage.get(name);
+        int score = base + USAGE_WEIGHT * Math.min(MAX_USAGE, used == null ? 0 : used);
+        if (trie.score(name) != score) {
+            trie.put(name, score);
+        }
+    }
+
+    private void refresh(Set<String> builtInNames) {
+        Set<String> changed = new HashSet<>();
+        if (!builtIns.equals(builtInNames)) {
+            changed.addAll(builtIns);
+            changed.addAll(builtInNames);
+            builtIns.clear();
+            builtIns.addAll(builtInNames);
+        }
+        // The graph hands back the same sets until something changes
+        Set<String> nue = declaredPackages();
+        if (nue != declared) {
+            diff(declared, nue, changed);
+            declared = nue;
+        }
+        nue = installedPackages();
+        if (nue != installed) {
+            diff(installed, nue, changed);
+            installed = nue;
+        }
+        for (String name : changed) {
+            rank(name);
+        }
+    }
+
+    private FileObject dir() {
+        if (dir == null || !dir.isValid()) {
+            dir = FileUtil.toFileObject(FileUtil.normalizeFile(root));
+        }
+        return dir;
+    }
+
+    private Set<String> declaredPackages() {
+        Set<String> result = utils == null || dir() == null ? null : utils.declaredPackages(dir());
+        return result == null ? Collections.<String>emptySet() : result;
+    }
+
+    private Set<String> installedPackages() {
+        Set<String> result = utils == null || dir() == null ? null : utils.installedPackages(dir());
+        return result == null ? Collections.<String>emptySet() : result;
+    }
+
+    private static void diff(Set<String> old, Set<String> nue, Set<String> into) {
+        for (String s : old) {
+            if (!nue.contains(s)) {
+                into.add(s);
+            }
+        }
+        for (String s : nue) {
+            if (!old.contains(s)) {
+                into.add(s);
+            }
+        }
+    }
+
+    /**
+     * Complete a relative path such as <code>./lib/ut</code>: the files
+     * and folders in the folder it names, relative to the requiring file,
+     * as they would be written in require() - without the .js extension.
+     */
+    static List<String> completeRelative(File from, String typed, int limit) {
+        int slash = typed.lastIndexOf('/');
+        String dirPart = typed.substring(0, slash + 1);
+        String namePrefix = typed.substring(slash + 1);
+        File dir = new File(from.getParentFile(), dirPart);
+        String[] names = dir.list();
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        TreeSet<String> result = new TreeSet<>();
+        for (String name : names) {
+            if (!name.startsWith(namePrefix) || name.startsWith(".") || name.equals(NODE_MODULES)) { //NOI18N
+                continue;
+            }
+            File f = new File(dir, name);
+            if (f.equals(from)) {
+                continue;
+            }
+            if (f.isDirectory()) {
+                result.add(dirPart + name + '/');
+            } else if (name.endsWith(".js")) { //NOI18N
+                result.add(dirPart + name.substring(0, name.length() - 3));
+            } else if (name.endsWith(".json") || name.endsWith(".cjs") || name.endsWith(".mjs") || name.endsWith(".node")) { //NOI18N
+                result.add(dirPart + name);
+            }
+        }
+        List<String> list = new ArrayList<>(result);
+        return list.size() > limit ? list.subList(0, limit) : list;
+    }
+}
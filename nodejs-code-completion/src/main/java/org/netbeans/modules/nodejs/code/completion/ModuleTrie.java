@@ -0,0 +1,306 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Radix (path compressed) prefix trie over module names, each with a
+ * ranking score.  Every node knows the best score in its subtree, so the
+ * top few names for a prefix are found best first without visiting the
+ * rest of the subtree - asking for the top 50 names starting with "a" in a
+ * trie of thousands of packages touches little more than those 50.  Names
+ * can be added, removed and re-scored one at a time.  Not thread-safe.
+ *
+ * @author Tim Boudreau
+ */
+final class ModuleTrie {
+    private static final Node[] NO_KIDS = new Node[0];
+    private final Node root = new Node(""); //NOI18N
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Add a name, or change its score if present.
+     *
+     * @param score A non-negative score;  higher ranks first
+     */
+    void put(String name, int score) {
+        if (score < 0) {
+            throw new IllegalArgumentException("Negative score " + score + " for " + name); //NOI18N
+        }
+        List<Node> path = new ArrayList<>(8);
+        Node node = root;
+        path.add(node);
+        int pos = 0;
+        while (pos < name.length()) {
+            int ix = node.indexOf(name.charAt(pos));
+            if (ix < 0) {
+                Node leaf = new Node(name.substring(pos));
+                node.insert(leaf);
+                node = leaf;
+                path.add(node);
+                pos = name.length();
+                break;
+            }
+            Node kid = node.kids[ix];
+            int common = commonPrefix(kid.label, name, pos);
+            if (common < kid.label.length()) {
+                // Split the edge
+                Node mid = new Node(kid.label.substring(0, common));
+                kid.label = kid.label.substring(common);
+                mid.kids = new Node[]{kid};
+                mid.best = kid.best;
+                node.kids[ix] = mid;
+                kid = mid;
+            }
+            node = kid;
+            path.add(node);
+            pos += common;
+        }
+        if (node.name == null) {
+            size++;
+        }
+        node.name = name;
+        node.score = score;
+        updateBest(path);
+    }
+
+    /**
+     * Get the score of a name, or -1 if it is not present.
+     */
+    int score(String name) {
+        Node node = find(name);
+        return node == null || node.name == null ? -1 : node.score;
+    }
+
+    boolean remove(String name) {
+        List<Node> path = new ArrayList<>(8);
+        Node node = root;
+        path.add(node);
+        int pos = 0;
+        while (pos < name.length()) {
+            int ix = node.indexOf(name.charAt(pos));
+            if (ix < 0 || !name.startsWith(node.kids[ix].label, pos)) {
+                return false;
+            }
+            node = node.kids[ix];
+            path.add(node);
+            pos += node.label.length();
+        }
+        if (node.name == null) {
+            return false;
+        }
+        node.name = null;
+        node.score = -1;
+        size--;
+        // Prune the emptied leaf and merge nodes left with a single child
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node n = path.get(i);
+            Node parent = path.get(i - 1);
+            if (n.name == null && n.kids.length == 0) {
+                parent.delete(n);
+            } else if (n.name == null && n.kids.length == 1) {
+                Node only = n.kids[0];
+                only.label = n.label + only.label;
+                parent.kids[parent.indexOf(n.label.charAt(0))] = only;
+                path.set(i, only);
+            }
+        }
+        updateBest(path);
+        return true;
+    }
+
+    /**
+     * Get up to <code>limit</code> names starting with a prefix, highest
+     * score first;  names with equal scores come in alphabetical order.
+     */
+    List<String> top(String prefix, int limit) {
+        Branch start = branch(prefix);
+        if (start == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>(Math.min(limit, size));
+        // Subtrees are queued by the best score in them until expanded; the
+        // names found are queued separately, by their own score.  A name is
+        // taken when no unexpanded subtree could hold a better one - or an
+        // equally good one which sorts before it
+        PriorityQueue<Branch> branches = new PriorityQueue<>();
+        PriorityQueue<Node> found = new PriorityQueue<>(16, BY_SCORE);
+        branches.add(start);
+        while (result.size() < limit && (!branches.isEmpty() || !found.isEmpty())) {
+            Branch next = branches.peek();
+            Node candidate = found.peek();
+            if (candidate != null && (next == null || candidate.score > next.node.best
+                    || (candidate.score == next.node.best && candidate.name.compareTo(next.path) < 0))) {
+                result.add(found.poll().name);
+                continue;
+            }
+            branches.poll();
+            if (next.node.name != null) {
+                found.add(next.node);
+            }
+            for (Node kid : next.node.kids) {
+                branches.add(new Branch(kid, next.path + kid.label));
+            }
+        }
+        return result;
+    }
+
+    private Node find(String name) {
+        Node node = root;
+        int pos = 0;
+        while (pos < name.length()) {
+            int ix = node.indexOf(name.charAt(pos));
+            if (ix < 0 || !name.startsWith(node.kids[ix].label, pos)) {
+                return null;
+            }
+            node = node.kids[ix];
+            pos += node.label.length();
+        }
+        return node;
+    }
+
+    /**
+     * Find the subtree holding all names which start with a prefix.
+     */
+    private Branch branch(String prefix) {
+        Node node = root;
+        int pos = 0;
+        while (pos < prefix.length()) {
+            int ix = node.indexOf(prefix.charAt(pos));
+            if (ix < 0) {
+                return null;
+            }
+            Node kid = node.kids[ix];
+            if (prefix.startsWith(kid.label, pos)) {
+                pos += kid.label.length();
+                node = kid;
+            } else if (kid.label.startsWith(prefix.substring(pos))) {
+                // The prefix ends in the middle of an edge
+                return new Branch(kid, prefix.substring(0, pos) + kid.label);
+            } else {
+                return null;
+            }
+        }
+        return new Branch(node, prefix);
+    }
+
+    private static void updateBest(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node n = path.get(i);
+            int best = n.name == null ? -1 : n.score;
+            for (Node kid : n.kids) {
+                best = Math.max(best, kid.best);
+            }
+            n.best = best;
+        }
+    }
+
+    private static int commonPrefix(String label, String name, int pos) {
+        int max = Math.min(label.length(), name.length() - pos);
+        int i = 0;
+        while (i < max && label.charAt(i) == name.charAt(pos + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final Comparator<Node> BY_SCORE = new Comparator<Node>() {
+        @Override
+        public int compare(Node a, Node b) {
+            int result = Integer.compare(b.score, a.score);
+            return result != 0 ? result : a.name.compareTo(b.name);
+        }
+    };
+
+    private static final class Branch implements Comparable<Branch> {
+        final Node node;
+        // The full path of the node, which every name below it starts with
+        final String path;
+
+        Branch(Node node, String path) {
+            this.node = node;
+            this.path = path;
+        }
+
+        @Override
+        public int compareTo(Branch o) {
+            int result = Integer.compare(o.node.best, node.best);
+            return result != 0 ? result : path.compareTo(o.path);
+        }
+    }
+
+    private static final class Node {
+        String label;
+        Node[] kids = NO_KIDS;
+        String name;
+        int score = -1;
+        int best = -1;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        int indexOf(char c) {
+            int lo = 0;
+            int hi = kids.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char k = kids[mid].label.charAt(0);
+                if (k < c) {
+                    lo = mid + 1;
+                } else if (k > c) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        void insert(Node kid) {
+            char c = kid.label.charAt(0);
+            int at = 0;
+            while (at < kids.length && kids[at].label.charAt(0) < c) {
+                at++;
+            }
+            Node[] nue = new Node[kids.length + 1];
+            System.arraycopy(kids, 0, nue, 0, at);
+            nue[at] = kid;
+            System.arraycopy(kids, at, nue, at + 1, kids.length - at);
+            kids = nue;
+        }
+
+        void delete(Node kid) {
+            int at = indexOf(kid.label.charAt(0));
+            Node[] nue = new Node[kids.length - 1];
+            System.arraycopy(kids, 0, nue, 0, at);
+            System.arraycopy(kids, at + 1, nue, at, kids.length - at - 1);
+            kids = nue;
+        }
+    }
+}
@@ -18,13 +18,17 @@
  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
 package org.netbeans.modules.nodejs.code.completion;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import org.netbeans.api.lexer.Token;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.netbeans.api.lexer.TokenSequence;
+import org.netbeans.api.project.FileOwnerQuery;
+import org.netbeans.api.project.Project;
 import org.netbeans.modules.csl.api.CodeCompletionContext;
 import org.netbeans.modules.csl.api.CompletionProposal;
 import org.netbeans.modules.csl.api.ElementHandle;
@@ -33,6 +37,12 @@ import org.netbeans.modules.javascript2.editor.api.lexer.JsTokenId;
 import org.netbeans.modules.javascript2.editor.api.lexer.LexUtilities;
 import org.netbeans.modules.javascript2.editor.spi.CompletionContext;
 import org.netbeans.modules.javascript2.editor.spi.CompletionProvider;
+import org.netbeans.modules.nodejs.api.NodeCapabilities;
+import org.netbeans.modules.nodejs.api.NodeJSExecutable;
+import org.netbeans.modules.nodejs.api.NodeJSPlatformProvider;
+import org.netbeans.modules.nodejs.api.Stubs.Symbol;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
 
 /**
  *
@@ -40,22 +50,39 @@ import org.netbeans.modules.javascript2.editor.spi.CompletionProvider;
  */
 @CompletionProvider.Registration(priority=10)
 public class NodeCompletion implements CompletionProvider {
-    private static final Logger LOGGER = Logger.getLogger(NodeCompletion.class.getName());
+    private static final String NODE_PREFIX = "node:"; //NOI18N
+    private static final int MAX_MODULE_NAMES = 100;
     private int lastTsOffset = 0;
 
     @Override
     public List<CompletionProposal> complete(CodeCompletionContext ccContext, CompletionContext jsCompletionContext, String prefix) {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         List<CompletionProposal> result = new ArrayList<>();
         ParserResult parserResult = ccContext.getParserResult();
         int offset = ccContext.getCaretOffset();
         lastTsOffset = ccContext.getParserResult().getSnapshot().getEmbeddedOffset(offset);
+        ContextAnalyzer context = analyze(parserResult, lastTsOffset);
+        CharSequence text = parserResult.getSnapshot().getText();
         switch (jsCompletionContext) {
             case STRING:
+                if (context.kind() == ContextAnalyzer.Kind.REQUIRE_STRING) {
+                    String typed = text.subSequence(context.start(), context.end()).toString();
+                    addModuleNames(result, parserResult, typed, offset - typed.length());
+                    break;
+                }
+                // fall through
             case GLOBAL:
             case EXPRESSION:
             case OBJECT_PROPERTY:
-                if (isInJQuerySelector(parserResult, lastTsOffset)) {
+                String module = null;
+                if (context.kind() == ContextAnalyzer.Kind.REQUIRED_MEMBER) {
+                    module = text.subSequence(context.start(), context.end()).toString();
+                } else if (context.kind() == ContextAnalyzer.Kind.BOUND_MEMBER) {
+                    module = boundModule(text, text.subSequence(context.start(), context.end()).toString());
+                }
+                if (module != null) {
+                    addExports(result, parserResult, module, prefix == null ? "" : prefix, offset);
+                } else if (context.kind() == ContextAnalyzer.Kind.JQUERY_SELECTOR) {
 //                    addSelectors(result, parserResult, prefix, lastTsOffset);
                 }
                 break;
@@ -65,78 +92,190 @@ public class NodeCompletion implements CompletionProvider {
             default:
                 break;
         }
-        long end = System.currentTimeMillis();
-        LOGGER.log(Level.FINE, "Counting jQuery CC took {0}ms ", (end - start));
+        CompletionMetrics.getDefault().record(context.kind(), System.nanoTime() - start);
         return result;
     }
 
+    /**
+     * Work out what the caret is in, in one pass over the tokens before it.
+     */
+    static ContextAnalyzer analyze(ParserResult parserResult, int offset) {
+        ContextAnalyzer result = new ContextAnalyzer();
+        TokenSequence<? extends JsTokenId> ts = LexUtilities.getJsTokenSequence(parserResult.getSnapshot().getTokenHierarchy(), offset);
+        if (ts != null) {
+            result.analyze(new JsTokens(ts, offset), offset);
+        }
+        return result;
+    }
+
+    private static void addExports(List<CompletionProposal> result, ParserResult parserResult, String module, String prefix, int caretOffset) {
+        FileObject fo = parserResult.getSnapshot().getSource().getFileObject();
+        File file = fo == null ? null : FileUtil.toFile(fo);
+        if (file == null) {
+            return;
+        }
+        ModuleExports exports = SymbolIndex.getDefault().exports(file, module, nodeMajor(fo));
+        int anchor = caretOffset - prefix.length();
+        for (Symbol symbol : exports.withPrefix(prefix)) {
+            result.add(new ExportProposal(module, symbol, anchor));
+        }
+    }
+
+    private static void addModuleNames(List<CompletionProposal> result, ParserResult parserResult, String typed, int anchor) {
+        FileObject fo = parserResult.getSnapshot().getSource().getFileObject();
+        File file = fo == null ? null : FileUtil.toFile(fo);
+        if (file == null) {
+            return;
+        }
+        List<String> names;
+        boolean files = typed.startsWith("./") || typed.startsWith("../"); //NOI18N
+        if (files) {
+            names = ModuleNames.completeRelative(file, typed, MAX_MODULE_NAMES);
+        } else {
+            Set<String> builtIns = SymbolIndex.getDefault().builtInModules(nodeMajor(fo));
+            if (typed.startsWith(NODE_PREFIX)) {
+                names = new ArrayList<>();
+                for (String name : new TreeSet<>(builtIns)) {
+                    if (name.startsWith(typed.substring(NODE_PREFIX.length()))) {
+                        names.add(NODE_PREFIX + name);
+                    }
+                }
+            } else {
+                ModuleNames modules = ModuleNames.forFile(file);
+                modules.usedBy(file, parserResult.getSnapshot().getText());
+                names = modules.complete(typed, MAX_MODULE_NAMES, builtIns);
+            }
+        }
+        for (int i = 0; i < names.size(); i++) {
+            result.add(new ModuleNameProposal(names.get(i), files, i, anchor));
+        }
+    }
+
+    private static int nodeMajor(FileObject fo) {
+        Project project = FileOwnerQuery.getOwner(fo);
+        NodeJSExecutable exe = NodeJSPlatformProvider.get(project);
+        // Never probe the binary from here - only use what is known already
+        NodeCapabilities caps = exe == null ? null : exe.cachedCapabilities();
+        return caps == null ? 0 : caps.majorVersion();
+    }
+
+    /**
+     * Find the module a variable was assigned from with
+     * <code>name = require('x')</code> or <code>import * as name from 'x'</code>.
+     */
+    static String boundModule(CharSequence text, String name) {
+        String id = Pattern.quote(name);
+        Matcher m = Pattern.compile("(?:^|[^\\w$.])" + id //NOI18N
+                + "\\s*=\\s*require\\s*\\(\\s*['\"]([^'\"]+)['\"]\\s*\\)" //NOI18N
+                + "|import\\s+(?:\\*\\s+as\\s+)?" + id + "\\s+from\\s+['\"]([^'\"]+)['\"]").matcher(text); //NOI18N
+        if (m.find()) {
+            return m.group(1) != null ? m.group(1) : m.group(2);
+        }
+        return null;
+    }
+
     @Override
     public String getHelpDocumentation(ParserResult pr, ElementHandle eh) {
+        if (eh instanceof ExportHandle) {
+            return ((ExportHandle) eh).documentation();
+        }
         return null;
     }
     
     public static boolean isInJQuerySelector(ParserResult parserResult, int offset) {
-        if (isJQuery(parserResult, offset)) {
-            TokenSequence<? extends JsTokenId> ts = LexUtilities.getTokenSequence(parserResult.getSnapshot().getTokenHierarchy(), offset, JsTokenId.javascriptLanguage());
-            if (ts == null) {
-                return false;
-            }
-            ts.move(offset);
-            if (!(ts.moveNext() && ts.movePrevious())) {
-                return false;
-            }
-            return ts.token().id() == JsTokenId.STRING || ts.token().id() == JsTokenId.STRING_BEGIN;
-//            boolean leftBracket = false;
-//            while (!isEndToken(ts.token().id()) && ts.token().id() != JsTokenId.BRACKET_RIGHT_PAREN && ts.movePrevious()) {
-//                if (ts.token().id() == JsTokenId.BRACKET_LEFT_PAREN) {
-//                    leftBracket = true;
-//                    break;
-//                }
-//            }
-//            if (!leftBracket) {
-//                return false;
-//            } else {
-//                ts.move(offset);
-//                if (!(ts.moveNext() && ts.movePrevious())) {
-//                    return false;
-//                }
-//            }
-//            while (!isEndToken(ts.token().id()) && ts.token().id() != JsTokenId.BRACKET_LEFT_PAREN && ts.moveNext()) {
-//                if (ts.token().id() == JsTokenId.BRACKET_RIGHT_PAREN) {
-//                    return true;
-//                }
-//            }
-        }
-        return false;
+        return analyze(parserResult, offset).kind() == ContextAnalyzer.Kind.JQUERY_SELECTOR;
     }
-    
+
     public static boolean isJQuery(ParserResult parserResult, int offset) {
-        TokenSequence<? extends JsTokenId> ts = LexUtilities.getJsTokenSequence(parserResult.getSnapshot().getTokenHierarchy(), offset);
-        if (ts == null) {
-            return false;
+        return analyze(parserResult, offset).jQuery();
+    }
+
+    /**
+     * Adapts a token sequence to what the context analyzer reads, starting
+     * at the token the caret is in.
+     */
+    private static final class JsTokens implements ContextAnalyzer.Tokens {
+        private final TokenSequence<? extends JsTokenId> ts;
+        private boolean atCaretToken;
+
+        JsTokens(TokenSequence<? extends JsTokenId> ts, int caret) {
+            this.ts = ts;
+            ts.move(caret);
+            // If the caret is inside a token, start with it;  if it is at a
+            // token's start, with the one before
+            atCaretToken = ts.moveNext() && ts.offset() < caret;
         }
-        ts.move(offset);
-        if (!ts.moveNext() && !ts.movePrevious()) {
-            return false;
+
+        @Override
+        public boolean movePrevious() {
+            if (atCaretToken) {
+                atCaretToken = false;
+                return true;
+            }
+            return ts.movePrevious();
+        }
+
+        @Override
+        public ContextAnalyzer.TokenKind kind() {
+            switch (ts.token().id()) {
+                case IDENTIFIER:
+                    return ContextAnalyzer.TokenKind.IDENTIFIER;
+                case OPERATOR_DOT:
+                    return ContextAnalyzer.TokenKind.DOT;
+                case BRACKET_LEFT_PAREN:
+                    return ContextAnalyzer.TokenKind.LEFT_PAREN;
+                case BRACKET_RIGHT_PAREN:
+                    return ContextAnalyzer.TokenKind.RIGHT_PAREN;
+                case BRACKET_LEFT_CURLY:
+                    return ContextAnalyzer.TokenKind.LEFT_CURLY;
+                case BRACKET_RIGHT_CURLY:
+                    return ContextAnalyzer.TokenKind.RIGHT_CURLY;
+                case BRACKET_LEFT_BRACKET:
+                    return ContextAnalyzer.TokenKind.LEFT_BRACKET;
+                case BRACKET_RIGHT_BRACKET:
+                    return ContextAnalyzer.TokenKind.RIGHT_BRACKET;
+                case OPERATOR_COMMA:
+                    return ContextAnalyzer.TokenKind.COMMA;
+                case OPERATOR_COLON:
+                    return ContextAnalyzer.TokenKind.COLON;
+                case OPERATOR_ASSIGNMENT:
+                    return ContextAnalyzer.TokenKind.ASSIGN;
+                case OPERATOR_SEMICOLON:
+                    return ContextAnalyzer.TokenKind.SEMICOLON;
+                case KEYWORD_RETURN:
+                    return ContextAnalyzer.TokenKind.RETURN;
+                case STRING_BEGIN:
+                    return ContextAnalyzer.TokenKind.STRING_BEGIN;
+                case STRING:
+                    return ContextAnalyzer.TokenKind.STRING;
+                case STRING_END:
+                    return ContextAnalyzer.TokenKind.STRING_END;
+                case WHITESPACE:
+                    return ContextAnalyzer.TokenKind.WHITESPACE;
+                case EOL:
+                    return ContextAnalyzer.TokenKind.EOL;
+                case LINE_COMMENT:
+                case BLOCK_COMMENT:
+                case DOC_COMMENT:
+                    return ContextAnalyzer.TokenKind.COMMENT;
+                default:
+                    return ContextAnalyzer.TokenKind.OTHER;
+            }
         }
-        
-        if (ts.token().id() == JsTokenId.EOL || ts.token().id() == JsTokenId.WHITESPACE) {
-            ts.movePrevious();
+
+        @Override
+        public int offset() {
+            return ts.offset();
         }
-        Token<? extends JsTokenId> lastToken = ts.token();
-        Token<? extends JsTokenId> token = lastToken;
-        JsTokenId tokenId = token.id();
-        while (tokenId != JsTokenId.EOL
-                && tokenId != JsTokenId.WHITESPACE
-                && ts.movePrevious()) {
-            lastToken = token;
-            token = ts.token();
-            tokenId = token.id();
+
+        @Override
+        public int length() {
+            return ts.token().length();
         }
-        return (lastToken.id() == JsTokenId.IDENTIFIER
-                && ("$".equals(lastToken.text().toString()) || "jQuery".equals(lastToken.text().toString()))
-                || (!ts.movePrevious()
-                && ("$".equals(token.text().toString()) || "jQuery".equals(token.text().toString()))));
-    }    
 
+        @Override
+        public CharSequence text() {
+            return ts.token().text();
+        }
+    }
 }
@@ -0,0 +1,292 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.netbeans.modules.nodejs.api.Stubs;
+import org.netbeans.modules.nodejs.api.Stubs.Symbol;
+import org.openide.modules.SpecificationVersion;
+import org.openide.util.RequestProcessor;
+
+/**
+ * In-memory index of what modules export, for member completion on
+ * <code>require('x')</code>.  Built-in modules come from the symbol index
+ * bundled with the stubs, one per node major version.  Installed packages
+ * are resolved the way node does - the nearest <code>node_modules/x</code>
+ * above the requiring file - and their entry file (<code>main</code> in
+ * package.json, or index.js) is scanned once and cached until it or its
+ * package.json changes.  When a node_modules folder is first seen, all of
+ * its packages are scanned in the background, so that lookups are answered
+ * from memory.
+ *
+ * @author Tim Boudreau
+ */
+final class SymbolIndex {
+    private static final Logger LOG = Logger.getLogger(SymbolIndex.class.getName());
+    private static final RequestProcessor RP = new RequestProcessor("Node symbol index", 1, true); //NOI18N
+    private static final String NODE_MODULES = "node_modules"; //NOI18N
+    private static final String PACKAGE_JSON = "package.json"; //NOI18N
+    private static final String NODE_PREFIX = "node:"; //NOI18N
+    private static final Pattern MAIN = Pattern.compile("\"main\"\\s*:\\s*\"([^\"]*)\""); //NOI18N
+    // Minified bundles are not worth scanning
+    private static final long MAX_ENTRY_BYTES = 2L * 1024 * 1024;
+    private static final int MAX_REEXPORTS = 3;
+    private static SymbolIndex instance;
+    private final Stubs stubs;
+    private final Map<Integer, Map<String, ModuleExports>> builtIns = new ConcurrentHashMap<>();
+    private final Map<File, Entry> files = new ConcurrentHashMap<>();
+    private final Set<File> warmed = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+    SymbolIndex(Stubs stubs) {
+        this.stubs = stubs;
+    }
+
+    static synchronized SymbolIndex getDefault() {
+        if (instance == null) {
+            instance = new SymbolIndex(Stubs.getDefault());
+        }
+        return instance;
+    }
+
+    /**
+     * Get the exports of a module as required from a file.
+     *
+     * @param from The requiring file
+     * @param module The argument to require()
+     * @param nodeMajor The major version of node the project runs on, or 0
+     * if unknown
+     * @return The exports, empty if the module cannot be found
+     */
+    ModuleExports exports(File from, String module, int nodeMajor) {
+        boolean core = module.startsWith(NODE_PREFIX);
+        String name = core ? module.substring(NODE_PREFIX.length()) : module;
+        ModuleExports result = builtIn(name, nodeMajor);
+        if (result != null) {
+            return result;
+        } else if (core) {
+            return ModuleExports.EMPTY;
+        }
+        File dir = from.getParentFile();
+        if (name.startsWith("./") || name.startsWith("../") || name.startsWith("/")) { //NOI18N
+            File file = resolveFile(name.startsWith("/") ? new File(name) : new File(dir, name)); //NOI18N
+            return file == null ? ModuleExports.EMPTY : fileExports(file);
+        }
+        for (; dir != null; dir = dir.getParentFile()) {
+            File modules = new File(dir, NODE_MODULES);
+            File pkg = new File(modules, name);
+            if (pkg.isDirectory()) {
+                warm(modules);
+                return packageExports(pkg);
+            }
+        }
+        return ModuleExports.EMPTY;
+    }
+
+    /**
+     * Get the names of the built-in modules of a node version.
+     */
+    Set<String> builtInModules(int nodeMajor) {
+        return builtIns(nodeMajor).keySet();
+    }
+
+    private ModuleExports builtIn(String name, int nodeMajor) {
+        return builtIns(nodeMajor).get(name);
+    }
+
+    private Map<String, ModuleExports> builtIns(int nodeMajor) {
+        Integer key = nodeMajor <= 0 ? 0 : nodeMajor;
+        Map<String, ModuleExports> result = builtIns.get(key);
+        if (result == null) {
+            result = new HashMap<>();
+            if (stubs != null) {
+                SpecificationVersion ver = key == 0 ? null : new SpecificationVersion(key.toString());
+                for (Map.Entry<String, List<Symbol>> e : stubs.getSymbols(ver).entrySet()) {
+                    result.put(e.getKey(), ModuleExports.of(e.getValue()));
+                }
+            }
+            result = Collections.unmodifiableMap(result);
+            builtIns.put(key, result);
+        }
+        return result;
+    }
+
+    private ModuleExports packageExports(File pkg) {
+        File packageJson = new File(pkg, PACKAGE_JSON);
+        Entry entry = files.get(packageJson);
+        if (entry == null || !entry.isCurrent()) {
+            List<File> read = new ArrayList<>(3);
+            read.add(packageJson);
+            File main = resolveFile(new File(pkg, readMain(packageJson)));
+            List<Symbol> symbols = main == null ? Collections.<Symbol>emptyList() : scan(main, read);
+            entry = new Entry(read, ModuleExports.of(symbols));
+            files.put(packageJson, entry);
+        }
+        return entry.exports;
+    }
+
+    private ModuleExports fileExports(File file) {
+        Entry entry = files.get(file);
+        if (entry == null || !entry.isCurrent()) {
+            List<File> read = new ArrayList<>(2);
+            entry = new Entry(read, ModuleExports.of(scan(file, read)));
+            files.put(file, entry);
+        }
+        return entry.exports;
+    }
+
+    /**
+     * Scan a file, following <code>module.exports = require('./x')</code>
+     * a few levels deep, and recording every file read.
+     */
+    private List<Symbol> scan(File file, List<File> read) {
+        List<Symbol> result = new ArrayList<>();
+        for (int i = 0; file != null && i <= MAX_REEXPORTS; i++) {
+            read.add(file);
+            if (file.length() > MAX_ENTRY_BYTES) {
+                break;
+            }
+            String text;
+            try {
+                text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Could not read " + file, ex); //NOI18N
+                break;
+            }
+            result.addAll(EntryScanner.scan(text));
+            String next = EntryScanner.reexported(text);
+            file = next == null || !next.startsWith(".") ? null //NOI18N
+                    : resolveFile(new File(file.getParentFile(), next));
+        }
+        return result;
+    }
+
+    /**
+     * Scan every package in a node_modules folder in the background, once.
+     */
+    private void warm(final File modules) {
+        if (warmed.add(modules)) {
+            RP.post(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.currentTimeMillis();
+                    List<File> packages = new ArrayList<>();
+                    File[] kids = modules.listFiles();
+                    if (kids != null) {
+                        for (File kid : kids) {
+                            if (kid.getName().startsWith("@")) { //NOI18N
+                                File[] scoped = kid.listFiles();
+                                if (scoped != null) {
+                                    Collections.addAll(packages, scoped);
+                                }
+                            } else if (!kid.getName().startsWith(".")) { //NOI18N
+                                packages.add(kid);
+                            }
+                        }
+                    }
+                    for (File pkg : packages) {
+                        if (Thread.interrupted()) {
+                            return;
+                        }
+                        if (pkg.isDirectory()) {
+                            packageExports(pkg);
+                        }
+                    }
+                    LOG.log(Level.FINE, "Indexed {0} packages in {1} in {2}ms", //NOI18N
+                            new Object[]{packages.size(), modules, System.currentTimeMillis() - start});
+                }
+            });
+        }
+    }
+
+    private static String readMain(File packageJson) {
+        if (packageJson.isFile() && packageJson.length() < MAX_ENTRY_BYTES) {
+            try {
+                Matcher m = MAIN.matcher(new String(Files.readAllBytes(packageJson.toPath()), StandardCharsets.UTF_8));
+                if (m.find() && !m.group(1).isEmpty()) {
+                    return m.group(1);
+                }
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Could not read " + packageJson, ex); //NOI18N
+            }
+        }
+        return "index.js"; //NOI18N
+    }
+
+    /**
+     * Resolve a path the way require() does for files:  as is, with a
+     * .js or .cjs extension, or as a folder containing index.js.
+     */
+    static File resolveFile(File base) {
+        if (base.isFile()) {
+            return base;
+        }
+        File f = new File(base.getPath() + ".js"); //NOI18N
+        if (f.isFile()) {
+            return f;
+        }
+        f = new File(base.getPath() + ".cjs"); //NOI18N
+        if (f.isFile()) {
+            return f;
+        }
+        f = new File(base, "index.js"); //NOI18N
+        return f.isFile() ? f : null;
+    }
+
+    /**
+     * Exports of a file, with the files they were read from and their
+     * timestamps at that time.
+     */
+    private static final class Entry {
+        private final File[] files;
+        private final long[] stamps;
+        final ModuleExports exports;
+
+        Entry(List<File> files, ModuleExports exports) {
+            this.files = files.toArray(new File[files.size()]);
+            this.stamps = new long[this.files.length];
+            for (int i = 0; i < this.files.length; i++) {
+                stamps[i] = this.files[i].lastModified();
+            }
+            this.exports = exports;
+        }
+
+        boolean isCurrent() {
+            for (int i = 0; i < files.length; i++) {
+                if (files[i].lastModified() != stamps[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.netbeans.modules.nodejs.code.completion.ContextAnalyzer.Kind;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class CompletionMetricsTest {
+
+    @Test
+    public void testMetrics() {
+        CompletionMetrics metrics = new CompletionMetrics();
+        assertEquals(Long.valueOf(0), metrics.metrics().get("averageMicros"));
+        metrics.record(Kind.BOUND_MEMBER, TimeUnit.MICROSECONDS.toNanos(100));
+        metrics.record(Kind.BOUND_MEMBER, TimeUnit.MICROSECONDS.toNanos(300));
+        metrics.record(Kind.REQUIRE_STRING, TimeUnit.MILLISECONDS.toNanos(60));
+        Map<String, Long> m = metrics.metrics();
+        assertEquals(Long.valueOf(2), m.get(Kind.BOUND_MEMBER.name()));
+        assertEquals(Long.valueOf(1), m.get(Kind.REQUIRE_STRING.name()));
+        assertEquals(Long.valueOf(3), m.get("requests"));
+        assertEquals(Long.valueOf(1), m.get("slow"));
+        assertEquals(Long.valueOf(60400), m.get("totalMicros"));
+        assertEquals(Long.valueOf(60000), m.get("maxMicros"));
+        assertEquals(Long.valueOf(20133), m.get("averageMicros"));
+        for (Kind kind : Kind.values()) {
+            assertTrue(kind.name(), m.containsKey(kind.name()));
+        }
+    }
+}
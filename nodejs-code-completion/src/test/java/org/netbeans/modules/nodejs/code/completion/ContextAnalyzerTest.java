@@ -0,0 +1,181 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.netbeans.modules.nodejs.code.completion.ContextAnalyzer.Kind;
+import org.netbeans.modules.nodejs.code.completion.ContextAnalyzer.TokenKind;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class ContextAnalyzerTest {
+
+    @Test
+    public void testRequireString() {
+        assertContext("var fs = require('f|", Kind.REQUIRE_STRING, "f");
+        assertContext("var fs = require( \"|", Kind.REQUIRE_STRING, "");
+        assertContext("var fs = require('./lib/|')", Kind.REQUIRE_STRING, "./lib/");
+        assertContext("var fs = load('f|", Kind.NONE, null);
+        assertContext("var fs = require('fs')|", Kind.NONE, null);
+    }
+
+    @Test
+    public void testMembers() {
+        assertContext("require('fs').read|", Kind.REQUIRED_MEMBER, "fs");
+        assertContext("require ( 'path' ) .|", Kind.REQUIRED_MEMBER, "path");
+        assertContext("var x = fs.|", Kind.BOUND_MEMBER, "fs");
+        assertContext("var x = fs.\n    rea|", Kind.BOUND_MEMBER, "fs");
+        assertContext("var x = fs /* why */ . rea|", Kind.BOUND_MEMBER, "fs");
+        assertContext("require.|", Kind.NONE, null);
+        assertContext("foo(fs).re|", Kind.NONE, null);
+    }
+
+    @Test
+    public void testObjectPropertyName() {
+        assertContext("foo({ a|", Kind.OBJECT_PROPERTY_NAME, "a");
+        assertContext("var o = {\n  a: 1,\n  b: f(1, [2, 3]),\n  |", Kind.OBJECT_PROPERTY_NAME, "");
+        assertContext("return {x: {y: 1}, z|", Kind.OBJECT_PROPERTY_NAME, "z");
+        assertContext("function f() { a|", Kind.NONE, null);
+        assertContext("if (x) { y(1, |", Kind.NONE, null);
+        assertContext("if (x) { a; b, |", Kind.NONE, null);
+    }
+
+    @Test
+    public void testJQuery() {
+        assertContext("$('div.fo|", Kind.JQUERY_SELECTOR, "div.fo");
+        assertContext("x = jQuery(\"|", Kind.JQUERY_SELECTOR, "");
+        assertContext("x = notJQuery('div|", Kind.NONE, null);
+        assertTrue(analyze("$(foo).bar|").jQuery());
+        assertFalse(analyze("$(foo). bar|").jQuery());
+    }
+
+    private static void assertContext(String marked, Kind kind, String span) {
+        String text = marked.replace("|", "");
+        ContextAnalyzer analyzer = analyze(marked);
+        assertEquals(marked, kind, analyzer.kind());
+        if (span != null) {
+            assertEquals(marked, span, text.substring(analyzer.start(), analyzer.end()));
+        }
+    }
+
+    private static ContextAnalyzer analyze(String marked) {
+        int caret = marked.indexOf('|');
+        String text = marked.replace("|", "");
+        return new ContextAnalyzer().analyze(new FakeTokens(text, caret), caret);
+    }
+
+    /**
+     * Just enough of a JavaScript lexer for the tests.
+     */
+    private static final class FakeTokens implements ContextAnalyzer.Tokens {
+        private final List<TokenKind> kinds = new ArrayList<>();
+        private final List<Integer> offsets = new ArrayList<>();
+        private final String text;
+        private int index;
+
+        FakeTokens(String text, int caret) {
+            this.text = text;
+            int i = 0;
+            while (i < text.length()) {
+                char c = text.charAt(i);
+                int start = i;
+                if (c == '\'' || c == '"') {
+                    add(TokenKind.STRING_BEGIN, i++);
+                    start = i;
+                    while (i < text.length() && text.charAt(i) != c) {
+                        i++;
+                    }
+                    if (i > start) {
+                        add(TokenKind.STRING, start);
+                    }
+                    if (i < text.length()) {
+                        add(TokenKind.STRING_END, i++);
+                    }
+                    continue;
+                } else if (Character.isJavaIdentifierStart(c)) {
+                    while (i < text.length() && Character.isJavaIdentifierPart(text.charAt(i))) {
+                        i++;
+                    }
+                    add("return".equals(text.substring(start, i)) ? TokenKind.RETURN : TokenKind.IDENTIFIER, start);
+                    continue;
+                } else if (Character.isDigit(c)) {
+                    while (i < text.length() && Character.isDigit(text.charAt(i))) {
+                        i++;
+                    }
+                    add(TokenKind.OTHER, start);
+                    continue;
+                } else if (c == '\n') {
+                    add(TokenKind.EOL, i++);
+                    continue;
+                } else if (c == ' ') {
+                    while (i < text.length() && text.charAt(i) == ' ') {
+                        i++;
+                    }
+                    add(TokenKind.WHITESPACE, start);
+                    continue;
+                } else if (text.startsWith("/*", i)) {
+                    i = text.indexOf("*/", i) + 2;
+                    add(TokenKind.COMMENT, start);
+                    continue;
+                }
+                add(TokenKind.values()[".(){}[],:=;".indexOf(c) + 1], i++);
+            }
+            offsets.add(text.length());
+            // Position after the token the caret is in or ends
+            while (index < kinds.size() && offsets.get(index) < caret) {
+                index++;
+            }
+        }
+
+        private void add(TokenKind kind, int offset) {
+            kinds.add(kind);
+            offsets.add(offset);
+        }
+
+        @Override
+        public boolean movePrevious() {
+            return --index >= 0;
+        }
+
+        @Override
+        public TokenKind kind() {
+            return kinds.get(index);
+        }
+
+        @Override
+        public int offset() {
+            return offsets.get(index);
+        }
+
+        @Override
+        public int length() {
+            return offsets.get(index + 1) - offsets.get(index);
+        }
+
+        @Override
+        public CharSequence text() {
+            return text.subSequence(offset(), offset() + length());
+        }
+    }
+}
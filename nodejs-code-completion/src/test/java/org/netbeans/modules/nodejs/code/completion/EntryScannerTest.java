@@ -0,0 +1,81 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.netbeans.modules.nodejs.api.Stubs.Symbol;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class EntryScannerTest {
+
+    @Test
+    public void testCommonJs() {
+        String src = "'use strict';\n"
+                + "var helper = require('./helper');\n"
+                + "exports.parse = function parse(str, options) {\n"
+                + "  if (exports.parse === undefined) {}\n"
+                + "};\n"
+                + "module.exports.Router = class Router {};\n"
+                + "exports.VERSION = '1.2.3';\n"
+                + "this.exports.notMe = 1;\n"
+                + "Object.defineProperty(exports, \"compile\", { enumerable: true, get: function () { return x; } });\n";
+        assertEquals("[parse(str, options), Router(), VERSION = , compile = ]", EntryScanner.scan(src).toString());
+    }
+
+    @Test
+    public void testObjectLiteral() {
+        String src = "function a() {}\n"
+                + "module.exports = {\n"
+                + "  a,\n"
+                + "  // comment, with: things\n"
+                + "  'quoted': 1,\n"
+                + "  'not-an-identifier': 2,\n"
+                + "  fn: function (x, y) { return { nested: true, other: [1, 2] }; },\n"
+                + "  shorthand(z) { return \"}\"; },\n"
+                + "  async later() {},\n"
+                + "  value: compute(1, 2)\n"
+                + "};\n";
+        List<Symbol> symbols = EntryScanner.scan(src);
+        assertEquals("[a = , quoted = , fn(x, y), shorthand(z), later(), value = ]", symbols.toString());
+    }
+
+    @Test
+    public void testEsModules() {
+        String src = "import x from 'y';\n"
+                + "export function one(a, b) {}\n"
+                + "export async function two() {}\n"
+                + "export class Three {}\n"
+                + "export const four = 4, ignored = 5;\n"
+                + "const five = 5, six = 6;\n"
+                + "export { five, six as seven, x as default };\n"
+                + "export default function () {}\n";
+        assertEquals("[one(a, b), two(), Three(), four = , five = , seven = ]", EntryScanner.scan(src).toString());
+    }
+
+    @Test
+    public void testReexported() {
+        assertEquals("./lib/express", EntryScanner.reexported("'use strict';\n\nmodule.exports = require('./lib/express');\n"));
+        assertNull(EntryScanner.reexported("module.exports = { a: require('./a') };"));
+    }
+}
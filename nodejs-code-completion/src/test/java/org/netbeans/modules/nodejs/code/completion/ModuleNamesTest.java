@@ -0,0 +1,195 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.netbeans.modules.nodejs.api.NodeJSUtils;
+import org.openide.filesystems.FileObject;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class ModuleNamesTest {
+
+    private static final Set<String> BUILT_INS = new HashSet<>(Arrays.asList("events", "fs", "fs/promises", "http", "https"));
+    private File dir;
+    private File main;
+    private FakeUtils utils;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("modulenames").toFile();
+        main = new File(dir, "src/main.js");
+        write(main, "");
+        write(new File(dir, "package.json"), "{\"name\": \"app\"}");
+        utils = new FakeUtils();
+        utils.declared("express", "@types/node");
+        utils.installed("express", "express-session", "etag", "http-errors", "@types/node", "@types/express");
+        write(new File(dir, "src/lib/util.js"), "");
+        write(new File(dir, "src/lib/data.json"), "");
+        new File(dir, "src/lib/sub").mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    @Test
+    public void testRanking() throws IOException {
+        ModuleNames names = ModuleNames.forFile(main, utils);
+        assertSame(names, ModuleNames.forFile(new File(dir, "src/lib/util.js"), utils));
+        // Declared first, then built in, then merely installed
+        assertEquals(Arrays.asList("express", "events", "etag", "express-session"), names.complete("e", 10, BUILT_INS));
+        assertEquals(Arrays.asList("@types/node", "@types/express"), names.complete("@", 10, BUILT_INS));
+        assertEquals(Arrays.asList("http", "https", "http-errors"), names.complete("http", 10, BUILT_INS));
+
+        // Usage by the project's files ranks a module up within its group
+        names.usedBy(main, "var s = require('express-session');\nimport e from \"etag\";\nrequire('./local');");
+        names.usedBy(new File(dir, "src/other.js"), "require('https'); require('etag')");
+        assertEquals(Arrays.asList("https", "http", "http-errors"), names.complete("http", 10, BUILT_INS));
+        assertEquals(Arrays.asList("express", "events", "etag", "express-session"), names.complete("e", 10, BUILT_INS));
+        names.usedBy(main, "");
+        assertEquals(Arrays.asList("express", "events", "etag", "express-session"), names.complete("e", 10, BUILT_INS));
+
+        // Installing, removing and declaring packages is picked up
+        utils.installed("express", "express-session", "ejs", "http-errors", "@types/node", "@types/express");
+        utils.declared("express", "ejs");
+        assertEquals(Arrays.asList("ejs", "express", "events", "express-session"), names.complete("e", 10, BUILT_INS));
+        utils.installed("express", "express-session", "ejs", "http-errors", "@types/node", "@types/express", "@types/koa");
+        assertEquals(Arrays.asList("@types/express", "@types/koa", "@types/node"), names.complete("@types/", 10, BUILT_INS));
+    }
+
+    @Test
+    public void testForgetClosedProject() throws IOException {
+        File nested = new File(dir, "packages/nested/index.js");
+        write(new File(nested.getParentFile(), "package.json"), "{}");
+        File elsewhere = Files.createTempDirectory("modulenames").toFile();
+        try {
+            File other = new File(elsewhere, "index.js");
+            write(new File(elsewhere, "package.json"), "{}");
+            ModuleNames names = ModuleNames.forFile(main, utils);
+            ModuleNames nestedNames = ModuleNames.forFile(nested, utils);
+            ModuleNames otherNames = ModuleNames.forFile(other, utils);
+            assertNotSame(names, nestedNames);
+            ModuleNames.forget(dir);
+            assertNotSame(names, ModuleNames.forFile(main, utils));
+            assertNotSame(nestedNames, ModuleNames.forFile(nested, utils));
+            assertSame(otherNames, ModuleNames.forFile(other, utils));
+        } finally {
+            ModuleNames.forget(elsewhere);
+            delete(elsewhere);
+        }
+    }
+
+    @Test
+    public void testRelative() {
+        assertEquals(Arrays.asList("./lib/"), ModuleNames.completeRelative(main, "./l", 10));
+        assertEquals(Arrays.asList("./lib/data.json", "./lib/sub/", "./lib/util"), ModuleNames.completeRelative(main, "./lib/", 10));
+        assertEquals(Arrays.asList("../package.json"), ModuleNames.completeRelative(main, "../pa", 10));
+    }
+
+    @Test
+    public void testManyPackages() throws IOException {
+        File big = new File(dir, "big");
+        write(new File(big, "package.json"), "{}");
+        FakeUtils many = new FakeUtils();
+        List<String> installed = new ArrayList<>();
+        List<String> declared = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            installed.add((i % 10 == 0 ? "@scope" + (i % 7) + "/" : "") + "package-" + i);
+            if (i % 100 == 0) {
+                declared.add("package-" + i);
+            }
+        }
+        many.installed(installed.toArray(new String[installed.size()]));
+        many.declared(declared.toArray(new String[declared.size()]));
+        File file = new File(big, "index.js");
+        ModuleNames names = ModuleNames.forFile(file, many);
+        assertEquals(Arrays.asList("package-0", "package-100", "package-1000"), names.complete("pack", 3, BUILT_INS));
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            List<String> result = names.complete("package-" + (i % 50), 50, BUILT_INS);
+            assertFalse(result.isEmpty());
+        }
+        long perCall = (System.nanoTime() - start) / 1000;
+        assertTrue("Completing took " + perCall / 1000 + "us per call", perCall < 20000000L);
+    }
+
+    private static void write(File file, String text) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Stands in for a project's dependency graph, which returns new sets
+     * only when packages change.
+     */
+    private static final class FakeUtils extends NodeJSUtils {
+        private Set<String> installed;
+        private Set<String> declared;
+
+        void installed(String... names) {
+            installed = new TreeSet<>(Arrays.asList(names));
+        }
+
+        void declared(String... names) {
+            declared = new TreeSet<>(Arrays.asList(names));
+        }
+
+        @Override
+        protected FileObject resolveImpl(String name, FileObject relativeTo) {
+            return null;
+        }
+
+        @Override
+        public Set<String> installedPackages(FileObject file) {
+            return installed;
+        }
+
+        @Override
+        public Set<String> declaredPackages(FileObject file) {
+            return declared;
+        }
+    }
+
+    private static void delete(File f) {
+        File[] kids = f.listFiles();
+        if (kids != null) {
+            for (File kid : kids) {
+                delete(kid);
+            }
+        }
+        f.delete();
+    }
+}
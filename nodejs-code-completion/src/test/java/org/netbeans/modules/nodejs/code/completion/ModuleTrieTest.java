@@ -0,0 +1,109 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class ModuleTrieTest {
+
+    @Test
+    public void testTop() {
+        ModuleTrie trie = new ModuleTrie();
+        trie.put("express", 10);
+        trie.put("events", 20);
+        trie.put("express-session", 10);
+        trie.put("ex", 5);
+        trie.put("fs", 20);
+        trie.put("fs/promises", 1);
+        assertEquals(6, trie.size());
+        assertEquals(Arrays.asList("events", "express", "express-session", "ex"), trie.top("e", 10));
+        assertEquals(Arrays.asList("events", "fs"), trie.top("", 2));
+        assertEquals(Arrays.asList("express", "express-session"), trie.top("expr", 10));
+        assertEquals(Arrays.asList("express-session"), trie.top("express-", 10));
+        assertEquals(Collections.<String>emptyList(), trie.top("expo", 10));
+
+        trie.put("express-session", 30);
+        assertEquals(Arrays.asList("express-session", "express"), trie.top("expr", 10));
+        assertTrue(trie.remove("express"));
+        assertFalse(trie.remove("express"));
+        assertFalse(trie.remove("expr"));
+        assertEquals(-1, trie.score("express"));
+        assertEquals(30, trie.score("express-session"));
+        assertEquals(Arrays.asList("express-session", "events", "ex"), trie.top("e", 10));
+        assertEquals(5, trie.size());
+    }
+
+    @Test
+    public void testAgainstBruteForce() {
+        Random rnd = new Random(7);
+        ModuleTrie trie = new ModuleTrie();
+        Map<String, Integer> expected = new HashMap<>();
+        String alphabet = "ab-/@c";
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0, len = 1 + rnd.nextInt(6); j < len; j++) {
+                sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+            }
+            String name = sb.toString();
+            if (rnd.nextInt(3) == 0) {
+                assertEquals(name, expected.remove(name) != null, trie.remove(name));
+            } else {
+                int score = rnd.nextInt(5);
+                expected.put(name, score);
+                trie.put(name, score);
+            }
+            if (i % 50 == 0) {
+                assertEquals(expected.size(), trie.size());
+                String prefix = name.substring(0, rnd.nextInt(name.length()));
+                int limit = 1 + rnd.nextInt(20);
+                assertEquals(prefix + " " + limit, bruteForce(expected, prefix, limit), trie.top(prefix, limit));
+            }
+        }
+    }
+
+    private static List<String> bruteForce(final Map<String, Integer> scores, String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        for (String s : scores.keySet()) {
+            if (s.startsWith(prefix)) {
+                result.add(s);
+            }
+        }
+        Collections.sort(result, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                int r = Integer.compare(scores.get(b), scores.get(a));
+                return r != 0 ? r : a.compareTo(b);
+            }
+        });
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+}
@@ -0,0 +1,103 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Times looking up the members of a required module, once every package's
+ * entry file has been scanned, as completion does on each keystroke.  Run
+ * in sample mode, so the p99 can be compared with the 20ms completion has
+ * to respond.  Not run as part of the build;  run the main method from the
+ * test classpath.
+ *
+ * @author Tim Boudreau
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymbolIndexBenchmark {
+
+    private static final String[] PREFIXES = {"", "g", "s", "get", "setThing1", "x"};
+    @Param({"3000"})
+    public int packages;
+    private File dir;
+    private File main;
+    private String[] names;
+    private SymbolIndex index;
+    private final Random rnd = new Random(42);
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("symbols").toFile();
+        main = new File(dir, "src/main.js");
+        SymbolIndexTest.write(main, "var fs = require('fs');\n");
+        List<String> all = SymbolIndexTest.packages(dir, packages, 40);
+        for (int i = 0; i < 60; i++) {
+            all.add("builtin" + i);
+        }
+        names = all.toArray(new String[all.size()]);
+        index = new SymbolIndex(new SymbolIndexTest.FakeStubs(20));
+        // Scanning an entry file is paid once per package
+        for (String name : names) {
+            index.exports(main, name, 20);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        SymbolIndexTest.delete(dir);
+    }
+
+    @Benchmark
+    public int lookup() {
+        String name = names[rnd.nextInt(names.length)];
+        String prefix = PREFIXES[rnd.nextInt(PREFIXES.length)];
+        return index.exports(main, name, 20).withPrefix(prefix).size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SymbolIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,179 @@
+/* Copyright (C) 2012 Tim Boudreau
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy 
+ of this software and associated documentation files (the "Software"), to 
+ deal in the Software without restriction, including without limitation the 
+ rights to use, copy, modify, merge, publish, distribute, sublicense, and/or 
+ sell copies of the Software, and to permit persons to whom the Software is 
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all 
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR 
+ COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER 
+ IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE. */
+package org.netbeans.modules.nodejs.code.completion;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.netbeans.modules.nodejs.api.Stubs;
+import org.netbeans.modules.nodejs.api.Stubs.Symbol;
+import org.openide.filesystems.FileSystem;
+import org.openide.filesystems.FileUtil;
+import org.openide.modules.SpecificationVersion;
+
+/**
+ *
+ * @author Tim Boudreau
+ */
+public class SymbolIndexTest {
+
+    private File dir;
+    private File main;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("symbols").toFile();
+        main = new File(dir, "src/main.js");
+        write(main, "var fs = require('fs');\n");
+        write(new File(dir, "node_modules/express/package.json"), "{\"name\": \"express\", \"version\": \"4.18.2\"}");
+        write(new File(dir, "node_modules/express/index.js"), "module.exports = require('./lib/express');\n");
+        write(new File(dir, "node_modules/express/lib/express.js"),
+                "exports = module.exports = createApplication;\n"
+                + "exports.application = proto;\n"
+                + "exports.Router = Router;\n"
+                + "exports.static = require('serve-static');\n");
+        write(new File(dir, "node_modules/@scope/util/package.json"), "{\"main\": \"dist/util.js\"}");
+        write(new File(dir, "node_modules/@scope/util/dist/util.js"), "export function format(fmt, ...args) {}\n");
+        write(new File(dir, "src/local.js"), "exports.helper = function (a) {};\n");
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    @Test
+    public void testLookup() throws IOException {
+        SymbolIndex index = new SymbolIndex(new FakeStubs(20));
+        assertEquals("[Stats, readFile, readFile20, readFileSync]", index.exports(main, "fs", 20).toString());
+        assertEquals("[readFile, readFile20, readFileSync]", names(index.exports(main, "node:fs", 20).withPrefix("readF")));
+        assertEquals("[readFileSync]", names(index.exports(main, "fs", 20).withPrefix("readFileS")));
+        assertEquals("[readFile18]", names(index.exports(main, "fs", 18).withPrefix("readFile1")));
+        assertEquals("[readFile20]", names(index.exports(main, "fs", 0).withPrefix("readFile2")));
+        assertTrue(index.exports(main, "node:express", 20).isEmpty());
+        assertEquals("[Router, application, static]", index.exports(main, "express", 20).toString());
+        assertEquals("[format]", index.exports(main, "@scope/util", 20).toString());
+        assertEquals("[helper]", index.exports(main, "./local", 20).toString());
+        assertTrue(index.exports(main, "missing", 20).isEmpty());
+
+        File util = new File(dir, "node_modules/@scope/util/dist/util.js");
+        write(util, "export function format(fmt, ...args) {}\nexport const inspect = 1;\n");
+        util.setLastModified(util.lastModified() + 2000);
+        assertEquals("[format, inspect]", index.exports(main, "@scope/util", 20).toString());
+    }
+
+    @Test
+    public void testManyPackages() throws IOException {
+        List<String> names = packages(dir, 300, 40);
+        SymbolIndex index = new SymbolIndex(new FakeStubs(20));
+        for (String name : names) {
+            assertEquals(name, 40, index.exports(main, name, 20).size());
+        }
+        assertEquals("[setThing1, setThing11, setThing13, setThing15, setThing17, setThing19]",
+                names(index.exports(main, "pkg7", 20).withPrefix("setThing1")));
+        assertEquals(50, index.exports(main, "builtin3", 20).withPrefix("").size());
+    }
+
+    /**
+     * Create packages named pkg0, pkg1... under node_modules, each
+     * exporting functions named getThing0, setThing1..., and return their
+     * names.
+     */
+    static List<String> packages(File dir, int packages, int exports) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < packages; i++) {
+            String name = "pkg" + i;
+            names.add(name);
+            StringBuilder sb = new StringBuilder("'use strict';\n");
+            for (int j = 0; j < exports; j++) {
+                sb.append("exports.").append(j % 2 == 0 ? "get" : "set").append("Thing").append(j)
+                        .append(" = function (a, b, callback) {\n  return a + b;\n};\n");
+            }
+            write(new File(dir, "node_modules/" + name + "/package.json"), "{\"name\": \"" + name + "\", \"main\": \"lib/" + name + "\"}");
+            write(new File(dir, "node_modules/" + name + "/lib/" + name + ".js"), sb.toString());
+        }
+        return names;
+    }
+
+    private static String names(List<Symbol> symbols) {
+        List<String> result = new ArrayList<>();
+        for (Symbol s : symbols) {
+            result.add(s.name());
+        }
+        return result.toString();
+    }
+
+    static void write(File file, String text) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void delete(File f) {
+        File[] kids = f.listFiles();
+        if (kids != null) {
+            for (File kid : kids) {
+                delete(kid);
+            }
+        }
+        f.delete();
+    }
+
+    static final class FakeStubs extends Stubs {
+        private final int newest;
+
+        FakeStubs(int newest) {
+            this.newest = newest;
+        }
+
+        @Override
+        public FileSystem getStubs(SpecificationVersion ver) {
+            return FileUtil.createMemoryFileSystem();
+        }
+
+        @Override
+        public Map<String, List<Symbol>> getSymbols(SpecificationVersion ver) {
+            int major = ver == null ? newest : Integer.parseInt(ver.toString());
+            Map<String, List<Symbol>> result = new LinkedHashMap<>();
+            result.put("fs", Arrays.asList(
+                    new Symbol("readFileSync", null, Symbol.Kind.FUNCTION, "path, options"),
+                    new Symbol("readFile", null, Symbol.Kind.FUNCTION, "path, options, callback"),
+                    new Symbol("readFile" + major, null, Symbol.Kind.FUNCTION, ""),
+                    new Symbol("isFile", "Stats", Symbol.Kind.METHOD, ""),
+                    new Symbol("Stats", null, Symbol.Kind.CLASS, "")));
+            for (int i = 0; i < 60; i++) {
+                List<Symbol> symbols = new ArrayList<>();
+                for (int j = 0; j < 50; j++) {
+                    symbols.add(new Symbol((j % 2 == 0 ? "get" : "set") + "Thing" + j, null, Symbol.Kind.FUNCTION, "a, b"));
+                }
+                result.put("builtin" + i, symbols);
+            }
+            return result;
+        }
+    }
+}